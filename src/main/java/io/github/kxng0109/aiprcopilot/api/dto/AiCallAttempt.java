@@ -0,0 +1,17 @@
+package io.github.kxng0109.aiprcopilot.api.dto;
+
+/**
+ * A single attempt to get an analysis from a provider, as recorded in {@code AiCallMetadata}.
+ *
+ * @param provider  the provider that was called, never {@code null}
+ * @param outcome   how the attempt ended: {@code success}, {@code timeout}, {@code rejected} when the provider had
+ *                  no capacity or its circuit breaker was open, {@code error}, or {@code cancelled} when it lost a
+ *                  hedged race while still running; never {@code null}
+ * @param latencyMs the time the attempt took in milliseconds
+ */
+public record AiCallAttempt(
+        String provider,
+        String outcome,
+        long latencyMs
+) {
+}
@@ -2,6 +2,8 @@ package io.github.kxng0109.aiprcopilot.api.dto;
 
 import lombok.Builder;
 
+import java.util.List;
+
 /**
  * Metadata regarding an AI model invocation.
  *
@@ -9,12 +11,24 @@ import lombok.Builder;
  * @param provider       the provider of the AI model, may be {@code null}
  * @param modelLatencyMs the latency of the model call in milliseconds
  * @param tokensUsed     the number of tokens used in the AI call, may be {@code null}
+ * @param cacheHit       whether the result was served from the response cache instead of a model call
+ * @param retries        the number of times the model call was retried before it succeeded
+ * @param attempts       the providers tried for the request, in order, with the outcome and latency of each;
+ *                       may be {@code null} for streamed responses
+ * @param partial        whether the model output was cut off and the analysis only holds the fields completed
+ *                       before that point
+ * @param repaired       whether the model output could not be parsed and was fixed by the repair model
  */
-@Builder
+@Builder(toBuilder = true)
 public record AiCallMetadata(
         String modelName,
         String provider,
         long modelLatencyMs,
-        Integer tokensUsed
+        Integer tokensUsed,
+        boolean cacheHit,
+        int retries,
+        List<AiCallAttempt> attempts,
+        boolean partial,
+        boolean repaired
 ) {
 }
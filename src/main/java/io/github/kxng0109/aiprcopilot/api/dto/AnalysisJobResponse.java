@@ -0,0 +1,31 @@
+package io.github.kxng0109.aiprcopilot.api.dto;
+
+import lombok.Builder;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Represents the state of an asynchronous analysis job, as returned when it is submitted or polled and as posted to
+ * its callback URL once it has finished.
+ *
+ * @param jobId       the identifier of the job, never {@code null}
+ * @param status      the state of the job, never {@code null}
+ * @param requestId   the identifier of the analyzed request, may be {@code null}
+ * @param submittedAt when the job was submitted, never {@code null}
+ * @param startedAt   when a worker started the job, {@code null} while it is queued
+ * @param completedAt when the job finished, {@code null} until it has
+ * @param response    the analysis, {@code null} unless the job succeeded
+ * @param error       why the analysis failed, {@code null} unless the job failed
+ */
+@Builder
+public record AnalysisJobResponse(
+        String jobId,
+        AnalysisJobStatus status,
+        String requestId,
+        OffsetDateTime submittedAt,
+        OffsetDateTime startedAt,
+        OffsetDateTime completedAt,
+        AnalyzeDiffResponse response,
+        ErrorResponse error
+) {
+}
@@ -0,0 +1,14 @@
+package io.github.kxng0109.aiprcopilot.api.dto;
+
+/**
+ * Defines the states of an asynchronous analysis job.
+ * <p>
+ * A job is {@link #QUEUED} until a worker picks it up, {@link #RUNNING} while it is analyzed, and ends as
+ * {@link #SUCCEEDED} or {@link #FAILED}.
+ */
+public enum AnalysisJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
@@ -0,0 +1,41 @@
+package io.github.kxng0109.aiprcopilot.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Defines the lanes analyses wait in for provider capacity.
+ * <p>
+ * {@link #INTERACTIVE} is meant for requests someone is waiting on, such as a PR bot, and {@link #BULK} for
+ * backfills and other batch traffic that can wait. When both lanes are waiting for a provider, free slots are shared
+ * between them by weight.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum AnalysisPriority {
+    INTERACTIVE("interactive"),
+    BULK("bulk");
+
+    @JsonValue
+    private final String value;
+
+    /**
+     * Returns the {@code AnalysisPriority} corresponding to the given string value, ignoring case.
+     *
+     * @param value the string representation of the priority; must not be {@code null} or empty
+     * @return the matching {@code AnalysisPriority}, never {@code null}
+     * @throws IllegalArgumentException if no matching {@code AnalysisPriority} is found
+     */
+    @JsonCreator
+    public static AnalysisPriority fromValue(String value) {
+        for (AnalysisPriority p : AnalysisPriority.values()) {
+            if (p.value.equalsIgnoreCase(value)) {
+                return p;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("Unknown priority: %s.", value));
+    }
+}
@@ -1,6 +1,7 @@
 package io.github.kxng0109.aiprcopilot.api.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Positive;
 import lombok.Builder;
 
@@ -12,8 +13,10 @@ import lombok.Builder;
  * @param style the formatting or analysis style, may be {@code null} to use a default
  * @param maxSummaryLength the maximum allowed length for the summary, must be positive
  * @param requestId a unique identifier for the request, may be {@code null}
+ * @param priority the lane the analysis waits for provider capacity in, may be {@code null} to use the endpoint's default
+ * @param tenant the tenant the analysis is scheduled and accounted for, may be {@code null} to use the tenant header or the default tenant
  */
-@Builder
+@Builder(toBuilder = true)
 public record AnalyzeDiffRequest(
         @NotBlank(message = "Diff must not be blank")
         String diff,
@@ -25,6 +28,26 @@ public record AnalyzeDiffRequest(
         @Positive(message = "Max summary length must be positive")
         Integer maxSummaryLength,
 
-        String requestId
+        String requestId,
+
+        AnalysisPriority priority,
+
+        @Pattern(regexp = TENANT_PATTERN, message = "Tenant must be 1 to 64 letters, digits, '.', '_' or '-'")
+        String tenant
 ) {
+
+    /**
+     * The pattern a tenant identifier has to match.
+     */
+    public static final String TENANT_PATTERN = "[A-Za-z0-9._-]{1,64}";
+
+    /**
+     * Returns this request charged to the given tenant, for tenants taken from the tenant header.
+     *
+     * @param tenant the tenant, may be {@code null} or blank to keep this request's tenant
+     * @return the request with {@code tenant} set, never {@code null}
+     */
+    public AnalyzeDiffRequest withTenant(String tenant) {
+        return tenant == null || tenant.isBlank() ? this : toBuilder().tenant(tenant).build();
+    }
 }
@@ -18,7 +18,7 @@ import java.util.List;
  * @param requestId        a unique identifier for the request, may be {@code null}
  * @param rawModelOutput   the raw output from the AI model, may be {@code null}
  */
-@Builder
+@Builder(toBuilder = true)
 public record AnalyzeDiffResponse(
         String title,
         String summary,
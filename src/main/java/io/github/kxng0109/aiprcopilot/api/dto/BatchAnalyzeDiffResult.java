@@ -0,0 +1,20 @@
+package io.github.kxng0109.aiprcopilot.api.dto;
+
+import lombok.Builder;
+
+/**
+ * The outcome of one request of a batch, written as one line of the batch response or listed in a provider batch.
+ *
+ * @param line      the line of the batch the request was read from, or its position in a provider batch, starting at 1
+ * @param requestId the identifier of the request, {@code null} if it had none or could not be read
+ * @param response  the analysis, {@code null} if the request failed
+ * @param error     why the request failed, {@code null} if it succeeded
+ */
+@Builder
+public record BatchAnalyzeDiffResult(
+        long line,
+        String requestId,
+        AnalyzeDiffResponse response,
+        ErrorResponse error
+) {
+}
@@ -0,0 +1,35 @@
+package io.github.kxng0109.aiprcopilot.api.dto;
+
+import lombok.Builder;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Represents the state of a provider batch, a set of analyses run offline through a provider's batch API.
+ *
+ * @param batchId         the identifier of the batch, never {@code null}
+ * @param provider        the provider running the batch, never {@code null}
+ * @param providerBatchId the provider's identifier of the batch, never {@code null}
+ * @param status          {@code RUNNING} while the provider processes the batch, then {@code SUCCEEDED} or
+ *                        {@code FAILED}, never {@code null}
+ * @param submittedAt     when the batch was submitted, never {@code null}
+ * @param completedAt     when the batch's results were collected, {@code null} until they have been
+ * @param requestCount    the number of requests in the batch; for a batch attached by its provider ID, the number of
+ *                        results, {@code 0} until they have been collected
+ * @param results         one result per request, by position, {@code null} until the batch has succeeded
+ * @param error           why the batch failed as a whole, {@code null} unless it failed
+ */
+@Builder
+public record ProviderBatchResponse(
+        String batchId,
+        String provider,
+        String providerBatchId,
+        AnalysisJobStatus status,
+        OffsetDateTime submittedAt,
+        OffsetDateTime completedAt,
+        int requestCount,
+        List<BatchAnalyzeDiffResult> results,
+        ErrorResponse error
+) {
+}
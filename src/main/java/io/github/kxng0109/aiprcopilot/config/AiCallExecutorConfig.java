@@ -0,0 +1,57 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Configuration class for the executors that run blocking AI model calls and the analysis tasks around them.
+ *
+ * <p>Model calls are kept off the common {@code ForkJoinPool} so that slow providers can not starve
+ * unrelated asynchronous work. The executor type is selected through
+ * {@code MultiAiConfigurationProperties#getCallExecutor()}. Both executors are shut down with the application
+ * context, interrupting whatever is still running.
+ */
+@Configuration
+@Slf4j
+@RequiredArgsConstructor
+public class AiCallExecutorConfig {
+
+    private final MultiAiConfigurationProperties multiAiConfigurationProperties;
+
+    /**
+     * Constructs the {@code ExecutorService} used for AI model calls.
+     *
+     * @return a virtual-thread-per-task executor or a fixed platform thread pool, never {@code null}
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService aiCallExecutor() {
+        AiCallExecutorType type = multiAiConfigurationProperties.getCallExecutor();
+        log.info("AI model calls will run on a {} executor", type);
+
+        return switch (type) {
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("ai-call-", 0).factory()
+            );
+            case PLATFORM -> Executors.newFixedThreadPool(
+                    multiAiConfigurationProperties.getCallExecutorPoolSize(),
+                    Thread.ofPlatform().name("ai-call-", 0).daemon(true).factory()
+            );
+        };
+    }
+
+    /**
+     * Constructs the {@code ExecutorService} for analysis tasks that mostly wait on model calls, such as the chunks
+     * of an oversized diff, coalesced calls and hedged calls.
+     *
+     * @return a virtual-thread-per-task executor, never {@code null}
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService analysisTaskExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("analysis-task-", 0).factory());
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+/**
+ * Defines the kinds of executors that can run blocking AI model calls.
+ * <p>
+ * {@link #VIRTUAL} starts a new virtual thread per call, while {@link #PLATFORM} uses a fixed
+ * pool of platform threads sized by {@code prcopilot.ai.call-executor-pool-size}.
+ */
+public enum AiCallExecutorType {
+    VIRTUAL,
+    PLATFORM
+}
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.anthropic.AnthropicChatModel;
 import org.springframework.ai.anthropic.AnthropicChatOptions;
+import org.springframework.ai.anthropic.api.AnthropicApi;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.prompt.ChatOptions;
@@ -11,21 +12,31 @@ import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.ollama.api.OllamaChatOptions;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.ResponseFormat;
 import org.springframework.ai.vertexai.gemini.VertexAiGeminiChatModel;
 import org.springframework.ai.vertexai.gemini.VertexAiGeminiChatOptions;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Configuration class for initializing AI chat clients and options.
  *
  * <p>Integrates with multiple AI providers, including OpenAI, Anthropic, Gemini, and Ollama.
- * Automatically selects and configures the primary and optional fallback clients and options
- * based on {@code MultiAiConfigurationProperties}.
+ * Automatically selects and configures the primary client and options and the optional chain of fallback
+ * providers based on {@code MultiAiConfigurationProperties}, as well as the pool of providers requests are balanced across.
  *
- * <p>This configuration requires valid properties for the desired providers to be set.
+ * <p>This configuration requires valid properties for the desired providers to be set. Chat models are only
+ * looked up for the providers that are used, and only exist for the providers in
+ * {@code MultiAiConfigurationProperties.configuredProviders()}, see {@code AiProviderAutoConfigurationFilter}.
  */
 @Configuration
 @Slf4j
@@ -34,10 +45,10 @@ public class AiChatClientConfig {
 
     private final MultiAiConfigurationProperties multiAiConfigurationProperties;
 
-    private final OpenAiChatModel openAiChatModel;
-    private final AnthropicChatModel anthropicChatModel;
-    private final VertexAiGeminiChatModel vertexAiGeminiChatModel;
-    private final OllamaChatModel ollamaChatModel;
+    private final ObjectProvider<OpenAiChatModel> openAiChatModel;
+    private final ObjectProvider<AnthropicChatModel> anthropicChatModel;
+    private final ObjectProvider<VertexAiGeminiChatModel> vertexAiGeminiChatModel;
+    private final ObjectProvider<OllamaChatModel> ollamaChatModel;
 
     /**
      * Constructs the primary {@code ChatClient} based on the selected AI provider.
@@ -70,49 +81,154 @@ public class AiChatClientConfig {
     }
 
     /**
-     * Constructs a fallback {@code ChatClient} instance based on the configured AI provider.
+     * Constructs the pool of providers requests are balanced across.
      *
-     * <p>Auto-fallback mechanism ensures the availability of a {@code ChatClient} even when
-     * the primary provider is unavailable. The fallback provider must be explicitly
-     * configured via {@code multiAiConfigurationProperties}.
+     * <p>Builds a client and options for every provider in {@code prcopilot.ai.pool}. Without a pool,
+     * the primary provider is the pool's only member, so all requests go to it.
      *
-     * @return the fallback {@code ChatClient} instance, never {@code null}
-     * @throws IllegalStateException if auto-fallback is enabled but no fallback provider is configured
+     * @return the {@code AiProviderPool}, never {@code null}
+     * @throws IllegalStateException if a provider appears in the pool more than once
      */
     @Bean
-    @ConditionalOnProperty(name = "prcopilot.ai.auto-fallback", havingValue = "true")
-    public ChatClient fallbackChatClient() {
-        if (multiAiConfigurationProperties.getFallbackProvider() == null) {
-            throw new IllegalStateException(
-                    "Auto-fallback is enabled but no fallback provider is configured. Please set PRCOPILOT_AI_FALLBACK_PROVIDER or disable auto-fallback."
-            );
+    public AiProviderPool aiProviderPool() {
+        List<MultiAiConfigurationProperties.PoolMember> configured = multiAiConfigurationProperties.getPool();
+        LoadBalancingStrategy strategy = multiAiConfigurationProperties.getLoadBalancingStrategy();
+
+        if (configured.isEmpty()) {
+            return new AiProviderPool(strategy, List.of(new AiProviderPool.Member(
+                    multiAiConfigurationProperties.getProvider(),
+                    primaryChatClient(),
+                    primaryChatOptions(),
+                    1
+            )));
         }
 
-        ChatModel fallBackChatModel = chooseChatModel(multiAiConfigurationProperties.getFallbackProvider());
-        return ChatClient.builder(fallBackChatModel).build();
+        Set<AiProvider> seen = EnumSet.noneOf(AiProvider.class);
+        List<AiProviderPool.Member> members = new ArrayList<>();
+        for (MultiAiConfigurationProperties.PoolMember member : configured) {
+            if (!seen.add(member.getProvider())) {
+                throw new IllegalStateException(
+                        "Provider '" + member.getProvider().getValue() + "' appears more than once in prcopilot.ai.pool."
+                );
+            }
+            members.add(new AiProviderPool.Member(
+                    member.getProvider(),
+                    ChatClient.builder(chooseChatModel(member.getProvider())).build(),
+                    constructChatOption(member.getProvider()),
+                    member.getWeight()
+            ));
+        }
+
+        log.info("Balancing requests across {} with strategy {}",
+                 members.stream().map(m -> m.provider().getValue() + "(" + m.weight() + ")").toList(),
+                 strategy
+        );
+        return new AiProviderPool(strategy, List.copyOf(members));
     }
 
     /**
-     * Constructs a fallback {@code ChatOptions} instance based on the configured AI provider.
+     * Constructs the model tiers diffs are routed to by size.
      *
-     * <p>Creates a {@code ChatOptions} instance if the auto fallback mechanism is enabled and
-     * a fallback provider is specified in {@code multiAiConfigurationProperties}.
+     * <p>Builds a client for every tier in {@code prcopilot.ai.tiers}, with options selecting the tier's model and
+     * max tokens. Settings a tier leaves unset fall back to the provider's configured model and the global max tokens.
      *
-     * @return the fallback {@code ChatOptions} instance, never {@code null}
-     * @throws IllegalStateException if auto fallback is enabled but no fallback provider is configured
+     * @return the {@code AiModelTiers}, never {@code null}
      */
     @Bean
-    @ConditionalOnProperty(name = "prcopilot.ai.auto-fallback", havingValue = "true")
-    public ChatOptions fallbackChatOptions() {
-        if (multiAiConfigurationProperties.getFallbackProvider() == null) {
-            throw new IllegalStateException(
-                    "Auto-fallback is enabled but no fallback provider is configured. Please set PRCOPILOT_AI_FALLBACK_PROVIDER or disable auto-fallback."
-            );
+    public AiModelTiers aiModelTiers() {
+        List<AiModelTiers.Tier> tiers = new ArrayList<>();
+        for (MultiAiConfigurationProperties.ModelTier tier : multiAiConfigurationProperties.getTiers()) {
+            int maxTokens = tier.getMaxTokens() != null ? tier.getMaxTokens() : multiAiConfigurationProperties.getMaxTokens();
+            tiers.add(new AiModelTiers.Tier(
+                    tier.getName(),
+                    tier.getProvider(),
+                    ChatClient.builder(chooseChatModel(tier.getProvider())).build(),
+                    constructChatOption(tier.getProvider(), tier.getModel(), maxTokens),
+                    tier.getMaxDiffChars(),
+                    tier.getMaxFiles(),
+                    tier.getMaxHunks()
+            ));
         }
 
-        return constructChatOption(multiAiConfigurationProperties.getFallbackProvider());
+        if (!tiers.isEmpty()) {
+            log.info("Routing diffs to model tiers {}", tiers.stream().map(AiModelTiers.Tier::name).toList());
+        }
+        return new AiModelTiers(List.copyOf(tiers));
     }
 
+    /**
+     * Constructs the model asked to fix model output that could not be parsed.
+     *
+     * <p>Uses {@code prcopilot.ai.repair}; a provider or model it leaves unset falls back to the primary provider
+     * and that provider's configured model.
+     *
+     * @return the {@code AiRepairModel}, never {@code null}
+     */
+    @Bean
+    @ConditionalOnProperty(name = "prcopilot.ai.repair.enabled", havingValue = "true", matchIfMissing = true)
+    public AiRepairModel aiRepairModel() {
+        MultiAiConfigurationProperties.OutputRepair repair = multiAiConfigurationProperties.getRepair();
+        AiProvider provider = repair.getProvider() != null
+                ? repair.getProvider()
+                : multiAiConfigurationProperties.getProvider();
+        String model = StringUtils.hasText(repair.getModel()) ? repair.getModel() : null;
+
+        log.info("Repairing unparseable model output with provider '{}'{}",
+                 provider.getValue(),
+                 model != null ? " and model " + model : ""
+        );
+        return new AiRepairModel(
+                provider,
+                ChatClient.builder(chooseChatModel(provider)).build(),
+                constructChatOption(provider, model, repair.getMaxTokens()),
+                repair.getTimeoutMillis()
+        );
+    }
+
+    /**
+     * Constructs the chain of providers tried, in order, when the provider chosen for a request fails.
+     *
+     * <p>The chain is {@code prcopilot.ai.fallback-providers} if set, and otherwise the single
+     * {@code prcopilot.ai.fallback-provider}. It is empty while auto-fallback is disabled.
+     *
+     * @return the {@code AiFallbackChain}, never {@code null}
+     * @throws IllegalStateException if auto-fallback is enabled but no fallback provider is configured,
+     *                               or if a provider appears in the chain more than once
+     */
+    @Bean
+    public AiFallbackChain aiFallbackChain() {
+        if (!multiAiConfigurationProperties.isAutoFallback()) {
+            return new AiFallbackChain(List.of());
+        }
+
+        List<AiProvider> providers = multiAiConfigurationProperties.getFallbackProviders();
+        if (providers.isEmpty()) {
+            if (multiAiConfigurationProperties.getFallbackProvider() == null) {
+                throw new IllegalStateException(
+                        "Auto-fallback is enabled but no fallback provider is configured. Please set PRCOPILOT_AI_FALLBACK_PROVIDER or disable auto-fallback."
+                );
+            }
+            providers = List.of(multiAiConfigurationProperties.getFallbackProvider());
+        }
+
+        Set<AiProvider> seen = EnumSet.noneOf(AiProvider.class);
+        List<AiFallbackChain.Step> steps = new ArrayList<>();
+        for (AiProvider provider : providers) {
+            if (!seen.add(provider)) {
+                throw new IllegalStateException(
+                        "Provider '" + provider.getValue() + "' appears more than once in prcopilot.ai.fallback-providers."
+                );
+            }
+            steps.add(new AiFallbackChain.Step(
+                    provider,
+                    ChatClient.builder(chooseChatModel(provider)).build(),
+                    constructChatOption(provider)
+            ));
+        }
+
+        log.info("Falling back to {} in order", providers.stream().map(AiProvider::getValue).toList());
+        return new AiFallbackChain(List.copyOf(steps));
+    }
 
     /**
      * Determines the appropriate chat model based on the specified AI provider.
@@ -125,46 +241,50 @@ public class AiChatClientConfig {
     private ChatModel chooseChatModel(AiProvider provider) {
         return switch (provider) {
             case OPENAI -> {
-                if (openAiChatModel == null) {
+                ChatModel chatModel = openAiChatModel.getIfAvailable();
+                if (chatModel == null) {
                     throw new IllegalArgumentException(
                             "OpenAI provider is selected but not configured. Set OPENAI_API_KEY." +
                                     "Check .env.example for more details."
                     );
                 }
 
-                yield openAiChatModel;
+                yield chatModel;
             }
 
             case ANTHROPIC -> {
-                if (anthropicChatModel == null) {
+                ChatModel chatModel = anthropicChatModel.getIfAvailable();
+                if (chatModel == null) {
                     throw new IllegalArgumentException(
                             "Anthropic provider is selected but not configured. Set ANTHROPIC_API_KEY." +
                                     "Check .env.example for more details."
                     );
                 }
 
-                yield anthropicChatModel;
+                yield chatModel;
             }
 
             case GEMINI -> {
-                if (vertexAiGeminiChatModel == null) {
+                ChatModel chatModel = vertexAiGeminiChatModel.getIfAvailable();
+                if (chatModel == null) {
                     throw new IllegalArgumentException(
                             "Gemini provider is selected but not configured. Set up GCP credentials." +
                                     "Check .env.example for more details."
                     );
                 }
 
-                yield vertexAiGeminiChatModel;
+                yield chatModel;
             }
 
             case OLLAMA -> {
-                if (ollamaChatModel == null) {
+                ChatModel chatModel = ollamaChatModel.getIfAvailable();
+                if (chatModel == null) {
                     throw new IllegalArgumentException(
                             "Ollama provider is selected but not configured. Set up OLLAMA_MODEL and ensure Ollama is running." +
                                     "Check .env.example for more details.");
                 }
 
-                yield ollamaChatModel;
+                yield chatModel;
             }
         };
     }
@@ -181,26 +301,72 @@ public class AiChatClientConfig {
      * @throws IllegalArgumentException if the specified {@code provider} is unsupported
      */
     private ChatOptions constructChatOption(AiProvider provider) {
+        return constructChatOption(provider, null, multiAiConfigurationProperties.getMaxTokens());
+    }
+
+    /**
+     * Constructs a {@code ChatOptions} instance for the specified {@code AiProvider} with the given model and token limit.
+     *
+     * <p>If structured output is enabled, the options constrain the model to the {@code ModelOutputSchema}: OpenAI
+     * through a strict {@code response_format}, Gemini through its {@code responseSchema}, Ollama through its
+     * {@code format}, and Anthropic by forcing a call to a tool whose input is the analysis.
+     *
+     * @param provider  the {@code AiProvider} for which the chat options are to be created; must not be {@code null}
+     * @param model     the model to use, or {@code null} for the provider's configured model
+     * @param maxTokens the maximum number of tokens to generate
+     * @return a {@code ChatOptions} instance configured for the given {@code provider}, never {@code null}
+     */
+    private ChatOptions constructChatOption(AiProvider provider, String model, int maxTokens) {
+        boolean structuredOutput = multiAiConfigurationProperties.isStructuredOutput();
         return switch (provider) {
-            case OPENAI -> OpenAiChatOptions.builder()
-                                            .temperature(multiAiConfigurationProperties.getTemperature())
-                                            .maxTokens(multiAiConfigurationProperties.getMaxTokens())
-                                            .build();
-
-            case ANTHROPIC -> AnthropicChatOptions.builder()
-                                                  .temperature(multiAiConfigurationProperties.getTemperature())
-                                                  .maxTokens(multiAiConfigurationProperties.getMaxTokens())
-                                                  .build();
-
-            case GEMINI -> VertexAiGeminiChatOptions.builder()
-                                                    .temperature(multiAiConfigurationProperties.getTemperature())
-                                                    .maxOutputTokens(multiAiConfigurationProperties.getMaxTokens())
-                                                    .build();
-
-            case OLLAMA -> OllamaChatOptions.builder()
-                                            .temperature(multiAiConfigurationProperties.getTemperature())
-                                            .numPredict(multiAiConfigurationProperties.getMaxTokens())
-                                            .build();
+            case OPENAI -> {
+                OpenAiChatOptions.Builder builder = OpenAiChatOptions.builder()
+                                                                     .model(model)
+                                                                     .temperature(multiAiConfigurationProperties.getTemperature())
+                                                                     .maxTokens(maxTokens)
+                                                                     .streamUsage(true);
+                if (structuredOutput) {
+                    builder.responseFormat(new ResponseFormat(
+                            ResponseFormat.Type.JSON_SCHEMA,
+                            ModelOutputSchema.JSON_SCHEMA
+                    ));
+                }
+                yield builder.build();
+            }
+
+            case ANTHROPIC -> {
+                AnthropicChatOptions.Builder builder = AnthropicChatOptions.builder()
+                                                                           .model(model)
+                                                                           .temperature(multiAiConfigurationProperties.getTemperature())
+                                                                           .maxTokens(maxTokens);
+                if (structuredOutput) {
+                    builder.toolCallbacks(ModelOutputSchema.asTool())
+                           .toolChoice(new AnthropicApi.ToolChoiceTool(ModelOutputSchema.TOOL_NAME))
+                           .internalToolExecutionEnabled(false);
+                }
+                yield builder.build();
+            }
+
+            case GEMINI -> {
+                VertexAiGeminiChatOptions.Builder builder = VertexAiGeminiChatOptions.builder()
+                                                                                     .model(model)
+                                                                                     .temperature(multiAiConfigurationProperties.getTemperature())
+                                                                                     .maxOutputTokens(maxTokens);
+                if (structuredOutput) {
+                    builder.responseMimeType("application/json")
+                           .responseSchema(ModelOutputSchema.asOpenApiSchema());
+                }
+                yield builder.build();
+            }
+
+            case OLLAMA -> {
+                OllamaChatOptions.Builder builder = OllamaChatOptions.builder()
+                                                                     .model(model)
+                                                                     .temperature(multiAiConfigurationProperties.getTemperature())
+                                                                     .numPredict(maxTokens);
+                if (structuredOutput) builder.format(ModelOutputSchema.asMap());
+                yield builder.build();
+            }
         };
     }
 }
@@ -0,0 +1,24 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.ChatOptions;
+
+import java.util.List;
+
+/**
+ * The providers tried, in order, when the provider chosen for a request fails.
+ *
+ * @param steps the fallback providers in the order they are tried, never {@code null}; empty if auto-fallback is disabled
+ */
+public record AiFallbackChain(List<Step> steps) {
+
+    /**
+     * A single provider in the chain.
+     *
+     * @param provider    the provider, never {@code null}
+     * @param chatClient  the client for the provider's chat model, never {@code null}
+     * @param chatOptions the options to call the provider with, never {@code null}
+     */
+    public record Step(AiProvider provider, ChatClient chatClient, ChatOptions chatOptions) {
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuration class for the per-provider HTTP clients the Spring AI chat models call through.
+ *
+ * <p>Spring AI builds its OpenAI, Anthropic and Ollama clients from the application's {@code RestClient.Builder}
+ * and {@code WebClient.Builder}, so the customizers defined here route their requests to
+ * {@code AiProviderHttpClients}. Gemini is called over gRPC by the Vertex AI SDK and is not affected.
+ *
+ * <p>Enabled unless {@code prcopilot.http.enabled} is {@code false}, in which case Spring Boot's default
+ * HTTP client is used.
+ */
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "prcopilot.http.enabled", havingValue = "true", matchIfMissing = true)
+public class AiHttpClientConfig {
+
+    private final PrCopilotHttpClientProperties httpClientProperties;
+    private final Environment environment;
+
+    /**
+     * Constructs the HTTP clients of the OpenAI, Anthropic and Ollama providers from their configured base URLs.
+     * <p>
+     * How long idle connections are kept alive is a JVM-wide setting of the JDK HTTP client, read once when the
+     * client classes are loaded, so it is given as the {@code -Djdk.httpclient.keepalive.timeout} and
+     * {@code -Djdk.httpclient.keepalive.timeout.h2} JVM flags rather than configured here.
+     *
+     * @param meterRegistry the registry to publish pool metrics to, must not be {@code null}
+     * @return the {@code AiProviderHttpClients}, never {@code null}
+     */
+    @Bean
+    public AiProviderHttpClients aiProviderHttpClients(MeterRegistry meterRegistry) {
+        Map<AiProvider, URI> baseUrls = new EnumMap<>(AiProvider.class);
+        baseUrls.put(AiProvider.OPENAI, URI.create(environment.getProperty(
+                "spring.ai.openai.chat.base-url",
+                environment.getProperty("spring.ai.openai.base-url", "https://api.openai.com")
+        )));
+        baseUrls.put(AiProvider.ANTHROPIC, URI.create(environment.getProperty(
+                "spring.ai.anthropic.base-url", "https://api.anthropic.com"
+        )));
+        baseUrls.put(AiProvider.OLLAMA, URI.create(environment.getProperty(
+                "spring.ai.ollama.base-url", "http://localhost:11434"
+        )));
+
+        return new AiProviderHttpClients(baseUrls, httpClientProperties, meterRegistry);
+    }
+
+    /**
+     * Routes requests made through Spring's {@code RestClient} to the provider's HTTP client.
+     *
+     * @param httpClients the per-provider HTTP clients, must not be {@code null}
+     * @return the customizer, never {@code null}
+     */
+    @Bean
+    public RestClientCustomizer aiProviderRestClientCustomizer(AiProviderHttpClients httpClients) {
+        return builder -> builder.requestFactory(httpClients);
+    }
+
+    /**
+     * Routes streaming requests made through Spring's {@code WebClient} to the provider's HTTP client.
+     *
+     * @param httpClients the per-provider HTTP clients, must not be {@code null}
+     * @return the customizer, never {@code null}
+     */
+    @Bean
+    public WebClientCustomizer aiProviderWebClientCustomizer(AiProviderHttpClients httpClients) {
+        return builder -> builder.clientConnector(httpClients.connector());
+    }
+}
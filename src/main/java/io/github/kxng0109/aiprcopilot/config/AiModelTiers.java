@@ -0,0 +1,36 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.ChatOptions;
+
+import java.util.List;
+
+/**
+ * The model tiers diffs are routed to by size, in the order they are tried.
+ *
+ * @param tiers the configured tiers, never {@code null}; empty if every diff goes to the primary provider or pool
+ */
+public record AiModelTiers(List<Tier> tiers) {
+
+    /**
+     * A single tier and the limits a diff must stay within to be sent to it. A limit of {@code 0} means unlimited.
+     *
+     * @param name         the tier's name, used in logs and metrics, never {@code null}
+     * @param provider     the provider of the tier's model, never {@code null}
+     * @param chatClient   the client for the provider's chat model, never {@code null}
+     * @param chatOptions  the options selecting the tier's model and max tokens, never {@code null}
+     * @param maxDiffChars the largest diff, in characters, the tier takes
+     * @param maxFiles     the most changed files the tier takes
+     * @param maxHunks     the most hunks the tier takes
+     */
+    public record Tier(
+            String name,
+            AiProvider provider,
+            ChatClient chatClient,
+            ChatOptions chatOptions,
+            int maxDiffChars,
+            int maxFiles,
+            int maxHunks
+    ) {
+    }
+}
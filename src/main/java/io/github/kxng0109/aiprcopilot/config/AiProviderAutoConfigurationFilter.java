@@ -0,0 +1,92 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.AutoConfigurationImportFilter;
+import org.springframework.boot.autoconfigure.AutoConfigurationMetadata;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Skips the Spring AI auto-configurations of providers the application does not use.
+ * <p>
+ * Spring AI auto-configures the chat model, API client and any other models of every provider on the classpath,
+ * including Vertex AI's gRPC and Google Cloud stack. This filter leaves out every auto-configuration of a
+ * provider that is not in {@code MultiAiConfigurationProperties.configuredProviders()}, so a single-provider
+ * deployment only builds that provider's beans.
+ *
+ * <p>Registered in {@code META-INF/spring.factories}. Disabled when {@code prcopilot.ai.skip-unused-providers}
+ * is {@code false}.
+ */
+@Slf4j
+public class AiProviderAutoConfigurationFilter implements AutoConfigurationImportFilter, EnvironmentAware {
+
+    private static final Map<AiProvider, String> AUTO_CONFIGURATION_PACKAGES = Map.of(
+            AiProvider.OPENAI, "org.springframework.ai.model.openai.autoconfigure.",
+            AiProvider.ANTHROPIC, "org.springframework.ai.model.anthropic.autoconfigure.",
+            AiProvider.GEMINI, "org.springframework.ai.model.vertexai.autoconfigure.",
+            AiProvider.OLLAMA, "org.springframework.ai.model.ollama.autoconfigure."
+    );
+
+    private Environment environment;
+    private Set<AiProvider> skippedProviders;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Matches every auto-configuration except those of providers that are not configured.
+     *
+     * @param autoConfigurationClasses  the auto-configuration class names, entries may be {@code null}
+     * @param autoConfigurationMetadata the auto-configuration metadata, unused
+     * @return whether each auto-configuration should be imported, never {@code null}
+     */
+    @Override
+    public boolean[] match(String[] autoConfigurationClasses, AutoConfigurationMetadata autoConfigurationMetadata) {
+        boolean[] matches = new boolean[autoConfigurationClasses.length];
+        List<String> skipped = new ArrayList<>();
+        for (int i = 0; i < autoConfigurationClasses.length; i++) {
+            String candidate = autoConfigurationClasses[i];
+            AiProvider provider = candidate != null ? providerOf(candidate) : null;
+            matches[i] = provider == null || !skippedProviders().contains(provider);
+            if (!matches[i]) skipped.add(candidate.substring(candidate.lastIndexOf('.') + 1));
+        }
+
+        if (!skipped.isEmpty()) log.debug("Skipping auto-configurations of unused providers: {}", skipped);
+        return matches;
+    }
+
+    /**
+     * Returns the providers whose auto-configurations are skipped, binding {@code prcopilot.ai} on first use.
+     * The filter is called many times during startup, so the result is kept.
+     */
+    private Set<AiProvider> skippedProviders() {
+        if (skippedProviders == null) {
+            MultiAiConfigurationProperties properties = Binder.get(environment)
+                                                              .bind("prcopilot.ai", MultiAiConfigurationProperties.class)
+                                                              .orElseGet(MultiAiConfigurationProperties::new);
+            Set<AiProvider> skipped = EnumSet.noneOf(AiProvider.class);
+            if (properties.isSkipUnusedProviders()) {
+                skipped = EnumSet.allOf(AiProvider.class);
+                skipped.removeAll(properties.configuredProviders());
+            }
+            skippedProviders = skipped;
+        }
+        return skippedProviders;
+    }
+
+    private static AiProvider providerOf(String autoConfigurationClass) {
+        for (Map.Entry<AiProvider, String> entry : AUTO_CONFIGURATION_PACKAGES.entrySet()) {
+            if (autoConfigurationClass.startsWith(entry.getValue())) return entry.getKey();
+        }
+        return null;
+    }
+}
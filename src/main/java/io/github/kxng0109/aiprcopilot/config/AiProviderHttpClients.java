@@ -0,0 +1,338 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ClientHttpResponseDecorator;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * The HTTP clients the AI providers are called through, one per provider.
+ * <p>
+ * Requests are routed to a provider's client by the host and port of its base URL. Each client keeps its own
+ * keep-alive connections, negotiates HTTP/2 if enabled, and has its own connect and read timeouts. Requests to a
+ * provider, blocking and streaming alike, hold one of its {@code maxConcurrentRequests} permits from the moment they
+ * are sent until their response is closed or its body has been read, and wait up to the connect timeout for one
+ * when all are taken. The permits limit concurrent requests, not sockets: the JDK client opens and evicts connections
+ * by itself, with an idle timeout that is JVM-wide rather than per provider. Requests to any other host use a shared
+ * default client.
+ *
+ * <p>Active and pending requests, the configured maximum, the time spent waiting for a permit and permit timeouts
+ * are published as {@code prcopilot.http.requests.*}, tagged by provider.
+ */
+@Slf4j
+public class AiProviderHttpClients implements ClientHttpRequestFactory {
+
+    private final Map<String, ProviderClient> clientsByAuthority = new HashMap<>();
+    private final Map<AiProvider, URI> baseUrls = new EnumMap<>(AiProvider.class);
+    private final HttpClient defaultHttpClient = HttpClient.newHttpClient();
+    private final ClientHttpRequestFactory defaultRequestFactory = new JdkClientHttpRequestFactory(defaultHttpClient);
+
+    /**
+     * Constructs an {@code AiProviderHttpClients} with a client and its metrics for every provider.
+     *
+     * @param baseUrls      the base URL of every HTTP-based provider, must not be {@code null}
+     * @param properties    the client configuration, must not be {@code null}
+     * @param meterRegistry the registry to publish metrics to, must not be {@code null}
+     */
+    public AiProviderHttpClients(
+            Map<AiProvider, URI> baseUrls,
+            PrCopilotHttpClientProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.baseUrls.putAll(baseUrls);
+        baseUrls.forEach((provider, baseUrl) -> {
+            PrCopilotHttpClientProperties.Client client = properties.getProviders()
+                                                                    .getOrDefault(provider, new PrCopilotHttpClientProperties.Client());
+            ProviderClient existing = clientsByAuthority.putIfAbsent(
+                    authority(baseUrl),
+                    new ProviderClient(provider, client, meterRegistry)
+            );
+            if (existing != null) {
+                log.warn("Providers '{}' and '{}' share the base URL host {}; both use the client of '{}'",
+                         existing.provider.getValue(),
+                         provider.getValue(),
+                         authority(baseUrl),
+                         existing.provider.getValue()
+                );
+            }
+        });
+    }
+
+    /**
+     * Creates a request through the client of the provider the URI belongs to.
+     *
+     * @param uri        the URI to create a request for, must not be {@code null}
+     * @param httpMethod the HTTP method to execute, must not be {@code null}
+     * @return the created request, never {@code null}
+     * @throws IOException in case of I/O errors
+     */
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        ProviderClient client = clientsByAuthority.get(authority(uri));
+        return (client != null ? client.requestFactory : defaultRequestFactory).createRequest(uri, httpMethod);
+    }
+
+    /**
+     * Returns a connector for {@code WebClient} that routes streaming requests to the same per-provider clients.
+     * <p>
+     * Streaming requests share each provider's connections and HTTP/2 settings, and hold one of its permits until
+     * their response body has been read or cancelled.
+     *
+     * @return the connector, never {@code null}
+     */
+    public ClientHttpConnector connector() {
+        ClientHttpConnector defaultConnector = new JdkClientHttpConnector(defaultHttpClient);
+
+        return (method, uri, requestCallback) -> {
+            ProviderClient client = clientsByAuthority.get(authority(uri));
+            return client != null
+                    ? client.connect(method, uri, requestCallback)
+                    : defaultConnector.connect(method, uri, requestCallback);
+        };
+    }
+
+    /**
+     * Opens a keep-alive connection to a provider's base URL, so the DNS lookup, TLS handshake and HTTP/2
+     * negotiation are done before the first request needs them.
+     * <p>
+     * Any HTTP response counts as success, whatever its status. Does nothing for providers without an HTTP client.
+     *
+     * @param provider the provider to connect to, must not be {@code null}
+     * @param timeout  the time to wait for the response, must not be {@code null}
+     * @return {@code true} if a connection was opened, {@code false} if the provider has no HTTP client
+     * @throws IOException          if the provider could not be reached
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    public boolean warmUp(AiProvider provider, Duration timeout) throws IOException, InterruptedException {
+        URI baseUrl = baseUrls.get(provider);
+        if (baseUrl == null) return false;
+
+        HttpRequest request = HttpRequest.newBuilder(baseUrl)
+                                         .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                                         .timeout(timeout)
+                                         .build();
+        clientsByAuthority.get(authority(baseUrl)).httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        return true;
+    }
+
+    private static String authority(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        return uri.getHost() + ":" + port;
+    }
+
+    /**
+     * The client, request permits and metrics of a single provider.
+     */
+    private static final class ProviderClient {
+
+        private final AiProvider provider;
+        private final HttpClient httpClient;
+        private final ClientHttpRequestFactory requestFactory;
+        private final ClientHttpConnector connector;
+        private final Semaphore permits;
+        private final long acquireTimeoutMillis;
+        private final Timer acquireTimer;
+        private final MeterRegistry meterRegistry;
+
+        private ProviderClient(AiProvider provider, PrCopilotHttpClientProperties.Client client, MeterRegistry meterRegistry) {
+            this.provider = provider;
+            this.meterRegistry = meterRegistry;
+            this.acquireTimeoutMillis = client.getConnectTimeoutMillis();
+            this.permits = new Semaphore(client.getMaxConcurrentRequests(), true);
+            this.httpClient = HttpClient.newBuilder()
+                                        .version(client.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                                        .connectTimeout(Duration.ofMillis(client.getConnectTimeoutMillis()))
+                                        .build();
+
+            JdkClientHttpRequestFactory jdkRequestFactory = new JdkClientHttpRequestFactory(httpClient);
+            jdkRequestFactory.setReadTimeout(Duration.ofMillis(client.getReadTimeoutMillis()));
+            this.requestFactory = new InterceptingClientHttpRequestFactory(
+                    jdkRequestFactory,
+                    List.of(permitInterceptor())
+            );
+            this.connector = new JdkClientHttpConnector(httpClient);
+
+            Tags tags = Tags.of("provider", provider.getValue());
+            int maxConcurrentRequests = client.getMaxConcurrentRequests();
+            meterRegistry.gauge("prcopilot.http.requests.max", tags, permits, s -> maxConcurrentRequests);
+            meterRegistry.gauge("prcopilot.http.requests.active", tags, permits, s -> maxConcurrentRequests - s.availablePermits());
+            meterRegistry.gauge("prcopilot.http.requests.pending", tags, permits, Semaphore::getQueueLength);
+            this.acquireTimer = meterRegistry.timer("prcopilot.http.requests.acquire", tags);
+
+            log.info("HTTP client for provider '{}': {} max concurrent requests, {} connect timeout, {} read timeout, {}",
+                     provider.getValue(),
+                     maxConcurrentRequests,
+                     Duration.ofMillis(client.getConnectTimeoutMillis()),
+                     Duration.ofMillis(client.getReadTimeoutMillis()),
+                     client.isHttp2() ? "HTTP/2" : "HTTP/1.1"
+            );
+        }
+
+        /**
+         * Takes a permit before a request is sent and returns it once the response is closed.
+         */
+        private ClientHttpRequestInterceptor permitInterceptor() {
+            return (request, body, execution) -> {
+                Permit permit = acquire();
+                try {
+                    return new PermittedResponse(execution.execute(request, body), permit);
+                } catch (IOException | RuntimeException e) {
+                    permit.release();
+                    throw e;
+                }
+            };
+        }
+
+        /**
+         * Sends a streaming request once a permit is free, waiting for it off the event loop, and returns the permit
+         * once the response body has been read, has failed or was cancelled.
+         */
+        private Mono<org.springframework.http.client.reactive.ClientHttpResponse> connect(
+                HttpMethod method,
+                URI uri,
+                Function<? super org.springframework.http.client.reactive.ClientHttpRequest, Mono<Void>> requestCallback
+        ) {
+            return Mono.fromCallable(this::acquire)
+                       .subscribeOn(Schedulers.boundedElastic())
+                       .flatMap(permit -> connector.connect(method, uri, requestCallback)
+                                                   .<org.springframework.http.client.reactive.ClientHttpResponse>map(
+                                                           response -> new PermittedStreamingResponse(response, permit)
+                                                   )
+                                                   .doOnError(e -> permit.release())
+                                                   .doOnCancel(permit::release));
+        }
+
+        private Permit acquire() throws IOException {
+            long start = System.nanoTime();
+            try {
+                boolean acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+                acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (!acquired) {
+                    meterRegistry.counter("prcopilot.http.requests.acquire.timeouts", "provider", provider.getValue())
+                                 .increment();
+                    throw new ConnectException(String.format(
+                            "Timed out after %d ms waiting for a free request slot for provider '%s'",
+                            acquireTimeoutMillis,
+                            provider.getValue()
+                    ));
+                }
+                return new Permit(permits);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a request slot for provider " + provider.getValue(), e);
+            }
+        }
+    }
+
+    /**
+     * A taken request permit, returned at most once.
+     */
+    private static final class Permit {
+
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Semaphore permits) {
+            this.permits = permits;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) permits.release();
+        }
+    }
+
+    /**
+     * A response that returns its request permit when closed.
+     */
+    private static final class PermittedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Permit permit;
+
+        private PermittedResponse(ClientHttpResponse delegate, Permit permit) {
+            this.delegate = delegate;
+            this.permit = permit;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                permit.release();
+            }
+        }
+    }
+
+    /**
+     * A streaming response that returns its request permit once its body has been read, has failed or was cancelled.
+     */
+    private static final class PermittedStreamingResponse extends ClientHttpResponseDecorator {
+
+        private final Permit permit;
+
+        private PermittedStreamingResponse(org.springframework.http.client.reactive.ClientHttpResponse delegate, Permit permit) {
+            super(delegate);
+            this.permit = permit;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return super.getBody().doOnTerminate(permit::release).doOnCancel(permit::release);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.ChatOptions;
+
+import java.util.List;
+
+/**
+ * The providers requests are balanced across, with their clients and routing weights.
+ *
+ * @param strategy the strategy used to pick a provider for each request, never {@code null}
+ * @param members  the providers in the pool, never {@code null} or empty
+ */
+public record AiProviderPool(LoadBalancingStrategy strategy, List<Member> members) {
+
+    /**
+     * A single provider in the pool.
+     *
+     * @param provider    the provider, never {@code null}
+     * @param chatClient  the client for the provider's chat model, never {@code null}
+     * @param chatOptions the options to call the provider with, never {@code null}
+     * @param weight      the provider's share of the traffic relative to the other members, at least {@code 1}
+     */
+    public record Member(AiProvider provider, ChatClient chatClient, ChatOptions chatOptions, int weight) {
+    }
+}
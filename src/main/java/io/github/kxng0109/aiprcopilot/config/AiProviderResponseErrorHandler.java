@@ -0,0 +1,75 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.ai.retry.autoconfigure.SpringAiRetryProperties;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Error handler for the HTTP clients of the AI providers.
+ * <p>
+ * Classifies error responses like Spring AI's default handler, throwing a {@code TransientAiException} or a
+ * {@code NonTransientAiException} according to {@code spring.ai.retry.*}, but keeps the response status and
+ * headers as a {@code RestClientResponseException} cause so that the retry policy can honour {@code Retry-After}.
+ * Registering it replaces Spring AI's default {@code ResponseErrorHandler} bean.
+ */
+@Component
+@RequiredArgsConstructor
+public class AiProviderResponseErrorHandler implements ResponseErrorHandler {
+
+    private final SpringAiRetryProperties retryProperties;
+
+    @Override
+    public boolean hasError(ClientHttpResponse response) throws IOException {
+        return response.getStatusCode().isError();
+    }
+
+    /**
+     * Throws the exception matching the error response.
+     *
+     * @param url      the request URL
+     * @param method   the request method
+     * @param response the error response, must not be {@code null}
+     * @throws TransientAiException    if the error is worth retrying
+     * @throws NonTransientAiException if the error is not worth retrying
+     */
+    @Override
+    public void handleError(URI url, HttpMethod method, ClientHttpResponse response) throws IOException {
+        HttpStatusCode status = response.getStatusCode();
+        byte[] body = StreamUtils.copyToByteArray(response.getBody());
+        String message = String.format("HTTP %s - %s",
+                                       status.value(),
+                                       body.length == 0 ? "No response body available" : new String(body, StandardCharsets.UTF_8)
+        );
+        RestClientResponseException cause = new RestClientResponseException(
+                message,
+                status,
+                response.getStatusText(),
+                response.getHeaders(),
+                body,
+                StandardCharsets.UTF_8
+        );
+
+        if (retryProperties.getOnHttpCodes().contains(status.value())) {
+            throw new TransientAiException(message, cause);
+        }
+        if (!retryProperties.isOnClientErrors() && status.is4xxClientError()) {
+            throw new NonTransientAiException(message, cause);
+        }
+        if (retryProperties.getExcludeOnHttpCodes().contains(status.value())) {
+            throw new NonTransientAiException(message, cause);
+        }
+        throw new TransientAiException(message, cause);
+    }
+}
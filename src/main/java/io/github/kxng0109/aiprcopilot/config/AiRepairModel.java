@@ -0,0 +1,20 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.ChatOptions;
+
+/**
+ * The model asked to fix model output that could not be parsed.
+ *
+ * @param provider      the provider of the repair model, never {@code null}
+ * @param chatClient    the client for the provider's chat model, never {@code null}
+ * @param chatOptions   the options selecting the repair model and its max tokens, never {@code null}
+ * @param timeoutMillis the time a repair call may take, in milliseconds
+ */
+public record AiRepairModel(
+        AiProvider provider,
+        ChatClient chatClient,
+        ChatOptions chatOptions,
+        long timeoutMillis
+) {
+}
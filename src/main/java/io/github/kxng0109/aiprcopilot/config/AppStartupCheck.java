@@ -9,6 +9,8 @@ import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 @Slf4j
 @RequiredArgsConstructor
@@ -34,7 +36,7 @@ class AppStartupCheck {
     /**
      * Validates the AI provider configuration during application startup.
      * <p>
-     * Ensures the primary and fallback AI providers (if auto-fallback is enabled) are
+     * Ensures the primary and every fallback AI provider (if auto-fallback is enabled) are
      * correctly configured with the required properties such as API keys or project
      * identifiers. Throws an exception if the configuration is invalid.
      * <p>
@@ -52,21 +54,24 @@ class AppStartupCheck {
         validateProvider(primaryProvider);
 
         if (multiAiConfigurationProperties.isAutoFallback()) {
-            if (multiAiConfigurationProperties.getFallbackProvider() == null) {
-                String errorMessage = "Auto-fallback is enabled but fallback provider is not set/configured. Either set fallback provider or disable auto-fallback. \nCheck .env.example for more info";
-                log.error(errorMessage);
+            List<AiProvider> fallbackProviders = multiAiConfigurationProperties.getFallbackProviders();
+            if (fallbackProviders == null || fallbackProviders.isEmpty()) {
+                if (multiAiConfigurationProperties.getFallbackProvider() == null) {
+                    String errorMessage = "Auto-fallback is enabled but fallback provider is not set/configured. Either set fallback provider or disable auto-fallback. \nCheck .env.example for more info";
+                    log.error(errorMessage);
 
-                throw new RuntimeException(errorMessage);
+                    throw new RuntimeException(errorMessage);
+                }
+                fallbackProviders = List.of(multiAiConfigurationProperties.getFallbackProvider());
             }
 
-            AiProvider fallbackProvider = multiAiConfigurationProperties.getFallbackProvider();
-            if (fallbackProvider == primaryProvider) {
+            if (fallbackProviders.contains(primaryProvider)) {
                 log.warn("Fallback provider is the same as your primary provider, is that intentional?");
             }
 
-            log.info("Fallback provider: {}", fallbackProvider);
+            log.info("Fallback providers: {}", fallbackProviders);
 
-            validateProvider(fallbackProvider);
+            fallbackProviders.forEach(this::validateProvider);
         } else{
             log.info("Auto-fallback is not set. No fallback provider is configured.");
         }
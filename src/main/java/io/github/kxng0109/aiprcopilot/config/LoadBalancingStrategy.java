@@ -0,0 +1,15 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+/**
+ * Defines how requests are spread across the providers of {@code prcopilot.ai.pool}.
+ * <p>
+ * {@link #WEIGHTED_ROUND_ROBIN} hands out requests in proportion to the providers' weights,
+ * {@link #LEAST_OUTSTANDING} picks the provider with the fewest in-flight requests per unit of weight,
+ * and {@link #EWMA_LATENCY} picks the provider with the lowest recent latency, scaled by its in-flight
+ * requests and weight.
+ */
+public enum LoadBalancingStrategy {
+    WEIGHTED_ROUND_ROBIN,
+    LEAST_OUTSTANDING,
+    EWMA_LATENCY
+}
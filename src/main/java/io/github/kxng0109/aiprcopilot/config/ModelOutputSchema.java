@@ -0,0 +1,105 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import io.github.kxng0109.aiprcopilot.api.dto.ModelAnalyzeDiffResult;
+import org.springframework.ai.anthropic.AnthropicChatOptions;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.ollama.api.OllamaChatOptions;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.ResponseFormat;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+import org.springframework.ai.util.json.schema.JsonSchemaGenerator;
+import org.springframework.ai.vertexai.gemini.VertexAiGeminiChatOptions;
+import org.springframework.ai.vertexai.gemini.schema.JsonSchemaConverter;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * The JSON schema of the analysis a model must return, in the forms each provider's structured output mode expects.
+ * <p>
+ * Generated from {@code ModelAnalyzeDiffResult}, with every property required and no additional properties, as
+ * OpenAI's strict mode requires.
+ */
+public final class ModelOutputSchema {
+
+    /**
+     * The name of the tool Anthropic is made to call with the analysis as its input.
+     */
+    public static final String TOOL_NAME = "submit_analysis";
+
+    /**
+     * The JSON schema of {@code ModelAnalyzeDiffResult}.
+     */
+    public static final String JSON_SCHEMA = JsonSchemaGenerator.generateForType(ModelAnalyzeDiffResult.class);
+
+    private ModelOutputSchema() {
+    }
+
+    /**
+     * Returns the schema as a map, the form Ollama's {@code format} option takes.
+     *
+     * @return the schema, never {@code null}
+     */
+    public static Map<String, Object> asMap() {
+        return ModelOptionsUtils.jsonToMap(JSON_SCHEMA);
+    }
+
+    /**
+     * Returns the schema converted to the OpenAPI subset Gemini's {@code responseSchema} option takes.
+     *
+     * @return the schema, never {@code null}
+     */
+    public static String asOpenApiSchema() {
+        return JsonSchemaConverter.convertToOpenApiSchema(JsonSchemaConverter.fromJson(JSON_SCHEMA)).toString();
+    }
+
+    /**
+     * Returns a tool whose input is the analysis. It is only declared to the model, never executed.
+     *
+     * @return the tool, never {@code null}
+     */
+    public static ToolCallback asTool() {
+        return FunctionToolCallback.builder(TOOL_NAME, (Map<String, Object> analysis) -> "")
+                                   .description("Submits the analysis of the diff.")
+                                   .inputType(Map.class)
+                                   .inputSchema(JSON_SCHEMA)
+                                   .build();
+    }
+
+    /**
+     * Returns a copy of chat options that no longer constrain the model to this schema, for prompts asking for
+     * differently shaped JSON. OpenAI keeps its JSON mode, Gemini its JSON response type and Ollama its {@code json}
+     * format; Anthropic's forced tool call is removed. Options without a schema are returned as they are.
+     *
+     * @param chatOptions the options, may be {@code null}
+     * @return the options without the schema, {@code null} if {@code chatOptions} is
+     */
+    public static ChatOptions withoutSchema(ChatOptions chatOptions) {
+        return switch (chatOptions) {
+            case OpenAiChatOptions openAi when openAi.getResponseFormat() != null -> {
+                OpenAiChatOptions copy = openAi.copy();
+                copy.setResponseFormat(ResponseFormat.builder().type(ResponseFormat.Type.JSON_OBJECT).build());
+                yield copy;
+            }
+            case AnthropicChatOptions anthropic when anthropic.getToolChoice() != null -> {
+                AnthropicChatOptions copy = anthropic.copy();
+                copy.setToolCallbacks(new ArrayList<>());
+                copy.setToolChoice(null);
+                yield copy;
+            }
+            case VertexAiGeminiChatOptions gemini when gemini.getResponseSchema() != null -> {
+                VertexAiGeminiChatOptions copy = gemini.copy();
+                copy.setResponseSchema(null);
+                yield copy;
+            }
+            case OllamaChatOptions ollama when ollama.getFormat() != null -> {
+                OllamaChatOptions copy = ollama.copy();
+                copy.setFormat("json");
+                yield copy;
+            }
+            case null, default -> chatOptions;
+        };
+    }
+}
@@ -1,18 +1,41 @@
 package io.github.kxng0109.aiprcopilot.config;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
 /**
  * Configuration properties for managing multiple AI providers in PR Copilot.
  *
- * <p>Defines settings for primary and fallback providers, token usage limits,
- * request timeouts, and behavior for automatic fallback.
+ * <p>Defines settings for primary and fallback providers, the weighted pool of providers requests are
+ * balanced across, token usage limits,
+ * request timeouts, behavior for automatic fallback and hedging, the executor that runs model calls,
+ * the requests-per-minute and tokens-per-minute quotas of each provider, and the model tiers diffs are routed to
+ * by size.
+ *
+ * <p>Unless {@code skipUnusedProviders} is {@code false}, the Spring AI auto-configuration of every provider
+ * missing from {@link #configuredProviders()} is skipped, so its chat model and clients are never created.
+ *
+ * <p>Unless {@code structuredOutput} is {@code false}, every provider is asked to return JSON matching the schema
+ * of the analysis through its native structured output mode, rather than through the prompt alone.
+ *
+ * <p>{@code timeoutMillis} is the deadline of a whole request: when the primary fails, the providers in
+ * {@code fallbackProviders} (or the single {@code fallbackProvider}) are tried in order within what is left
+ * of it, and every attempt leaves at least {@code fallbackMinAttemptMillis} for each provider still to come.
  */
 @Getter
 @Setter
@@ -25,8 +48,29 @@ public class MultiAiConfigurationProperties {
 
     private AiProvider fallbackProvider;
 
+    private List<AiProvider> fallbackProviders = new ArrayList<>();
+
+    @Min(value = 0, message = "Fallback min attempt time can not be negative")
+    private long fallbackMinAttemptMillis = 5000;
+
+    @Valid
+    private List<PoolMember> pool = new ArrayList<>();
+
+    @NotNull
+    private LoadBalancingStrategy loadBalancingStrategy = LoadBalancingStrategy.WEIGHTED_ROUND_ROBIN;
+
+    @Valid
+    private List<ModelTier> tiers = new ArrayList<>();
+
     private boolean autoFallback = false;
 
+    private boolean hedgeEnabled = false;
+
+    @Min(value = 0, message = "Hedge delay can not be negative")
+    private long hedgeDelayMillis = 2000;
+
+    private boolean hedgeAdaptiveDelay = false;
+
     @Min(value = 0, message = "Temperature must be between 0.0 and 1.0 inclusive")
     @Max(value = 1, message = "Temperature must be between 0.0 and 1.0 inclusive")
     private double temperature;
@@ -36,4 +80,122 @@ public class MultiAiConfigurationProperties {
 
     @Min(value = 1000, message = "Request timeout must be at least 1000ms")
     private long timeoutMillis;
+
+    @NotNull
+    private AiCallExecutorType callExecutor = AiCallExecutorType.VIRTUAL;
+
+    @Min(value = 1, message = "Call executor pool size must be at least 1")
+    private int callExecutorPoolSize = 64;
+
+    @Valid
+    private Map<AiProvider, ProviderRateLimit> rateLimits = new HashMap<>();
+
+    @Min(value = 0, message = "Rate limit max wait can not be negative")
+    private long rateLimitMaxWaitMillis = 10000;
+
+    private boolean skipUnusedProviders = true;
+
+    private boolean structuredOutput = true;
+
+    @Valid
+    private OutputRepair repair = new OutputRepair();
+
+    /**
+     * Returns every provider requests can be sent to: the primary provider, the members of the pool, the tiers,
+     * the fallback providers if auto-fallback is enabled, and the output repair provider if repair is enabled.
+     *
+     * @return the configured providers, never {@code null}
+     */
+    public Set<AiProvider> configuredProviders() {
+        Set<AiProvider> providers = EnumSet.noneOf(AiProvider.class);
+        if (provider != null) providers.add(provider);
+        pool.stream().map(PoolMember::getProvider).filter(Objects::nonNull).forEach(providers::add);
+        tiers.stream().map(ModelTier::getProvider).filter(Objects::nonNull).forEach(providers::add);
+        if (autoFallback) {
+            providers.addAll(fallbackProviders);
+            if (fallbackProviders.isEmpty() && fallbackProvider != null) providers.add(fallbackProvider);
+        }
+        if (repair.isEnabled() && repair.getProvider() != null) providers.add(repair.getProvider());
+        return providers;
+    }
+
+    /**
+     * A provider in the load-balanced pool and its routing weight.
+     */
+    @Getter
+    @Setter
+    public static class PoolMember {
+
+        @NotNull
+        private AiProvider provider;
+
+        @Min(value = 1, message = "Pool weight must be at least 1")
+        private int weight = 1;
+    }
+
+    /**
+     * A model that diffs within the given size, file count and hunk count are sent to instead of the primary
+     * provider or pool. A limit of {@code 0} means unlimited; tiers are tried in order and the first one a diff
+     * fits is used.
+     */
+    @Getter
+    @Setter
+    public static class ModelTier {
+
+        @NotBlank(message = "Tier name can not be blank")
+        private String name;
+
+        @NotNull
+        private AiProvider provider;
+
+        private String model;
+
+        @Min(value = 1, message = "Tier max tokens can not be less than 1")
+        private Integer maxTokens;
+
+        @Min(value = 0, message = "Tier max diff chars can not be negative")
+        private int maxDiffChars;
+
+        @Min(value = 0, message = "Tier max files can not be negative")
+        private int maxFiles;
+
+        @Min(value = 0, message = "Tier max hunks can not be negative")
+        private int maxHunks;
+    }
+
+    /**
+     * The model asked to fix model output that could not be parsed. Only the broken output is sent, never the diff,
+     * in a single attempt. The provider defaults to the primary provider and the model to the provider's configured
+     * model; a small, cheap model is usually enough.
+     */
+    @Getter
+    @Setter
+    public static class OutputRepair {
+
+        private boolean enabled = true;
+
+        private AiProvider provider;
+
+        private String model;
+
+        @Min(value = 1, message = "Repair max tokens can not be less than 1")
+        private int maxTokens = 1024;
+
+        @Min(value = 1000, message = "Repair timeout must be at least 1000ms")
+        private long timeoutMillis = 10000;
+    }
+
+    /**
+     * Requests-per-minute and tokens-per-minute quota of a single provider. A value of {@code 0} means unlimited.
+     */
+    @Getter
+    @Setter
+    public static class ProviderRateLimit {
+
+        @Min(value = 0, message = "Requests per minute can not be negative")
+        private int requestsPerMinute;
+
+        @Min(value = 0, message = "Tokens per minute can not be negative")
+        private long tokensPerMinute;
+    }
 }
@@ -14,6 +14,9 @@ import org.springframework.validation.annotation.Validated;
  * including constraints on maximum diff size, default language,
  * default style, and whether to include raw model output.
  *
+ * <p>When chunking is enabled, diffs larger than {@code maxDiffChars} are split into chunks
+ * of at most {@code maxDiffChars} characters which are analyzed in parallel and merged.
+ *
  * <p>Must be loaded using {@code @ConfigurationProperties} with the prefix {@code prcopilot.analysis}.
  *
  * <p>Validation constraints ensure valid property values during initialization.
@@ -35,4 +38,12 @@ public class PrCopilotAnalysisProperties {
     private String defaultStyle;
 
     private boolean includeRawModelOutput;
+
+    private boolean chunkingEnabled;
+
+    @Min(value = 1, message = "Maximum chunks must be at least 1")
+    private int maxChunks = 20;
+
+    @Min(value = 1, message = "Maximum parallel chunks must be at least 1")
+    private int maxParallelChunks = 8;
 }
@@ -0,0 +1,30 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration properties for the batch analysis endpoint.
+ * <p>
+ * At most {@code concurrency} requests of a batch are analyzed at once. The next line of the batch is only read once
+ * one of them has finished and its result was written, so a batch of any size holds at most {@code concurrency}
+ * requests in memory. The response times out, interrupting the analyses still running, {@code timeoutMillis}
+ * after the batch started.
+ *
+ * <p>Property prefix: {@code prcopilot.batch}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.batch")
+public class PrCopilotBatchProperties {
+
+    @Min(value = 1, message = "Batch concurrency must be at least 1")
+    private int concurrency = 8;
+
+    @Min(value = 1, message = "Batch timeout must be at least 1 ms")
+    private long timeoutMillis = 3600000;
+}
@@ -0,0 +1,30 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration properties for the analysis response cache.
+ * <p>
+ * Controls whether identical analysis requests are served from memory, how many
+ * responses are kept, and how long a cached response stays valid.
+ *
+ * <p>Property prefix: {@code prcopilot.cache}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.cache")
+public class PrCopilotCacheProperties {
+
+    private boolean enabled;
+
+    @Min(value = 1, message = "Cache max entries must be at least 1")
+    private int maxEntries = 1000;
+
+    @Min(value = 1, message = "Cache TTL must be at least 1ms")
+    private long ttlMillis = 600000;
+}
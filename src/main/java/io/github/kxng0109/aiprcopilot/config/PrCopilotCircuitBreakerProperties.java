@@ -0,0 +1,49 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration properties for the per-provider circuit breakers.
+ * <p>
+ * Each {@code AiProvider} has its own breaker. It opens when the failure rate or the slow-call
+ * rate over the last {@code windowSize} calls reaches its threshold, rejects calls while open,
+ * and lets a few trial calls through once {@code openStateMillis} has passed.
+ *
+ * <p>Property prefix: {@code prcopilot.circuit-breaker}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.circuit-breaker")
+public class PrCopilotCircuitBreakerProperties {
+
+    private boolean enabled;
+
+    @Min(value = 1, message = "Circuit breaker window size must be at least 1")
+    private int windowSize = 20;
+
+    @Min(value = 1, message = "Circuit breaker minimum calls must be at least 1")
+    private int minimumCalls = 10;
+
+    @Min(value = 1, message = "Failure rate threshold must be between 1 and 100")
+    @Max(value = 100, message = "Failure rate threshold must be between 1 and 100")
+    private int failureRateThreshold = 50;
+
+    @Min(value = 1, message = "Slow call rate threshold must be between 1 and 100")
+    @Max(value = 100, message = "Slow call rate threshold must be between 1 and 100")
+    private int slowCallRateThreshold = 80;
+
+    @Min(value = 1, message = "Slow call duration must be at least 1ms")
+    private long slowCallDurationMillis = 10000;
+
+    @Min(value = 1, message = "Open state duration must be at least 1ms")
+    private long openStateMillis = 30000;
+
+    @Min(value = 1, message = "Half-open permitted calls must be at least 1")
+    private int halfOpenPermittedCalls = 3;
+}
@@ -0,0 +1,92 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration properties for the adaptive per-provider concurrency limiters.
+ * <p>
+ * Each {@code AiProvider} gets a limiter that starts at {@code initialLimit} outstanding calls and
+ * adjusts the limit between {@code minLimit} and {@code maxLimit} from observed latency and overload
+ * signals. Calls over the limit wait up to {@code queueTimeoutMillis} before being shed.
+ *
+ * <p>Waiting calls are queued in one lane per {@code AnalysisPriority}. Free slots go to the lanes in proportion
+ * to their {@code weight} while several are waiting, and a lane never holds more than {@code maxSharePercent} of
+ * the limit, so bulk traffic can be kept from taking every slot.
+ *
+ * <p>Property prefix: {@code prcopilot.concurrency}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.concurrency")
+public class PrCopilotConcurrencyProperties {
+
+    private boolean enabled;
+
+    @Min(value = 1, message = "Initial concurrency limit must be at least 1")
+    private int initialLimit = 20;
+
+    @Min(value = 1, message = "Minimum concurrency limit must be at least 1")
+    private int minLimit = 1;
+
+    @Min(value = 1, message = "Maximum concurrency limit must be at least 1")
+    private int maxLimit = 200;
+
+    @Min(value = 0, message = "Queue timeout can not be negative")
+    private long queueTimeoutMillis = 1000;
+
+    @Valid
+    private Lane interactive = new Lane(9, 100, null);
+
+    @Valid
+    private Lane bulk = new Lane(1, 80, 10000L);
+
+    /**
+     * Returns the configuration of the lane calls of the given priority wait in.
+     *
+     * @param priority the priority of the call, must not be {@code null}
+     * @return the lane's configuration, never {@code null}
+     */
+    public Lane lane(AnalysisPriority priority) {
+        return switch (priority) {
+            case INTERACTIVE -> interactive;
+            case BULK -> bulk;
+        };
+    }
+
+    /**
+     * The share of a provider's concurrency limit one priority lane gets. {@code queueTimeoutMillis} overrides the
+     * limiter's queue timeout for calls in this lane when set.
+     */
+    @Getter
+    @Setter
+    public static class Lane {
+
+        @Min(value = 1, message = "Lane weight must be at least 1")
+        private int weight;
+
+        @Min(value = 1, message = "Lane max share must be at least 1%")
+        @Max(value = 100, message = "Lane max share can not be more than 100%")
+        private int maxSharePercent;
+
+        @Min(value = 0, message = "Lane queue timeout can not be negative")
+        private Long queueTimeoutMillis;
+
+        public Lane() {
+            this(1, 100, null);
+        }
+
+        public Lane(int weight, int maxSharePercent, Long queueTimeoutMillis) {
+            this.weight = weight;
+            this.maxSharePercent = maxSharePercent;
+            this.queueTimeoutMillis = queueTimeoutMillis;
+        }
+    }
+}
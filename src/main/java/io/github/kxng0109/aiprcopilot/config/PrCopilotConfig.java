@@ -7,7 +7,18 @@ import org.springframework.context.annotation.Configuration;
 @EnableConfigurationProperties({
         PrCopilotAnalysisProperties.class,
         PrCopilotLoggingProperties.class,
-        MultiAiConfigurationProperties.class
+        MultiAiConfigurationProperties.class,
+        PrCopilotCacheProperties.class,
+        PrCopilotCircuitBreakerProperties.class,
+        PrCopilotConcurrencyProperties.class,
+        PrCopilotRetryProperties.class,
+        PrCopilotHttpClientProperties.class,
+        PrCopilotWarmupProperties.class,
+        PrCopilotBatchProperties.class,
+        PrCopilotJobProperties.class,
+        PrCopilotTenantProperties.class,
+        PrCopilotProviderBatchProperties.class,
+        PrCopilotMicroBatchProperties.class
 })
 public class PrCopilotConfig {
 }
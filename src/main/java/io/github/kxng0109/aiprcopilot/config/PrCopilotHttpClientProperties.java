@@ -0,0 +1,53 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration properties for the HTTP clients the AI providers are called through.
+ * <p>
+ * Each HTTP-based {@code AiProvider} gets its own client, configured by its entry in {@code providers}; providers
+ * without an entry use the defaults of {@link Client}. {@code maxConcurrentRequests} limits the requests in flight to
+ * a provider, not its sockets, which the JDK client manages itself. How long idle connections are kept alive is set
+ * for every client in the JVM with the {@code -Djdk.httpclient.keepalive.timeout} flag and can not be set per
+ * provider.
+ *
+ * <p>Property prefix: {@code prcopilot.http}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.http")
+public class PrCopilotHttpClientProperties {
+
+    private boolean enabled = true;
+
+    @Valid
+    private Map<AiProvider, Client> providers = new HashMap<>();
+
+    /**
+     * The concurrency limit and timeouts of a single provider's client.
+     */
+    @Getter
+    @Setter
+    public static class Client {
+
+        @Min(value = 1, message = "Max concurrent requests must be at least 1")
+        private int maxConcurrentRequests = 50;
+
+        @Min(value = 1, message = "Connect timeout must be at least 1ms")
+        private long connectTimeoutMillis = 5000;
+
+        @Min(value = 1, message = "Read timeout must be at least 1ms")
+        private long readTimeoutMillis = 60000;
+
+        private boolean http2 = true;
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties for asynchronous analysis jobs.
+ * <p>
+ * Jobs are run by {@code workers} worker threads, and at most {@code queueCapacity} jobs wait for one; jobs
+ * submitted while the queue is full are rejected. Finished jobs are kept for {@code ttlMillis} so their result can
+ * be fetched, then evicted. Results are posted to a job's callback URL with a timeout of
+ * {@code callbackTimeoutMillis}, and only to the hosts in {@code callbackAllowedHosts} when it is not empty, or else
+ * only to hosts that resolve to public addresses.
+ *
+ * <p>Property prefix: {@code prcopilot.jobs}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.jobs")
+public class PrCopilotJobProperties {
+
+    @Min(value = 1, message = "Job workers must be at least 1")
+    private int workers = 8;
+
+    @Min(value = 1, message = "Job queue capacity must be at least 1")
+    private int queueCapacity = 100;
+
+    @Min(value = 1000, message = "Job TTL must be at least 1000ms")
+    private long ttlMillis = 3600000;
+
+    @Min(value = 100, message = "Job callback timeout must be at least 100ms")
+    private long callbackTimeoutMillis = 5000;
+
+    private List<String> callbackAllowedHosts = new ArrayList<>();
+}
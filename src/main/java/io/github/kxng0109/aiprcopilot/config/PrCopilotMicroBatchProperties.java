@@ -0,0 +1,37 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration properties for micro-batching small diffs into one model call.
+ * <p>
+ * When enabled, diffs of at most {@code maxDiffChars} characters that arrive within {@code maxWaitMillis} of each
+ * other for the same tenant, provider, model, language, style and priority are sent together, up to {@code maxBatchSize}
+ * diffs and {@code maxBatchChars} characters of diff per call.
+ *
+ * <p>Property prefix: {@code prcopilot.micro-batch}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.micro-batch")
+public class PrCopilotMicroBatchProperties {
+
+    private boolean enabled;
+
+    @Min(value = 1, message = "Micro-batch max diff chars must be at least 1")
+    private int maxDiffChars = 2000;
+
+    @Min(value = 2, message = "Micro-batch max batch size must be at least 2")
+    private int maxBatchSize = 8;
+
+    @Min(value = 1, message = "Micro-batch max batch chars must be at least 1")
+    private int maxBatchChars = 16000;
+
+    @Min(value = 1, message = "Micro-batch max wait must be at least 1 ms")
+    private long maxWaitMillis = 20;
+}
@@ -0,0 +1,38 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration properties for offline bulk analysis through a provider's batch API.
+ * <p>
+ * When enabled, up to {@code maxRequests} diffs at a time are submitted as one batch to {@code provider}, which must
+ * be {@code openai} or {@code anthropic}. Batches are polled every {@code pollIntervalMillis} until they end, and
+ * finished batches are kept for {@code ttlMillis}.
+ *
+ * <p>Property prefix: {@code prcopilot.provider-batch}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.provider-batch")
+public class PrCopilotProviderBatchProperties {
+
+    private boolean enabled;
+
+    @NotNull(message = "Provider batch provider must be set")
+    private AiProvider provider = AiProvider.OPENAI;
+
+    @Min(value = 1, message = "Provider batch max requests must be at least 1")
+    private int maxRequests = 1000;
+
+    @Min(value = 1000, message = "Provider batch poll interval must be at least 1000 ms")
+    private long pollIntervalMillis = 60000;
+
+    @Min(value = 1, message = "Provider batch TTL must be positive")
+    private long ttlMillis = 86400000;
+}
@@ -0,0 +1,43 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration properties for retrying failed model calls.
+ * <p>
+ * Retryable failures are retried up to {@code maxAttempts} calls in total, waiting a decorrelated-jitter
+ * backoff between {@code baseDelayMillis} and {@code maxDelayMillis}, or longer if the provider asked for it
+ * with {@code Retry-After}. Each provider has a retry budget: every call adds {@code budgetPercent} percent
+ * of a retry to it, up to {@code budgetBurst} retries, and every retry takes one out.
+ *
+ * <p>Property prefix: {@code prcopilot.retry}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.retry")
+public class PrCopilotRetryProperties {
+
+    private boolean enabled;
+
+    @Min(value = 1, message = "Max attempts must be at least 1")
+    private int maxAttempts = 3;
+
+    @Min(value = 1, message = "Base retry delay must be at least 1 millisecond")
+    private long baseDelayMillis = 200;
+
+    @Min(value = 1, message = "Max retry delay must be at least 1 millisecond")
+    private long maxDelayMillis = 5000;
+
+    @Min(value = 0, message = "Retry budget percentage can not be negative")
+    @Max(value = 100, message = "Retry budget percentage can not exceed 100")
+    private int budgetPercent = 20;
+
+    @Min(value = 0, message = "Retry budget burst can not be negative")
+    private int budgetBurst = 10;
+}
@@ -0,0 +1,88 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration properties for per-tenant fair-share scheduling.
+ * <p>
+ * Requests are tagged with a tenant through the {@code header} or the request's {@code tenant} field, and
+ * requests without one belong to {@code defaultTenant}. At most {@code maxConcurrent} analyses run at once across
+ * all tenants; the others wait in one queue per tenant, up to {@code queueTimeoutMillis}, and free slots are handed
+ * out by deficit round-robin: every round a tenant is credited {@code quantumTokens} times its {@code weight}, and
+ * runs queued analyses while their estimated tokens fit in its credit.
+ *
+ * <p>Each tenant is further capped by its {@link Quota}: the entry under {@code quotas}, or {@code defaultQuota}
+ * for tenants without one. At most {@code maxTenants} distinct tenants are tracked; requests for further unknown
+ * tenants are scheduled as {@code defaultTenant}.
+ *
+ * <p>Property prefix: {@code prcopilot.tenants}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.tenants")
+public class PrCopilotTenantProperties {
+
+    private boolean enabled;
+
+    @NotBlank(message = "Tenant header must not be blank")
+    private String header = "X-Tenant-Id";
+
+    @NotBlank(message = "Default tenant must not be blank")
+    private String defaultTenant = "default";
+
+    @Min(value = 1, message = "Maximum concurrent analyses must be at least 1")
+    private int maxConcurrent = 32;
+
+    @Min(value = 1, message = "Quantum tokens must be at least 1")
+    private long quantumTokens = 4000;
+
+    @Min(value = 0, message = "Tenant queue timeout can not be negative")
+    private long queueTimeoutMillis = 30000;
+
+    @Min(value = 1, message = "Maximum tenants must be at least 1")
+    private int maxTenants = 100;
+
+    @Valid
+    private Quota defaultQuota = new Quota();
+
+    @Valid
+    private Map<String, Quota> quotas = new HashMap<>();
+
+    /**
+     * Returns the quota of the given tenant.
+     *
+     * @param tenant the tenant, must not be {@code null}
+     * @return the tenant's quota, or {@code defaultQuota} if it has none, never {@code null}
+     */
+    public Quota quota(String tenant) {
+        return quotas.getOrDefault(tenant, defaultQuota);
+    }
+
+    /**
+     * The caps of a single tenant. A {@code tokensPerMinute} of {@code 0} leaves the tenant's token consumption
+     * uncapped.
+     */
+    @Getter
+    @Setter
+    public static class Quota {
+
+        @Min(value = 1, message = "Tenant max concurrent analyses must be at least 1")
+        private int maxConcurrent = 8;
+
+        @Min(value = 0, message = "Tenant tokens per minute can not be negative")
+        private long tokensPerMinute;
+
+        @Min(value = 1, message = "Tenant weight must be at least 1")
+        private int weight = 1;
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration properties for the warm-up run once the application has started.
+ * <p>
+ * When enabled, a keep-alive connection is opened to every configured HTTP-based provider, waiting up to
+ * {@code timeoutMillis} for each, and a synthetic model response is mapped and serialized
+ * {@code mappingIterations} times. The application only reports itself ready once warm-up is done.
+ *
+ * <p>Property prefix: {@code prcopilot.warmup}.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "prcopilot.warmup")
+public class PrCopilotWarmupProperties {
+
+    private boolean enabled;
+
+    @Min(value = 1, message = "Warm-up timeout must be at least 1 millisecond")
+    private long timeoutMillis = 5000;
+
+    @Min(value = 0, message = "Warm-up mapping iterations can not be negative")
+    private int mappingIterations = 20;
+}
@@ -0,0 +1,85 @@
+package io.github.kxng0109.aiprcopilot.controller;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisJobResponse;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.service.AnalysisJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+
+/**
+ * Handles requests to analyze a code change diff asynchronously, as a job whose result is polled or called back.
+ */
+@RestController
+@RequestMapping("/api/v1/jobs")
+@RequiredArgsConstructor
+@Tag(name = "Analysis Jobs", description = "Endpoints for analyzing Git diffs asynchronously")
+public class AnalysisJobController {
+
+    private final AnalysisJobService analysisJobService;
+
+    /**
+     * Queues a code change diff for analysis and returns the job without waiting for it.
+     *
+     * @param request     the request containing the diff content, language, style, max summary length, and request ID, must not be null
+     * @param callbackUrl the URL the finished job is posted to, may be null
+     * @param tenant      the tenant from the tenant header, overriding the request's tenant, may be null
+     * @return the queued job, with its location in the {@code Location} header, never null
+     * @throws io.github.kxng0109.aiprcopilot.error.CapacityExceededException if the job queue is full
+     */
+    @Operation(
+            summary = "Submit a Git diff for asynchronous analysis",
+            description = "Queues the analysis and returns a job ID immediately. Poll GET /api/v1/jobs/{jobId} for the result, or pass callbackUrl to have the finished job posted to it."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Job queued"),
+            @ApiResponse(responseCode = "400", description = "Validation error (e.g., blank diff or invalid callback URL)"),
+            @ApiResponse(responseCode = "503", description = "Job queue is full")
+    })
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AnalysisJobResponse> submitJob(
+            @Valid @RequestBody AnalyzeDiffRequest request,
+            @RequestParam(required = false) String callbackUrl,
+            @RequestHeader(name = DiffAnalysisController.TENANT_HEADER, required = false) String tenant
+    ) {
+        AnalysisJobResponse job = analysisJobService.submit(request.withTenant(tenant), callbackUrl);
+        return ResponseEntity.accepted()
+                             .location(URI.create("/api/v1/jobs/" + job.jobId()))
+                             .body(job);
+    }
+
+    /**
+     * Returns the state of an analysis job, with its response or error once it has finished.
+     *
+     * @param jobId the job identifier, must not be null
+     * @return the job, never null
+     * @throws io.github.kxng0109.aiprcopilot.error.CustomApiException if there is no such job or it has expired
+     */
+    @Operation(
+            summary = "Get an asynchronous analysis job",
+            description = "Returns the job's status (QUEUED, RUNNING, SUCCEEDED or FAILED) and, once finished, its response or error."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Job found"),
+            @ApiResponse(responseCode = "404", description = "Job not found or expired")
+    })
+    @GetMapping(value = "/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AnalysisJobResponse> getJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(analysisJobService.get(jobId));
+    }
+}
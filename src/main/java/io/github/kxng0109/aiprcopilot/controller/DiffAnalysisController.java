@@ -2,7 +2,9 @@ package io.github.kxng0109.aiprcopilot.controller;
 
 import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
 import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.service.DiffAnalysisBatchService;
 import io.github.kxng0109.aiprcopilot.service.DiffAnalysisService;
+import io.github.kxng0109.aiprcopilot.service.DiffAnalysisStreamingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -13,8 +15,13 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.InputStream;
 
 /**
  * Handles requests to analyze a code change diff.
@@ -25,15 +32,21 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "Diff Analysis", description = "Endpoints for analyzing Git diffs")
 public class DiffAnalysisController {
 
+    static final String TENANT_HEADER = "${prcopilot.tenants.header:X-Tenant-Id}";
+
     private final DiffAnalysisService diffAnalysisService;
+    private final DiffAnalysisStreamingService diffAnalysisStreamingService;
+    private final DiffAnalysisBatchService diffAnalysisBatchService;
 
     /**
      * Analyzes a code change diff and returns the results.
      *
      * @param request the request containing the diff content, language, style, max summary length, and request ID, must not be null
+     * @param tenant  the tenant from the tenant header, overriding the request's tenant, may be null
      * @return the response containing the analysis title, summary, details, risks, suggested tests, touched files, analysis notes, metadata, request ID, and raw model output, never
      *  null
      * @throws io.github.kxng0109.aiprcopilot.error.DiffTooLargeException if the diff content exceeds the maximum allowed size
+     * @throws io.github.kxng0109.aiprcopilot.error.CapacityExceededException if the tenant is over its quota or no capacity is left
      */
 
     @Operation(
@@ -45,11 +58,72 @@ public class DiffAnalysisController {
             @ApiResponse(responseCode = "400", description = "Validation error (e.g., blank diff)"),
             @ApiResponse(responseCode = "413", description = "Diff too large"),
             @ApiResponse(responseCode = "422", description = "AI model returned invalid output"),
-            @ApiResponse(responseCode = "500", description = "Internal server error")
+            @ApiResponse(responseCode = "429", description = "Tenant is over its token quota"),
+            @ApiResponse(responseCode = "500", description = "Internal server error"),
+            @ApiResponse(responseCode = "503", description = "No capacity left for the request")
     })
     @PostMapping(value = "/analyze-diff", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<AnalyzeDiffResponse> analyzeDiff(@Valid @RequestBody AnalyzeDiffRequest request) {
-        AnalyzeDiffResponse response = diffAnalysisService.analyzeDiff(request);
+    public ResponseEntity<AnalyzeDiffResponse> analyzeDiff(
+            @Valid @RequestBody AnalyzeDiffRequest request,
+            @RequestHeader(name = TENANT_HEADER, required = false) String tenant
+    ) {
+        AnalyzeDiffResponse response = diffAnalysisService.analyzeDiff(request.withTenant(tenant));
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Analyzes a code change diff and streams the results as Server-Sent Events.
+     * <p>
+     * Each field of the analysis is sent as its own event as soon as the model has produced it,
+     * followed by a {@code complete} event with the full response or an {@code error} event.
+     *
+     * @param request the request containing the diff content, language, style, max summary length, and request ID, must not be null
+     * @param tenant  the tenant from the tenant header, overriding the request's tenant, may be null
+     * @return the emitter the analysis events are sent to, never null
+     * @throws io.github.kxng0109.aiprcopilot.error.DiffTooLargeException if the diff content exceeds the maximum allowed size
+     */
+    @Operation(
+            summary = "Analyze a Git diff and stream the results",
+            description = "Accepts a unified Git diff and streams the analysis as Server-Sent Events: touchedFiles, title, summary, details, risks, suggestedTests and analysisNotes as they are produced, then complete or error."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Analysis stream started"),
+            @ApiResponse(responseCode = "400", description = "Validation error (e.g., blank diff)"),
+            @ApiResponse(responseCode = "413", description = "Diff too large")
+    })
+    @PostMapping(value = "/analyze-diff/stream", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter analyzeDiffStream(
+            @Valid @RequestBody AnalyzeDiffRequest request,
+            @RequestHeader(name = TENANT_HEADER, required = false) String tenant
+    ) {
+        return diffAnalysisStreamingService.analyzeDiffStream(request.withTenant(tenant));
+    }
+
+    /**
+     * Analyzes a batch of code change diffs sent as newline-delimited JSON and streams the results back.
+     * <p>
+     * Each line of the body is a request; one result per line is written back, as newline-delimited JSON, in the
+     * order the analyses finish. Each result carries the line and request ID it belongs to, and either the response
+     * or the error the request failed with.
+     *
+     * @param body   the request body, one request per line, must not be null
+     * @param tenant the tenant from the tenant header, overriding the tenant of every line, may be null
+     * @return the newline-delimited results, never null
+     */
+    @Operation(
+            summary = "Analyze a batch of Git diffs",
+            description = "Accepts newline-delimited analyze-diff requests and streams one newline-delimited result per request, with its line, requestId and either response or error, in completion order."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch stream started")
+    })
+    @PostMapping(value = "/analyze-diff/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> analyzeDiffBatch(
+            InputStream body,
+            @RequestHeader(name = TENANT_HEADER, required = false) String tenant
+    ) {
+        return ResponseEntity.ok()
+                             .contentType(MediaType.APPLICATION_NDJSON)
+                             .body(diffAnalysisBatchService.analyzeBatch(body, tenant));
+    }
 }
@@ -0,0 +1,102 @@
+package io.github.kxng0109.aiprcopilot.controller;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.ProviderBatchResponse;
+import io.github.kxng0109.aiprcopilot.service.ProviderBatchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Handles requests to analyze many code change diffs offline through the AI provider's batch API.
+ */
+@RestController
+@RequestMapping("/api/v1/provider-batches")
+@RequiredArgsConstructor
+@Tag(name = "Provider Batches", description = "Endpoints for analyzing Git diffs offline through the provider's batch API")
+public class ProviderBatchController {
+
+    private final ProviderBatchService providerBatchService;
+
+    /**
+     * Submits code change diffs to the provider's batch API and returns the batch without waiting for it.
+     *
+     * @param requests the requests, each containing the diff content, language, style, max summary length, and request ID, must not be null
+     * @return the submitted batch, with its location in the {@code Location} header, never null
+     * @throws io.github.kxng0109.aiprcopilot.error.CustomApiException    if provider batches are disabled, a request is invalid, or the provider rejected the batch
+     * @throws io.github.kxng0109.aiprcopilot.error.DiffTooLargeException if a diff exceeds the maximum allowed size
+     */
+    @Operation(
+            summary = "Submit Git diffs to the provider's batch API",
+            description = "Sends a JSON array of analyze requests to the provider as one discounted batch and returns a batch ID immediately. Poll GET /api/v1/provider-batches/{batchId} for the results, which may take up to 24 hours."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Batch submitted"),
+            @ApiResponse(responseCode = "400", description = "Validation error (e.g., no requests, too many, or an invalid one)"),
+            @ApiResponse(responseCode = "404", description = "Provider batches are not enabled"),
+            @ApiResponse(responseCode = "413", description = "A diff is too large"),
+            @ApiResponse(responseCode = "502", description = "The provider rejected the batch")
+    })
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ProviderBatchResponse> submitBatch(@RequestBody List<AnalyzeDiffRequest> requests) {
+        ProviderBatchResponse batch = providerBatchService.submit(requests);
+        return ResponseEntity.accepted()
+                             .location(URI.create("/api/v1/provider-batches/" + batch.batchId()))
+                             .body(batch);
+    }
+
+    /**
+     * Returns the state of a provider batch, with the outcome of every request once it has finished.
+     *
+     * @param batchId the batch identifier, must not be null
+     * @return the batch, never null
+     * @throws io.github.kxng0109.aiprcopilot.error.CustomApiException if there is no such batch or it has expired
+     */
+    @Operation(
+            summary = "Get a provider batch",
+            description = "Returns the batch's status (RUNNING, SUCCEEDED or FAILED) and, once finished, the response or error of every request in submission order."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch found"),
+            @ApiResponse(responseCode = "404", description = "Batch not found or expired")
+    })
+    @GetMapping(value = "/{batchId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ProviderBatchResponse> getBatch(@PathVariable String batchId) {
+        return ResponseEntity.ok(providerBatchService.get(batchId));
+    }
+
+    /**
+     * Returns the state of a provider batch by the provider's ID, attaching it again if this instance does not know
+     * it, for example after a restart.
+     *
+     * @param providerBatchId the provider's identifier of the batch, must not be null
+     * @return the batch, never null
+     * @throws io.github.kxng0109.aiprcopilot.error.CustomApiException if provider batches are disabled, the provider does not know the batch, or it could not be reached
+     */
+    @Operation(
+            summary = "Attach a provider batch by the provider's ID",
+            description = "Looks the batch up by the provider's batch ID and, if this instance does not track it, polls the provider and tracks it again. Without the original requests, results carry no request ID and are ordered by their position in the submission."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch found"),
+            @ApiResponse(responseCode = "404", description = "Provider batches are not enabled or the provider does not know the batch"),
+            @ApiResponse(responseCode = "502", description = "The provider could not be reached")
+    })
+    @GetMapping(value = "/provider/{providerBatchId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ProviderBatchResponse> attachBatch(@PathVariable String providerBatchId) {
+        return ResponseEntity.ok(providerBatchService.attach(providerBatchId));
+    }
+}
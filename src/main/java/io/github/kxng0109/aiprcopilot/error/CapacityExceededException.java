@@ -0,0 +1,45 @@
+package io.github.kxng0109.aiprcopilot.error;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Exception indicating that a request was shed because a provider, or the tenant it belongs to, has no capacity
+ * left for it.
+ * <p>
+ * Reported as an HTTP 503, or 429 for tenant quotas, with a {@code Retry-After} header telling the client when to
+ * try again.
+ */
+public class CapacityExceededException extends CustomApiException {
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructs a {@code CapacityExceededException} with the specified detail message and retry delay.
+     *
+     * @param message           the detail message, must not be {@code null} or empty
+     * @param retryAfterSeconds the number of seconds after which the client may retry, must be positive
+     */
+    public CapacityExceededException(String message, long retryAfterSeconds) {
+        this(message, retryAfterSeconds, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Constructs a {@code CapacityExceededException} with the specified detail message, retry delay and HTTP status.
+     *
+     * @param message           the detail message, must not be {@code null} or empty
+     * @param retryAfterSeconds the number of seconds after which the client may retry, must be positive
+     * @param httpStatus        the HTTP status to report, must not be {@code null}
+     */
+    public CapacityExceededException(String message, long retryAfterSeconds, HttpStatus httpStatus) {
+        super(message, httpStatus);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Returns the number of seconds after which the client may retry.
+     *
+     * @return the retry delay in seconds, always positive
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
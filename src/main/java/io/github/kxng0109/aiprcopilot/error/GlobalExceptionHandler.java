@@ -2,6 +2,7 @@ package io.github.kxng0109.aiprcopilot.error;
 
 import io.github.kxng0109.aiprcopilot.api.dto.ErrorResponse;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -197,6 +198,35 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(status).body(errorResponse);
     }
 
+    /**
+     * Handles {@code CapacityExceededException} by constructing an {@code ErrorResponse} and returning it
+     * wrapped in a {@code ResponseEntity} with the exception's HTTP status code (503, or 429 for tenant quotas)
+     * and a {@code Retry-After} header.
+     *
+     * @param ex      the exception that occurred, must not be {@code null}
+     * @param request the HTTP request that caused the exception, must not be {@code null}
+     * @return a response entity containing error details, never {@code null}
+     */
+    @ExceptionHandler(CapacityExceededException.class)
+    public ResponseEntity<ErrorResponse> handleCapacityExceededException(
+            CapacityExceededException ex,
+            HttpServletRequest request
+    ) {
+        HttpStatus status = ex.getHttpStatus();
+
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                                                   .timestamp(OffsetDateTime.now())
+                                                   .statusCode(status.value())
+                                                   .error(status.getReasonPhrase())
+                                                   .message(ex.getMessage())
+                                                   .path(request.getRequestURI())
+                                                   .build();
+
+        return ResponseEntity.status(status)
+                             .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                             .body(errorResponse);
+    }
+
     /**
      * Handles {@link CustomApiException} by constructing an {@code ErrorResponse} and
      * returning it wrapped in a {@code ResponseEntity} with the corresponding HTTP status code.
@@ -1,70 +1,525 @@
 package io.github.kxng0109.aiprcopilot.service;
 
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
 import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
 import io.github.kxng0109.aiprcopilot.error.CustomApiException;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.nio.channels.UnresolvedAddressException;
-import java.util.concurrent.CompletableFuture;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service class for interacting with AI models via a client library.
  * <p>
  * Provides methods to call AI models with specific inputs, configurations, and error handling.
+ * Calls run on the dedicated {@code aiCallExecutor}. When a call exceeds the configured timeout its
+ * thread is interrupted, which aborts the underlying HTTP exchange instead of leaving it running.
+ * Every call goes through the provider's circuit breaker, which rejects calls with a 503 while open,
+ * its requests-per-minute and tokens-per-minute quota, which delays calls until the quota allows them, and its
+ * adaptive concurrency limiter, which queues calls over the limit in the lane of their {@code AnalysisPriority} and
+ * sheds those that wait too long with a 503 and {@code Retry-After}. Calls that fail
+ * retryably are retried by {@code AiRetryService}, each attempt going through all of the above again; the number
+ * of retries is added to the response metadata under {@link #RETRIES_METADATA_KEY}. The timeout covers the call
+ * as a whole, retries included, so callers trying several providers can split one deadline across them.
+ * Streamed calls go through the same circuit breaker, quota and concurrency limiter, but are not retried.
+ *
+ * <p>The number of running calls and of timed-out calls that have not yet stopped are published as
+ * the {@code prcopilot.ai.calls.in.flight} and {@code prcopilot.ai.calls.abandoned} gauges.
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 class AiChatService {
 
+    /**
+     * Key of the {@code ChatResponse} metadata entry holding the number of retries a call took, if any.
+     */
+    static final String RETRIES_METADATA_KEY = "prcopilot.retries";
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int ABANDONED = 3;
+
     private final MultiAiConfigurationProperties aiConfigurationProperties;
+    private final ExecutorService aiCallExecutor;
+    private final AiCircuitBreakerService circuitBreakerService;
+    private final AiConcurrencyLimiterService concurrencyLimiterService;
+    private final AiRateLimiterService rateLimiterService;
+    private final AiRetryService retryService;
+
+    private final AtomicInteger inFlightCalls = new AtomicInteger();
+    private final AtomicInteger abandonedCalls = new AtomicInteger();
+    private final Counter timedOutCalls;
 
     /**
-     * Executes a call to an AI model using the specified prompt, client, and options.
+     * Constructs an {@code AiChatService} and registers its metrics.
+     *
+     * @param aiConfigurationProperties the AI configuration, must not be {@code null}
+     * @param aiCallExecutor            the executor that runs model calls, must not be {@code null}
+     * @param circuitBreakerService     the per-provider circuit breakers, must not be {@code null}
+     * @param concurrencyLimiterService the per-provider concurrency limiters, must not be {@code null}
+     * @param rateLimiterService        the per-provider request and token quotas, must not be {@code null}
+     * @param retryService              the retry policy for failed calls, must not be {@code null}
+     * @param meterRegistry             the registry to publish metrics to, must not be {@code null}
+     */
+    AiChatService(
+            MultiAiConfigurationProperties aiConfigurationProperties,
+            @Qualifier("aiCallExecutor") ExecutorService aiCallExecutor,
+            AiCircuitBreakerService circuitBreakerService,
+            AiConcurrencyLimiterService concurrencyLimiterService,
+            AiRateLimiterService rateLimiterService,
+            AiRetryService retryService,
+            MeterRegistry meterRegistry
+    ) {
+        this.aiConfigurationProperties = aiConfigurationProperties;
+        this.aiCallExecutor = aiCallExecutor;
+        this.circuitBreakerService = circuitBreakerService;
+        this.concurrencyLimiterService = concurrencyLimiterService;
+        this.rateLimiterService = rateLimiterService;
+        this.retryService = retryService;
+
+        meterRegistry.gauge("prcopilot.ai.calls.in.flight", inFlightCalls);
+        meterRegistry.gauge("prcopilot.ai.calls.abandoned", abandonedCalls);
+        this.timedOutCalls = meterRegistry.counter("prcopilot.ai.calls.timeouts");
+    }
+
+    /**
+     * Executes a call to an AI model using the specified prompt, client, and options, within the configured
+     * {@code timeoutMillis}.
      *
      * @param prompt      the prompt to send to the AI model, must not be {@code null}
      * @param chatClient  the {@code ChatClient} used to interact with the AI model, must not be {@code null}
      * @param chatOptions the options for configuring the AI call, must not be {@code null}
+     * @param provider    the provider behind {@code chatClient}, must not be {@code null}
+     * @return the {@code ChatResponse} from the AI model, never {@code null}
+     * @throws CapacityExceededException if the provider's quota or concurrency limit is reached and does not recover in time
+     * @throws CustomApiException        if the provider's circuit breaker is open, or the request fails due to timeouts,
+     *                                   interruption, address resolution issues, or resource access errors
+     * @throws RuntimeException          if any unexpected errors occur during the call
+     */
+    public ChatResponse callAiModel(Prompt prompt, ChatClient chatClient, ChatOptions chatOptions, AiProvider provider) {
+        return callAiModel(prompt, chatClient, chatOptions, provider, aiConfigurationProperties.getTimeoutMillis());
+    }
+
+    /**
+     * Executes a call to an AI model using the specified prompt, client, and options.
+     * <p>
+     * The call, including any retries and time spent waiting for quota or concurrency, must finish within
+     * {@code timeoutMillis}; retries that could not start in time are not made.
+     *
+     * @param prompt        the prompt to send to the AI model, must not be {@code null}
+     * @param chatClient    the {@code ChatClient} used to interact with the AI model, must not be {@code null}
+     * @param chatOptions   the options for configuring the AI call, must not be {@code null}
+     * @param provider      the provider behind {@code chatClient}, must not be {@code null}
+     * @param timeoutMillis the time the whole call may take, in milliseconds
+     * @return the {@code ChatResponse} from the AI model, never {@code null}
+     * @throws CapacityExceededException if the provider's quota or concurrency limit is reached and does not recover in time
+     * @throws CustomApiException        if the provider's circuit breaker is open, or the request fails due to timeouts,
+     *                                   interruption, address resolution issues, or resource access errors
+     * @throws RuntimeException          if any unexpected errors occur during the call
+     */
+    public ChatResponse callAiModel(
+            Prompt prompt,
+            ChatClient chatClient,
+            ChatOptions chatOptions,
+            AiProvider provider,
+            long timeoutMillis
+    ) {
+        return callAiModel(prompt, chatClient, chatOptions, provider, timeoutMillis, AnalysisPriority.INTERACTIVE);
+    }
+
+    /**
+     * Executes a call to an AI model that waits for provider capacity in the lane of {@code priority}.
+     *
+     * @param prompt        the prompt to send to the AI model, must not be {@code null}
+     * @param chatClient    the {@code ChatClient} used to interact with the AI model, must not be {@code null}
+     * @param chatOptions   the options for configuring the AI call, must not be {@code null}
+     * @param provider      the provider behind {@code chatClient}, must not be {@code null}
+     * @param timeoutMillis the time the whole call may take, in milliseconds
+     * @param priority      the lane the call waits for a concurrency slot in, must not be {@code null}
+     * @return the {@code ChatResponse} from the AI model, never {@code null}
+     * @throws CapacityExceededException if the provider's quota or concurrency limit is reached and does not recover in time
+     * @throws CustomApiException        if the provider's circuit breaker is open, or the request fails due to timeouts,
+     *                                   interruption, address resolution issues, or resource access errors
+     * @throws RuntimeException          if any unexpected errors occur during the call
+     * @see #callAiModel(Prompt, ChatClient, ChatOptions, AiProvider, long)
+     */
+    public ChatResponse callAiModel(
+            Prompt prompt,
+            ChatClient chatClient,
+            ChatOptions chatOptions,
+            AiProvider provider,
+            long timeoutMillis,
+            AnalysisPriority priority
+    ) {
+        long deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+        AiRetryService.Result<ChatResponse> result = retryService.execute(
+                provider,
+                () -> callOnce(prompt, chatClient, chatOptions, provider, priority, deadlineMillis),
+                deadlineMillis
+        );
+        if (result.retries() == 0) return result.value();
+
+        return ChatResponse.builder()
+                           .from(result.value())
+                           .metadata(RETRIES_METADATA_KEY, result.retries())
+                           .build();
+    }
+
+    /**
+     * Makes a single attempt of a model call, without retries, that waits for provider capacity in the lane of
+     * {@code priority}.
+     * <p>
+     * Meant for follow-up calls, such as repairing unparseable output, that run inside another call's deadline and
+     * must not multiply its load on the provider.
+     *
+     * @param prompt        the prompt to send to the AI model, must not be {@code null}
+     * @param chatClient    the {@code ChatClient} used to interact with the AI model, must not be {@code null}
+     * @param chatOptions   the options for configuring the AI call, must not be {@code null}
+     * @param provider      the provider behind {@code chatClient}, must not be {@code null}
+     * @param timeoutMillis the time the call may take, in milliseconds
+     * @param priority      the lane the call waits for a concurrency slot in, must not be {@code null}
      * @return the {@code ChatResponse} from the AI model, never {@code null}
-     * @throws CustomApiException if the request fails due to timeouts, address resolution issues, or resource access errors
-     * @throws RuntimeException   if any unexpected errors occur during the call
+     * @throws CapacityExceededException if the provider's quota or concurrency limit is reached and does not recover in time
+     * @throws CustomApiException        if the provider's circuit breaker is open, or the request fails due to timeouts,
+     *                                   interruption, address resolution issues, or resource access errors
+     * @throws RuntimeException          if any unexpected errors occur during the call
+     */
+    public ChatResponse callAiModelOnce(
+            Prompt prompt,
+            ChatClient chatClient,
+            ChatOptions chatOptions,
+            AiProvider provider,
+            long timeoutMillis,
+            AnalysisPriority priority
+    ) {
+        return callOnce(prompt, chatClient, chatOptions, provider, priority, System.currentTimeMillis() + timeoutMillis);
+    }
+
+    /**
+     * Streams a model call through the provider's circuit breaker, quota and concurrency limiter.
+     * <p>
+     * Admission happens on subscription, which may wait for quota or a concurrency slot; the subscription fails
+     * with the same exceptions as {@link #callAiModel(Prompt, ChatClient, ChatOptions, AiProvider, long, AnalysisPriority)}
+     * if the call is not admitted. Once the stream completes, fails or is cancelled, the concurrency slot is released,
+     * the outcome is recorded by the circuit breaker and the quota is settled against the usage of the last chunk
+     * that carried one. Streams are not retried, since their output may already have been forwarded to the client.
+     *
+     * @param prompt        the prompt to send to the AI model, must not be {@code null}
+     * @param chatClient    the {@code ChatClient} used to interact with the AI model, must not be {@code null}
+     * @param chatOptions   the options for configuring the AI call, must not be {@code null}
+     * @param provider      the provider behind {@code chatClient}, must not be {@code null}
+     * @param timeoutMillis the time admission and the first chunk, and then each following chunk, may take
+     * @param priority      the lane the call waits for a concurrency slot in, must not be {@code null}
+     * @return the streamed responses, never {@code null}
+     */
+    public Flux<ChatResponse> streamAiModel(
+            Prompt prompt,
+            ChatClient chatClient,
+            ChatOptions chatOptions,
+            AiProvider provider,
+            long timeoutMillis,
+            AnalysisPriority priority
+    ) {
+        return Flux.defer(() -> {
+            Admission admission = admit(prompt, provider, priority, System.currentTimeMillis() + timeoutMillis);
+            AtomicReference<ChatResponse> lastUsage = new AtomicReference<>();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            inFlightCalls.incrementAndGet();
+
+            return chatClient.prompt(prompt)
+                             .options(chatOptions)
+                             .stream()
+                             .chatResponse()
+                             .timeout(
+                                     Mono.delay(Duration.ofMillis(admission.timeoutMillis())),
+                                     chunk -> Mono.delay(Duration.ofMillis(timeoutMillis))
+                             )
+                             .doOnNext(chunk -> {
+                                 if (hasUsage(chunk)) lastUsage.set(chunk);
+                             })
+                             .doOnError(failure::set)
+                             .doFinally(signal -> {
+                                 inFlightCalls.decrementAndGet();
+                                 long durationMillis = System.currentTimeMillis() - admission.startMillis();
+                                 switch (signal) {
+                                     case ON_COMPLETE -> {
+                                         circuitBreakerService.onSuccess(provider, durationMillis);
+                                         admission.permit().onSuccess();
+                                     }
+                                     case ON_ERROR -> {
+                                         Throwable error = failure.get();
+                                         if (error instanceof TimeoutException) timedOutCalls.increment();
+                                         if (isProviderFailure(error)) {
+                                             circuitBreakerService.onFailure(provider, durationMillis);
+                                         } else {
+                                             circuitBreakerService.onIgnored(provider);
+                                         }
+                                         if (error instanceof TimeoutException || isOverloadSignal(error)) {
+                                             admission.permit().onDropped();
+                                         } else {
+                                             admission.permit().onIgnored();
+                                         }
+                                     }
+                                     default -> {
+                                         circuitBreakerService.onIgnored(provider);
+                                         admission.permit().onIgnored();
+                                     }
+                                 }
+                                 rateLimiterService.settle(admission.reservation(), lastUsage.get());
+                             });
+        });
+    }
+
+    /**
+     * Makes a single attempt of a model call, which times out at {@code deadlineMillis}.
      */
-    public ChatResponse callAiModel(Prompt prompt, ChatClient chatClient, ChatOptions chatOptions) {
-        log.debug("Request timeout set: {}", aiConfigurationProperties.getTimeoutMillis());
+    private ChatResponse callOnce(
+            Prompt prompt,
+            ChatClient chatClient,
+            ChatOptions chatOptions,
+            AiProvider provider,
+            AnalysisPriority priority,
+            long deadlineMillis
+    ) {
+        Admission admission = admit(prompt, provider, priority, deadlineMillis);
+        AiConcurrencyLimiterService.Permit permit = admission.permit();
+        AiRateLimiterService.Reservation reservation = admission.reservation();
+        long start = admission.startMillis();
+        long timeoutMillis = admission.timeoutMillis();
+
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        Future<ChatResponse> future = aiCallExecutor.submit(() -> {
+            state.set(RUNNING);
+            inFlightCalls.incrementAndGet();
+            try {
+                return chatClient.prompt(prompt)
+                                 .options(chatOptions)
+                                 .call()
+                                 .chatResponse();
+            } finally {
+                inFlightCalls.decrementAndGet();
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    abandonedCalls.decrementAndGet();
+                }
+            }
+        });
+
         try {
-            return CompletableFuture.supplyAsync(() ->
-                                                         chatClient.prompt(prompt)
-                                                                   .options(chatOptions)
-                                                                   .call()
-                                                                   .chatResponse()
-            ).get(aiConfigurationProperties.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+            ChatResponse response = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            circuitBreakerService.onSuccess(provider, System.currentTimeMillis() - start);
+            permit.onSuccess();
+            rateLimiterService.settle(reservation, response);
+            return response;
         } catch (TimeoutException e) {
-            log.error("AI Model timed out after {} milliseconds", aiConfigurationProperties.getTimeoutMillis());
+            future.cancel(true);
+            circuitBreakerService.onFailure(provider, System.currentTimeMillis() - start);
+            permit.onDropped();
+            if (state.compareAndSet(RUNNING, ABANDONED)) {
+                abandonedCalls.incrementAndGet();
+            }
+            timedOutCalls.increment();
+
+            log.error("AI Model timed out after {} milliseconds", timeoutMillis);
             throw new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT, e);
-        } catch (UnresolvedAddressException e) {
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            circuitBreakerService.onIgnored(provider);
+            permit.onIgnored();
+            Thread.currentThread().interrupt();
+
+            log.warn("Interrupted while waiting for AI model response");
+            throw new CustomApiException("AI Model request was interrupted", HttpStatus.SERVICE_UNAVAILABLE, e);
+        } catch (ExecutionException e) {
+            Throwable failure = e.getCause() != null ? e.getCause() : e;
+            if (isProviderFailure(failure)) {
+                circuitBreakerService.onFailure(provider, System.currentTimeMillis() - start);
+            } else {
+                circuitBreakerService.onIgnored(provider);
+            }
+            if (isOverloadSignal(failure)) {
+                permit.onDropped();
+            } else {
+                permit.onIgnored();
+            }
+            throw translateFailure(failure);
+        }
+    }
+
+    private static boolean hasUsage(ChatResponse chunk) {
+        return chunk.getMetadata() != null
+                && chunk.getMetadata().getUsage() != null
+                && chunk.getMetadata().getUsage().getTotalTokens() != null
+                && chunk.getMetadata().getUsage().getTotalTokens() > 0;
+    }
+
+    /**
+     * Admits a call through the provider's circuit breaker, quota and concurrency limiter.
+     * <p>
+     * Waiting for quota is capped by the time left until {@code deadlineMillis}. Everything acquired is released
+     * again if the call is not admitted.
+     *
+     * @return the acquired permissions and the time left for the call, never {@code null}
+     * @throws CapacityExceededException if the quota or concurrency limit does not recover in time
+     * @throws CustomApiException        if the circuit breaker is open or the deadline has passed
+     */
+    private Admission admit(Prompt prompt, AiProvider provider, AnalysisPriority priority, long deadlineMillis) {
+        if (!circuitBreakerService.tryAcquirePermission(provider)) {
+            log.warn("Circuit breaker for provider '{}' is open, not calling it", provider.getValue());
+            throw new CustomApiException(
+                    String.format("Circuit breaker for provider '%s' is open", provider.getValue()),
+                    HttpStatus.SERVICE_UNAVAILABLE
+            );
+        }
+
+        AiRateLimiterService.Reservation reservation;
+        try {
+            long maxWaitMillis = Math.min(
+                    aiConfigurationProperties.getRateLimitMaxWaitMillis(),
+                    Math.max(0, deadlineMillis - System.currentTimeMillis())
+            );
+            reservation = rateLimiterService.reserve(provider, prompt, maxWaitMillis);
+        } catch (RuntimeException e) {
+            circuitBreakerService.onIgnored(provider);
+            throw e;
+        }
+
+        AiConcurrencyLimiterService.Permit permit;
+        try {
+            permit = concurrencyLimiterService.acquire(provider, priority);
+        } catch (RuntimeException e) {
+            rateLimiterService.cancel(reservation);
+            circuitBreakerService.onIgnored(provider);
+            throw e;
+        }
+
+        long start = System.currentTimeMillis();
+        long timeoutMillis = deadlineMillis - start;
+        if (timeoutMillis <= 0) {
+            permit.onIgnored();
+            rateLimiterService.cancel(reservation);
+            circuitBreakerService.onIgnored(provider);
+            timedOutCalls.increment();
+
+            log.error("AI Model request ran out of time before calling provider '{}'", provider.getValue());
+            throw new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT);
+        }
+        log.debug("Request timeout set: {}", timeoutMillis);
+
+        return new Admission(reservation, permit, start, timeoutMillis);
+    }
+
+    /**
+     * Returns whether a failure says the provider is unhealthy, so it should count towards opening its circuit.
+     * <p>
+     * Server errors, 408 and 429 responses, timeouts and connection errors count; other 4xx responses are
+     * caused by the request itself and do not.
+     *
+     * @param failure the failure thrown by the model call, must not be {@code null}
+     * @return {@code true} if the failure should be recorded by the circuit breaker
+     */
+    private boolean isProviderFailure(Throwable failure) {
+        int status = AiRetryService.statusCode(failure);
+        if (status >= 500) return true;
+        if (status >= 400) {
+            return status == HttpStatus.REQUEST_TIMEOUT.value() || status == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ResourceAccessException
+                    || cause instanceof TimeoutException
+                    || cause instanceof TransientAiException
+                    || cause instanceof UnresolvedAddressException
+                    || cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a failure indicates that the provider is overloaded, so the concurrency limit should back off.
+     * <p>
+     * Spring AI reports HTTP errors as {@code TransientAiException} or {@code NonTransientAiException}, whose status
+     * code is read by {@link AiRetryService#statusCode(Throwable)}.
+     *
+     * @param failure the failure thrown by the model call, must not be {@code null}
+     * @return {@code true} for 429 and 503 responses and socket timeouts
+     */
+    private boolean isOverloadSignal(Throwable failure) {
+        if (failure instanceof ResourceAccessException e) {
+            return e.getCause() instanceof java.net.SocketTimeoutException;
+        }
+        int status = AiRetryService.statusCode(failure);
+        return status == HttpStatus.TOO_MANY_REQUESTS.value() || status == HttpStatus.SERVICE_UNAVAILABLE.value();
+    }
+
+    /**
+     * Translates a failure raised by a model call into the exception reported to callers.
+     *
+     * @param failure the failure thrown by the model call, must not be {@code null}
+     * @return the exception to throw, never {@code null}
+     */
+    private RuntimeException translateFailure(Throwable failure) {
+        if (failure instanceof CustomApiException e) {
+            return e;
+        }
+
+        if (failure instanceof UnresolvedAddressException e) {
             log.error("Failed to resolve remote service address: {}", e.getMessage(), e);
-            throw new CustomApiException("Failed to resolve remote service address: " + e.getMessage(),
-                                         HttpStatus.BAD_GATEWAY, e
+            return new CustomApiException("Failed to resolve remote service address: " + e.getMessage(),
+                                          HttpStatus.BAD_GATEWAY, e
             );
-        } catch (ResourceAccessException e) {
+        }
+
+        if (failure instanceof ResourceAccessException e) {
             log.error("Failed to access remote resource: {}", e.getMessage(), e);
             HttpStatus status = e.getCause() instanceof java.net.SocketTimeoutException
                     ? HttpStatus.GATEWAY_TIMEOUT
                     : HttpStatus.BAD_GATEWAY;
-            throw new CustomApiException("Failed to access remote resource: " + e.getMessage(), status, e);
-        } catch (Exception e) {
-            log.error("Unexpected error during remote call: {}", e.getMessage(), e);
-            throw new RuntimeException("Unexpected error during remote call: " + e.getMessage(), e);
+            return new CustomApiException("Failed to access remote resource: " + e.getMessage(), status, e);
         }
+
+        log.error("Unexpected error during remote call: {}", failure.getMessage(), failure);
+        return new RuntimeException("Unexpected error during remote call: " + failure.getMessage(), failure);
+    }
+
+    /**
+     * The permissions a call was admitted with.
+     *
+     * @param reservation   the quota debited for the call
+     * @param permit        the concurrency slot held by the call
+     * @param startMillis   the time the call was admitted
+     * @param timeoutMillis the time left for the call once admitted
+     */
+    private record Admission(
+            AiRateLimiterService.Reservation reservation,
+            AiConcurrencyLimiterService.Permit permit,
+            long startMillis,
+            long timeoutMillis
+    ) {
     }
 }
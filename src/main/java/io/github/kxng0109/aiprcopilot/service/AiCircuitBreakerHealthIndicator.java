@@ -0,0 +1,62 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Health indicator reporting the circuit breaker state of the configured AI providers.
+ * <p>
+ * Reports {@code UP} while at least one configured provider can be called, and {@code OUT_OF_SERVICE} when
+ * the breakers of the primary (or of every provider in the load-balanced pool, if one is configured) and,
+ * if auto-fallback is enabled, the fallback providers are all open. The providers failing is not this service
+ * failing, so it is never {@code DOWN}, and it is not part of the liveness group, so open breakers do not get the
+ * service restarted. The state of each breaker is included in the details. Exposed as {@code aiCircuitBreaker}
+ * under {@code /actuator/health}.
+ */
+@Component
+@RequiredArgsConstructor
+class AiCircuitBreakerHealthIndicator implements HealthIndicator {
+
+    private final AiCircuitBreakerService circuitBreakerService;
+    private final MultiAiConfigurationProperties multiAiConfigurationProperties;
+
+    /**
+     * Builds the health of the configured providers from their breaker states.
+     *
+     * @return {@code UP} if any configured provider's breaker is not open, {@code OUT_OF_SERVICE} otherwise, never
+     *         {@code null}
+     */
+    @Override
+    public Health health() {
+        Set<AiProvider> providers = new LinkedHashSet<>();
+        if (multiAiConfigurationProperties.getPool().isEmpty()) {
+            providers.add(multiAiConfigurationProperties.getProvider());
+        } else {
+            multiAiConfigurationProperties.getPool().forEach(member -> providers.add(member.getProvider()));
+        }
+        if (multiAiConfigurationProperties.isAutoFallback()) {
+            if (!multiAiConfigurationProperties.getFallbackProviders().isEmpty()) {
+                providers.addAll(multiAiConfigurationProperties.getFallbackProviders());
+            } else if (multiAiConfigurationProperties.getFallbackProvider() != null) {
+                providers.add(multiAiConfigurationProperties.getFallbackProvider());
+            }
+        }
+
+        boolean anyAvailable = false;
+        Health.Builder builder = Health.unknown();
+        for (AiProvider provider : providers) {
+            AiCircuitBreakerService.State state = circuitBreakerService.getState(provider);
+            builder.withDetail(provider.getValue(), state.name());
+            if (state != AiCircuitBreakerService.State.OPEN) anyAvailable = true;
+        }
+
+        return (anyAvailable ? builder.up() : builder.outOfService()).build();
+    }
+}
@@ -0,0 +1,222 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotCircuitBreakerProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Service holding one circuit breaker per {@code AiProvider}.
+ * <p>
+ * A breaker starts {@code CLOSED} and records the outcome and duration of every call. When, over the
+ * last {@code windowSize} calls and with at least {@code minimumCalls} recorded, the failure rate or
+ * the slow-call rate reaches its threshold, the breaker goes {@code OPEN} and rejects calls. After
+ * {@code openStateMillis} it goes {@code HALF_OPEN} and lets {@code halfOpenPermittedCalls} trial calls
+ * through; their outcome either closes the breaker again or reopens it.
+ *
+ * <p>Breaker states are published as the {@code prcopilot.circuit.state} gauge (0 closed, 1 open,
+ * 2 half-open), and rejected calls and state transitions as {@code prcopilot.circuit.rejected} and
+ * {@code prcopilot.circuit.transitions}, all tagged by provider.
+ */
+@Service
+@Slf4j
+class AiCircuitBreakerService {
+
+    /**
+     * The states of a circuit breaker.
+     */
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final PrCopilotCircuitBreakerProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<AiProvider, CircuitBreaker> breakers = new EnumMap<>(AiProvider.class);
+
+    /**
+     * Constructs an {@code AiCircuitBreakerService} and registers a breaker and its metrics for every provider.
+     *
+     * @param properties    the circuit breaker configuration, must not be {@code null}
+     * @param meterRegistry the registry to publish metrics to, must not be {@code null}
+     */
+    AiCircuitBreakerService(PrCopilotCircuitBreakerProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        for (AiProvider provider : AiProvider.values()) {
+            CircuitBreaker breaker = new CircuitBreaker(provider);
+            breakers.put(provider, breaker);
+            meterRegistry.gauge("prcopilot.circuit.state",
+                                Tags.of("provider", provider.getValue()),
+                                breaker,
+                                b -> b.currentState().ordinal()
+            );
+        }
+    }
+
+    /**
+     * Asks the provider's breaker for permission to make a call.
+     * <p>
+     * Every permitted call must be followed by exactly one call to {@link #onSuccess}, {@link #onFailure}
+     * or {@link #onIgnored}.
+     *
+     * @param provider the provider about to be called, must not be {@code null}
+     * @return {@code true} if the call may proceed, {@code false} if the breaker rejects it
+     */
+    public boolean tryAcquirePermission(AiProvider provider) {
+        if (!properties.isEnabled()) return true;
+
+        boolean permitted = breakers.get(provider).tryAcquirePermission();
+        if (!permitted) {
+            meterRegistry.counter("prcopilot.circuit.rejected", "provider", provider.getValue()).increment();
+        }
+        return permitted;
+    }
+
+    /**
+     * Records a successful call. Calls slower than {@code slowCallDurationMillis} count as slow.
+     *
+     * @param provider       the provider that was called, must not be {@code null}
+     * @param durationMillis how long the call took
+     */
+    public void onSuccess(AiProvider provider, long durationMillis) {
+        if (!properties.isEnabled()) return;
+        breakers.get(provider).record(false, durationMillis >= properties.getSlowCallDurationMillis());
+    }
+
+    /**
+     * Records a failed call. Calls slower than {@code slowCallDurationMillis} also count as slow.
+     *
+     * @param provider       the provider that was called, must not be {@code null}
+     * @param durationMillis how long the call took before failing
+     */
+    public void onFailure(AiProvider provider, long durationMillis) {
+        if (!properties.isEnabled()) return;
+        breakers.get(provider).record(true, durationMillis >= properties.getSlowCallDurationMillis());
+    }
+
+    /**
+     * Releases a permission without recording an outcome, for calls abandoned by the caller
+     * rather than failed by the provider.
+     *
+     * @param provider the provider that was called, must not be {@code null}
+     */
+    public void onIgnored(AiProvider provider) {
+        if (!properties.isEnabled()) return;
+        breakers.get(provider).release();
+    }
+
+    /**
+     * Returns the current state of the provider's breaker.
+     *
+     * @param provider the provider, must not be {@code null}
+     * @return the breaker state, never {@code null}
+     */
+    public State getState(AiProvider provider) {
+        return breakers.get(provider).currentState();
+    }
+
+    /**
+     * A count-based circuit breaker for a single provider.
+     */
+    private final class CircuitBreaker {
+
+        private final AiProvider provider;
+
+        private State state = State.CLOSED;
+        private boolean[] failed = new boolean[0];
+        private boolean[] slow = new boolean[0];
+        private int recorded;
+        private int next;
+        private long openedAtMillis;
+        private int halfOpenPermitsIssued;
+
+        private CircuitBreaker(AiProvider provider) {
+            this.provider = provider;
+            resetWindow(properties.getWindowSize());
+        }
+
+        private synchronized State currentState() {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAtMillis >= properties.getOpenStateMillis()) {
+                transitionTo(State.HALF_OPEN);
+            }
+            return state;
+        }
+
+        private synchronized boolean tryAcquirePermission() {
+            return switch (currentState()) {
+                case CLOSED -> true;
+                case OPEN -> false;
+                case HALF_OPEN -> {
+                    if (halfOpenPermitsIssued >= properties.getHalfOpenPermittedCalls()) yield false;
+                    halfOpenPermitsIssued++;
+                    yield true;
+                }
+            };
+        }
+
+        private synchronized void release() {
+            if (state == State.HALF_OPEN && halfOpenPermitsIssued > 0) halfOpenPermitsIssued--;
+        }
+
+        private synchronized void record(boolean isFailure, boolean isSlow) {
+            if (state == State.OPEN) return;
+
+            failed[next] = isFailure;
+            slow[next] = isSlow;
+            next = (next + 1) % failed.length;
+            recorded = Math.min(recorded + 1, failed.length);
+
+            int required = state == State.HALF_OPEN
+                    ? properties.getHalfOpenPermittedCalls()
+                    : Math.min(properties.getMinimumCalls(), failed.length);
+            if (recorded < required) return;
+
+            int failures = 0;
+            int slowCalls = 0;
+            for (int i = 0; i < recorded; i++) {
+                if (failed[i]) failures++;
+                if (slow[i]) slowCalls++;
+            }
+
+            boolean tripped = failures * 100 >= properties.getFailureRateThreshold() * recorded
+                    || slowCalls * 100 >= properties.getSlowCallRateThreshold() * recorded;
+
+            if (tripped) {
+                transitionTo(State.OPEN);
+            } else if (state == State.HALF_OPEN) {
+                transitionTo(State.CLOSED);
+            }
+        }
+
+        private void transitionTo(State newState) {
+            log.info("Circuit breaker for provider '{}' changed from {} to {}", provider.getValue(), state, newState);
+            meterRegistry.counter("prcopilot.circuit.transitions",
+                                  "provider", provider.getValue(),
+                                  "to", newState.name().toLowerCase()
+            ).increment();
+
+            state = newState;
+            halfOpenPermitsIssued = 0;
+            if (newState == State.OPEN) openedAtMillis = System.currentTimeMillis();
+            resetWindow(newState == State.HALF_OPEN
+                                ? properties.getHalfOpenPermittedCalls()
+                                : properties.getWindowSize()
+            );
+        }
+
+        private void resetWindow(int size) {
+            failed = new boolean[size];
+            slow = new boolean[size];
+            recorded = 0;
+            next = 0;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotConcurrencyProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Service holding one adaptive concurrency limiter per {@code AiProvider}.
+ * <p>
+ * Each limiter bounds the number of outstanding calls to its provider and adjusts the bound with a
+ * gradient algorithm: a long-term average round-trip time stands in for the provider's unloaded
+ * latency, and the ratio between it and the latest sample shrinks the limit as queueing builds up
+ * on the provider side, or lets it grow while latency stays flat. Overload signals (429s, 503s and
+ * timeouts) cut the limit multiplicatively.
+ *
+ * <p>Calls over the limit wait up to {@code queueTimeoutMillis} for a slot and are then shed with a
+ * {@code CapacityExceededException}. Waiting calls are queued in one lane per {@code AnalysisPriority}, and freed
+ * slots are handed out by weighted fair queuing: each waiting call is stamped with a virtual finish time that
+ * advances by {@code 1 / weight} of its lane, and the slot goes to the waiting call with the earliest one. A call that
+ * is shed or interrupted before it gets a slot gives its step back, so giving up does not push its lane back. While both
+ * lanes are waiting, interactive calls therefore get {@code weight} times as many slots as bulk calls, and a lane
+ * with nothing waiting leaves its share to the other. A lane never holds more than {@code maxSharePercent} of the
+ * limit.
+ *
+ * <p>Limits, in-flight calls and shed calls are published as {@code prcopilot.concurrency.*}, tagged by provider.
+ * Waiting calls and the time calls waited for a slot, as a histogram, are also tagged by lane.
+ */
+@Service
+@Slf4j
+class AiConcurrencyLimiterService {
+
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int LONG_RTT_WINDOW = 100;
+
+    private final PrCopilotConcurrencyProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<AiProvider, Limiter> limiters = new EnumMap<>(AiProvider.class);
+
+    /**
+     * Constructs an {@code AiConcurrencyLimiterService} and registers a limiter and its metrics for every provider.
+     *
+     * @param properties    the limiter configuration, must not be {@code null}
+     * @param meterRegistry the registry to publish metrics to, must not be {@code null}
+     */
+    AiConcurrencyLimiterService(PrCopilotConcurrencyProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        for (AiProvider provider : AiProvider.values()) {
+            Limiter limiter = new Limiter();
+            limiters.put(provider, limiter);
+            Tags tags = Tags.of("provider", provider.getValue());
+            meterRegistry.gauge("prcopilot.concurrency.limit", tags, limiter, Limiter::currentLimit);
+            meterRegistry.gauge("prcopilot.concurrency.in.flight", tags, limiter, Limiter::currentInFlight);
+            for (AnalysisPriority lane : AnalysisPriority.values()) {
+                Tags laneTags = tags.and("lane", lane.getValue());
+                meterRegistry.gauge("prcopilot.concurrency.queued", laneTags, limiter, l -> l.currentQueued(lane));
+                limiter.queueWait.put(lane, Timer.builder("prcopilot.concurrency.queue.wait")
+                                                 .tags(laneTags)
+                                                 .publishPercentileHistogram()
+                                                 .register(meterRegistry));
+            }
+        }
+    }
+
+    /**
+     * Acquires a slot for an interactive call to the given provider.
+     *
+     * @param provider the provider about to be called, must not be {@code null}
+     * @return the permit for the call, never {@code null}
+     * @throws CapacityExceededException if no slot became free in time
+     * @throws CustomApiException        if the thread is interrupted while waiting
+     * @see #acquire(AiProvider, AnalysisPriority)
+     */
+    public Permit acquire(AiProvider provider) {
+        return acquire(provider, AnalysisPriority.INTERACTIVE);
+    }
+
+    /**
+     * Acquires a slot for a call to the given provider, waiting in the lane of {@code priority} up to its queue
+     * timeout for one.
+     * <p>
+     * The returned permit must be completed with exactly one of {@link Permit#onSuccess()},
+     * {@link Permit#onDropped()} or {@link Permit#onIgnored()}.
+     *
+     * @param provider the provider about to be called, must not be {@code null}
+     * @param priority the lane to wait in, must not be {@code null}
+     * @return the permit for the call, never {@code null}
+     * @throws CapacityExceededException if no slot became free in time
+     * @throws CustomApiException        if the thread is interrupted while waiting
+     */
+    public Permit acquire(AiProvider provider, AnalysisPriority priority) {
+        if (!properties.isEnabled()) return Permit.NOOP;
+
+        Limiter limiter = limiters.get(provider);
+        Long laneTimeoutMillis = properties.lane(priority).getQueueTimeoutMillis();
+        long timeoutMillis = laneTimeoutMillis != null ? laneTimeoutMillis : properties.getQueueTimeoutMillis();
+        long start = System.nanoTime();
+        try {
+            if (limiter.tryAcquire(priority, TimeUnit.MILLISECONDS.toNanos(timeoutMillis))) {
+                limiter.queueWait.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return new LimiterPermit(limiter, priority);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomApiException("Interrupted while waiting for provider capacity",
+                                         HttpStatus.SERVICE_UNAVAILABLE, e
+            );
+        }
+
+        meterRegistry.counter("prcopilot.concurrency.rejected", "provider", provider.getValue(), "lane", priority.getValue())
+                     .increment();
+        log.warn("Shedding {} request for provider '{}': concurrency limit of {} reached",
+                 priority.getValue(),
+                 provider.getValue(),
+                 (int) limiter.currentLimit()
+        );
+        throw new CapacityExceededException(
+                String.format("Provider '%s' is at its concurrency limit, try again later", provider.getValue()),
+                limiter.retryAfterSeconds()
+        );
+    }
+
+    /**
+     * Returns the current concurrency limit of the given provider.
+     *
+     * @param provider the provider, must not be {@code null}
+     * @return the current limit
+     */
+    public int getLimit(AiProvider provider) {
+        return (int) limiters.get(provider).currentLimit();
+    }
+
+    /**
+     * A slot for a single call, reporting the call's outcome back to the limiter.
+     */
+    interface Permit {
+
+        Permit NOOP = new Permit() {
+            @Override
+            public void onSuccess() {
+            }
+
+            @Override
+            public void onDropped() {
+            }
+
+            @Override
+            public void onIgnored() {
+            }
+        };
+
+        /**
+         * Releases the slot and records the call's latency.
+         */
+        void onSuccess();
+
+        /**
+         * Releases the slot and records that the provider was overloaded.
+         */
+        void onDropped();
+
+        /**
+         * Releases the slot without recording anything.
+         */
+        void onIgnored();
+    }
+
+    private static final class LimiterPermit implements Permit {
+
+        private final Limiter limiter;
+        private final AnalysisPriority lane;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private LimiterPermit(Limiter limiter, AnalysisPriority lane) {
+            this.limiter = limiter;
+            this.lane = lane;
+        }
+
+        @Override
+        public void onSuccess() {
+            if (released.compareAndSet(false, true)) limiter.release(lane, System.nanoTime() - startNanos, false);
+        }
+
+        @Override
+        public void onDropped() {
+            if (released.compareAndSet(false, true)) limiter.release(lane, 0, true);
+        }
+
+        @Override
+        public void onIgnored() {
+            if (released.compareAndSet(false, true)) limiter.release(lane, -1, false);
+        }
+    }
+
+    /**
+     * A call waiting for a slot, ordered against the other lane by its virtual finish time.
+     */
+    private static final class Waiter {
+
+        private final AnalysisPriority lane;
+        private final double step;
+        private final Condition granted;
+        private double finishTime;
+        private boolean acquired;
+
+        private Waiter(AnalysisPriority lane, double step, double finishTime, Condition granted) {
+            this.lane = lane;
+            this.step = step;
+            this.finishTime = finishTime;
+            this.granted = granted;
+        }
+    }
+
+    /**
+     * A gradient concurrency limiter for a single provider, with a weighted fair queue per lane.
+     */
+    private final class Limiter {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<AnalysisPriority, Deque<Waiter>> queues = new EnumMap<>(AnalysisPriority.class);
+        private final Map<AnalysisPriority, Integer> inFlightByLane = new EnumMap<>(AnalysisPriority.class);
+        private final Map<AnalysisPriority, Double> lastFinishTimes = new EnumMap<>(AnalysisPriority.class);
+        private final Map<AnalysisPriority, Timer> queueWait = new EnumMap<>(AnalysisPriority.class);
+
+        private double limit = properties.getInitialLimit();
+        private int inFlight;
+        private double virtualTime;
+        private double longRttNanos;
+        private long lastRttNanos;
+
+        private Limiter() {
+            for (AnalysisPriority lane : AnalysisPriority.values()) {
+                queues.put(lane, new ArrayDeque<>());
+                inFlightByLane.put(lane, 0);
+                lastFinishTimes.put(lane, 0.0);
+            }
+        }
+
+        private boolean tryAcquire(AnalysisPriority lane, long timeoutNanos) throws InterruptedException {
+            lock.lock();
+            try {
+                double step = 1.0 / properties.lane(lane).getWeight();
+                double finishTime = Math.max(virtualTime, lastFinishTimes.get(lane)) + step;
+                lastFinishTimes.put(lane, finishTime);
+
+                Waiter waiter = new Waiter(lane, step, finishTime, lock.newCondition());
+                queues.get(lane).addLast(waiter);
+                dispatch();
+
+                long remaining = timeoutNanos;
+                try {
+                    while (!waiter.acquired) {
+                        if (remaining <= 0) {
+                            withdraw(waiter);
+                            return false;
+                        }
+                        remaining = waiter.granted.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    if (waiter.acquired) {
+                        release(lane, -1, false);
+                    } else {
+                        withdraw(waiter);
+                    }
+                    throw e;
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release(AnalysisPriority lane, long rttNanos, boolean dropped) {
+            lock.lock();
+            try {
+                int inFlightAtRelease = inFlight--;
+                inFlightByLane.merge(lane, -1, Integer::sum);
+                if (dropped) {
+                    limit = clamp(limit * BACKOFF_RATIO);
+                } else if (rttNanos > 0) {
+                    update(rttNanos, inFlightAtRelease);
+                }
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Removes a waiting call that gave up, moving the calls behind it in its lane and the lane's last finish time
+         * back by its step, as if it had never queued.
+         */
+        private void withdraw(Waiter waiter) {
+            Deque<Waiter> queue = queues.get(waiter.lane);
+            queue.remove(waiter);
+            for (Waiter behind : queue) {
+                if (behind.finishTime > waiter.finishTime) behind.finishTime -= waiter.step;
+            }
+            lastFinishTimes.merge(waiter.lane, -waiter.step, Double::sum);
+        }
+
+        /**
+         * Hands free slots to the waiting calls with the earliest virtual finish time whose lane is under its share.
+         */
+        private void dispatch() {
+            while (inFlight < (int) limit) {
+                Waiter next = null;
+                for (Deque<Waiter> queue : queues.values()) {
+                    Waiter head = queue.peekFirst();
+                    if (head != null && hasShareLeft(head.lane) && (next == null || head.finishTime < next.finishTime)) {
+                        next = head;
+                    }
+                }
+                if (next == null) return;
+
+                queues.get(next.lane).removeFirst();
+                inFlight++;
+                inFlightByLane.merge(next.lane, 1, Integer::sum);
+                virtualTime = Math.max(virtualTime, next.finishTime - 1.0 / properties.lane(next.lane).getWeight());
+                next.acquired = true;
+                next.granted.signal();
+            }
+        }
+
+        private boolean hasShareLeft(AnalysisPriority lane) {
+            int share = Math.max(1, (int) limit * properties.lane(lane).getMaxSharePercent() / 100);
+            return inFlightByLane.get(lane) < share;
+        }
+
+        private void update(long rttNanos, int inFlightAtRelease) {
+            lastRttNanos = rttNanos;
+            if (longRttNanos == 0) {
+                longRttNanos = rttNanos;
+            } else {
+                longRttNanos += (rttNanos - longRttNanos) / LONG_RTT_WINDOW;
+            }
+
+            // Let the baseline follow a sustained drop in latency instead of staying inflated.
+            if (longRttNanos / rttNanos > 2) longRttNanos *= 0.95;
+
+            // Don't grow the limit while it isn't being used.
+            if (inFlightAtRelease < limit / 2) return;
+
+            double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / rttNanos));
+            double newLimit = limit * gradient + Math.sqrt(limit);
+            limit = clamp(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+        }
+
+        private double clamp(double value) {
+            return Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), value));
+        }
+
+        private double currentLimit() {
+            lock.lock();
+            try {
+                return limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private double currentInFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private double currentQueued(AnalysisPriority lane) {
+            lock.lock();
+            try {
+                return queues.get(lane).size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long retryAfterSeconds() {
+            lock.lock();
+            try {
+                return Math.max(1, (long) Math.ceil(lastRttNanos / 1e9));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Service for hedging a primary model call with a second call to the fallback provider.
+ * <p>
+ * The primary call is started first. If it has not produced a result within the hedge delay, or
+ * fails before then, the hedge call is started as well; whichever call completes successfully first
+ * wins and the other is cancelled, which interrupts its thread and aborts its HTTP exchange.
+ *
+ * <p>The hedge delay is either the configured {@code hedgeDelayMillis} or, when adaptive hedging is
+ * enabled, the observed 95th percentile latency of recent primary calls. Hedged and unhedged calls
+ * and the winning side are published under {@code prcopilot.hedge.*}.
+ */
+@Service
+@Slf4j
+class AiHedgingService {
+
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final double LATENCY_PERCENTILE = 0.95;
+
+    private final MultiAiConfigurationProperties aiConfigurationProperties;
+    private final ExecutorService executor;
+
+    private final long[] primaryLatencies = new long[LATENCY_WINDOW];
+    private int latencySamples;
+    private int nextLatencySlot;
+
+    private final Counter unhedgedCalls;
+    private final Counter hedgedAfterDelay;
+    private final Counter hedgedAfterFailure;
+    private final Counter primaryWins;
+    private final Counter hedgeWins;
+
+    /**
+     * Constructs an {@code AiHedgingService} and registers its metrics.
+     *
+     * @param aiConfigurationProperties the AI configuration, must not be {@code null}
+     * @param executor                  the managed executor both calls run on, must not be {@code null}
+     * @param meterRegistry             the registry to publish metrics to, must not be {@code null}
+     */
+    AiHedgingService(
+            MultiAiConfigurationProperties aiConfigurationProperties,
+            @Qualifier("analysisTaskExecutor") ExecutorService executor,
+            MeterRegistry meterRegistry
+    ) {
+        this.aiConfigurationProperties = aiConfigurationProperties;
+        this.executor = executor;
+
+        this.unhedgedCalls = meterRegistry.counter("prcopilot.hedge.calls", "hedged", "false", "reason", "none");
+        this.hedgedAfterDelay = meterRegistry.counter("prcopilot.hedge.calls", "hedged", "true", "reason", "delay");
+        this.hedgedAfterFailure = meterRegistry.counter("prcopilot.hedge.calls", "hedged", "true", "reason", "failure");
+        this.primaryWins = meterRegistry.counter("prcopilot.hedge.wins", "winner", "primary");
+        this.hedgeWins = meterRegistry.counter("prcopilot.hedge.wins", "winner", "hedge");
+        meterRegistry.gauge("prcopilot.hedge.delay", this, AiHedgingService::currentHedgeDelayMillis);
+    }
+
+    /**
+     * Runs {@code primary}, hedging it with {@code hedge} if it is slow or fails.
+     *
+     * @param primary the primary call, must not be {@code null}
+     * @param hedge   the call to start when the primary is slow or has failed, must not be {@code null}
+     * @param <T>     the result type
+     * @return the result of the first call to complete successfully
+     * @throws HedgeFailedException if both calls fail
+     * @throws CustomApiException   if the calling thread is interrupted while waiting
+     */
+    public <T> T execute(Supplier<T> primary, Supplier<T> hedge) {
+        long start = System.nanoTime();
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(executor);
+
+        Future<T> primaryFuture = completion.submit(() -> {
+            T result = primary.get();
+            recordPrimaryLatency(System.nanoTime() - start);
+            return result;
+        });
+        Future<T> hedgeFuture = null;
+        Throwable primaryFailure = null;
+        Throwable hedgeFailure = null;
+
+        try {
+            long delayMillis = currentHedgeDelayMillis();
+            Future<T> early = completion.poll(delayMillis, TimeUnit.MILLISECONDS);
+            if (early != null) {
+                try {
+                    T result = early.get();
+                    unhedgedCalls.increment();
+                    return result;
+                } catch (ExecutionException e) {
+                    primaryFailure = unwrap(e);
+                    hedgedAfterFailure.increment();
+                    log.debug("Primary call failed before the hedge delay, starting hedge: {}", primaryFailure.getMessage());
+                }
+            } else {
+                hedgedAfterDelay.increment();
+                log.debug("Primary call did not finish within {} ms, starting hedge", delayMillis);
+            }
+
+            hedgeFuture = completion.submit(hedge::get);
+
+            int pending = primaryFailure == null ? 2 : 1;
+            while (pending-- > 0) {
+                Future<T> next = completion.take();
+                boolean isPrimary = next == primaryFuture;
+                try {
+                    T result = next.get();
+                    (isPrimary ? primaryWins : hedgeWins).increment();
+                    return result;
+                } catch (ExecutionException e) {
+                    if (isPrimary) primaryFailure = unwrap(e);
+                    else hedgeFailure = unwrap(e);
+                }
+            }
+
+            throw new HedgeFailedException(primaryFailure, hedgeFailure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomApiException("AI Model request was interrupted", HttpStatus.SERVICE_UNAVAILABLE, e);
+        } finally {
+            if (!primaryFuture.isDone()) {
+                primaryFuture.cancel(true);
+                recordPrimaryLatency(System.nanoTime() - start);
+            }
+            if (hedgeFuture != null) hedgeFuture.cancel(true);
+        }
+    }
+
+    /**
+     * Returns the delay after which a hedge call is started.
+     *
+     * @return the adaptive delay if enabled and enough samples exist, otherwise the configured delay
+     */
+    long currentHedgeDelayMillis() {
+        long configured = aiConfigurationProperties.getHedgeDelayMillis();
+        if (!aiConfigurationProperties.isHedgeAdaptiveDelay()) return configured;
+
+        long[] samples;
+        synchronized (primaryLatencies) {
+            if (latencySamples < MIN_LATENCY_SAMPLES) return configured;
+            samples = Arrays.copyOf(primaryLatencies, latencySamples);
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(LATENCY_PERCENTILE * samples.length) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(samples[Math.max(0, index)]);
+    }
+
+    /**
+     * Records a primary call latency. Calls cancelled in favour of the hedge are recorded with the time
+     * at which they were cancelled, so slow primaries keep the percentile from drifting down.
+     */
+    private void recordPrimaryLatency(long nanos) {
+        synchronized (primaryLatencies) {
+            primaryLatencies[nextLatencySlot] = nanos;
+            nextLatencySlot = (nextLatencySlot + 1) % LATENCY_WINDOW;
+            latencySamples = Math.min(latencySamples + 1, LATENCY_WINDOW);
+        }
+    }
+
+    private Throwable unwrap(ExecutionException e) {
+        return e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Thrown when both the primary and the hedge call have failed.
+     */
+    static class HedgeFailedException extends RuntimeException {
+
+        private final Throwable primaryFailure;
+        private final Throwable hedgeFailure;
+
+        HedgeFailedException(Throwable primaryFailure, Throwable hedgeFailure) {
+            super("Primary and hedge calls both failed", hedgeFailure);
+            this.primaryFailure = primaryFailure;
+            this.hedgeFailure = hedgeFailure;
+        }
+
+        Throwable getPrimaryFailure() {
+            return primaryFailure;
+        }
+
+        Throwable getHedgeFailure() {
+            return hedgeFailure;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.AiProviderPool;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service choosing which provider of the {@code AiProviderPool} serves each request.
+ * <p>
+ * Providers whose circuit breaker is open are skipped while any other provider is available. Among the
+ * rest, the pool's {@code LoadBalancingStrategy} decides: weighted round-robin interleaves providers in
+ * proportion to their weights, least-outstanding picks the fewest in-flight requests per unit of weight,
+ * and EWMA-latency picks the lowest exponentially weighted moving average of recent latency, scaled by
+ * in-flight requests and weight. The average follows latency spikes immediately and decays over about ten
+ * seconds, and failed calls inflate it, so traffic moves away from a degrading provider quickly.
+ *
+ * <p>Selections, in-flight requests and average latencies are published as {@code prcopilot.lb.*},
+ * tagged by provider.
+ */
+@Service
+@Slf4j
+class AiLoadBalancerService {
+
+    private static final double EWMA_DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final double FAILURE_PENALTY = 2.0;
+    private static final double MIN_EWMA_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AiProviderPool.Member[] members;
+    private final Backend[] backends;
+    private final AiProviderPool pool;
+    private final AiCircuitBreakerService circuitBreakerService;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Constructs an {@code AiLoadBalancerService} and registers the metrics of every pool member.
+     *
+     * @param pool                  the providers to balance across, must not be {@code null} or empty
+     * @param circuitBreakerService the per-provider circuit breakers, must not be {@code null}
+     * @param meterRegistry         the registry to publish metrics to, must not be {@code null}
+     */
+    AiLoadBalancerService(AiProviderPool pool, AiCircuitBreakerService circuitBreakerService, MeterRegistry meterRegistry) {
+        this.pool = pool;
+        this.circuitBreakerService = circuitBreakerService;
+        this.meterRegistry = meterRegistry;
+        this.members = pool.members().toArray(AiProviderPool.Member[]::new);
+        this.backends = new Backend[members.length];
+
+        for (int i = 0; i < members.length; i++) {
+            Backend backend = new Backend(members[i].weight());
+            backends[i] = backend;
+            Tags tags = Tags.of("provider", members[i].provider().getValue());
+            meterRegistry.gauge("prcopilot.lb.outstanding", tags, backend, Backend::currentOutstanding);
+            meterRegistry.gauge("prcopilot.lb.latency.ewma", tags, backend, b -> b.currentEwmaNanos() / 1e6);
+        }
+    }
+
+    /**
+     * Chooses a provider for a request and counts the request as outstanding on it.
+     * <p>
+     * The returned selection must be completed with exactly one of {@link Selection#onSuccess()},
+     * {@link Selection#onFailure()} or {@link Selection#onIgnored()}.
+     *
+     * @return the chosen provider, never {@code null}
+     */
+    public Selection acquire() {
+        int index = members.length == 1 ? 0 : choose(available());
+        AiProviderPool.Member member = members[index];
+        backends[index].start();
+        meterRegistry.counter("prcopilot.lb.selections", "provider", member.provider().getValue()).increment();
+        log.debug("Routing request to provider '{}'", member.provider().getValue());
+        return new Selection(member, backends[index]);
+    }
+
+    /**
+     * Returns the indexes of members whose breaker is not open, or of all members if every breaker is open.
+     */
+    private List<Integer> available() {
+        List<Integer> available = new ArrayList<>(members.length);
+        for (int i = 0; i < members.length; i++) {
+            if (circuitBreakerService.getState(members[i].provider()) != AiCircuitBreakerService.State.OPEN) {
+                available.add(i);
+            }
+        }
+        if (available.isEmpty()) {
+            for (int i = 0; i < members.length; i++) available.add(i);
+        }
+        return available;
+    }
+
+    private int choose(List<Integer> candidates) {
+        return switch (pool.strategy()) {
+            case WEIGHTED_ROUND_ROBIN -> chooseRoundRobin(candidates);
+            case LEAST_OUTSTANDING -> chooseLowest(candidates, false);
+            case EWMA_LATENCY -> chooseLowest(candidates, true);
+        };
+    }
+
+    /**
+     * Smooth weighted round-robin: every candidate gains its weight, the one with the most is chosen and
+     * pays back the total, which interleaves providers instead of sending bursts to one of them.
+     */
+    private synchronized int chooseRoundRobin(List<Integer> candidates) {
+        int total = 0;
+        int best = -1;
+        for (int i : candidates) {
+            Backend backend = backends[i];
+            backend.roundRobinCredit += backend.weight;
+            total += backend.weight;
+            if (best < 0 || backend.roundRobinCredit > backends[best].roundRobinCredit) best = i;
+        }
+        backends[best].roundRobinCredit -= total;
+        return best;
+    }
+
+    /**
+     * Picks the candidate with the lowest load score, breaking ties at random so that an idle pool does
+     * not send everything to its first member.
+     */
+    private int chooseLowest(List<Integer> candidates, boolean latencyWeighted) {
+        double bestScore = Double.MAX_VALUE;
+        int best = -1;
+        int ties = 0;
+        for (int i : candidates) {
+            Backend backend = backends[i];
+            double load = backend.currentOutstanding() + 1;
+            double score = (latencyWeighted ? load * Math.max(MIN_EWMA_NANOS, backend.currentEwmaNanos()) : load)
+                    / backend.weight;
+            if (score < bestScore) {
+                bestScore = score;
+                best = i;
+                ties = 1;
+            } else if (score == bestScore && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A provider chosen for a single request, reporting the request's outcome back to the balancer.
+     */
+    static final class Selection {
+
+        private final AiProviderPool.Member member;
+        private final Backend backend;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Selection(AiProviderPool.Member member, Backend backend) {
+            this.member = member;
+            this.backend = backend;
+        }
+
+        /**
+         * Returns a selection of a provider that was chosen outside the balancer, such as a model tier, whose
+         * outcome is not tracked.
+         *
+         * @param provider    the provider, must not be {@code null}
+         * @param chatClient  the client for the provider's chat model, must not be {@code null}
+         * @param chatOptions the options to call the provider with, must not be {@code null}
+         * @return the selection, never {@code null}
+         */
+        static Selection unbalanced(AiProvider provider, ChatClient chatClient, ChatOptions chatOptions) {
+            return new Selection(new AiProviderPool.Member(provider, chatClient, chatOptions, 1), null);
+        }
+
+        AiProvider provider() {
+            return member.provider();
+        }
+
+        ChatClient chatClient() {
+            return member.chatClient();
+        }
+
+        ChatOptions chatOptions() {
+            return member.chatOptions();
+        }
+
+        /**
+         * Completes the request and records its latency.
+         */
+        void onSuccess() {
+            if (completed.compareAndSet(false, true) && backend != null) backend.finish(System.nanoTime() - startNanos, false);
+        }
+
+        /**
+         * Completes the request and penalizes the provider's average latency.
+         */
+        void onFailure() {
+            if (completed.compareAndSet(false, true) && backend != null) backend.finish(System.nanoTime() - startNanos, true);
+        }
+
+        /**
+         * Completes the request without recording anything, for requests abandoned by the caller.
+         */
+        void onIgnored() {
+            if (completed.compareAndSet(false, true) && backend != null) backend.finish(-1, false);
+        }
+    }
+
+    /**
+     * The load and latency state of a single pool member.
+     */
+    private static final class Backend {
+
+        private final int weight;
+        private int roundRobinCredit;
+        private int outstanding;
+        private double ewmaNanos;
+        private long lastUpdateNanos = System.nanoTime();
+
+        private Backend(int weight) {
+            this.weight = weight;
+        }
+
+        private synchronized void start() {
+            outstanding++;
+        }
+
+        private synchronized void finish(long latencyNanos, boolean failed) {
+            outstanding--;
+            if (latencyNanos < 0) return;
+
+            long now = System.nanoTime();
+            double sample = failed ? Math.max(latencyNanos, ewmaNanos) * FAILURE_PENALTY : latencyNanos;
+            // Jump straight to latency spikes, but decay back down gradually.
+            if (ewmaNanos == 0 || sample > ewmaNanos) {
+                ewmaNanos = sample;
+            } else {
+                double decay = Math.exp(-(now - lastUpdateNanos) / EWMA_DECAY_NANOS);
+                ewmaNanos = ewmaNanos * decay + sample * (1 - decay);
+            }
+            lastUpdateNanos = now;
+        }
+
+        private synchronized double currentOutstanding() {
+            return outstanding;
+        }
+
+        private synchronized double currentEwmaNanos() {
+            return ewmaNanos;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiModelTiers;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service choosing the model a diff is analyzed with, ahead of {@code AiLoadBalancerService}.
+ * <p>
+ * A diff is measured by its size in characters, its number of changed files and its number of hunks, and sent to
+ * the first configured tier whose limits it stays within, so small changes can go to a fast, cheap model. Tiers
+ * whose circuit breaker is open are skipped. Diffs that fit no tier go to the provider chosen by
+ * {@code AiLoadBalancerService}, which is where the heaviest model belongs.
+ *
+ * <p>The tier every diff was routed to is published as {@code prcopilot.routing.tier}, tagged by tier, with
+ * {@code default} for diffs that fit no tier.
+ */
+@Service
+@Slf4j
+class AiModelRouterService {
+
+    private static final String FILE_HEADER = "diff --git ";
+    private static final String NEW_FILE_HEADER = "+++ ";
+    private static final String HUNK_HEADER = "@@";
+    private static final String DEFAULT_TIER = "default";
+
+    private final AiModelTiers modelTiers;
+    private final AiLoadBalancerService loadBalancerService;
+    private final AiCircuitBreakerService circuitBreakerService;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Constructs an {@code AiModelRouterService}.
+     *
+     * @param modelTiers            the tiers diffs may be routed to, must not be {@code null}
+     * @param loadBalancerService   the balancer choosing a provider for diffs that fit no tier, must not be {@code null}
+     * @param circuitBreakerService the per-provider circuit breakers, must not be {@code null}
+     * @param meterRegistry         the registry to publish metrics to, must not be {@code null}
+     */
+    AiModelRouterService(
+            AiModelTiers modelTiers,
+            AiLoadBalancerService loadBalancerService,
+            AiCircuitBreakerService circuitBreakerService,
+            MeterRegistry meterRegistry
+    ) {
+        this.modelTiers = modelTiers;
+        this.loadBalancerService = loadBalancerService;
+        this.circuitBreakerService = circuitBreakerService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Chooses the provider and model to analyze a diff with.
+     * <p>
+     * The returned selection must be completed with exactly one of its {@code onSuccess()}, {@code onFailure()}
+     * or {@code onIgnored()} methods.
+     *
+     * @param diff the diff, or diff chunk, to analyze, must not be {@code null}
+     * @return the chosen provider, never {@code null}
+     */
+    public AiLoadBalancerService.Selection route(String diff) {
+        if (modelTiers.tiers().isEmpty()) return loadBalancerService.acquire();
+
+        DiffShape shape = DiffShape.of(diff);
+        for (AiModelTiers.Tier tier : modelTiers.tiers()) {
+            if (!shape.fits(tier)) continue;
+            if (circuitBreakerService.getState(tier.provider()) == AiCircuitBreakerService.State.OPEN) {
+                log.debug("Skipping tier '{}', the circuit breaker of provider '{}' is open",
+                          tier.name(),
+                          tier.provider().getValue()
+                );
+                continue;
+            }
+
+            meterRegistry.counter("prcopilot.routing.tier", "tier", tier.name()).increment();
+            log.debug("Routing diff of {} chars, {} files and {} hunks to tier '{}'",
+                      shape.chars(),
+                      shape.files(),
+                      shape.hunks(),
+                      tier.name()
+            );
+            return AiLoadBalancerService.Selection.unbalanced(tier.provider(), tier.chatClient(), tier.chatOptions());
+        }
+
+        meterRegistry.counter("prcopilot.routing.tier", "tier", DEFAULT_TIER).increment();
+        return loadBalancerService.acquire();
+    }
+
+    /**
+     * The size of a diff as measured for routing.
+     *
+     * @param chars the number of characters
+     * @param files the number of changed files
+     * @param hunks the number of hunks
+     */
+    record DiffShape(int chars, int files, int hunks) {
+
+        /**
+         * Measures a diff. Files are counted by their {@code diff --git} headers, or by their {@code +++} headers
+         * for diffs without any.
+         *
+         * @param diff the diff to measure, must not be {@code null}
+         * @return the diff's shape, never {@code null}
+         */
+        static DiffShape of(String diff) {
+            int gitHeaders = 0;
+            int newFileHeaders = 0;
+            int hunks = 0;
+            for (String line : (Iterable<String>) diff.lines()::iterator) {
+                if (line.startsWith(FILE_HEADER)) gitHeaders++;
+                else if (line.startsWith(NEW_FILE_HEADER)) newFileHeaders++;
+                else if (line.startsWith(HUNK_HEADER)) hunks++;
+            }
+            int files = gitHeaders > 0 ? gitHeaders : newFileHeaders;
+            return new DiffShape(diff.length(), Math.max(files, diff.isBlank() ? 0 : 1), hunks);
+        }
+
+        private boolean fits(AiModelTiers.Tier tier) {
+            return within(chars, tier.maxDiffChars()) && within(files, tier.maxFiles()) && within(hunks, tier.maxHunks());
+        }
+
+        private static boolean within(int value, int limit) {
+            return limit == 0 || value <= limit;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service enforcing the requests-per-minute and tokens-per-minute quota of each {@code AiProvider}.
+ * <p>
+ * Each provider with a quota under {@code prcopilot.ai.rate-limits} has two token buckets that refill
+ * continuously over a minute. Before a call, one request and an estimate of its tokens (the prompt's
+ * estimated tokens plus {@code max-tokens}) are debited; the caller then waits until the buckets have
+ * recovered from any deficit. Once the response arrives, the debit is settled against the actual
+ * {@code Usage}, so over-estimates are refunded. Calls that would have to wait longer than
+ * {@code rate-limit-max-wait-millis} are rejected with a {@code CapacityExceededException} instead.
+ *
+ * <p>Wait times, rejections and the available token budget are published as {@code prcopilot.ratelimit.*},
+ * tagged by provider.
+ */
+@Service
+@Slf4j
+class AiRateLimiterService {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final MultiAiConfigurationProperties aiConfigurationProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<AiProvider, QuotaBuckets> buckets = new EnumMap<>(AiProvider.class);
+
+    /**
+     * Constructs an {@code AiRateLimiterService} with buckets for every provider that has a quota configured.
+     *
+     * @param aiConfigurationProperties the AI configuration holding the quotas, must not be {@code null}
+     * @param meterRegistry             the registry to publish metrics to, must not be {@code null}
+     */
+    AiRateLimiterService(MultiAiConfigurationProperties aiConfigurationProperties, MeterRegistry meterRegistry) {
+        this.aiConfigurationProperties = aiConfigurationProperties;
+        this.meterRegistry = meterRegistry;
+
+        aiConfigurationProperties.getRateLimits().forEach((provider, limit) -> {
+            if (limit.getRequestsPerMinute() <= 0 && limit.getTokensPerMinute() <= 0) return;
+
+            QuotaBuckets providerBuckets = new QuotaBuckets(limit.getRequestsPerMinute(), limit.getTokensPerMinute());
+            buckets.put(provider, providerBuckets);
+            meterRegistry.gauge("prcopilot.ratelimit.tokens.available",
+                                Tags.of("provider", provider.getValue()),
+                                providerBuckets,
+                                QuotaBuckets::availableTokens
+            );
+        });
+    }
+
+    /**
+     * Reserves quota for a call, waiting until the provider's buckets can cover it.
+     *
+     * @param provider the provider about to be called, must not be {@code null}
+     * @param prompt   the prompt that will be sent, must not be {@code null}
+     * @return the reservation to settle once the response is known, never {@code null}
+     * @throws CapacityExceededException if the quota would not recover within {@code rate-limit-max-wait-millis}
+     * @throws CustomApiException        if the thread is interrupted while waiting
+     */
+    public Reservation reserve(AiProvider provider, Prompt prompt) {
+        return reserve(provider, prompt, aiConfigurationProperties.getRateLimitMaxWaitMillis());
+    }
+
+    /**
+     * Reserves quota for a call, waiting at most {@code maxWaitMillis} for the provider's buckets to cover it.
+     *
+     * @param provider      the provider about to be called, must not be {@code null}
+     * @param prompt        the prompt that will be sent, must not be {@code null}
+     * @param maxWaitMillis the longest the call may wait for quota, usually capped by its deadline
+     * @return the reservation to settle once the response is known, never {@code null}
+     * @throws CapacityExceededException if the quota would not recover within {@code maxWaitMillis}
+     * @throws CustomApiException        if the thread is interrupted while waiting
+     */
+    public Reservation reserve(AiProvider provider, Prompt prompt, long maxWaitMillis) {
+        QuotaBuckets providerBuckets = buckets.get(provider);
+        if (providerBuckets == null) return new Reservation(provider, 0);
+
+        long estimatedTokens = providerBuckets.clampTokens(
+                estimateTokens(prompt) + aiConfigurationProperties.getMaxTokens()
+        );
+        long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+        long waitNanos = providerBuckets.reserve(estimatedTokens, maxWaitNanos);
+        if (waitNanos < 0) {
+            meterRegistry.counter("prcopilot.ratelimit.rejected", "provider", provider.getValue()).increment();
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(-waitNanos) + 1);
+            log.warn("Quota for provider '{}' would not recover within {} ms, rejecting call",
+                     provider.getValue(),
+                     maxWaitMillis
+            );
+            throw new CapacityExceededException(
+                    String.format("Provider '%s' is over its rate limit, try again later", provider.getValue()),
+                    retryAfterSeconds
+            );
+        }
+
+        Timer.builder("prcopilot.ratelimit.wait")
+             .tag("provider", provider.getValue())
+             .register(meterRegistry)
+             .record(waitNanos, TimeUnit.NANOSECONDS);
+
+        if (waitNanos > 0) {
+            log.debug("Waiting {} ms for quota of provider '{}'", TimeUnit.NANOSECONDS.toMillis(waitNanos), provider.getValue());
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                providerBuckets.refund(1, estimatedTokens);
+                Thread.currentThread().interrupt();
+                throw new CustomApiException("Interrupted while waiting for provider quota",
+                                             HttpStatus.SERVICE_UNAVAILABLE, e
+                );
+            }
+        }
+
+        return new Reservation(provider, estimatedTokens);
+    }
+
+    /**
+     * Settles a reservation against the tokens the provider actually reported.
+     * <p>
+     * If the response carries no usage, the estimate is kept.
+     *
+     * @param reservation the reservation returned by {@link #reserve}, must not be {@code null}
+     * @param response    the model response, may be {@code null}
+     */
+    public void settle(Reservation reservation, ChatResponse response) {
+        QuotaBuckets providerBuckets = buckets.get(reservation.provider());
+        if (providerBuckets == null || response == null || response.getMetadata() == null) return;
+
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null || usage.getTotalTokens() == null || usage.getTotalTokens() <= 0) return;
+
+        providerBuckets.refund(0, reservation.debitedTokens() - usage.getTotalTokens());
+    }
+
+    /**
+     * Returns the whole reservation to the buckets, for calls that were never sent to the provider.
+     *
+     * @param reservation the reservation returned by {@link #reserve}, must not be {@code null}
+     */
+    public void cancel(Reservation reservation) {
+        QuotaBuckets providerBuckets = buckets.get(reservation.provider());
+        if (providerBuckets != null) providerBuckets.refund(1, reservation.debitedTokens());
+    }
+
+    /**
+     * Estimates the number of tokens in a prompt from its length.
+     *
+     * @param prompt the prompt, must not be {@code null}
+     * @return the estimated token count
+     */
+    long estimateTokens(Prompt prompt) {
+        String contents = prompt.getContents();
+        return contents == null ? 0 : (contents.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Quota debited for a single call.
+     *
+     * @param provider      the provider the quota was debited from
+     * @param debitedTokens the number of tokens debited
+     */
+    record Reservation(AiProvider provider, long debitedTokens) {
+    }
+}
@@ -0,0 +1,277 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotRetryProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Service retrying model calls that failed for a reason another attempt may fix.
+ * <p>
+ * Connection failures, 5xx responses, 408 and 429 are retried; other client errors, timeouts of the whole
+ * call, open circuit breakers and shed calls are not. Attempts are spaced with decorrelated jitter, so
+ * concurrent callers spread out instead of retrying in lockstep, and never sooner than the provider's
+ * {@code Retry-After}. A call whose {@code Retry-After} exceeds {@code maxDelayMillis} is not retried, so
+ * the fallback provider can take it instead.
+ *
+ * <p>Retries draw from a per-provider budget that grows with {@code budgetPercent} of the provider's
+ * traffic, which keeps retries from multiplying the load on a provider that is already failing. Retries and
+ * exhausted budgets are published as {@code prcopilot.retry.*}, tagged by provider.
+ */
+@Service
+@Slf4j
+class AiRetryService {
+
+    private static final Pattern STATUS_IN_MESSAGE = Pattern.compile("^(?:HTTP )?(\\d{3})\\b");
+    private static final String RETRY_AFTER_MS = "retry-after-ms";
+
+    private final PrCopilotRetryProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<AiProvider, Budget> budgets = new EnumMap<>(AiProvider.class);
+
+    /**
+     * Constructs an {@code AiRetryService} and registers a retry budget and its metrics for every provider.
+     *
+     * @param properties    the retry configuration, must not be {@code null}
+     * @param meterRegistry the registry to publish metrics to, must not be {@code null}
+     */
+    AiRetryService(PrCopilotRetryProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        for (AiProvider provider : AiProvider.values()) {
+            Budget budget = new Budget();
+            budgets.put(provider, budget);
+            meterRegistry.gauge("prcopilot.retry.budget.available",
+                                Tags.of("provider", provider.getValue()),
+                                budget,
+                                Budget::available
+            );
+        }
+    }
+
+    /**
+     * Runs a call to the given provider, retrying it while it fails retryably and attempts and budget remain.
+     *
+     * @param provider the provider being called, must not be {@code null}
+     * @param attempt  a single attempt of the call, must not be {@code null}
+     * @param <T>      the result type
+     * @return the result of the first successful attempt and the number of retries it took, never {@code null}
+     * @throws RuntimeException   the failure of the last attempt, if no attempt succeeded
+     * @throws CustomApiException if the thread is interrupted while waiting to retry
+     */
+    public <T> Result<T> execute(AiProvider provider, Supplier<T> attempt) {
+        return execute(provider, attempt, Long.MAX_VALUE);
+    }
+
+    /**
+     * Runs a call to the given provider like {@link #execute(AiProvider, Supplier)}, but does not retry once the
+     * next attempt could not start before {@code deadlineMillis}.
+     *
+     * @param provider       the provider being called, must not be {@code null}
+     * @param attempt        a single attempt of the call, must not be {@code null}
+     * @param deadlineMillis the epoch millisecond by which the call must be done, {@link Long#MAX_VALUE} for none
+     * @param <T>            the result type
+     * @return the result of the first successful attempt and the number of retries it took, never {@code null}
+     * @throws RuntimeException   the failure of the last attempt, if no attempt succeeded
+     * @throws CustomApiException if the thread is interrupted while waiting to retry
+     */
+    public <T> Result<T> execute(AiProvider provider, Supplier<T> attempt, long deadlineMillis) {
+        if (!properties.isEnabled()) return new Result<>(attempt.get(), 0);
+
+        Budget budget = budgets.get(provider);
+        budget.deposit();
+
+        int retries = 0;
+        long backoffMillis = properties.getBaseDelayMillis();
+        while (true) {
+            try {
+                return new Result<>(attempt.get(), retries);
+            } catch (RuntimeException e) {
+                if (retries + 1 >= properties.getMaxAttempts() || !isRetryable(e)) throw e;
+
+                long retryAfterMillis = retryAfterMillis(e);
+                if (retryAfterMillis > properties.getMaxDelayMillis()) {
+                    log.warn("Provider '{}' asked to retry after {} ms, which exceeds the max retry delay; not retrying",
+                             provider.getValue(),
+                             retryAfterMillis
+                    );
+                    throw e;
+                }
+
+                backoffMillis = nextBackoffMillis(backoffMillis);
+                long delayMillis = Math.max(backoffMillis, retryAfterMillis);
+                if (delayMillis >= deadlineMillis - System.currentTimeMillis()) {
+                    log.warn("Call to provider '{}' failed ({}) and its deadline leaves no time to retry",
+                             provider.getValue(),
+                             e.getMessage()
+                    );
+                    throw e;
+                }
+                if (!budget.tryWithdraw()) {
+                    meterRegistry.counter("prcopilot.retry.budget.exhausted", "provider", provider.getValue()).increment();
+                    log.warn("Retry budget for provider '{}' is exhausted; not retrying", provider.getValue());
+                    throw e;
+                }
+                retries++;
+                meterRegistry.counter("prcopilot.retry.attempts", "provider", provider.getValue()).increment();
+                log.warn("Call to provider '{}' failed ({}), retry {} in {} ms",
+                         provider.getValue(),
+                         e.getMessage(),
+                         retries,
+                         delayMillis
+                );
+
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delayMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new CustomApiException("AI Model request was interrupted", HttpStatus.SERVICE_UNAVAILABLE, ie);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether a failed call is worth retrying.
+     *
+     * @param failure the failure, must not be {@code null}
+     * @return {@code true} for connection failures, 5xx responses, 408 and 429
+     */
+    boolean isRetryable(Throwable failure) {
+        if (failure instanceof CapacityExceededException) return false;
+
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ResourceAccessException || cause instanceof TransientAiException) return true;
+            if (cause instanceof NonTransientAiException) {
+                int status = statusCode(cause);
+                return status == HttpStatus.TOO_MANY_REQUESTS.value() || status == HttpStatus.REQUEST_TIMEOUT.value();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the delay the provider asked for before the next attempt.
+     * <p>
+     * Reads {@code retry-after-ms} if present, otherwise {@code Retry-After} as either seconds or an HTTP date.
+     *
+     * @param failure the failure, must not be {@code null}
+     * @return the requested delay in milliseconds, or {@code 0} if none was given
+     */
+    long retryAfterMillis(Throwable failure) {
+        RestClientResponseException response = findCause(failure, RestClientResponseException.class);
+        if (response == null || response.getResponseHeaders() == null) return 0;
+
+        HttpHeaders headers = response.getResponseHeaders();
+        try {
+            String millis = headers.getFirst(RETRY_AFTER_MS);
+            if (millis != null) return Math.max(0, (long) Double.parseDouble(millis.trim()));
+
+            String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+            if (retryAfter == null) return 0;
+            retryAfter = retryAfter.trim();
+            if (retryAfter.chars().allMatch(Character::isDigit)) {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter));
+            }
+            ZonedDateTime date = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+        } catch (NumberFormatException | DateTimeParseException e) {
+            log.debug("Ignoring unparseable Retry-After header: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the HTTP status of a failed call.
+     * <p>
+     * Uses the response attached by {@code AiProviderResponseErrorHandler} if there is one, and otherwise the
+     * status code Spring AI puts at the start of the exception message.
+     *
+     * @param failure the failure, must not be {@code null}
+     * @return the status code, or {@code -1} if the failure carries none
+     */
+    static int statusCode(Throwable failure) {
+        RestClientResponseException response = findCause(failure, RestClientResponseException.class);
+        if (response != null) return response.getStatusCode().value();
+
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientAiException || cause instanceof NonTransientAiException) {
+                Matcher matcher = STATUS_IN_MESSAGE.matcher(String.valueOf(cause.getMessage()));
+                return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the next decorrelated-jitter backoff: a random delay between the base delay and three times
+     * the previous one, capped at the max delay.
+     */
+    private long nextBackoffMillis(long previousMillis) {
+        long base = properties.getBaseDelayMillis();
+        long upper = Math.max(base + 1, previousMillis * 3);
+        return Math.min(properties.getMaxDelayMillis(), ThreadLocalRandom.current().nextLong(base, upper));
+    }
+
+    private static <E extends Throwable> E findCause(Throwable failure, Class<E> type) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) return type.cast(cause);
+        }
+        return null;
+    }
+
+    /**
+     * The result of a call and the number of retries it took.
+     *
+     * @param value   the result of the successful attempt
+     * @param retries the number of attempts made after the first
+     * @param <T>     the result type
+     */
+    record Result<T>(T value, int retries) {
+    }
+
+    /**
+     * The retry budget of a single provider.
+     */
+    private final class Budget {
+
+        private double balance = properties.getBudgetBurst();
+
+        private synchronized void deposit() {
+            balance = Math.min(properties.getBudgetBurst(), balance + properties.getBudgetPercent() / 100.0);
+        }
+
+        private synchronized boolean tryWithdraw() {
+            if (balance < 1) return false;
+            balance -= 1;
+            return true;
+        }
+
+        private synchronized double available() {
+            return balance;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.AiFallbackChain;
+import io.github.kxng0109.aiprcopilot.config.AiModelTiers;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.AiProviderHttpClients;
+import io.github.kxng0109.aiprcopilot.config.AiProviderPool;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotWarmupProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service warming the application up before it takes traffic.
+ * <p>
+ * Runs on {@code ApplicationReadyEvent}, after the configuration checks. It opens a keep-alive connection to every
+ * provider a request can be sent to, so the first requests do not pay for DNS lookups and TLS handshakes, and maps
+ * and serializes a synthetic model response to load and JIT-compile the response path. Spring Boot only switches
+ * readiness to {@code ACCEPTING_TRAFFIC} once every {@code ApplicationReadyEvent} listener has returned, so
+ * {@code /actuator/health/readiness} reports {@code UP} only after warm-up is done.
+ * <p>
+ * Warm-up failures are logged and never stop the application; an unreachable provider is left to the circuit
+ * breakers and fallbacks. The time taken by each step is published as {@code prcopilot.warmup.duration}, tagged
+ * by step.
+ */
+@Service
+@Slf4j
+class AiWarmupService {
+
+    private static final String SYNTHETIC_DIFF = """
+            diff --git a/src/main/java/App.java b/src/main/java/App.java
+            --- a/src/main/java/App.java
+            +++ b/src/main/java/App.java
+            @@ -1 +1 @@
+            -class App {}
+            +final class App {}
+            """;
+
+    private static final String SYNTHETIC_OUTPUT = """
+            {
+              "title": "Warm-up",
+              "summary": "Synthetic response used to warm up the response mapping.",
+              "details": "Not returned to any client.",
+              "risks": ["None"],
+              "suggestedTests": ["None"],
+              "touchedFiles": [],
+              "analysisNotes": null
+            }
+            """;
+
+    private final PrCopilotWarmupProperties warmupProperties;
+    private final ObjectProvider<AiProviderHttpClients> httpClients;
+    private final AiProviderPool providerPool;
+    private final AiFallbackChain fallbackChain;
+    private final AiModelTiers modelTiers;
+    private final DiffResponseMapperService diffResponseMapperService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Constructs an {@code AiWarmupService}.
+     *
+     * @param warmupProperties          the warm-up configuration, must not be {@code null}
+     * @param httpClients               the per-provider HTTP clients, if enabled, must not be {@code null}
+     * @param providerPool              the providers requests are balanced across, must not be {@code null}
+     * @param fallbackChain             the providers failed requests fall back to, must not be {@code null}
+     * @param modelTiers                the tiers diffs may be routed to, must not be {@code null}
+     * @param diffResponseMapperService the service mapping model output to responses, must not be {@code null}
+     * @param objectMapper              the mapper responses are serialized with, must not be {@code null}
+     * @param meterRegistry             the registry to publish metrics to, must not be {@code null}
+     */
+    AiWarmupService(
+            PrCopilotWarmupProperties warmupProperties,
+            ObjectProvider<AiProviderHttpClients> httpClients,
+            AiProviderPool providerPool,
+            AiFallbackChain fallbackChain,
+            AiModelTiers modelTiers,
+            DiffResponseMapperService diffResponseMapperService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry
+    ) {
+        this.warmupProperties = warmupProperties;
+        this.httpClients = httpClients;
+        this.providerPool = providerPool;
+        this.fallbackChain = fallbackChain;
+        this.modelTiers = modelTiers;
+        this.diffResponseMapperService = diffResponseMapperService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Warms up provider connections and the response mapping, if warm-up is enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void warmUp() {
+        if (!warmupProperties.isEnabled()) return;
+
+        long start = System.nanoTime();
+        warmUpConnections();
+        warmUpMapping();
+        log.info("Warm-up finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Opens a connection to every configured provider that is called over HTTP.
+     */
+    void warmUpConnections() {
+        AiProviderHttpClients clients = httpClients.getIfAvailable();
+        if (clients == null) {
+            log.debug("Per-provider HTTP clients are disabled, skipping connection warm-up");
+            return;
+        }
+
+        long start = System.nanoTime();
+        Duration timeout = Duration.ofMillis(warmupProperties.getTimeoutMillis());
+        for (AiProvider provider : configuredProviders()) {
+            try {
+                if (clients.warmUp(provider, timeout)) {
+                    log.info("Opened a connection to provider '{}'", provider.getValue());
+                }
+            } catch (IOException e) {
+                log.warn("Could not open a connection to provider '{}' during warm-up: {}",
+                         provider.getValue(),
+                         e.getMessage()
+                );
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Warm-up interrupted while connecting to provider '{}'", provider.getValue());
+                return;
+            }
+        }
+        recordStep("connections", start);
+    }
+
+    /**
+     * Maps a synthetic model response and serializes the result, as a real request would.
+     */
+    void warmUpMapping() {
+        long start = System.nanoTime();
+        ChatResponse response = new ChatResponse(
+                List.of(new Generation(new AssistantMessage(SYNTHETIC_OUTPUT))),
+                ChatResponseMetadata.builder().model("warmup").build()
+        );
+        try {
+            for (int i = 0; i < warmupProperties.getMappingIterations(); i++) {
+                AnalyzeDiffResponse mapped = diffResponseMapperService.mapToAnalyzeDiffResponse(
+                        response,
+                        0,
+                        SYNTHETIC_DIFF,
+                        "warmup",
+                        "warmup"
+                );
+                objectMapper.writeValueAsString(mapped);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Response mapping warm-up failed: {}", e.getMessage());
+            return;
+        }
+        recordStep("mapping", start);
+    }
+
+    private Set<AiProvider> configuredProviders() {
+        Set<AiProvider> providers = EnumSet.noneOf(AiProvider.class);
+        providerPool.members().forEach(member -> providers.add(member.provider()));
+        fallbackChain.steps().forEach(step -> providers.add(step.provider()));
+        modelTiers.tiers().forEach(tier -> providers.add(tier.provider()));
+        return providers;
+    }
+
+    private void recordStep(String step, long start) {
+        meterRegistry.timer("prcopilot.warmup.duration", "step", step)
+                     .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
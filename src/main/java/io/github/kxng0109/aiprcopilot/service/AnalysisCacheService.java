@@ -0,0 +1,159 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Service for caching analysis responses by a content hash of the request.
+ * <p>
+ * Entries are keyed on the normalized diff together with the language, style, maximum summary
+ * length and provider/model, so re-running the same diff returns the stored response without a
+ * model call. The cache is bounded by size with least-recently-used eviction and every entry
+ * expires after a configurable TTL.
+ *
+ * <p>Hit, miss and eviction counts are published to the {@code MeterRegistry} under
+ * {@code prcopilot.cache.*}.
+ */
+@Service
+@Slf4j
+class AnalysisCacheService {
+
+    private final PrCopilotCacheProperties cacheProperties;
+    private final Map<String, CacheEntry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    /**
+     * Constructs an {@code AnalysisCacheService} and registers its metrics.
+     *
+     * @param cacheProperties the cache configuration, must not be {@code null}
+     * @param meterRegistry   the registry to publish cache metrics to, must not be {@code null}
+     */
+    AnalysisCacheService(PrCopilotCacheProperties cacheProperties, MeterRegistry meterRegistry) {
+        this.cacheProperties = cacheProperties;
+
+        this.hits = meterRegistry.counter("prcopilot.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("prcopilot.cache.requests", "result", "miss");
+        this.sizeEvictions = meterRegistry.counter("prcopilot.cache.evictions", "cause", "size");
+        this.expiredEvictions = meterRegistry.counter("prcopilot.cache.evictions", "cause", "expired");
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                boolean evict = size() > cacheProperties.getMaxEntries();
+                if (evict) sizeEvictions.increment();
+                return evict;
+            }
+        };
+        meterRegistry.gaugeMapSize("prcopilot.cache.size", Tags.empty(), entries);
+    }
+
+    /**
+     * Computes the cache key for an analysis request.
+     * <p>
+     * The diff is normalized first: {@code index} lines are dropped, line endings are unified and
+     * trailing whitespace is stripped, so cosmetic differences between otherwise identical diffs do
+     * not cause cache misses.
+     *
+     * @param diff             the diff content, must not be {@code null}
+     * @param language         the resolved analysis language, must not be {@code null}
+     * @param style            the resolved analysis style, must not be {@code null}
+     * @param maxSummaryLength the requested maximum summary length, may be {@code null}
+     * @param provider         the provider name, must not be {@code null}
+     * @param model            the model name, may be {@code null} when the provider default is used
+     * @return a hex-encoded SHA-256 fingerprint, never {@code null}
+     */
+    public String fingerprint(
+            String diff,
+            String language,
+            String style,
+            Integer maxSummaryLength,
+            String provider,
+            String model
+    ) {
+        StringBuilder normalized = new StringBuilder();
+        for (String line : diff.split("\\R")) {
+            if (line.startsWith("index ")) continue;
+            normalized.append(line.stripTrailing()).append('\n');
+        }
+
+        String material = String.join("\u0000",
+                                      normalized.toString().stripTrailing(),
+                                      language,
+                                      style,
+                                      String.valueOf(maxSummaryLength),
+                                      provider,
+                                      String.valueOf(model)
+        );
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(material.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the cached response for the given key if it exists and has not expired.
+     *
+     * @param key the cache key from {@link #fingerprint}, must not be {@code null}
+     * @return the cached response, or an empty {@code Optional} on a miss or when caching is disabled
+     */
+    public Optional<AnalyzeDiffResponse> get(String key) {
+        if (!cacheProperties.isEnabled()) return Optional.empty();
+
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null && entry.expiresAtMillis() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                expiredEvictions.increment();
+                entry = null;
+            }
+
+            if (entry == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+
+            hits.increment();
+            log.debug("Analysis cache hit for key {}", key);
+            return Optional.of(entry.response());
+        }
+    }
+
+    /**
+     * Stores a response under the given key, evicting the least recently used entry if the cache is full.
+     * Partial responses are not stored, so the next request for the same diff gets another chance at a full one.
+     *
+     * @param key      the cache key from {@link #fingerprint}, must not be {@code null}
+     * @param response the response to cache, must not be {@code null}
+     */
+    public void put(String key, AnalyzeDiffResponse response) {
+        if (!cacheProperties.isEnabled()) return;
+        if (response.metadata() != null && response.metadata().partial()) return;
+
+        synchronized (entries) {
+            entries.put(key, new CacheEntry(response, System.currentTimeMillis() + cacheProperties.getTtlMillis()));
+        }
+    }
+
+    private record CacheEntry(AnalyzeDiffResponse response, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.ErrorResponse;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.github.kxng0109.aiprcopilot.error.DiffTooLargeException;
+import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import org.springframework.http.HttpStatus;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Maps analysis failures to {@code ErrorResponse} bodies outside of a request, for results that are reported after
+ * the request that started them has returned.
+ * <p>
+ * Uses the same status codes as {@code GlobalExceptionHandler}.
+ */
+final class AnalysisFailures {
+
+    private AnalysisFailures() {
+    }
+
+    /**
+     * Returns the HTTP status an analysis failure is reported with.
+     *
+     * @param failure the exception the analysis failed with, must not be {@code null}
+     * @return the status, never {@code null}
+     */
+    static HttpStatus statusOf(RuntimeException failure) {
+        return switch (failure) {
+            case CustomApiException c -> c.getHttpStatus();
+            case ModelOutputParseException m -> HttpStatus.UNPROCESSABLE_ENTITY;
+            case DiffTooLargeException d -> HttpStatus.PAYLOAD_TOO_LARGE;
+            default -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+    }
+
+    /**
+     * Builds the error body of a failure.
+     *
+     * @param status    the status to report, must not be {@code null}
+     * @param message   the error message, may be {@code null}
+     * @param requestId the request identifier, may be {@code null}
+     * @return the error body, never {@code null}
+     */
+    static ErrorResponse errorResponse(HttpStatus status, String message, String requestId) {
+        return ErrorResponse.builder()
+                            .timestamp(OffsetDateTime.now())
+                            .statusCode(status.value())
+                            .error(status.getReasonPhrase())
+                            .message(message)
+                            .requestId(requestId)
+                            .build();
+    }
+}
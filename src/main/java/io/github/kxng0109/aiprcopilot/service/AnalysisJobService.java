@@ -0,0 +1,426 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisJobResponse;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisJobStatus;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.api.dto.ErrorResponse;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotJobProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.OffsetDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service running analyses as asynchronous jobs, so clients do not hold a connection open while the model works.
+ * <p>
+ * A submitted job waits in a bounded queue until one of {@code prcopilot.jobs.workers} workers runs it through
+ * {@code DiffAnalysisService}. When the queue is full, submissions are rejected with a
+ * {@code CapacityExceededException} whose {@code Retry-After} is an estimate of how long the queue takes to drain.
+ * Jobs are kept in memory and can be polled by their ID; finished jobs are evicted {@code prcopilot.jobs.ttl-millis}
+ * after they finish. If a job was submitted with a callback URL, its final state is posted there once, and a failed
+ * callback does not change the job. Without {@code prcopilot.jobs.callback-allowed-hosts}, callback hosts must resolve
+ * to public addresses only. They are checked when the job is submitted and again by the resolver of the callback
+ * client, so the callback connects to an address that was checked and can not be rebound to another one in between.
+ * <p>
+ * Queued jobs are published as the {@code prcopilot.jobs.queue.depth} gauge and stored jobs as
+ * {@code prcopilot.jobs.stored}. The time jobs wait for a worker is recorded in {@code prcopilot.jobs.queue.wait} and
+ * the time they run in {@code prcopilot.jobs.duration}. Finished jobs are counted by {@code prcopilot.jobs.completed},
+ * rejected submissions by {@code prcopilot.jobs.rejected} and callbacks by {@code prcopilot.jobs.callbacks}, tagged
+ * by outcome.
+ */
+@Service
+@Slf4j
+public class AnalysisJobService {
+
+    private final PrCopilotJobProperties jobProperties;
+    private final DiffAnalysisService diffAnalysisService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final CloseableHttpClient callbackHttpClient;
+    private final RestClient callbackClient;
+    private final ExecutorService callbacks;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService evictor;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private final Timer queueWait;
+    private final Timer duration;
+    private final Counter rejected;
+
+    /**
+     * Constructs an {@code AnalysisJobService}, starts its workers and registers its metrics.
+     *
+     * @param jobProperties       the job configuration, must not be {@code null}
+     * @param diffAnalysisService the service analyzing each job, must not be {@code null}
+     * @param objectMapper        the mapper writing callback bodies, must not be {@code null}
+     * @param meterRegistry       the registry to publish metrics to, must not be {@code null}
+     */
+    AnalysisJobService(
+            PrCopilotJobProperties jobProperties,
+            DiffAnalysisService diffAnalysisService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry
+    ) {
+        this.jobProperties = jobProperties;
+        this.diffAnalysisService = diffAnalysisService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+
+        Timeout callbackTimeout = Timeout.ofMilliseconds(jobProperties.getCallbackTimeoutMillis());
+        DnsResolver dnsResolver = jobProperties.getCallbackAllowedHosts().isEmpty()
+                ? new PublicAddressDnsResolver()
+                : SystemDefaultDnsResolver.INSTANCE;
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                                                            .setConnectTimeout(callbackTimeout)
+                                                            .setSocketTimeout(callbackTimeout)
+                                                            .build();
+        HttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                                                                                                 .setDnsResolver(dnsResolver)
+                                                                                                 .setDefaultConnectionConfig(connectionConfig)
+                                                                                                 .build();
+        this.callbackHttpClient = HttpClients.custom()
+                                             .setConnectionManager(connectionManager)
+                                             .disableRedirectHandling()
+                                             .build();
+        this.callbackClient = RestClient.builder()
+                                        .requestFactory(new HttpComponentsClientHttpRequestFactory(callbackHttpClient))
+                                        .build();
+        this.callbacks = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("analysis-job-callback-", 0).factory()
+        );
+
+        this.workers = new ThreadPoolExecutor(
+                jobProperties.getWorkers(),
+                jobProperties.getWorkers(),
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(jobProperties.getQueueCapacity()),
+                Thread.ofVirtual().name("analysis-job-", 0).factory()
+        );
+        this.evictor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("analysis-job-evictor").daemon(true).factory()
+        );
+        long evictionPeriod = Math.min(jobProperties.getTtlMillis(), 60000);
+        evictor.scheduleWithFixedDelay(this::evictExpired, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+
+        this.queueWait = meterRegistry.timer("prcopilot.jobs.queue.wait");
+        this.duration = meterRegistry.timer("prcopilot.jobs.duration");
+        this.rejected = meterRegistry.counter("prcopilot.jobs.rejected");
+        meterRegistry.gauge("prcopilot.jobs.queue.depth", workers, executor -> executor.getQueue().size());
+        meterRegistry.gaugeMapSize("prcopilot.jobs.stored", Tags.empty(), jobs);
+    }
+
+    /**
+     * Queues an analysis job.
+     *
+     * @param request     the validated request to analyze, must not be {@code null}
+     * @param callbackUrl the URL to post the finished job to, may be {@code null} for none
+     * @return the state of the submitted job, never {@code null}
+     * @throws CustomApiException         with status 400 if the callback URL is not an allowed HTTP(S) URL or, when no
+     *                                    hosts are allowed explicitly, does not resolve to public addresses only
+     * @throws CapacityExceededException if the job queue is full
+     */
+    public AnalysisJobResponse submit(AnalyzeDiffRequest request, String callbackUrl) {
+        URI callback = callbackUrl != null && !callbackUrl.isBlank() ? callbackUri(callbackUrl) : null;
+
+        Job job = new Job(UUID.randomUUID().toString(), request.requestId(), callback);
+        jobs.put(job.id, job);
+        try {
+            workers.execute(() -> run(job, request));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            rejected.increment();
+            throw new CapacityExceededException("Analysis job queue is full", retryAfterSeconds());
+        }
+
+        log.debug("Queued analysis job {} for requestId '{}'", job.id, request.requestId());
+        return job.snapshot();
+    }
+
+    /**
+     * Returns the current state of a job.
+     *
+     * @param jobId the job identifier, must not be {@code null}
+     * @return the state of the job, never {@code null}
+     * @throws CustomApiException with status 404 if there is no such job or it has expired
+     */
+    public AnalysisJobResponse get(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null || job.isExpired(System.currentTimeMillis())) {
+            throw new CustomApiException("Analysis job '" + jobId + "' not found or expired", HttpStatus.NOT_FOUND);
+        }
+        return job.snapshot();
+    }
+
+    /**
+     * Stops the workers, interrupting running jobs, the callbacks being posted and the eviction of finished jobs.
+     */
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+        callbacks.shutdownNow();
+        evictor.shutdownNow();
+        callbackHttpClient.close(CloseMode.IMMEDIATE);
+    }
+
+    private void run(Job job, AnalyzeDiffRequest request) {
+        long startNanos = System.nanoTime();
+        queueWait.record(startNanos - job.submittedNanos, TimeUnit.NANOSECONDS);
+        job.start();
+
+        try {
+            job.succeed(diffAnalysisService.analyzeDiff(request));
+            meterRegistry.counter("prcopilot.jobs.completed", "outcome", "success").increment();
+        } catch (RuntimeException e) {
+            log.warn("Analysis job {} (requestId '{}') failed: {}", job.id, job.requestId, e.getMessage());
+            job.fail(AnalysisFailures.errorResponse(AnalysisFailures.statusOf(e), e.getMessage(), job.requestId));
+            meterRegistry.counter("prcopilot.jobs.completed", "outcome", "failure").increment();
+        } finally {
+            duration.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        if (job.callbackUrl != null) {
+            try {
+                callbacks.execute(() -> postCallback(job));
+            } catch (RejectedExecutionException e) {
+                log.warn("Could not post analysis job {} to its callback URL, the service is shutting down", job.id);
+                meterRegistry.counter("prcopilot.jobs.callbacks", "outcome", "failure").increment();
+            }
+        }
+    }
+
+    private void postCallback(Job job) {
+        try {
+            // Without an allow-list, the callback client resolves the host through PublicAddressDnsResolver, which
+            // checks the addresses it connects to, since the host may have been pointed elsewhere since submission
+            callbackClient.post()
+                          .uri(job.callbackUrl)
+                          .contentType(MediaType.APPLICATION_JSON)
+                          .body(objectMapper.writeValueAsBytes(job.snapshot()))
+                          .retrieve()
+                          .toBodilessEntity();
+            meterRegistry.counter("prcopilot.jobs.callbacks", "outcome", "success").increment();
+        } catch (Exception e) {
+            log.warn("Could not post analysis job {} to its callback URL {}: {}", job.id, job.callbackUrl, e.getMessage());
+            meterRegistry.counter("prcopilot.jobs.callbacks", "outcome", "failure").increment();
+        }
+    }
+
+    private URI callbackUri(String callbackUrl) {
+        URI uri;
+        try {
+            uri = URI.create(callbackUrl);
+        } catch (IllegalArgumentException e) {
+            throw new CustomApiException("Callback URL is not a valid URL", HttpStatus.BAD_REQUEST);
+        }
+
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : null;
+        if (!("http".equals(scheme) || "https".equals(scheme)) || uri.getHost() == null) {
+            throw new CustomApiException("Callback URL must be an absolute http or https URL", HttpStatus.BAD_REQUEST);
+        }
+
+        if (jobProperties.getCallbackAllowedHosts().isEmpty()) {
+            requirePublicHost(uri.getHost());
+        } else if (jobProperties.getCallbackAllowedHosts().stream().noneMatch(uri.getHost()::equalsIgnoreCase)) {
+            throw new CustomApiException("Callback host '" + uri.getHost() + "' is not allowed", HttpStatus.BAD_REQUEST);
+        }
+        return uri;
+    }
+
+    /**
+     * Rejects a callback host that resolves to a loopback, link-local, private or otherwise non-public address, so
+     * that without an allow-list callbacks can not be aimed at services inside the network this one runs in.
+     *
+     * @param host the host of the callback URL, must not be {@code null}
+     * @throws CustomApiException with status 400 if the host can not be resolved or any of its addresses is not public
+     */
+    private static void requirePublicHost(String host) {
+        try {
+            resolvePublic(host);
+        } catch (NonPublicAddressException e) {
+            throw new CustomApiException(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (UnknownHostException e) {
+            throw new CustomApiException("Callback host '" + host + "' could not be resolved", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Resolves a callback host, failing if any of its addresses is not public.
+     *
+     * @param host the host to resolve, must not be {@code null}
+     * @return the addresses of the host, never {@code null} or empty
+     * @throws NonPublicAddressException if any of the addresses is not public
+     * @throws UnknownHostException      if the host can not be resolved
+     */
+    static InetAddress[] resolvePublic(String host) throws UnknownHostException {
+        InetAddress[] addresses = InetAddress.getAllByName(host);
+        for (InetAddress address : addresses) {
+            if (!isPublic(address)) throw new NonPublicAddressException(host);
+        }
+        return addresses;
+    }
+
+    static boolean isPublic(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet6Address) {
+            // Unique local addresses, fc00::/7
+            return (bytes[0] & 0xfe) != 0xfc;
+        }
+
+        int first = bytes[0] & 0xff;
+        int second = bytes[1] & 0xff;
+        int third = bytes[2] & 0xff;
+        return first != 0                                       // "This network", 0.0.0.0/8
+                && !(first == 100 && (second & 0xc0) == 64)     // Carrier-grade NAT, 100.64.0.0/10
+                && !(first == 192 && second == 0 && third == 0) // IETF protocol assignments, 192.0.0.0/24
+                && !(first == 198 && (second & 0xfe) == 18)     // Benchmarking, 198.18.0.0/15
+                && first < 240;                                 // Reserved and broadcast, 240.0.0.0/4
+    }
+
+    /**
+     * Estimates how long a full queue takes to drain from the mean duration of a job.
+     */
+    private long retryAfterSeconds() {
+        double drainMillis = duration.mean(TimeUnit.MILLISECONDS)
+                * jobProperties.getQueueCapacity() / jobProperties.getWorkers();
+        return Math.max(1, (long) Math.ceil(drainMillis / 1000));
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> job.isExpired(now));
+    }
+
+    /**
+     * Thrown when a callback host resolves to an address that is not public. It is an {@code UnknownHostException} so
+     * that the callback client fails the connection as it would for a host that does not resolve.
+     */
+    static final class NonPublicAddressException extends UnknownHostException {
+
+        NonPublicAddressException(String host) {
+            super("Callback host '" + host + "' resolves to a non-public address");
+        }
+    }
+
+    /**
+     * Resolver of the callback client when no hosts are allowed explicitly, checking the addresses the client is about
+     * to connect to rather than trusting an earlier lookup.
+     */
+    static final class PublicAddressDnsResolver implements DnsResolver {
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            return resolvePublic(host);
+        }
+
+        @Override
+        public String resolveCanonicalHostname(String host) throws UnknownHostException {
+            return SystemDefaultDnsResolver.INSTANCE.resolveCanonicalHostname(host);
+        }
+    }
+
+    /**
+     * The state of one job, updated by the worker running it.
+     */
+    private final class Job {
+
+        private final String id;
+        private final String requestId;
+        private final URI callbackUrl;
+        private final OffsetDateTime submittedAt = OffsetDateTime.now();
+        private final long submittedNanos = System.nanoTime();
+
+        private AnalysisJobStatus status = AnalysisJobStatus.QUEUED;
+        private OffsetDateTime startedAt;
+        private OffsetDateTime completedAt;
+        private AnalyzeDiffResponse response;
+        private ErrorResponse error;
+        private long expiresAtMillis = Long.MAX_VALUE;
+
+        private Job(String id, String requestId, URI callbackUrl) {
+            this.id = id;
+            this.requestId = requestId;
+            this.callbackUrl = callbackUrl;
+        }
+
+        private synchronized void start() {
+            status = AnalysisJobStatus.RUNNING;
+            startedAt = OffsetDateTime.now();
+        }
+
+        private synchronized void succeed(AnalyzeDiffResponse response) {
+            this.response = response;
+            finish(AnalysisJobStatus.SUCCEEDED);
+        }
+
+        private synchronized void fail(ErrorResponse error) {
+            this.error = error;
+            finish(AnalysisJobStatus.FAILED);
+        }
+
+        private void finish(AnalysisJobStatus status) {
+            this.status = status;
+            completedAt = OffsetDateTime.now();
+            expiresAtMillis = System.currentTimeMillis() + jobProperties.getTtlMillis();
+        }
+
+        private synchronized boolean isExpired(long nowMillis) {
+            return expiresAtMillis <= nowMillis;
+        }
+
+        private synchronized AnalysisJobResponse snapshot() {
+            return AnalysisJobResponse.builder()
+                                      .jobId(id)
+                                      .status(status)
+                                      .requestId(requestId)
+                                      .submittedAt(submittedAt)
+                                      .startedAt(startedAt)
+                                      .completedAt(completedAt)
+                                      .response(response)
+                                      .error(error)
+                                      .build();
+        }
+    }
+}
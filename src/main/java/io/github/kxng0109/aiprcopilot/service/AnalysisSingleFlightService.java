@@ -0,0 +1,154 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Service for coalescing concurrent analysis calls that share the same fingerprint.
+ * <p>
+ * The first caller for a key starts the call; callers arriving while it is still in flight wait
+ * for the same result instead of issuing their own model call. Failures are delivered to every
+ * waiter. The shared call runs on its own thread, so a waiter that gives up (because its thread is
+ * interrupted or its own timeout has passed) never cancels the call for the others; once the last
+ * waiter has given up, the call is interrupted, since nobody is left to use its result.
+ *
+ * <p>The number of coalesced calls is published as {@code prcopilot.singleflight.coalesced}.
+ */
+@Service
+@Slf4j
+class AnalysisSingleFlightService {
+
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final Counter coalesced;
+
+    /**
+     * Constructs an {@code AnalysisSingleFlightService} and registers its metrics.
+     *
+     * @param executor      the managed executor shared calls run on, must not be {@code null}
+     * @param meterRegistry the registry to publish metrics to, must not be {@code null}
+     */
+    AnalysisSingleFlightService(@Qualifier("analysisTaskExecutor") ExecutorService executor, MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.coalesced = meterRegistry.counter("prcopilot.singleflight.coalesced");
+        meterRegistry.gaugeMapSize("prcopilot.singleflight.in.flight", Tags.empty(), inFlight);
+    }
+
+    /**
+     * Executes {@code call} for the given key, or joins the call already in flight for it.
+     *
+     * @param key           the fingerprint identifying identical calls, must not be {@code null}
+     * @param timeoutMillis how long this caller waits for the result, in milliseconds
+     * @param call          the call to execute if none is in flight, must not be {@code null}
+     * @param <T>           the result type
+     * @return the result of the shared call, never {@code null} unless {@code call} returns {@code null}
+     * @throws RuntimeException           the exception thrown by the shared call, delivered to every waiter
+     * @throws CustomApiException         with status 504 if the result is not ready within {@code timeoutMillis};
+     *                                    the shared call keeps running unless this was its last waiter
+     * @throws IllegalStateException      if the waiting thread is interrupted; the shared call keeps running
+     *                                    unless this was its last waiter
+     * @throws RejectedExecutionException if the executor does not accept the call, for example while shutting down
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, long timeoutMillis, Supplier<T> call) {
+        while (true) {
+            Flight created = new Flight();
+            Flight shared = inFlight.putIfAbsent(key, created);
+
+            if (shared == null) {
+                try {
+                    created.task = executor.submit(() -> {
+                        // Removed before completing, so a caller woken by the result can never join this finished call
+                        try {
+                            T result = call.get();
+                            inFlight.remove(key, created);
+                            created.result.complete(result);
+                        } catch (Throwable t) {
+                            inFlight.remove(key, created);
+                            created.result.completeExceptionally(t);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Callers that joined in the meantime get the rejection instead of waiting for a call that never runs
+                    inFlight.remove(key, created);
+                    created.result.completeExceptionally(e);
+                    throw e;
+                }
+                return (T) await(key, created, timeoutMillis);
+            }
+
+            if (shared.join()) {
+                coalesced.increment();
+                log.debug("Joining in-flight analysis call for key {}", key);
+                return (T) await(key, shared, timeoutMillis);
+            }
+
+            // Every waiter of this call has given up and it is being cancelled, so start a new one
+            inFlight.remove(key, shared);
+        }
+    }
+
+    private Object await(String key, Flight flight, long timeoutMillis) {
+        try {
+            return flight.result.get(Math.max(0, timeoutMillis), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            leave(key, flight);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for in-flight analysis call", e);
+        } catch (TimeoutException e) {
+            leave(key, flight);
+            throw new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Gives up waiting for a shared call, cancelling it if this was its last waiter.
+     */
+    private void leave(String key, Flight flight) {
+        if (!flight.leave()) return;
+        inFlight.remove(key, flight);
+        Future<?> task = flight.task;
+        if (task != null) task.cancel(true);
+        log.debug("Cancelled in-flight analysis call for key {} after its last waiter gave up", key);
+    }
+
+    /**
+     * A shared call and the number of callers still waiting for it.
+     */
+    private static final class Flight {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private volatile Future<?> task;
+        private int waiters = 1;
+
+        synchronized boolean join() {
+            if (waiters == 0) return false;
+            waiters++;
+            return true;
+        }
+
+        synchronized boolean leave() {
+            return --waiters == 0;
+        }
+    }
+}
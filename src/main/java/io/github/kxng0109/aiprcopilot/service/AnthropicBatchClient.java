@@ -0,0 +1,178 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.ModelOutputSchema;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client of the Anthropic Message Batches API.
+ * <p>
+ * Items are submitted as Messages API requests in a single batch. Once the batch has ended, its JSONL results are
+ * downloaded from the batch's {@code results_url}; items that errored, expired or were cancelled come back as
+ * failed results. With structured output enabled, the analysis is requested as the input of a forced tool call,
+ * as for regular calls, and that input is returned as the item's output.
+ */
+@Service
+@Slf4j
+class AnthropicBatchClient implements ProviderBatchClient {
+
+    private static final String API_VERSION = "2023-06-01";
+
+    private final MultiAiConfigurationProperties aiConfigurationProperties;
+    private final ObjectMapper objectMapper;
+    private final RestClient restClient;
+    private final String model;
+
+    /**
+     * Constructs an {@code AnthropicBatchClient} for the configured Anthropic base URL, API key and model.
+     *
+     * @param aiConfigurationProperties the AI configuration holding temperature and token limits, must not be {@code null}
+     * @param objectMapper              the mapper reading result lines, must not be {@code null}
+     * @param restClientBuilder         the builder of the client calling Anthropic, must not be {@code null}
+     * @param environment               the environment holding the {@code spring.ai.anthropic} settings, must not be {@code null}
+     */
+    AnthropicBatchClient(
+            MultiAiConfigurationProperties aiConfigurationProperties,
+            ObjectMapper objectMapper,
+            RestClient.Builder restClientBuilder,
+            Environment environment
+    ) {
+        this.aiConfigurationProperties = aiConfigurationProperties;
+        this.objectMapper = objectMapper;
+        this.model = environment.getProperty("spring.ai.anthropic.chat.options.model", "claude-sonnet-4-0");
+        this.restClient = restClientBuilder.clone()
+                                           .baseUrl(environment.getProperty("spring.ai.anthropic.base-url", "https://api.anthropic.com"))
+                                           .defaultHeader("x-api-key", environment.getProperty("spring.ai.anthropic.api-key", ""))
+                                           .defaultHeader("anthropic-version", API_VERSION)
+                                           .build();
+    }
+
+    @Override
+    public AiProvider provider() {
+        return AiProvider.ANTHROPIC;
+    }
+
+    @Override
+    public String submit(List<Item> items) {
+        List<Map<String, Object>> requests = new ArrayList<>();
+        for (Item item : items) {
+            requests.add(Map.of("custom_id", item.customId(), "params", params(item)));
+        }
+
+        JsonNode batch = restClient.post()
+                                   .uri("/v1/messages/batches")
+                                   .contentType(MediaType.APPLICATION_JSON)
+                                   .body(Map.of("requests", requests))
+                                   .retrieve()
+                                   .body(JsonNode.class);
+        return batch.path("id").asText();
+    }
+
+    @Override
+    public State poll(String batchId) {
+        JsonNode batch = batch(batchId);
+        return "ended".equals(batch.path("processing_status").asText())
+                ? new State(Status.ENDED, null)
+                : new State(Status.IN_PROGRESS, null);
+    }
+
+    @Override
+    public List<Result> results(String batchId) {
+        String resultsUrl = batch(batchId).path("results_url").asText(null);
+        if (resultsUrl == null || resultsUrl.isBlank()) return List.of();
+
+        String content = restClient.get()
+                                   .uri(resultsUrl)
+                                   .retrieve()
+                                   .body(String.class);
+        if (content == null) return List.of();
+
+        List<Result> results = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            if (!line.isBlank()) results.add(result(line));
+        }
+        return results;
+    }
+
+    private JsonNode batch(String batchId) {
+        return restClient.get()
+                         .uri("/v1/messages/batches/{batchId}", batchId)
+                         .retrieve()
+                         .body(JsonNode.class);
+    }
+
+    private Map<String, Object> params(Item item) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("model", model);
+        params.put("max_tokens", aiConfigurationProperties.getMaxTokens());
+        params.put("temperature", aiConfigurationProperties.getTemperature());
+        params.put("system", ProviderBatchClient.text(item.prompt(), MessageType.SYSTEM));
+        params.put("messages", List.of(
+                Map.of("role", "user", "content", ProviderBatchClient.text(item.prompt(), MessageType.USER))
+        ));
+        if (aiConfigurationProperties.isStructuredOutput()) {
+            params.put("tools", List.of(Map.of(
+                    "name", ModelOutputSchema.TOOL_NAME,
+                    "description", "Submits the analysis of the diff.",
+                    "input_schema", ModelOutputSchema.asMap()
+            )));
+            params.put("tool_choice", Map.of("type", "tool", "name", ModelOutputSchema.TOOL_NAME));
+        }
+        return params;
+    }
+
+    private Result result(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping unreadable line of an Anthropic batch result file: {}", e.getOriginalMessage());
+            return new Result(null, null, "Unreadable result");
+        }
+
+        String customId = node.path("custom_id").asText();
+        JsonNode result = node.path("result");
+        String type = result.path("type").asText();
+        if (!"succeeded".equals(type)) {
+            return new Result(customId, null, result.at("/error/error/message").asText("Request " + type));
+        }
+
+        JsonNode message = result.path("message");
+        return new Result(customId, ProviderBatchClient.chatResponse(
+                output(message.path("content")),
+                message.path("model").asText(null),
+                message.at("/usage/input_tokens").isNumber() ? message.at("/usage/input_tokens").asInt() : null,
+                message.at("/usage/output_tokens").isNumber() ? message.at("/usage/output_tokens").asInt() : null,
+                message.path("stop_reason").asText(null)
+        ), null);
+    }
+
+    /**
+     * Returns the text of a message's content blocks or, if it has none, the input of its first tool call.
+     */
+    private String output(JsonNode content) {
+        StringBuilder text = new StringBuilder();
+        JsonNode toolInput = null;
+        for (JsonNode block : content) {
+            String type = block.path("type").asText();
+            if ("text".equals(type)) text.append(block.path("text").asText());
+            if ("tool_use".equals(type) && toolInput == null) toolInput = block.path("input");
+        }
+        if (!text.isEmpty() || toolInput == null) return text.toString();
+        return toolInput.toString();
+    }
+}
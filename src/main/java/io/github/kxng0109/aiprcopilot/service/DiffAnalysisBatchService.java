@@ -0,0 +1,330 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.BatchAnalyzeDiffResult;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotBatchProperties;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Service analyzing a batch of diffs sent as newline-delimited JSON.
+ * <p>
+ * Every non-blank line of the request body is an {@code AnalyzeDiffRequest}. Lines are analyzed through
+ * {@code DiffAnalysisService}, at most {@code prcopilot.batch.concurrency} at a time, and one
+ * {@code BatchAnalyzeDiffResult} per line is written back as newline-delimited JSON in the order the analyses
+ * finish. The body is read as the batch progresses: the next line is only read once an analysis has finished and
+ * its result was written, so a slow client or slow providers hold back reading instead of filling memory. A line is
+ * read up to twice the largest diff the analysis accepts plus {@code LINE_OVERHEAD_CHARS} for the JSON escaping and
+ * the other fields; a longer line is skipped without being held in memory and gets a {@code 413} result. The reader
+ * and the analyses run on the managed analysis executor, and the response times out after
+ * {@code prcopilot.batch.timeout-millis}.
+ * <p>
+ * Lines without a {@code priority} are analyzed in the {@code BULK} lane, so a batch does not crowd out
+ * interactive requests for provider capacity. A tenant given for the whole batch overrides the tenant of every line.
+ * <p>
+ * A line that fails, because it is not a valid request or its analysis failed, produces a result with an
+ * {@code ErrorResponse} and does not stop the batch. If the client goes away or the response times out, analyses
+ * still running are interrupted and no further lines are read.
+ * <p>
+ * Results are counted by {@code prcopilot.batch.items}, tagged by outcome, and the batches in progress are
+ * published as the {@code prcopilot.batch.active} gauge.
+ */
+@Service
+@Slf4j
+public class DiffAnalysisBatchService {
+
+    private static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.UTF_8);
+    private static final int LINE_OVERHEAD_CHARS = 16 * 1024;
+
+    private final PrCopilotBatchProperties batchProperties;
+    private final PrCopilotAnalysisProperties analysisProperties;
+    private final DiffAnalysisService diffAnalysisService;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger activeBatches = new AtomicInteger();
+
+    /**
+     * Constructs a {@code DiffAnalysisBatchService} and registers its metrics.
+     *
+     * @param batchProperties     the batch configuration, must not be {@code null}
+     * @param analysisProperties  the analysis configuration holding the diff size limits, must not be {@code null}
+     * @param diffAnalysisService the service analyzing each request, must not be {@code null}
+     * @param executor            the managed executor the reader and the analyses run on, must not be {@code null}
+     * @param objectMapper        the mapper reading requests and writing results, must not be {@code null}
+     * @param validator           the validator requests are checked with, must not be {@code null}
+     * @param meterRegistry       the registry to publish metrics to, must not be {@code null}
+     */
+    DiffAnalysisBatchService(
+            PrCopilotBatchProperties batchProperties,
+            PrCopilotAnalysisProperties analysisProperties,
+            DiffAnalysisService diffAnalysisService,
+            @Qualifier("analysisTaskExecutor") ExecutorService executor,
+            ObjectMapper objectMapper,
+            Validator validator,
+            MeterRegistry meterRegistry
+    ) {
+        this.batchProperties = batchProperties;
+        this.analysisProperties = analysisProperties;
+        this.diffAnalysisService = diffAnalysisService;
+        this.executor = executor;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.meterRegistry = meterRegistry;
+
+        meterRegistry.gauge("prcopilot.batch.active", activeBatches);
+    }
+
+    /**
+     * Starts analyzing the batch read from {@code body}.
+     * <p>
+     * The body is read on a separate thread, so it must stay open until the returned emitter completes.
+     *
+     * @param body   the request body, one {@code AnalyzeDiffRequest} per line, must not be {@code null}
+     * @param tenant the tenant every line is charged to, may be {@code null} to use the tenant of each line
+     * @return the emitter the results are written to, never {@code null}
+     * @throws CustomApiException with status 503 if the executor does not accept the batch, for example while
+     *                            shutting down
+     */
+    public ResponseBodyEmitter analyzeBatch(InputStream body, String tenant) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchProperties.getTimeoutMillis());
+        Batch batch = new Batch(emitter, batchProperties.getConcurrency(), tenant);
+        emitter.onTimeout(batch::cancel);
+        emitter.onError(error -> batch.cancel());
+
+        try {
+            executor.execute(() -> batch.run(body));
+        } catch (RejectedExecutionException e) {
+            throw new CustomApiException("The analysis executor is shutting down", HttpStatus.SERVICE_UNAVAILABLE, e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Returns the longest line read from a batch: twice the largest diff the analysis accepts, for JSON escaping,
+     * plus room for the other fields.
+     */
+    private int maxLineChars() {
+        long maxDiffChars = analysisProperties.isChunkingEnabled()
+                ? (long) analysisProperties.getMaxDiffChars() * analysisProperties.getMaxChunks()
+                : analysisProperties.getMaxDiffChars();
+        return (int) Math.min(Integer.MAX_VALUE - 8, 2 * maxDiffChars + LINE_OVERHEAD_CHARS);
+    }
+
+    /**
+     * Analyzes a single line of a batch.
+     */
+    BatchAnalyzeDiffResult analyzeLine(long lineNumber, String line, String tenant) {
+        AnalyzeDiffRequest request;
+        try {
+            request = objectMapper.readValue(line, AnalyzeDiffRequest.class);
+        } catch (JsonProcessingException e) {
+            return failed(lineNumber, null, HttpStatus.BAD_REQUEST,
+                          "Line " + lineNumber + " is not a valid request: " + e.getOriginalMessage());
+        }
+
+        if (request == null) {
+            return failed(lineNumber, null, HttpStatus.BAD_REQUEST, "Line " + lineNumber + " is not a valid request");
+        }
+
+        Set<ConstraintViolation<AnalyzeDiffRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return failed(lineNumber, request.requestId(), HttpStatus.BAD_REQUEST, violations.stream()
+                                                                                            .map(ConstraintViolation::getMessage)
+                                                                                            .sorted()
+                                                                                            .collect(Collectors.joining(", ")));
+        }
+        request = request.withTenant(tenant);
+        if (request.priority() == null) request = request.toBuilder().priority(AnalysisPriority.BULK).build();
+
+        try {
+            return BatchAnalyzeDiffResult.builder()
+                                         .line(lineNumber)
+                                         .requestId(request.requestId())
+                                         .response(diffAnalysisService.analyzeDiff(request))
+                                         .build();
+        } catch (RuntimeException e) {
+            log.warn("Batch analysis of line {} (requestId '{}') failed: {}", lineNumber, request.requestId(), e.getMessage());
+            return failed(lineNumber, request.requestId(), AnalysisFailures.statusOf(e), e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the next line, without its line terminator, holding at most {@code maxChars} characters of it in memory.
+     *
+     * @return the line, without its text if it had more than {@code maxChars} characters, or {@code null} at the
+     * end of the body
+     */
+    private static Line readLine(Reader reader, int maxChars) throws IOException {
+        StringBuilder line = new StringBuilder();
+        boolean tooLong = false;
+        int next;
+        while ((next = reader.read()) != -1 && next != '\n') {
+            if (tooLong) continue;
+            if (line.length() == maxChars) {
+                tooLong = true;
+                line.setLength(0);
+                continue;
+            }
+            line.append((char) next);
+        }
+        if (next == -1 && line.isEmpty() && !tooLong) return null;
+        if (tooLong) return new Line(null, true);
+
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r') end--;
+        return new Line(line.substring(0, end), false);
+    }
+
+    private BatchAnalyzeDiffResult failed(long lineNumber, String requestId, HttpStatus status, String message) {
+        return BatchAnalyzeDiffResult.builder()
+                                     .line(lineNumber)
+                                     .requestId(requestId)
+                                     .error(AnalysisFailures.errorResponse(status, message, requestId))
+                                     .build();
+    }
+
+    /**
+     * A line of a batch, or a line that was too long to keep.
+     *
+     * @param text    the line without its terminator, {@code null} if it was too long
+     * @param tooLong whether the line had more characters than a batch line may have
+     */
+    private record Line(String text, boolean tooLong) {
+    }
+
+    /**
+     * The state of one batch: its emitter, its tenant, the permits bounding the analyses in flight and the analyses
+     * still running.
+     */
+    private final class Batch {
+
+        private final ResponseBodyEmitter emitter;
+        private final int concurrency;
+        private final String tenant;
+        private final Semaphore permits;
+        private final Set<FutureTask<?>> running = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+
+        private Batch(ResponseBodyEmitter emitter, int concurrency, String tenant) {
+            this.emitter = emitter;
+            this.concurrency = concurrency;
+            this.tenant = tenant;
+            this.permits = new Semaphore(concurrency);
+        }
+
+        /**
+         * Reads the body line by line, starting an analysis for each line once a permit is free, and completes the
+         * emitter once every analysis has been written.
+         */
+        private void run(InputStream body) {
+            activeBatches.incrementAndGet();
+            long lines = 0;
+            int maxLineChars = maxLineChars();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                Line line;
+                long lineNumber = 0;
+                while (!cancelled && (line = readLine(reader, maxLineChars)) != null) {
+                    lineNumber++;
+                    if (line.tooLong()) {
+                        lines++;
+                        write(failed(lineNumber, null, HttpStatus.PAYLOAD_TOO_LARGE, String.format(
+                                "Line %d exceeded maximum allowed size of %d characters", lineNumber, maxLineChars
+                        )));
+                        continue;
+                    }
+                    if (line.text().isBlank()) continue;
+
+                    lines++;
+                    permits.acquire();
+                    if (cancelled) break;
+                    long current = lineNumber;
+                    String request = line.text();
+                    // The permit is returned on completion or cancellation, even if a cancelled analysis never started
+                    FutureTask<Void> analysis = new FutureTask<>(() -> write(analyzeLine(current, request, tenant)), null) {
+                        @Override
+                        protected void done() {
+                            running.remove(this);
+                            permits.release();
+                        }
+                    };
+                    running.add(analysis);
+                    try {
+                        executor.execute(analysis);
+                    } catch (RejectedExecutionException e) {
+                        analysis.cancel(false);
+                        break;
+                    }
+                }
+
+                permits.acquire(concurrency);
+                if (!cancelled) emitter.complete();
+                log.info("Batch of {} requests finished{}", lines, cancelled ? " early, the client went away or it timed out" : "");
+            } catch (IOException e) {
+                log.warn("Could not read batch request body after {} requests: {}", lines, e.getMessage());
+                cancel();
+                emitter.completeWithError(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                emitter.completeWithError(e);
+            } finally {
+                activeBatches.decrementAndGet();
+            }
+        }
+
+        private void write(BatchAnalyzeDiffResult result) {
+            meterRegistry.counter("prcopilot.batch.items", "outcome", result.error() == null ? "success" : "failure")
+                         .increment();
+            if (cancelled) return;
+
+            try {
+                byte[] json = objectMapper.writeValueAsBytes(result);
+                byte[] data = Arrays.copyOf(json, json.length + NEWLINE.length);
+                System.arraycopy(NEWLINE, 0, data, json.length, NEWLINE.length);
+                synchronized (emitter) {
+                    emitter.send(data, MediaType.APPLICATION_OCTET_STREAM);
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Could not write batch result for line {}, client is gone: {}", result.line(), e.getMessage());
+                cancel();
+                emitter.completeWithError(e);
+            }
+        }
+
+        private void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            running.forEach(analysis -> analysis.cancel(true));
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package io.github.kxng0109.aiprcopilot.service;
 
+import io.github.kxng0109.aiprcopilot.api.dto.AiCallAttempt;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
 import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
 import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.AiFallbackChain;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
 import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
 import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
 import io.github.kxng0109.aiprcopilot.config.PrCopilotLoggingProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
 import io.github.kxng0109.aiprcopilot.error.CustomApiException;
 import io.github.kxng0109.aiprcopilot.error.DiffTooLargeException;
 import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
@@ -15,9 +20,24 @@ import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -25,31 +45,41 @@ import javax.annotation.Nullable;
 public class DiffAnalysisService {
 
     private final PrCopilotAnalysisProperties analysisProperties;
-    private final ChatClient primaryChatClient;
-    private final ChatOptions primaryChatOptions;
+    private final AiModelRouterService modelRouterService;
     private final PrCopilotLoggingProperties loggingProperties;
     private final MultiAiConfigurationProperties multiAiConfigurationProperties;
     private final PromptBuilderService promptBuilderService;
     private final AiChatService aiChatService;
     private final DiffResponseMapperService diffResponseMapperService;
+    private final ModelOutputRepairService modelOutputRepairService;
+    private final DiffChunkingService diffChunkingService;
+    private final AnalysisCacheService analysisCacheService;
+    private final AnalysisSingleFlightService analysisSingleFlightService;
+    private final AiHedgingService aiHedgingService;
+    private final TenantSchedulerService tenantSchedulerService;
+    private final MicroBatchService microBatchService;
 
-    @Qualifier("fallbackChatClient")
-    @Nullable
-    private final ChatClient fallbackChatClient;
+    private final AiFallbackChain fallbackChain;
 
-    @Qualifier("fallbackChatOptions")
-    @Nullable
-    private final ChatOptions fallbackChatOptions;
+    @Qualifier("analysisTaskExecutor")
+    private final ExecutorService analysisTaskExecutor;
 
     /**
      * Analyzes a code diff and generates a structured response with analysis details.
+     * <p>
+     * Diffs larger than the configured maximum are split into chunks and analyzed in parallel
+     * when chunking is enabled; otherwise they are rejected.
+     * <p>
+     * When tenant scheduling is enabled, the analysis waits for its tenant's quota and its fair share of the
+     * analysis slots through {@code TenantSchedulerService} first.
      *
      * @param request the {@code AnalyzeDiffRequest} containing the diff content and associated parameters, must not be {@code null}
      * @return the {@code AnalyzeDiffResponse} containing the analysis result, never {@code null}
-     * @throws DiffTooLargeException     if the diff exceeds the maximum allowed size
+     * @throws DiffTooLargeException     if the diff exceeds the maximum allowed size and can not be chunked
      * @throws IllegalArgumentException  if the request is {@code null} or contains invalid parameters
      * @throws ModelOutputParseException if the AI model output could not be parsed
-     * @throws RuntimeException          if an internal error occurs and both primary and fallback providers fail
+     * @throws CapacityExceededException if the tenant is over its quota or got no analysis slot in time
+     * @throws RuntimeException          if an internal error occurs and the primary and every fallback provider fail
      */
     public AnalyzeDiffResponse analyzeDiff(AnalyzeDiffRequest request) {
         String diff = request.diff();
@@ -57,13 +87,104 @@ public class DiffAnalysisService {
         int maxDiffChars = analysisProperties.getMaxDiffChars();
         log.debug("Max diff chars set to: {}", maxDiffChars);
         if (diff.length() > maxDiffChars) {
+            if (!analysisProperties.isChunkingEnabled()) {
+                throw new DiffTooLargeException(
+                        String.format("Diff exceeded maximum allowed size of %d characters",
+                                      maxDiffChars
+                        )
+                );
+            }
+
+            return tenantSchedulerService.schedule(request, () -> analyzeInChunks(request, maxDiffChars));
+        }
+
+        return tenantSchedulerService.schedule(request, () -> analyzeSingleDiff(request, diff, deadlineMillis()));
+    }
+
+    /**
+     * Splits an oversized diff into chunks, analyzes them in parallel and merges the results.
+     * <p>
+     * At most {@code maxParallelChunks} chunks are sent to the provider at the same time, so
+     * wall-clock time tracks the slowest chunk rather than the size of the whole diff. All chunks share the
+     * request's deadline. Once one chunk fails or the deadline passes, the chunks still running or waiting are
+     * interrupted, so they stop spending tokens on a request that has already failed.
+     *
+     * @param request      the original request, must not be {@code null}
+     * @param maxDiffChars the maximum number of characters per chunk, must be positive
+     * @return the merged {@code AnalyzeDiffResponse}, never {@code null}
+     * @throws DiffTooLargeException if the diff splits into more than {@code maxChunks} chunks
+     * @throws CustomApiException    with status 504 if the chunks are not all analyzed before the deadline
+     */
+    private AnalyzeDiffResponse analyzeInChunks(AnalyzeDiffRequest request, int maxDiffChars) {
+        List<String> chunks = diffChunkingService.splitDiff(request.diff(), maxDiffChars);
+        int maxChunks = analysisProperties.getMaxChunks();
+        if (chunks.size() > maxChunks) {
             throw new DiffTooLargeException(
-                    String.format("Diff exceeded maximum allowed size of %d characters",
+                    String.format("Diff exceeded maximum allowed size of %d chunks of %d characters",
+                                  maxChunks,
                                   maxDiffChars
                     )
             );
         }
 
+        log.debug("Analyzing diff for requestId '{}' in {} chunks", request.requestId(), chunks.size());
+
+        Semaphore permits = new Semaphore(Math.max(1, analysisProperties.getMaxParallelChunks()));
+        long start = System.currentTimeMillis();
+        long deadlineMillis = deadlineMillis();
+
+        List<Future<AnalyzeDiffResponse>> futures = new ArrayList<>();
+        for (String chunk : chunks) {
+            futures.add(analysisTaskExecutor.submit(() -> {
+                permits.acquire();
+                try {
+                    return analyzeSingleDiff(request, chunk, deadlineMillis);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        List<AnalyzeDiffResponse> responses = new ArrayList<>();
+        try {
+            for (Future<AnalyzeDiffResponse> future : futures) {
+                responses.add(future.get(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new RuntimeException("Could not analyze diff chunk. " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            futures.forEach(future -> future.cancel(true));
+            log.warn("Chunked analysis for requestId '{}' ran past its deadline", request.requestId());
+            throw new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT);
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CustomApiException("AI Model request was interrupted", HttpStatus.SERVICE_UNAVAILABLE, e);
+        }
+
+        long latencyMs = System.currentTimeMillis() - start;
+
+        return diffChunkingService.mergeResponses(
+                responses,
+                request.requestId(),
+                request.maxSummaryLength(),
+                latencyMs
+        );
+    }
+
+    /**
+     * Analyzes a single diff that fits within the configured size limit.
+     *
+     * @param request        the original request, must not be {@code null}
+     * @param diff           the diff, or diff chunk, to analyze, must not be {@code null}
+     * @param deadlineMillis the epoch millisecond by which the request must be answered
+     * @return the {@code AnalyzeDiffResponse} containing the analysis result, never {@code null}
+     * @throws ModelOutputParseException if the AI model output could not be parsed
+     * @throws RuntimeException          if an internal error occurs and the primary and every fallback provider fail
+     */
+    private AnalyzeDiffResponse analyzeSingleDiff(AnalyzeDiffRequest request, String diff, long deadlineMillis) {
         String language = useDefaultIfBlank(request.language(), analysisProperties.getDefaultLanguage());
         String style = useDefaultIfBlank(request.style(), analysisProperties.getDefaultStyle());
         Integer maxSummaryLength = request.maxSummaryLength();
@@ -78,24 +199,43 @@ public class DiffAnalysisService {
 
         if (loggingProperties.isLogPrompts()) log.info(prompt.toString());
 
+        AiLoadBalancerService.Selection primary = modelRouterService.route(diff);
+        // The balancer may pick a provider that is also in the chain; retrying it would repeat the failed call
+        List<AiFallbackChain.Step> fallbacks = multiAiConfigurationProperties.isAutoFallback()
+                ? fallbackChain.steps().stream().filter(step -> step.provider() != primary.provider()).toList()
+                : List.of();
+
+        if (multiAiConfigurationProperties.isHedgeEnabled() && !fallbacks.isEmpty()) {
+            return analyzeHedged(request, diff, prompt, language, style, primary, fallbacks, deadlineMillis);
+        }
+
+        List<AiCallAttempt> attempts = new ArrayList<>();
+        long attemptStart = System.currentTimeMillis();
         try {
-            log.debug("Attempting to use primary provider: {}", multiAiConfigurationProperties.getProvider());
+            log.debug("Attempting to use primary provider: {}", primary.provider());
 
-            return callAiAndBuildResponse(
+            AnalyzeDiffResponse response = callSelected(primary, () -> callAiAndBuildResponse(
                     request,
                     diff,
                     prompt,
-                    primaryChatClient,
-                    primaryChatOptions,
-                    multiAiConfigurationProperties.getProvider().getValue()
-            );
+                    language,
+                    style,
+                    primary.chatClient(),
+                    primary.chatOptions(),
+                    primary.provider(),
+                    attemptTimeoutMillis(deadlineMillis, fallbacks.size()),
+                    true
+            ));
+            attempts.add(attempt(primary.provider(), null, attemptStart));
+            return withAttempts(response, attempts);
         } catch (ModelOutputParseException e) {
             log.warn("Model output could not be parsed for requestId '{}': {}", request.requestId(), e.getMessage());
             throw e;
         } catch (Exception primaryException) {
+            attempts.add(attempt(primary.provider(), primaryException, attemptStart));
             if (primaryException instanceof CustomApiException) {
                 log.error("An error occurred while using primary provider '{}' for requestId {}: {}",
-                          multiAiConfigurationProperties.getProvider().getValue(),
+                          primary.provider().getValue(),
                           request.requestId(),
                           primaryException.getMessage(),
                           primaryException
@@ -103,61 +243,16 @@ public class DiffAnalysisService {
             } else {
                 log.error("Unexpected error in diff analysis for requestId '{}' while using primary provider: {}. {}",
                           request.requestId(),
-                          multiAiConfigurationProperties.getProvider().getValue(),
+                          primary.provider().getValue(),
                           primaryException.getMessage(),
                           primaryException
                 );
             }
 
-            if (multiAiConfigurationProperties.isAutoFallback() && fallbackChatClient != null) {
-                try {
-                    log.debug("Attempting to use fallback chat client: {}",
-                              multiAiConfigurationProperties.getFallbackProvider()
-                    );
-
-                    return callAiAndBuildResponse(
-                            request,
-                            diff,
-                            prompt,
-                            fallbackChatClient,
-                            fallbackChatOptions,
-                            multiAiConfigurationProperties.getFallbackProvider().getValue()
-                    );
-                } catch (Exception fallBackException) {
-                    if (fallBackException instanceof CustomApiException) {
-                        log.error("An error occurred while using primary provider '{}' for requestId {}: {}",
-                                  multiAiConfigurationProperties.getFallbackProvider().getValue(),
-                                  request.requestId(),
-                                  fallBackException.getMessage(),
-                                  fallBackException
-                        );
-
-                        throw new CustomApiException(
-                                String.format(
-                                        "An error occurred. Primary: %s. Fallback: %s",
-                                        primaryException.getMessage(),
-                                        fallBackException.getMessage()
-                                ),
-                                ((CustomApiException) fallBackException).getHttpStatus(),
-                                fallBackException
-                        );
-                    } else {
-                        log.error(
-                                "Unexpected error in diff analysis for requestId '{}' while using fallback provider: {}",
-                                request.requestId(),
-                                multiAiConfigurationProperties.getFallbackProvider().getValue(),
-                                fallBackException
-                        );
-
-                        throw new RuntimeException(
-                                String.format(
-                                        "Could not process diff analysis due to internal error across the two providers. %s. %s",
-                                        primaryException.getMessage(),
-                                        fallBackException.getMessage()
-                                ), fallBackException
-                        );
-                    }
-                }
+            if (!fallbacks.isEmpty()) {
+                return analyzeWithFallbacks(request, diff, prompt, language, style, fallbacks, deadlineMillis,
+                                            primaryException, new ArrayList<>(), attempts
+                );
             }
 
             log.debug("No fallback available. Auto-fallback is disabled or no fallback client is configured.");
@@ -173,14 +268,363 @@ public class DiffAnalysisService {
         }
     }
 
+    /**
+     * Tries the fallback providers in order after the primary has failed, until one of them succeeds or the
+     * request's deadline has passed.
+     *
+     * @param request          the original request, must not be {@code null}
+     * @param diff             the diff, or diff chunk, to analyze, must not be {@code null}
+     * @param prompt           the prompt to send, must not be {@code null}
+     * @param language         the resolved analysis language, must not be {@code null}
+     * @param style            the resolved analysis style, must not be {@code null}
+     * @param fallbacks          the fallback providers in the order to try them, must not be {@code null} or empty
+     * @param deadlineMillis     the epoch millisecond by which the request must be answered
+     * @param primaryException   the failure of the primary provider, must not be {@code null}
+     * @param fallbackExceptions the failures of fallback providers tried so far, which this method appends to, must
+     *                           not be {@code null}
+     * @param attempts           the attempts made so far, which this method appends to, must not be {@code null}
+     * @return the response of the first fallback provider that succeeded, never {@code null}
+     * @throws RuntimeException if every fallback provider fails or the deadline passes
+     */
+    private AnalyzeDiffResponse analyzeWithFallbacks(
+            AnalyzeDiffRequest request,
+            String diff,
+            Prompt prompt,
+            String language,
+            String style,
+            List<AiFallbackChain.Step> fallbacks,
+            long deadlineMillis,
+            Throwable primaryException,
+            List<Throwable> fallbackExceptions,
+            List<AiCallAttempt> attempts
+    ) {
+        AiProvider lastProvider = null;
+        for (int i = 0; i < fallbacks.size(); i++) {
+            AiFallbackChain.Step step = fallbacks.get(i);
+            long attemptStart = System.currentTimeMillis();
+            if (attemptStart >= deadlineMillis) {
+                log.warn("No time left to try fallback provider '{}' for requestId '{}'",
+                         step.provider().getValue(),
+                         request.requestId()
+                );
+                CustomApiException timeout = new CustomApiException(
+                        String.format("AI Model request timed out before trying provider '%s'", step.provider().getValue()),
+                        HttpStatus.GATEWAY_TIMEOUT
+                );
+                attempts.add(attempt(step.provider(), timeout, attemptStart));
+                fallbackExceptions.add(timeout);
+                lastProvider = step.provider();
+                break;
+            }
+
+            try {
+                log.debug("Attempting to use fallback provider: {}", step.provider());
+
+                AnalyzeDiffResponse response = callAiAndBuildResponse(
+                        request,
+                        diff,
+                        prompt,
+                        language,
+                        style,
+                        step.chatClient(),
+                        step.chatOptions(),
+                        step.provider(),
+                        attemptTimeoutMillis(deadlineMillis, fallbacks.size() - i - 1),
+                        true
+                );
+                attempts.add(attempt(step.provider(), null, attemptStart));
+                return withAttempts(response, attempts);
+            } catch (Exception fallBackException) {
+                attempts.add(attempt(step.provider(), fallBackException, attemptStart));
+                fallbackExceptions.add(fallBackException);
+                lastProvider = step.provider();
+                log.warn("Fallback provider '{}' failed for requestId '{}': {}",
+                         step.provider().getValue(),
+                         request.requestId(),
+                         fallBackException.getMessage()
+                );
+            }
+        }
+
+        throw allProvidersFailed(request, primaryException, fallbackExceptions, lastProvider);
+    }
+
+    /**
+     * Returns the deadline of a request starting now: {@code timeoutMillis} from now.
+     *
+     * @return the epoch millisecond by which the request must be answered
+     */
+    private long deadlineMillis() {
+        return System.currentTimeMillis() + multiAiConfigurationProperties.getTimeoutMillis();
+    }
+
+    /**
+     * Returns how long the next attempt may take: what is left until the deadline, less
+     * {@code fallbackMinAttemptMillis} for each provider still to come after it, but never less than
+     * {@code fallbackMinAttemptMillis} itself while that much time is left.
+     *
+     * @param deadlineMillis     the epoch millisecond by which the request must be answered
+     * @param remainingFallbacks the number of fallback providers that may still be tried after this attempt
+     * @return the attempt's timeout in milliseconds
+     */
+    private long attemptTimeoutMillis(long deadlineMillis, int remainingFallbacks) {
+        long remaining = deadlineMillis - System.currentTimeMillis();
+        long reserve = multiAiConfigurationProperties.getFallbackMinAttemptMillis();
+        return Math.max(remaining - reserve * remainingFallbacks, Math.min(reserve, remaining));
+    }
+
+    /**
+     * Records the outcome and latency of a single attempt.
+     *
+     * @param provider     the provider that was called, must not be {@code null}
+     * @param failure      the failure of the attempt, or {@code null} if it succeeded
+     * @param attemptStart the epoch millisecond the attempt started at
+     * @return the recorded attempt, never {@code null}
+     */
+    private AiCallAttempt attempt(AiProvider provider, @Nullable Exception failure, long attemptStart) {
+        String outcome;
+        if (failure == null) {
+            outcome = "success";
+        } else if (failure instanceof CapacityExceededException
+                || failure instanceof CustomApiException e && e.getHttpStatus() == HttpStatus.SERVICE_UNAVAILABLE) {
+            outcome = "rejected";
+        } else if (failure instanceof CustomApiException e && e.getHttpStatus() == HttpStatus.GATEWAY_TIMEOUT) {
+            outcome = "timeout";
+        } else {
+            outcome = "error";
+        }
+        return new AiCallAttempt(provider.getValue(), outcome, System.currentTimeMillis() - attemptStart);
+    }
+
+    private AnalyzeDiffResponse withAttempts(AnalyzeDiffResponse response, List<AiCallAttempt> attempts) {
+        if (response.metadata() == null) return response;
+        return response.toBuilder()
+                       .metadata(response.metadata().toBuilder().attempts(List.copyOf(attempts)).build())
+                       .build();
+    }
+
+    /**
+     * Sends the prompt to the primary provider and hedges it with the first fallback provider through
+     * {@code AiHedgingService}. The first response that maps successfully wins. If both calls fail, the remaining
+     * fallback providers are tried in order as {@link #analyzeWithFallbacks} does.
+     * <p>
+     * Hedged calls bypass {@code AnalysisSingleFlightService}, so the losing call can be cancelled. Both calls are
+     * recorded in the response's attempts, the losing one as {@code cancelled} if it was still running.
+     *
+     * @param request        the original request, must not be {@code null}
+     * @param diff           the diff, or diff chunk, to analyze, must not be {@code null}
+     * @param prompt         the prompt to send to both providers, must not be {@code null}
+     * @param language       the resolved analysis language, must not be {@code null}
+     * @param style          the resolved analysis style, must not be {@code null}
+     * @param primary        the provider chosen by {@code AiModelRouterService}, must not be {@code null}
+     * @param fallbacks      the fallback providers, the first of which hedges the primary, must not be {@code null}
+     *                       or empty and must not contain the primary's provider
+     * @param deadlineMillis the epoch millisecond by which the request must be answered
+     * @return the response of the winning provider, never {@code null}
+     * @throws ModelOutputParseException if neither hedged provider returned output that could be parsed
+     * @throws RuntimeException          if every provider fails
+     */
+    private AnalyzeDiffResponse analyzeHedged(
+            AnalyzeDiffRequest request,
+            String diff,
+            Prompt prompt,
+            String language,
+            String style,
+            AiLoadBalancerService.Selection primary,
+            List<AiFallbackChain.Step> fallbacks,
+            long deadlineMillis
+    ) {
+        AiFallbackChain.Step hedge = fallbacks.getFirst();
+        List<AiFallbackChain.Step> remaining = fallbacks.subList(1, fallbacks.size());
+        AtomicBoolean won = new AtomicBoolean();
+        HedgedCall primaryCall = new HedgedCall(primary.provider(), won);
+        HedgedCall hedgeCall = new HedgedCall(hedge.provider(), won);
+        List<AiCallAttempt> attempts = new ArrayList<>(2);
+        try {
+            AnalyzeDiffResponse response = aiHedgingService.execute(
+                    () -> primaryCall.run(() -> callSelected(primary, () -> callAiAndBuildResponse(
+                            request,
+                            diff,
+                            prompt,
+                            language,
+                            style,
+                            primary.chatClient(),
+                            primary.chatOptions(),
+                            primary.provider(),
+                            attemptTimeoutMillis(deadlineMillis, remaining.size()),
+                            false
+                    ))),
+                    () -> hedgeCall.run(() -> callAiAndBuildResponse(
+                            request,
+                            diff,
+                            prompt,
+                            language,
+                            style,
+                            hedge.chatClient(),
+                            hedge.chatOptions(),
+                            hedge.provider(),
+                            attemptTimeoutMillis(deadlineMillis, remaining.size()),
+                            false
+                    ))
+            );
+            primaryCall.addAttemptTo(attempts);
+            hedgeCall.addAttemptTo(attempts);
+            return withAttempts(response, attempts);
+        } catch (AiHedgingService.HedgeFailedException e) {
+            if (e.getPrimaryFailure() instanceof ModelOutputParseException primaryParseFailure
+                    && e.getHedgeFailure() instanceof ModelOutputParseException) {
+                log.warn("Model output could not be parsed for requestId '{}': {}",
+                         request.requestId(),
+                         primaryParseFailure.getMessage()
+                );
+                throw primaryParseFailure;
+            }
+
+            log.error("An error occurred while using primary provider '{}' for requestId {}: {}",
+                      primary.provider().getValue(),
+                      request.requestId(),
+                      e.getPrimaryFailure().getMessage(),
+                      e.getPrimaryFailure()
+            );
+            List<Throwable> fallbackExceptions = new ArrayList<>(List.of(e.getHedgeFailure()));
+            if (remaining.isEmpty()) {
+                throw allProvidersFailed(request, e.getPrimaryFailure(), fallbackExceptions, hedge.provider());
+            }
+
+            log.warn("Hedge provider '{}' also failed for requestId '{}', trying the remaining fallback providers",
+                     hedge.provider().getValue(),
+                     request.requestId()
+            );
+            primaryCall.addAttemptTo(attempts);
+            hedgeCall.addAttemptTo(attempts);
+            return analyzeWithFallbacks(request, diff, prompt, language, style, remaining, deadlineMillis,
+                                        e.getPrimaryFailure(), fallbackExceptions, attempts
+            );
+        } finally {
+            // The primary was cancelled if the hedge won.
+            primary.onIgnored();
+        }
+    }
+
+    /**
+     * Runs a call to the provider chosen by {@code AiModelRouterService} and reports its outcome back.
+     * Output that could not be parsed still counts as a success, since the provider did answer.
+     *
+     * @param selection the chosen provider, must not be {@code null}
+     * @param call      the call to run, must not be {@code null}
+     * @return the result of the call
+     */
+    private AnalyzeDiffResponse callSelected(AiLoadBalancerService.Selection selection, Supplier<AnalyzeDiffResponse> call) {
+        try {
+            AnalyzeDiffResponse response = call.get();
+            selection.onSuccess();
+            return response;
+        } catch (ModelOutputParseException e) {
+            selection.onSuccess();
+            throw e;
+        } catch (RuntimeException e) {
+            selection.onFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the exception reported when the primary and every fallback provider tried have failed.
+     * <p>
+     * The status of the exception follows the failure of the last provider tried; its message contains every failure.
+     *
+     * @param request            the original request, must not be {@code null}
+     * @param primaryException   the failure of the primary provider, must not be {@code null}
+     * @param fallbackExceptions the failures of the fallback providers in the order they were tried, must not be
+     *                           {@code null} or empty
+     * @param lastProvider       the last provider tried, must not be {@code null}
+     * @return the exception to throw, never {@code null}
+     */
+    private RuntimeException allProvidersFailed(
+            AnalyzeDiffRequest request,
+            Throwable primaryException,
+            List<? extends Throwable> fallbackExceptions,
+            AiProvider lastProvider
+    ) {
+        Throwable fallBackException = fallbackExceptions.getLast();
+        String fallbackMessages = fallbackExceptions.stream()
+                                                    .map(Throwable::getMessage)
+                                                    .collect(Collectors.joining(". Fallback: "));
+
+        if (fallBackException instanceof CapacityExceededException capacityException) {
+            log.warn("Fallback provider '{}' had no capacity for requestId {}: {}",
+                     lastProvider.getValue(),
+                     request.requestId(),
+                     capacityException.getMessage()
+            );
+
+            return new CapacityExceededException(
+                    String.format(
+                            "An error occurred. Primary: %s. Fallback: %s",
+                            primaryException.getMessage(),
+                            fallbackMessages
+                    ),
+                    capacityException.getRetryAfterSeconds()
+            );
+        }
+
+        if (fallBackException instanceof CustomApiException) {
+            log.error("An error occurred while using fallback provider '{}' for requestId {}: {}",
+                      lastProvider.getValue(),
+                      request.requestId(),
+                      fallBackException.getMessage(),
+                      fallBackException
+            );
+
+            return new CustomApiException(
+                    String.format(
+                            "An error occurred. Primary: %s. Fallback: %s",
+                            primaryException.getMessage(),
+                            fallbackMessages
+                    ),
+                    ((CustomApiException) fallBackException).getHttpStatus(),
+                    fallBackException
+            );
+        } else {
+            log.error(
+                    "Unexpected error in diff analysis for requestId '{}' while using fallback provider: {}",
+                    request.requestId(),
+                    lastProvider.getValue(),
+                    fallBackException
+            );
+
+            return new RuntimeException(
+                    String.format(
+                            "Could not process diff analysis due to internal error across the %d providers. %s. %s",
+                            fallbackExceptions.size() + 1,
+                            primaryException.getMessage(),
+                            fallbackExceptions.stream()
+                                              .map(Throwable::getMessage)
+                                              .collect(Collectors.joining(". "))
+                    ), fallBackException
+            );
+        }
+    }
+
     /**
      * Invokes an AI model to analyze a code diff and constructs a response containing the analysis results.
+     * <p>
+     * Responses are served from {@code AnalysisCacheService} when an identical diff was analyzed recently
+     * with the same language, style, maximum summary length and provider/model. Identical calls that are
+     * already in flight are joined through {@code AnalysisSingleFlightService} instead of being repeated.
+     * Output that can not be parsed is handed to {@code ModelOutputRepairService} before the request is failed.
+     * Small diffs may be sent together with others in one call through {@code MicroBatchService}.
      *
-     * @param request     the request containing metadata and context for the analysis, must not be {@code null}
-     * @param diff        the code diff to be analyzed, must not be {@code null} or empty
-     * @param prompt      the AI model prompt used for guiding the analysis, must not be {@code null} or blank
-     * @param chatClient  the fallback chat client to use for the AI call, must not be {@code null}
-     * @param chatOptions the options to configure the fallback chat client, must not be {@code null}
+     * @param request      the request containing metadata and context for the analysis, must not be {@code null}
+     * @param diff         the code diff to be analyzed, must not be {@code null} or empty
+     * @param prompt       the AI model prompt used for guiding the analysis, must not be {@code null} or blank
+     * @param language     the resolved analysis language, must not be {@code null}
+     * @param style        the resolved analysis style, must not be {@code null}
+     * @param chatClient   the fallback chat client to use for the AI call, must not be {@code null}
+     * @param chatOptions  the options to configure the fallback chat client, must not be {@code null}
+     * @param provider      the provider behind {@code chatClient}, must not be {@code null}
+     * @param timeoutMillis the time the model call may take, in milliseconds
+     * @param coalesce     whether identical in-flight calls may be joined through {@code AnalysisSingleFlightService}
      * @return the response containing the AI analysis results, never {@code null}
      * @throws IllegalArgumentException if any required parameter is {@code null} or invalid
      */
@@ -188,26 +632,104 @@ public class DiffAnalysisService {
             AnalyzeDiffRequest request,
             String diff,
             Prompt prompt,
+            String language,
+            String style,
             ChatClient chatClient,
             ChatOptions chatOptions,
-            String providerName
+            AiProvider provider,
+            long timeoutMillis,
+            boolean coalesce
     ) {
-        long start = System.currentTimeMillis();
-        ChatResponse aiResponse = aiChatService.callAiModel(
-                prompt,
-                chatClient,
-                chatOptions
-        );
-        long end = System.currentTimeMillis();
-        long latencyMs = end - start;
-
-        return diffResponseMapperService.mapToAnalyzeDiffResponse(
-                aiResponse,
-                latencyMs,
+        String cacheKey = analysisCacheService.fingerprint(
                 diff,
-                request.requestId(),
-                providerName
+                language,
+                style,
+                request.maxSummaryLength(),
+                provider.getValue(),
+                chatOptions != null ? chatOptions.getModel() : null
         );
+
+        Optional<AnalyzeDiffResponse> cached = analysisCacheService.get(cacheKey);
+        if (cached.isPresent()) {
+            log.debug("Serving requestId '{}' from the analysis cache", request.requestId());
+            AnalyzeDiffResponse response = cached.get();
+            return response.toBuilder()
+                           .requestId(request.requestId())
+                           .metadata(response.metadata().toBuilder()
+                                             .cacheHit(true)
+                                             .modelLatencyMs(0)
+                                             .tokensUsed(0)
+                                             .retries(0)
+                                             .build())
+                           .build();
+        }
+
+        AnalysisPriority priority = request.priority() != null ? request.priority() : AnalysisPriority.INTERACTIVE;
+        LongFunction<AnalyzeDiffResponse> singleCall = callTimeoutMillis -> {
+            long start = System.currentTimeMillis();
+            ChatResponse aiResponse = aiChatService.callAiModel(
+                    prompt,
+                    chatClient,
+                    chatOptions,
+                    provider,
+                    callTimeoutMillis,
+                    priority
+            );
+            long end = System.currentTimeMillis();
+            long latencyMs = end - start;
+
+            AnalyzeDiffResponse mapped;
+            try {
+                mapped = diffResponseMapperService.mapToAnalyzeDiffResponse(
+                        aiResponse,
+                        latencyMs,
+                        diff,
+                        request.requestId(),
+                        provider.getValue()
+                );
+            } catch (ModelOutputParseException e) {
+                mapped = modelOutputRepairService.repair(
+                        aiResponse,
+                        e,
+                        latencyMs,
+                        diff,
+                        request.requestId(),
+                        provider.getValue(),
+                        priority,
+                        start + callTimeoutMillis
+                );
+            }
+
+            return mapped;
+        };
+        Supplier<AnalyzeDiffResponse> call = () -> {
+            AnalyzeDiffResponse mapped = microBatchService.analyze(
+                    new MicroBatchService.Request(diff, request.requestId(), request.maxSummaryLength(), request.tenant()),
+                    language,
+                    style,
+                    provider,
+                    chatClient,
+                    chatOptions,
+                    timeoutMillis,
+                    priority,
+                    singleCall
+            );
+
+            // A partial analysis is returned but not cached, so the next request for this diff can get a full one
+            if (mapped.metadata() == null || !mapped.metadata().partial()) {
+                analysisCacheService.put(cacheKey, mapped);
+            }
+
+            return mapped;
+        };
+
+        AnalyzeDiffResponse response = coalesce
+                ? analysisSingleFlightService.execute(cacheKey, timeoutMillis, call)
+                : call.get();
+
+        return Objects.equals(response.requestId(), request.requestId())
+                ? response
+                : response.toBuilder().requestId(request.requestId()).build();
     }
 
     /**
@@ -220,4 +742,46 @@ public class DiffAnalysisService {
     private String useDefaultIfBlank(String givenValue, String defaultValue) {
         return (givenValue == null || givenValue.trim().isEmpty() || givenValue.isBlank()) ? defaultValue : givenValue;
     }
+
+    /**
+     * One side of a hedged request, recording its attempt when it finishes. A side that finishes after the other one
+     * has won, or is still running when the request is answered, lost the race and is recorded as cancelled.
+     */
+    private final class HedgedCall {
+
+        private final AiProvider provider;
+        private final AtomicBoolean won;
+        private volatile long startMillis = -1;
+        private volatile AiCallAttempt attempt;
+
+        private HedgedCall(AiProvider provider, AtomicBoolean won) {
+            this.provider = provider;
+            this.won = won;
+        }
+
+        private AnalyzeDiffResponse run(Supplier<AnalyzeDiffResponse> call) {
+            startMillis = System.currentTimeMillis();
+            try {
+                AnalyzeDiffResponse response = call.get();
+                attempt = won.compareAndSet(false, true) ? attempt(provider, null, startMillis) : cancelled();
+                return response;
+            } catch (RuntimeException e) {
+                attempt = won.get() ? cancelled() : attempt(provider, e, startMillis);
+                throw e;
+            }
+        }
+
+        /**
+         * Adds the attempt of this call, if it was started.
+         */
+        private void addAttemptTo(List<AiCallAttempt> attempts) {
+            if (startMillis < 0) return;
+            AiCallAttempt finished = attempt;
+            attempts.add(finished != null ? finished : cancelled());
+        }
+
+        private AiCallAttempt cancelled() {
+            return new AiCallAttempt(provider.getValue(), "cancelled", System.currentTimeMillis() - startMillis);
+        }
+    }
 }
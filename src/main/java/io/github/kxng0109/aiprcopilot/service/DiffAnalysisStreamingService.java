@@ -0,0 +1,362 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.api.dto.ErrorResponse;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotLoggingProperties;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.github.kxng0109.aiprcopilot.error.DiffTooLargeException;
+import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Service for streaming diff analysis results as Server-Sent Events.
+ * <p>
+ * The model's output is requested through {@code ChatClient.stream()} and parsed incrementally, so
+ * each field of the analysis is sent as its own event as soon as the model has finished writing it.
+ * Touched files found in the diff headers are always sent first, before the model is called.
+ *
+ * <p>Events, in order of arrival:
+ * <ul>
+ *     <li>{@code touchedFiles}: JSON array of files from the diff headers</li>
+ *     <li>{@code title}, {@code summary}, {@code details}, {@code analysisNotes}: one event per field</li>
+ *     <li>{@code risks}, {@code suggestedTests}: one event per array element</li>
+ *     <li>{@code complete}: the full {@code AnalyzeDiffResponse}, including metadata</li>
+ *     <li>{@code error}: an {@code ErrorResponse} if the analysis failed; no further events follow</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DiffAnalysisStreamingService {
+
+    private static final Set<String> STREAMED_VALUES = Set.of("title", "summary", "details", "analysisNotes");
+    private static final Set<String> STREAMED_ARRAYS = Set.of("risks", "suggestedTests");
+
+    private final PrCopilotAnalysisProperties analysisProperties;
+    private final PrCopilotLoggingProperties loggingProperties;
+    private final MultiAiConfigurationProperties multiAiConfigurationProperties;
+    private final AiModelRouterService modelRouterService;
+    private final PromptBuilderService promptBuilderService;
+    private final DiffResponseMapperService diffResponseMapperService;
+    private final AnalysisCacheService analysisCacheService;
+    private final DiffAnalysisService diffAnalysisService;
+    private final AiChatService aiChatService;
+    private final TenantSchedulerService tenantSchedulerService;
+
+    @Qualifier("analysisTaskExecutor")
+    private final ExecutorService analysisTaskExecutor;
+
+    /**
+     * Starts a streaming analysis of a code diff.
+     * <p>
+     * Diffs larger than the configured maximum are analyzed in chunks through {@code DiffAnalysisService} on the
+     * managed analysis executor, and their fields are sent once the merged result is available; the analysis is
+     * interrupted if the stream times out, fails or is closed first. Either way the stream times out after twice the
+     * model timeout, which covers the single deadline the chunks share plus the wait for a tenant slot. Other diffs hold a slot of their tenant from
+     * before the model is called until the stream completes, fails or is cancelled, and the tenant's token debit is
+     * settled against the usage the provider streamed; a request its tenant has no capacity for gets an {@code error}
+     * event.
+     *
+     * @param request the {@code AnalyzeDiffRequest} containing the diff content and associated parameters, must not be {@code null}
+     * @return the {@code SseEmitter} the events are sent to, never {@code null}
+     * @throws DiffTooLargeException if the diff exceeds the maximum allowed size and can not be chunked
+     */
+    public SseEmitter analyzeDiffStream(AnalyzeDiffRequest request) {
+        String diff = request.diff();
+        int maxDiffChars = analysisProperties.getMaxDiffChars();
+        boolean oversized = diff.length() > maxDiffChars;
+        if (oversized && !analysisProperties.isChunkingEnabled()) {
+            throw new DiffTooLargeException(
+                    String.format("Diff exceeded maximum allowed size of %d characters",
+                                  maxDiffChars
+                    )
+            );
+        }
+
+        long timeoutMillis = multiAiConfigurationProperties.getTimeoutMillis();
+        SseEmitter emitter = new SseEmitter(timeoutMillis * 2);
+
+        List<String> diffTouchedFiles = diffResponseMapperService.extractTouchedFilesFromDiff(diff);
+        if (!send(emitter, "touchedFiles", diffTouchedFiles)) return emitter;
+
+        if (oversized) {
+            Future<?> analysis;
+            try {
+                analysis = analysisTaskExecutor.submit(() -> {
+                    try {
+                        sendResult(emitter, diffAnalysisService.analyzeDiff(request));
+                    } catch (Exception e) {
+                        sendError(emitter, e, request.requestId());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                sendError(emitter, new CustomApiException("The analysis executor is shutting down", HttpStatus.SERVICE_UNAVAILABLE, e),
+                          request.requestId());
+                return emitter;
+            }
+
+            Runnable cancel = () -> analysis.cancel(true);
+            emitter.onTimeout(cancel);
+            emitter.onCompletion(cancel);
+            emitter.onError(error -> cancel.run());
+            return emitter;
+        }
+
+        String language = useDefaultIfBlank(request.language(), analysisProperties.getDefaultLanguage());
+        String style = useDefaultIfBlank(request.style(), analysisProperties.getDefaultStyle());
+        AiLoadBalancerService.Selection selection = modelRouterService.route(diff);
+        String providerName = selection.provider().getValue();
+
+        String cacheKey = analysisCacheService.fingerprint(
+                diff,
+                language,
+                style,
+                request.maxSummaryLength(),
+                providerName,
+                selection.chatOptions() != null ? selection.chatOptions().getModel() : null
+        );
+        Optional<AnalyzeDiffResponse> cached = analysisCacheService.get(cacheKey);
+        if (cached.isPresent()) {
+            selection.onIgnored();
+            AnalyzeDiffResponse response = cached.get();
+            sendResult(emitter, response.toBuilder()
+                                        .requestId(request.requestId())
+                                        .metadata(response.metadata().toBuilder()
+                                                          .cacheHit(true)
+                                                          .modelLatencyMs(0)
+                                                          .tokensUsed(0)
+                                                          .retries(0)
+                                                          .attempts(null)
+                                                          .build())
+                                        .build());
+            return emitter;
+        }
+
+        Prompt prompt = promptBuilderService.buildDiffAnalysisPrompt(
+                language,
+                style,
+                diff,
+                request.maxSummaryLength(),
+                request.requestId()
+        );
+
+        if (loggingProperties.isLogPrompts()) log.info(prompt.toString());
+
+        TenantSchedulerService.Lease lease;
+        try {
+            lease = tenantSchedulerService.admit(request);
+        } catch (RuntimeException e) {
+            selection.onIgnored();
+            sendError(emitter, e, request.requestId());
+            return emitter;
+        }
+
+        StreamState state = new StreamState(emitter, diffTouchedFiles.isEmpty());
+        long start = System.currentTimeMillis();
+
+        AnalysisPriority priority = request.priority() != null ? request.priority() : AnalysisPriority.INTERACTIVE;
+        Disposable subscription = aiChatService.streamAiModel(
+                prompt,
+                selection.chatClient(),
+                selection.chatOptions(),
+                selection.provider(),
+                timeoutMillis,
+                priority
+        ).subscribe(
+                state::accept,
+                error -> {
+                    selection.onFailure();
+                    lease.release(state.tokensUsed(), false);
+                    sendError(emitter, error, request.requestId());
+                },
+                () -> {
+                    selection.onSuccess();
+                    finish(state, lease, start, diff, request, providerName, cacheKey);
+                }
+        );
+
+        Runnable cancel = () -> {
+            selection.onIgnored();
+            subscription.dispose();
+            lease.release(state.tokensUsed(), false);
+        };
+        emitter.onTimeout(cancel);
+        emitter.onCompletion(cancel);
+        emitter.onError(error -> cancel.run());
+
+        return emitter;
+    }
+
+    /**
+     * Maps the complete streamed output to an {@code AnalyzeDiffResponse} and sends the final event.
+     */
+    private void finish(
+            StreamState state,
+            TenantSchedulerService.Lease lease,
+            long start,
+            String diff,
+            AnalyzeDiffRequest request,
+            String providerName,
+            String cacheKey
+    ) {
+        try {
+            ChatResponse aggregated = ChatResponse.builder()
+                                                  .generations(List.of(new Generation(new AssistantMessage(state.text.toString()))))
+                                                  .metadata(state.metadata != null ? state.metadata : new ChatResponseMetadata())
+                                                  .build();
+
+            AnalyzeDiffResponse response = diffResponseMapperService.mapToAnalyzeDiffResponse(
+                    aggregated,
+                    System.currentTimeMillis() - start,
+                    diff,
+                    request.requestId(),
+                    providerName
+            );
+            lease.release(response.metadata().tokensUsed(), true);
+            analysisCacheService.put(cacheKey, response);
+
+            if (send(state.emitter, "complete", response)) state.emitter.complete();
+        } catch (Exception e) {
+            lease.release(state.tokensUsed(), false);
+            sendError(state.emitter, e, request.requestId());
+        }
+    }
+
+    /**
+     * Sends every field of an already computed response, followed by the final event.
+     */
+    private void sendResult(SseEmitter emitter, AnalyzeDiffResponse response) {
+        if (!sendIfPresent(emitter, "title", response.title())) return;
+        if (!sendIfPresent(emitter, "summary", response.summary())) return;
+        if (!sendIfPresent(emitter, "details", response.details())) return;
+        for (String risk : Optional.ofNullable(response.risks()).orElse(List.of())) {
+            if (!send(emitter, "risks", risk)) return;
+        }
+        for (String test : Optional.ofNullable(response.suggestedTests()).orElse(List.of())) {
+            if (!send(emitter, "suggestedTests", test)) return;
+        }
+        if (!sendIfPresent(emitter, "analysisNotes", response.analysisNotes())) return;
+
+        if (send(emitter, "complete", response)) emitter.complete();
+    }
+
+    private void sendError(SseEmitter emitter, Throwable error, String requestId) {
+        HttpStatus status = switch (error) {
+            case CustomApiException e -> e.getHttpStatus();
+            case ModelOutputParseException e -> HttpStatus.UNPROCESSABLE_ENTITY;
+            case DiffTooLargeException e -> HttpStatus.PAYLOAD_TOO_LARGE;
+            case TimeoutException e -> HttpStatus.GATEWAY_TIMEOUT;
+            default -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+        log.error("Streaming diff analysis failed for requestId '{}': {}", requestId, error.getMessage(), error);
+
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                                                   .timestamp(OffsetDateTime.now())
+                                                   .statusCode(status.value())
+                                                   .error(status.getReasonPhrase())
+                                                   .message(error.getMessage())
+                                                   .requestId(requestId)
+                                                   .build();
+
+        if (send(emitter, "error", errorResponse)) emitter.complete();
+    }
+
+    private boolean sendIfPresent(SseEmitter emitter, String name, String value) {
+        return value == null || send(emitter, name, value);
+    }
+
+    /**
+     * Sends a single event, completing the emitter with an error if the client has gone away.
+     *
+     * @return {@code true} if the event was sent
+     */
+    private boolean send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Could not send '{}' event, client is gone: {}", name, e.getMessage());
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private String useDefaultIfBlank(String givenValue, String defaultValue) {
+        return (givenValue == null || givenValue.isBlank()) ? defaultValue : givenValue;
+    }
+
+    /**
+     * Accumulates the streamed output and forwards completed fields to the emitter.
+     */
+    private final class StreamState implements IncrementalAnalysisJsonParser.Listener {
+
+        private final SseEmitter emitter;
+        private final boolean streamModelTouchedFiles;
+        private final StringBuilder text = new StringBuilder();
+        private final IncrementalAnalysisJsonParser parser = new IncrementalAnalysisJsonParser(this);
+        private ChatResponseMetadata metadata;
+
+        private StreamState(SseEmitter emitter, boolean streamModelTouchedFiles) {
+            this.emitter = emitter;
+            this.streamModelTouchedFiles = streamModelTouchedFiles;
+        }
+
+        private void accept(ChatResponse chunk) {
+            if (chunk.getMetadata() != null) metadata = chunk.getMetadata();
+            if (chunk.getResult() == null || chunk.getResult().getOutput() == null) return;
+
+            String piece = DiffResponseMapperService.outputText(chunk.getResult().getOutput());
+            if (piece == null) return;
+
+            text.append(piece);
+            parser.feed(piece);
+        }
+
+        /**
+         * Returns the tokens the provider reported for the stream so far, or {@code null} if it reported none.
+         */
+        private Integer tokensUsed() {
+            if (metadata == null || metadata.getUsage() == null) return null;
+            Integer total = metadata.getUsage().getTotalTokens();
+            return total != null && total > 0 ? total : null;
+        }
+
+        @Override
+        public void onValue(String field, String value) {
+            if (STREAMED_VALUES.contains(field)) sendIfPresent(emitter, field, value);
+        }
+
+        @Override
+        public void onArrayItem(String field, String value) {
+            if (value == null) return;
+            if (STREAMED_ARRAYS.contains(field) || (streamModelTouchedFiles && field.equals("touchedFiles"))) {
+                send(emitter, field, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AiCallMetadata;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Service for splitting oversized diffs into analyzable chunks and merging the per-chunk results.
+ * <p>
+ * Splitting happens on {@code diff --git} file boundaries first and on {@code @@} hunk boundaries
+ * for files that are too large on their own. Every hunk-level piece keeps its file header, and every
+ * piece of a hunk that is too large on its own keeps the hunk's {@code @@} line, so the model always
+ * knows which file and which lines it is looking at. Both count towards the chunk size.
+ */
+@Service
+@Slf4j
+class DiffChunkingService {
+
+    private static final String FILE_BOUNDARY = "diff --git ";
+    private static final String HUNK_BOUNDARY = "@@";
+
+    /**
+     * Splits a diff into chunks that are each at most {@code maxChunkChars} characters long.
+     *
+     * @param diff          the diff content in unified diff format, may be {@code null} or empty
+     * @param maxChunkChars the maximum number of characters per chunk, must be positive
+     * @return an unmodifiable list of chunks in diff order, never {@code null}
+     */
+    public List<String> splitDiff(String diff, int maxChunkChars) {
+        if (diff == null || diff.isEmpty()) return List.of();
+        if (diff.length() <= maxChunkChars) return List.of(diff);
+
+        List<String> pieces = new ArrayList<>();
+        for (String fileSection : splitOnLinePrefix(diff, FILE_BOUNDARY)) {
+            if (fileSection.length() <= maxChunkChars) {
+                pieces.add(fileSection);
+            } else {
+                pieces.addAll(splitFileSection(fileSection, maxChunkChars));
+            }
+        }
+
+        List<String> chunks = packPieces(pieces, maxChunkChars);
+        log.debug("Split diff of {} characters into {} chunks", diff.length(), chunks.size());
+
+        return List.copyOf(chunks);
+    }
+
+    /**
+     * Merges the responses of individually analyzed chunks into a single {@code AnalyzeDiffResponse}.
+     * <p>
+     * Risks, suggested tests and touched files are deduplicated while keeping their first-seen order.
+     * Token usage is summed across chunks.
+     *
+     * @param responses        the per-chunk responses in diff order, must not be {@code null} or empty
+     * @param requestId        the request identifier to echo, may be {@code null}
+     * @param maxSummaryLength the maximum summary length requested by the client, may be {@code null}
+     * @param latencyMs        the wall-clock latency of the whole chunked analysis, in milliseconds
+     * @return the merged response, never {@code null}
+     */
+    public AnalyzeDiffResponse mergeResponses(
+            List<AnalyzeDiffResponse> responses,
+            String requestId,
+            Integer maxSummaryLength,
+            long latencyMs
+    ) {
+        if (responses.size() == 1) return responses.getFirst();
+
+        AnalyzeDiffResponse first = responses.getFirst();
+
+        String summary = joinNonBlank(responses.stream().map(AnalyzeDiffResponse::summary).toList(), " ");
+        if (maxSummaryLength != null && summary != null && summary.length() > maxSummaryLength) {
+            summary = summary.substring(0, maxSummaryLength);
+        }
+
+        String details = joinNonBlank(responses.stream().map(AnalyzeDiffResponse::details).toList(), "\n\n");
+
+        String chunkNote = String.format("Diff was analyzed in %d chunks and the results were merged.", responses.size());
+        String notes = joinNonBlank(responses.stream().map(AnalyzeDiffResponse::analysisNotes).toList(), "\n");
+        String analysisNotes = notes == null ? chunkNote : chunkNote + "\n" + notes;
+
+        String rawModelOutput = joinNonBlank(responses.stream().map(AnalyzeDiffResponse::rawModelOutput).toList(), "\n");
+
+        return AnalyzeDiffResponse.builder()
+                                  .title(first.title())
+                                  .summary(summary)
+                                  .details(details)
+                                  .risks(dedupe(responses.stream().map(AnalyzeDiffResponse::risks).toList()))
+                                  .suggestedTests(dedupe(responses.stream().map(AnalyzeDiffResponse::suggestedTests).toList()))
+                                  .touchedFiles(union(responses.stream().map(AnalyzeDiffResponse::touchedFiles).toList()))
+                                  .analysisNotes(analysisNotes)
+                                  .metadata(mergeMetadata(responses, latencyMs))
+                                  .requestId(requestId)
+                                  .rawModelOutput(rawModelOutput)
+                                  .build();
+    }
+
+    /**
+     * Splits a single file section on hunk boundaries, repeating the file header in every piece.
+     *
+     * @param fileSection   the diff section for a single file, must not be {@code null}
+     * @param maxChunkChars the maximum number of characters per piece, must be positive
+     * @return the pieces of the file section, never {@code null}
+     */
+    private List<String> splitFileSection(String fileSection, int maxChunkChars) {
+        List<String> segments = splitOnLinePrefix(fileSection, HUNK_BOUNDARY);
+
+        String header = segments.getFirst().startsWith(HUNK_BOUNDARY) ? "" : segments.removeFirst();
+        if (header.length() >= maxChunkChars) {
+            // The header alone does not fit, so the pieces can not carry it.
+            segments.addFirst(header);
+            header = "";
+        }
+
+        int budget = maxChunkChars - header.length();
+        List<String> hunkPieces = new ArrayList<>();
+        for (String hunk : segments) {
+            if (hunk.length() <= budget) {
+                hunkPieces.add(hunk);
+            } else {
+                hunkPieces.addAll(splitHunk(hunk, budget));
+            }
+        }
+
+        List<String> pieces = new ArrayList<>();
+        for (String packed : packPieces(hunkPieces, budget)) {
+            pieces.add(header + packed);
+        }
+
+        return pieces;
+    }
+
+    /**
+     * Greedily concatenates consecutive pieces as long as the result stays within {@code maxChars}.
+     *
+     * @param pieces   the pieces to pack, each at most {@code maxChars} long, must not be {@code null}
+     * @param maxChars the maximum size of a packed chunk, must be positive
+     * @return the packed chunks, never {@code null}
+     */
+    private List<String> packPieces(List<String> pieces, int maxChars) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (String piece : pieces) {
+            if (!current.isEmpty() && current.length() + piece.length() > maxChars) {
+                chunks.add(current.toString());
+                current.setLength(0);
+            }
+            current.append(piece);
+        }
+
+        if (!current.isEmpty()) chunks.add(current.toString());
+
+        return chunks;
+    }
+
+    /**
+     * Splits text into segments that each start at a line beginning with {@code prefix}.
+     * <p>
+     * Text before the first matching line becomes its own segment. Line terminators are preserved.
+     *
+     * @param text   the text to split, must not be {@code null}
+     * @param prefix the line prefix that starts a new segment, must not be {@code null}
+     * @return a mutable list of segments, never {@code null}
+     */
+    private List<String> splitOnLinePrefix(String text, String prefix) {
+        List<String> segments = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (String line : text.split("(?<=\n)")) {
+            if (line.startsWith(prefix) && !current.isEmpty()) {
+                segments.add(current.toString());
+                current.setLength(0);
+            }
+            current.append(line);
+        }
+
+        if (!current.isEmpty()) segments.add(current.toString());
+
+        return segments;
+    }
+
+    /**
+     * Splits a hunk on line boundaries into pieces of at most {@code maxChars} characters, repeating its
+     * {@code @@} line at the top of every piece.
+     *
+     * @param hunk     the hunk, starting with its {@code @@} line unless it is text before the first hunk, must not
+     *                 be {@code null}
+     * @param maxChars the maximum size of a piece, {@code @@} line included, must be positive
+     * @return the pieces, never {@code null}
+     */
+    private List<String> splitHunk(String hunk, int maxChars) {
+        int headerEnd = hunk.indexOf('\n') + 1;
+        if (!hunk.startsWith(HUNK_BOUNDARY) || headerEnd == 0 || headerEnd >= maxChars) {
+            // Not a hunk, or its @@ line alone does not leave room for any of its lines.
+            return splitByLength(hunk, maxChars);
+        }
+
+        String hunkHeader = hunk.substring(0, headerEnd);
+        List<String> pieces = new ArrayList<>();
+        for (String lines : splitByLength(hunk.substring(headerEnd), maxChars - headerEnd)) {
+            pieces.add(hunkHeader + lines);
+        }
+        return pieces;
+    }
+
+    /**
+     * Splits text on line boundaries into pieces of at most {@code maxChars} characters.
+     * <p>
+     * Lines longer than {@code maxChars} are cut as a last resort.
+     *
+     * @param text     the text to split, must not be {@code null}
+     * @param maxChars the maximum size of a piece, must be positive
+     * @return the pieces, never {@code null}
+     */
+    private List<String> splitByLength(String text, int maxChars) {
+        List<String> lines = new ArrayList<>();
+        for (String line : text.split("(?<=\n)")) {
+            for (int i = 0; i < line.length(); i += maxChars) {
+                lines.add(line.substring(i, Math.min(line.length(), i + maxChars)));
+            }
+        }
+
+        return packPieces(lines, maxChars);
+    }
+
+    private AiCallMetadata mergeMetadata(List<AnalyzeDiffResponse> responses, long latencyMs) {
+        List<AiCallMetadata> metadata = responses.stream()
+                                                 .map(AnalyzeDiffResponse::metadata)
+                                                 .filter(Objects::nonNull)
+                                                 .toList();
+
+        boolean anyTokens = metadata.stream().anyMatch(m -> m.tokensUsed() != null);
+        Integer tokensUsed = anyTokens
+                ? metadata.stream().map(AiCallMetadata::tokensUsed).filter(Objects::nonNull).mapToInt(Integer::intValue).sum()
+                : null;
+
+        return AiCallMetadata.builder()
+                             .modelName(distinctJoined(metadata.stream().map(AiCallMetadata::modelName).toList()))
+                             .provider(distinctJoined(metadata.stream().map(AiCallMetadata::provider).toList()))
+                             .modelLatencyMs(latencyMs)
+                             .tokensUsed(tokensUsed)
+                             .retries(metadata.stream().mapToInt(AiCallMetadata::retries).sum())
+                             .attempts(metadata.stream()
+                                               .map(AiCallMetadata::attempts)
+                                               .filter(Objects::nonNull)
+                                               .flatMap(List::stream)
+                                               .toList())
+                             .partial(metadata.stream().anyMatch(AiCallMetadata::partial))
+                             .repaired(metadata.stream().anyMatch(AiCallMetadata::repaired))
+                             .build();
+    }
+
+    /**
+     * Deduplicates entries across lists, comparing them case-insensitively with collapsed whitespace.
+     *
+     * @param lists the lists to merge, may contain {@code null} lists
+     * @return an unmodifiable list of unique entries in first-seen order, never {@code null}
+     */
+    private List<String> dedupe(List<List<String>> lists) {
+        Map<String, String> unique = new LinkedHashMap<>();
+        for (List<String> list : lists) {
+            if (list == null) continue;
+            for (String entry : list) {
+                if (entry == null || entry.isBlank()) continue;
+                String key = entry.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+                unique.putIfAbsent(key, entry.trim());
+            }
+        }
+
+        return List.copyOf(unique.values());
+    }
+
+    private List<String> union(List<List<String>> lists) {
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        for (List<String> list : lists) {
+            if (list != null) unique.addAll(list);
+        }
+
+        return List.copyOf(unique);
+    }
+
+    private String distinctJoined(List<String> values) {
+        String joined = values.stream()
+                              .filter(Objects::nonNull)
+                              .distinct()
+                              .collect(Collectors.joining(","));
+
+        return joined.isEmpty() ? null : joined;
+    }
+
+    private String joinNonBlank(List<String> values, String delimiter) {
+        String joined = values.stream()
+                              .filter(v -> v != null && !v.isBlank())
+                              .map(String::trim)
+                              .collect(Collectors.joining(delimiter));
+
+        return joined.isEmpty() ? null : joined;
+    }
+}
@@ -8,13 +8,18 @@ import io.github.kxng0109.aiprcopilot.api.dto.AiCallMetadata;
 import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
 import io.github.kxng0109.aiprcopilot.api.dto.ModelAnalyzeDiffResult;
 import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,6 +30,14 @@ import java.util.regex.Pattern;
  * Provides functionality to map AI responses to domain-specific objects,
  * sanitize model outputs, and extract metadata or file information from
  * diffs in unified diff format.
+ * <p>
+ * The model output is read from the text of the response or, when a provider returned the analysis as the input of a
+ * tool call, from the arguments of that call. Every mapped output is counted by {@code prcopilot.output.parse},
+ * tagged by provider and by outcome ({@code success}, {@code partial} or {@code failure}).
+ * <p>
+ * Output cut off before the end of the JSON object, typically at the token limit, is not discarded: every field
+ * completed before the cut is recovered and the response is marked as partial in its metadata and
+ * {@code analysisNotes}. It only fails if the title, summary or details are incomplete.
  */
 @Service
 @Slf4j
@@ -33,9 +46,15 @@ class DiffResponseMapperService {
 
     private static final Pattern DIFF_GIT_LINE_PATTERN = Pattern.compile("^diff --git a/(.+?) b/(.+?)$");
 
+    private static final List<String> SALVAGE_REQUIRED_FIELDS = List.of("title", "summary", "details");
+
+    static final String PARTIAL_NOTE = "Partial analysis: the model output was cut off and only the fields "
+            + "completed before that point are included.";
+
     private final ObjectMapper objectMapper;
     private final PrCopilotLoggingProperties loggingProperties;
     private final PrCopilotAnalysisProperties analysisProperties;
+    private final MeterRegistry meterRegistry;
 
     /**
      * Maps the AI model's raw {@code ChatResponse} output and related metadata to an {@code AnalyzeDiffResponse}.
@@ -55,6 +74,42 @@ class DiffResponseMapperService {
             String diff,
             String requestId,
             String provider
+    ) {
+        try {
+            AnalyzeDiffResponse mapped = map(response, responseTime, diff, requestId, provider);
+            recordParse(provider, mapped.metadata().partial() ? "partial" : "success");
+            return mapped;
+        } catch (ModelOutputParseException e) {
+            recordParse(provider, "failure");
+            throw e;
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * Returns the output of a model message: its text or, if it has none, the arguments of its first tool call.
+     *
+     * @param output the model message, may be {@code null}
+     * @return the output, or {@code null} if the message has neither text nor tool calls
+     */
+    static String outputText(AssistantMessage output) {
+        if (output == null) return null;
+        String text = output.getText();
+        if ((text == null || text.isEmpty()) && output.hasToolCalls()) {
+            return output.getToolCalls().getFirst().arguments();
+        }
+        return text;
+    }
+
+    private AnalyzeDiffResponse map(
+            ChatResponse response,
+            long responseTime,
+            String diff,
+            String requestId,
+            String provider
     ) {
         String modelOutput = extractModelOutputText(response);
         log.debug("AI model raw output: {}", modelOutput);
@@ -62,14 +117,26 @@ class DiffResponseMapperService {
         log.debug("AI model cleaned output: {}", cleanedModelOutput);
 
         try {
-            ModelAnalyzeDiffResult aiResult = objectMapper.readValue(cleanedModelOutput, ModelAnalyzeDiffResult.class);
+            ModelAnalyzeDiffResult aiResult;
+            boolean partial = false;
+            try {
+                aiResult = objectMapper.readValue(cleanedModelOutput, ModelAnalyzeDiffResult.class);
+            } catch (JsonProcessingException e) {
+                aiResult = salvageTruncatedOutput(cleanedModelOutput);
+                if (aiResult == null) throw e;
+                partial = true;
+                log.warn("Model output from provider '{}' was truncated after {} characters; returning a partial analysis",
+                         provider,
+                         cleanedModelOutput.length()
+                );
+            }
             log.debug("AI model analysis result: {}", aiResult);
 
             if (aiResult == null) {
                 throw new ModelOutputParseException("Parsed model output is null. Expected non-null, valid JSON DTO.");
             }
 
-            if (aiResult.title() == null || aiResult.summary() == null || aiResult.details() == null
+            if (isBlank(aiResult.title()) || isBlank(aiResult.summary()) || isBlank(aiResult.details())
                     || aiResult.risks() == null || aiResult.suggestedTests() == null) {
                 throw new ModelOutputParseException(
                         "Parsed model output is missing required fields. Output: " + cleanedModelOutput);
@@ -81,6 +148,7 @@ class DiffResponseMapperService {
             Integer tokensUsed = (response.getMetadata().getUsage() != null && response.getMetadata().getUsage().getTotalTokens() != null)
                     ? response.getMetadata().getUsage().getTotalTokens()
                     : null;
+            int retries = response.getMetadata().getOrDefault(AiChatService.RETRIES_METADATA_KEY, 0);
 
             List<String> touchedFiles = (aiResult.touchedFiles() == null || aiResult.touchedFiles().isEmpty())
                     ? extractTouchedFilesFromDiff(diff)
@@ -91,6 +159,8 @@ class DiffResponseMapperService {
                                                     .provider(provider)
                                                     .tokensUsed(tokensUsed)
                                                     .modelLatencyMs(responseTime)
+                                                    .retries(retries)
+                                                    .partial(partial)
                                                     .build();
 
             return AnalyzeDiffResponse.builder()
@@ -122,11 +192,62 @@ class DiffResponseMapperService {
         }
     }
 
+    /**
+     * Recovers the analysis from output that was cut off before the end of the JSON object, typically because the
+     * model reached its token limit.
+     * <p>
+     * Every top-level field and array element completed before the cut is kept; a missing array is treated as empty.
+     * A note saying the analysis is partial is added to {@code analysisNotes}.
+     *
+     * @param output the sanitized model output, must not be {@code null}
+     * @return the recovered analysis, or {@code null} if the output is not truncated JSON
+     * @throws ModelOutputParseException if the output is truncated before a required field was completed
+     */
+    private ModelAnalyzeDiffResult salvageTruncatedOutput(String output) {
+        Map<String, String> values = new HashMap<>();
+        Map<String, List<String>> arrays = new HashMap<>();
+        IncrementalAnalysisJsonParser parser = new IncrementalAnalysisJsonParser(new IncrementalAnalysisJsonParser.Listener() {
+            @Override
+            public void onValue(String field, String value) {
+                values.put(field, value);
+            }
+
+            @Override
+            public void onArrayStart(String field) {
+                arrays.put(field, new ArrayList<>());
+            }
+
+            @Override
+            public void onArrayItem(String field, String value) {
+                if (value != null) arrays.get(field).add(value);
+            }
+        });
+        parser.feed(output);
+        if (parser.isComplete() || parser.isFailed()) return null;
+
+        List<String> missing = SALVAGE_REQUIRED_FIELDS.stream().filter(field -> values.get(field) == null).toList();
+        if (!missing.isEmpty()) {
+            throw new ModelOutputParseException(
+                    "Model output was truncated before required fields were complete. Missing: " + missing);
+        }
+
+        String notes = values.get("analysisNotes");
+        return new ModelAnalyzeDiffResult(
+                values.get("title"),
+                values.get("summary"),
+                values.get("details"),
+                arrays.getOrDefault("risks", List.of()),
+                arrays.getOrDefault("suggestedTests", List.of()),
+                arrays.getOrDefault("touchedFiles", List.of()),
+                notes == null ? PARTIAL_NOTE : notes + " " + PARTIAL_NOTE
+        );
+    }
+
     private String extractModelOutputText(ChatResponse response) {
         String aiRawResponse = null;
 
         try {
-            aiRawResponse = response.getResult().getOutput().getText();
+            aiRawResponse = outputText(response.getResult().getOutput());
         } catch (Exception e) {
             log.error("Could not extract text from ChatResponse result/output.", e);
             throw new ModelOutputParseException("Could not extract text from AI model response.");
@@ -139,6 +260,10 @@ class DiffResponseMapperService {
         return aiRawResponse;
     }
 
+    private void recordParse(String provider, String outcome) {
+        meterRegistry.counter("prcopilot.output.parse", "provider", provider, "outcome", outcome).increment();
+    }
+
     /**
      * Sanitizes the output of a model by removing extra formatting or wrapping elements.
      *
@@ -168,7 +293,7 @@ class DiffResponseMapperService {
      * @param diff the diff content in unified diff format, may be {@code null} or blank
      * @return an unmodifiable list of unique file paths, never {@code null}
      */
-    private List<String> extractTouchedFilesFromDiff(String diff) {
+    List<String> extractTouchedFilesFromDiff(String diff) {
         if (diff == null || diff.trim().isEmpty() || diff.isBlank()) return List.of();
 
         LinkedHashSet<String> files = new LinkedHashSet<>();
@@ -0,0 +1,161 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental parser for the JSON object produced by the model.
+ * <p>
+ * Text can be fed in arbitrary pieces, for example token by token from a streaming response.
+ * Every top-level scalar field and every element of a top-level array is reported to the
+ * {@link Listener} as soon as it is complete, without waiting for the rest of the document.
+ * Anything before the opening brace (such as a markdown fence) and anything after the closing
+ * brace is ignored.
+ *
+ * <p>Instances are not thread-safe and parse a single document.
+ */
+@Slf4j
+class IncrementalAnalysisJsonParser {
+
+    /**
+     * Receives the parts of the analysis object as they are completed.
+     */
+    interface Listener {
+
+        /**
+         * Called when a top-level scalar field is complete.
+         *
+         * @param field the field name, never {@code null}
+         * @param value the value as text, {@code null} for a JSON {@code null}
+         */
+        default void onValue(String field, String value) {
+        }
+
+        /**
+         * Called when a top-level array field starts.
+         *
+         * @param field the field name, never {@code null}
+         */
+        default void onArrayStart(String field) {
+        }
+
+        /**
+         * Called when an element of a top-level array field is complete.
+         *
+         * @param field the array field name, never {@code null}
+         * @param value the element as text, {@code null} for a JSON {@code null}
+         */
+        default void onArrayItem(String field, String value) {
+        }
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Listener listener;
+    private final JsonParser parser;
+
+    private boolean started;
+    private boolean complete;
+    private boolean failed;
+    private int depth;
+    private String currentField;
+    private String currentArray;
+
+    /**
+     * Constructs a parser that reports to the given listener.
+     *
+     * @param listener the listener to notify, must not be {@code null}
+     */
+    IncrementalAnalysisJsonParser(Listener listener) {
+        this.listener = listener;
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create non-blocking JSON parser", e);
+        }
+    }
+
+    /**
+     * Feeds the next piece of model output to the parser.
+     * <p>
+     * Input after the root object has closed, or after the input was found to be malformed, is ignored.
+     *
+     * @param text the next piece of output, may be {@code null} or empty
+     */
+    void feed(String text) {
+        if (text == null || text.isEmpty() || complete || failed) return;
+
+        if (!started) {
+            int start = text.indexOf('{');
+            if (start == -1) return;
+            started = true;
+            text = text.substring(start);
+        }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, bytes.length);
+            drain();
+        } catch (IOException e) {
+            failed = true;
+            log.debug("Stopped incremental parsing of model output: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns whether the root JSON object has been fully read.
+     *
+     * @return {@code true} if the closing brace of the root object has been parsed
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns whether the input was found to be malformed.
+     *
+     * @return {@code true} if parsing stopped because of invalid JSON
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while (!complete && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT -> depth++;
+                case START_ARRAY -> {
+                    depth++;
+                    if (depth == 2 && currentField != null) {
+                        currentArray = currentField;
+                        listener.onArrayStart(currentArray);
+                    }
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    depth--;
+                    if (depth == 1) currentArray = null;
+                    if (depth == 0) complete = true;
+                }
+                case FIELD_NAME -> {
+                    if (depth == 1) currentField = parser.currentName();
+                }
+                default -> {
+                    if (!token.isScalarValue()) break;
+                    String value = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                    if (depth == 1 && currentField != null) {
+                        listener.onValue(currentField, value);
+                    } else if (depth == 2 && currentArray != null) {
+                        listener.onArrayItem(currentArray, value);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.ModelOutputSchema;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotMicroBatchProperties;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongFunction;
+
+/**
+ * Service packing small diffs that arrive close together into one model call, so they share the system prompt and
+ * the round trip instead of each paying for both.
+ * <p>
+ * A diff of at most {@code prcopilot.micro-batch.max-diff-chars} characters joins the open batch of its tenant,
+ * provider, model, language, style and priority, so a batch is never shared across tenants. A batch is sent once it holds {@code max-batch-size} diffs, once the next diff
+ * would take it past {@code max-batch-chars}, or {@code max-wait-millis} after its first diff arrived. Its prompt asks
+ * for a {@code results} array keyed by {@code requestId}, using the model's JSON mode rather than the single
+ * analysis schema, and each result is mapped through {@code DiffResponseMapperService} as if it had been returned
+ * alone, with the call's tokens shared evenly between the diffs.
+ * <p>
+ * Batched calls run on the {@code analysisTaskExecutor}. A diff whose deadline has passed by the time its batch is sent
+ * is left out of the call and times out, and the call is given the time left before the earliest remaining deadline.
+ * A batch that ends up with a single diff, and every diff whose result is missing or can not be mapped, falls back to
+ * its own single call, given only the time left before its deadline. If the batched call itself fails, every diff of
+ * the batch fails with it.
+ * <p>
+ * Batch sizes are recorded by the {@code prcopilot.microbatch.size} summary, and diffs are counted by
+ * {@code prcopilot.microbatch.items}, tagged by outcome: {@code batched}, {@code single} when they were the only
+ * diff of their batch, or {@code fallback} when their result could not be split off.
+ */
+@Service
+@Slf4j
+class MicroBatchService {
+
+    private final PrCopilotMicroBatchProperties microBatchProperties;
+    private final PromptBuilderService promptBuilderService;
+    private final AiChatService aiChatService;
+    private final DiffResponseMapperService diffResponseMapperService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary batchSizes;
+
+    private final Map<Key, Batch> openBatches = new HashMap<>();
+    private final ScheduledExecutorService flushTimer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("micro-batch-timer").daemon(true).factory()
+    );
+    private final ExecutorService batchExecutor;
+
+    /**
+     * Constructs a {@code MicroBatchService}.
+     *
+     * @param microBatchProperties      the micro-batching configuration, must not be {@code null}
+     * @param promptBuilderService      the service building the batched prompts, must not be {@code null}
+     * @param aiChatService             the service making the batched calls, must not be {@code null}
+     * @param diffResponseMapperService the service mapping each diff's result, must not be {@code null}
+     * @param objectMapper              the mapper splitting the batched output, must not be {@code null}
+     * @param meterRegistry             the registry to publish metrics to, must not be {@code null}
+     * @param batchExecutor             the executor making the batched calls, must not be {@code null}
+     */
+    MicroBatchService(
+            PrCopilotMicroBatchProperties microBatchProperties,
+            PromptBuilderService promptBuilderService,
+            AiChatService aiChatService,
+            DiffResponseMapperService diffResponseMapperService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Qualifier("analysisTaskExecutor") ExecutorService batchExecutor
+    ) {
+        this.microBatchProperties = microBatchProperties;
+        this.promptBuilderService = promptBuilderService;
+        this.aiChatService = aiChatService;
+        this.diffResponseMapperService = diffResponseMapperService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.batchExecutor = batchExecutor;
+        this.batchSizes = DistributionSummary.builder("prcopilot.microbatch.size")
+                                             .description("Diffs sent per micro-batched model call")
+                                             .register(meterRegistry);
+    }
+
+    /**
+     * Analyzes a diff as part of a micro-batch if it is small enough, or through {@code singleCall} otherwise.
+     *
+     * @param request       the diff and its analysis parameters, must not be {@code null}
+     * @param language      the resolved analysis language, must not be {@code null}
+     * @param style         the resolved analysis style, must not be {@code null}
+     * @param provider      the provider behind {@code chatClient}, must not be {@code null}
+     * @param chatClient    the chat client to call, must not be {@code null}
+     * @param chatOptions   the options of the chat client, may be {@code null}
+     * @param timeoutMillis the time the analysis may take, in milliseconds
+     * @param priority      the lane the call waits for a concurrency slot in, must not be {@code null}
+     * @param singleCall    the call analyzing the diff alone within the given timeout in milliseconds, must not be
+     *                      {@code null}
+     * @return the analysis of the diff, never {@code null}
+     * @throws CustomApiException if the batched call fails, the wait for it is interrupted or outlasts the timeout,
+     *                            or no time is left for the fallback single call
+     * @throws RuntimeException   if the single call fails
+     */
+    AnalyzeDiffResponse analyze(
+            Request request,
+            String language,
+            String style,
+            AiProvider provider,
+            ChatClient chatClient,
+            ChatOptions chatOptions,
+            long timeoutMillis,
+            AnalysisPriority priority,
+            LongFunction<AnalyzeDiffResponse> singleCall
+    ) {
+        if (!microBatchProperties.isEnabled() || request.diff().length() > microBatchProperties.getMaxDiffChars()) {
+            return singleCall.apply(timeoutMillis);
+        }
+
+        Pending pending = new Pending(request, System.currentTimeMillis() + timeoutMillis);
+        enqueue(new Key(request.tenant(), provider, chatClient, chatOptions, language, style, priority), pending);
+
+        Optional<AnalyzeDiffResponse> batched;
+        try {
+            batched = pending.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            pending.result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new CustomApiException("AI Model request was interrupted", HttpStatus.SERVICE_UNAVAILABLE, e);
+        } catch (TimeoutException e) {
+            // Left out of its batch if that has not been sent yet
+            pending.result.cancel(false);
+            throw new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new RuntimeException("Micro-batched model call failed", e.getCause());
+        }
+        if (batched.isPresent()) return batched.get();
+
+        long remainingMillis = pending.deadlineMillis - System.currentTimeMillis();
+        if (remainingMillis <= 0) {
+            throw new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT);
+        }
+        return singleCall.apply(remainingMillis);
+    }
+
+    /**
+     * Stops the batch timer.
+     */
+    @PreDestroy
+    void shutdown() {
+        flushTimer.shutdownNow();
+    }
+
+    private void enqueue(Key key, Pending pending) {
+        List<Batch> full = new ArrayList<>(2);
+        synchronized (openBatches) {
+            Batch batch = openBatches.get(key);
+            if (batch != null && batch.chars + pending.request.diff().length() > microBatchProperties.getMaxBatchChars()) {
+                openBatches.remove(key);
+                full.add(batch);
+                batch = null;
+            }
+            if (batch == null) {
+                Batch opened = new Batch(key);
+                openBatches.put(key, opened);
+                flushTimer.schedule(() -> flush(opened), microBatchProperties.getMaxWaitMillis(), TimeUnit.MILLISECONDS);
+                batch = opened;
+            }
+
+            batch.items.add(pending);
+            batch.chars += pending.request.diff().length();
+            if (batch.items.size() >= microBatchProperties.getMaxBatchSize()) {
+                openBatches.remove(key);
+                full.add(batch);
+            }
+        }
+        full.forEach(this::dispatch);
+    }
+
+    /**
+     * Sends a batch whose wait has run out, unless it was already sent for being full.
+     */
+    private void flush(Batch batch) {
+        synchronized (openBatches) {
+            if (!openBatches.remove(batch.key, batch)) return;
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch batch) {
+        batchSizes.record(batch.items.size());
+        if (batch.items.size() == 1) {
+            countItems("single", 1);
+            batch.items.getFirst().result.complete(Optional.empty());
+            return;
+        }
+        try {
+            batchExecutor.execute(() -> call(batch));
+        } catch (RejectedExecutionException e) {
+            CustomApiException rejected = new CustomApiException(
+                    "AI Model request was rejected, the service is shutting down",
+                    HttpStatus.SERVICE_UNAVAILABLE,
+                    e
+            );
+            batch.items.forEach(pending -> pending.result.completeExceptionally(rejected));
+        }
+    }
+
+    /**
+     * Makes the batched call and completes every diff of the batch with its result, an empty result if it must fall
+     * back to its own call, or the failure of the call.
+     */
+    private void call(Batch batch) {
+        List<Pending> items = live(batch.items);
+        if (items.isEmpty()) return;
+        if (items.size() == 1) {
+            countItems("single", 1);
+            items.getFirst().result.complete(Optional.empty());
+            return;
+        }
+
+        List<String> itemIds = itemIds(items);
+        List<PromptBuilderService.BatchedDiff> diffs = new ArrayList<>(items.size());
+        long deadlineMillis = Long.MAX_VALUE;
+        for (int i = 0; i < items.size(); i++) {
+            Request request = items.get(i).request;
+            diffs.add(new PromptBuilderService.BatchedDiff(itemIds.get(i), request.diff(), request.maxSummaryLength()));
+            deadlineMillis = Math.min(deadlineMillis, items.get(i).deadlineMillis);
+        }
+
+        ChatResponse response;
+        long start = System.currentTimeMillis();
+        if (deadlineMillis <= start) {
+            CustomApiException timedOut = new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT);
+            items.forEach(pending -> pending.result.completeExceptionally(timedOut));
+            return;
+        }
+        try {
+            Prompt prompt = promptBuilderService.buildMicroBatchPrompt(batch.key.language(), batch.key.style(), diffs);
+            response = aiChatService.callAiModel(
+                    prompt,
+                    batch.key.chatClient(),
+                    ModelOutputSchema.withoutSchema(batch.key.chatOptions()),
+                    batch.key.provider(),
+                    deadlineMillis - start,
+                    batch.key.priority()
+            );
+        } catch (RuntimeException e) {
+            log.warn("Micro-batched call of {} diffs to provider '{}' failed: {}",
+                     items.size(), batch.key.provider().getValue(), e.getMessage());
+            items.forEach(pending -> pending.result.completeExceptionally(e));
+            return;
+        }
+        long latencyMs = System.currentTimeMillis() - start;
+
+        Map<String, ObjectNode> results;
+        try {
+            results = split(response);
+        } catch (ModelOutputParseException e) {
+            log.warn("Could not split the output of a micro-batch of {} diffs, analyzing them one by one: {}",
+                     items.size(), e.getMessage());
+            countItems("fallback", items.size());
+            items.forEach(pending -> pending.result.complete(Optional.empty()));
+            return;
+        }
+
+        for (int i = 0; i < items.size(); i++) {
+            Pending pending = items.get(i);
+            ObjectNode result = results.get(itemIds.get(i));
+            if (result == null) {
+                log.warn("Micro-batch output had no result for requestId '{}', analyzing it alone", itemIds.get(i));
+                countItems("fallback", 1);
+                pending.result.complete(Optional.empty());
+                continue;
+            }
+
+            try {
+                AnalyzeDiffResponse mapped = diffResponseMapperService.mapToAnalyzeDiffResponse(
+                        itemResponse(response, result, items.size()),
+                        latencyMs,
+                        pending.request.diff(),
+                        pending.request.requestId(),
+                        batch.key.provider().getValue()
+                );
+                countItems("batched", 1);
+                pending.result.complete(Optional.of(mapped));
+            } catch (RuntimeException e) {
+                log.warn("Micro-batch result for requestId '{}' could not be mapped, analyzing it alone: {}",
+                         itemIds.get(i), e.getMessage());
+                countItems("fallback", 1);
+                pending.result.complete(Optional.empty());
+            }
+        }
+    }
+
+    /**
+     * Returns the diffs still waiting for the batch, timing out those whose deadline has passed.
+     */
+    private static List<Pending> live(List<Pending> items) {
+        long now = System.currentTimeMillis();
+        List<Pending> live = new ArrayList<>(items.size());
+        for (Pending pending : items) {
+            if (pending.result.isDone()) continue;
+            if (pending.deadlineMillis <= now) {
+                pending.result.completeExceptionally(
+                        new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT)
+                );
+            } else {
+                live.add(pending);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Returns the ID each diff is introduced with in the prompt: its request ID, or {@code diff} for diffs without one,
+     * numbered where it is already taken.
+     */
+    private static List<String> itemIds(List<Pending> items) {
+        Set<String> taken = new HashSet<>();
+        List<String> ids = new ArrayList<>(items.size());
+        for (Pending pending : items) {
+            String requestId = pending.request.requestId();
+            String base = requestId != null && !requestId.isBlank() ? requestId : "diff";
+            String id = base;
+            for (int n = 2; !taken.add(id); n++) id = base + "-" + n;
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * Splits the batched output into the analysis objects of its {@code results} array, by {@code requestId}.
+     *
+     * @throws ModelOutputParseException if the output is not a JSON object with a {@code results} array, or a bare array
+     */
+    private Map<String, ObjectNode> split(ChatResponse response) {
+        String output = response.getResult() != null
+                ? DiffResponseMapperService.outputText(response.getResult().getOutput())
+                : null;
+        if (output == null) throw new ModelOutputParseException("Micro-batch output is empty");
+
+        int start = output.indexOf('{');
+        int arrayStart = output.indexOf('[');
+        if (arrayStart >= 0 && (start < 0 || arrayStart < start)) start = arrayStart;
+        int end = Math.max(output.lastIndexOf('}'), output.lastIndexOf(']'));
+        if (start < 0 || end < start) throw new ModelOutputParseException("Micro-batch output holds no JSON");
+
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(output.substring(start, end + 1));
+        } catch (JsonProcessingException e) {
+            throw new ModelOutputParseException("Micro-batch output is not valid JSON: " + e.getOriginalMessage());
+        }
+        JsonNode array = root.isArray() ? root : root.path("results");
+        if (!array.isArray()) throw new ModelOutputParseException("Micro-batch output has no results array");
+
+        Map<String, ObjectNode> results = new HashMap<>();
+        for (JsonNode element : array) {
+            if (element instanceof ObjectNode result && result.path("requestId").isTextual()) {
+                String requestId = result.remove("requestId").asText();
+                results.putIfAbsent(requestId, result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Builds the response of one diff of the batch: its own analysis object, with an even share of the call's tokens.
+     */
+    private static ChatResponse itemResponse(ChatResponse response, ObjectNode result, int batchSize) {
+        ChatResponseMetadata metadata = response.getMetadata();
+        Usage usage = metadata.getUsage();
+        ChatResponseMetadata.Builder itemMetadata = ChatResponseMetadata.builder().model(metadata.getModel());
+        if (usage != null && usage.getPromptTokens() != null && usage.getCompletionTokens() != null) {
+            itemMetadata.usage(new DefaultUsage(usage.getPromptTokens() / batchSize, usage.getCompletionTokens() / batchSize));
+        }
+        Integer retries = metadata.get(AiChatService.RETRIES_METADATA_KEY);
+        if (retries != null) itemMetadata.keyValue(AiChatService.RETRIES_METADATA_KEY, retries);
+
+        return ChatResponse.builder()
+                           .generations(List.of(new Generation(new AssistantMessage(result.toString()))))
+                           .metadata(itemMetadata.build())
+                           .build();
+    }
+
+    private void countItems(String outcome, int count) {
+        meterRegistry.counter("prcopilot.microbatch.items", "outcome", outcome).increment(count);
+    }
+
+    /**
+     * A diff to analyze and the analysis parameters that may differ within a batch.
+     *
+     * @param diff             the diff, must not be {@code null}
+     * @param requestId        the request identifier, may be {@code null}
+     * @param maxSummaryLength the maximum summary length, may be {@code null}
+     * @param tenant           the tenant the analysis is charged to, may be {@code null} for the default tenant
+     */
+    record Request(String diff, String requestId, Integer maxSummaryLength, String tenant) {
+    }
+
+    /**
+     * What diffs must share to be sent in one call.
+     */
+    private record Key(
+            String tenant,
+            AiProvider provider,
+            ChatClient chatClient,
+            ChatOptions chatOptions,
+            String language,
+            String style,
+            AnalysisPriority priority
+    ) {
+    }
+
+    /**
+     * A diff waiting for its batch, completed with its analysis, or empty if it must be analyzed alone.
+     */
+    private static final class Pending {
+
+        private final Request request;
+        private final long deadlineMillis;
+        private final CompletableFuture<Optional<AnalyzeDiffResponse>> result = new CompletableFuture<>();
+
+        private Pending(Request request, long deadlineMillis) {
+            this.request = request;
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+
+    /**
+     * The diffs gathered for one call, guarded by the lock on {@code openBatches} until it is sent.
+     */
+    private static final class Batch {
+
+        private final Key key;
+        private final List<Pending> items = new ArrayList<>();
+        private int chars;
+
+        private Batch(Key key) {
+            this.key = key;
+        }
+    }
+}
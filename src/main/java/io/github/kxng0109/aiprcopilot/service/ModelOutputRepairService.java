@@ -0,0 +1,159 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.AiRepairModel;
+import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service fixing model output that could not be parsed, instead of failing the request.
+ * <p>
+ * The broken output, without the diff, is sent once to the {@code AiRepairModel} with an instruction to turn it into
+ * JSON matching the analysis schema. The repair call is never retried and must finish within both the repair model's
+ * timeout and what is left of the original call's deadline. If the repaired output parses, it is returned in place of the original, with
+ * the original model, provider and token usage plus the repair's in its metadata, which is marked as repaired. If
+ * the repair fails for any reason, the original {@code ModelOutputParseException} is thrown.
+ * <p>
+ * Repairs are counted by {@code prcopilot.repair.attempts}, tagged by outcome. The tokens each repair used are
+ * recorded in {@code prcopilot.repair.tokens.used}, and the tokens of the original call, which a full retry would
+ * have spent again, minus those of the repair in {@code prcopilot.repair.tokens.saved}.
+ */
+@Service
+@Slf4j
+class ModelOutputRepairService {
+
+    private final ObjectProvider<AiRepairModel> repairModel;
+    private final PromptBuilderService promptBuilderService;
+    private final AiChatService aiChatService;
+    private final DiffResponseMapperService diffResponseMapperService;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary tokensUsed;
+    private final DistributionSummary tokensSaved;
+
+    /**
+     * Constructs a {@code ModelOutputRepairService} and registers its metrics.
+     *
+     * @param repairModel               the model to repair output with, if enabled, must not be {@code null}
+     * @param promptBuilderService      the service building the repair prompt, must not be {@code null}
+     * @param aiChatService             the service calling the repair model, must not be {@code null}
+     * @param diffResponseMapperService the service mapping the repaired output, must not be {@code null}
+     * @param meterRegistry             the registry to publish metrics to, must not be {@code null}
+     */
+    ModelOutputRepairService(
+            ObjectProvider<AiRepairModel> repairModel,
+            PromptBuilderService promptBuilderService,
+            AiChatService aiChatService,
+            DiffResponseMapperService diffResponseMapperService,
+            MeterRegistry meterRegistry
+    ) {
+        this.repairModel = repairModel;
+        this.promptBuilderService = promptBuilderService;
+        this.aiChatService = aiChatService;
+        this.diffResponseMapperService = diffResponseMapperService;
+        this.meterRegistry = meterRegistry;
+        this.tokensUsed = meterRegistry.summary("prcopilot.repair.tokens.used");
+        this.tokensSaved = meterRegistry.summary("prcopilot.repair.tokens.saved");
+    }
+
+    /**
+     * Asks the repair model to fix output that could not be parsed and maps the result.
+     *
+     * @param failed         the response whose output could not be parsed, must not be {@code null}
+     * @param cause          the exception the output failed with, must not be {@code null}
+     * @param responseTime   the time taken by the original call, in milliseconds
+     * @param diff           the analyzed diff, used for touched files only, must not be {@code null}
+     * @param requestId      the unique request identifier, may be {@code null}
+     * @param provider       the name of the provider of the original call, must not be {@code null}
+     * @param priority       the lane the repair call waits for provider capacity in, must not be {@code null}
+     * @param deadlineMillis the time by which the original call, repair included, must have finished
+     * @return the response built from the repaired output, never {@code null}
+     * @throws ModelOutputParseException {@code cause}, if repair is disabled, no time is left or the output could not be repaired
+     */
+    public AnalyzeDiffResponse repair(
+            ChatResponse failed,
+            ModelOutputParseException cause,
+            long responseTime,
+            String diff,
+            String requestId,
+            String provider,
+            AnalysisPriority priority,
+            long deadlineMillis
+    ) {
+        AiRepairModel model = repairModel.getIfAvailable();
+        String brokenOutput = failed.getResult() != null
+                ? DiffResponseMapperService.outputText(failed.getResult().getOutput())
+                : null;
+        if (model == null || brokenOutput == null || brokenOutput.isBlank()) throw cause;
+
+        long start = System.currentTimeMillis();
+        long timeoutMillis = Math.min(model.timeoutMillis(), deadlineMillis - start);
+        if (timeoutMillis <= 0) {
+            recordAttempt("skipped");
+            log.warn("No time left to repair model output for requestId '{}'", requestId);
+            throw cause;
+        }
+
+        try {
+            ChatResponse repaired = aiChatService.callAiModelOnce(
+                    promptBuilderService.buildOutputRepairPrompt(brokenOutput),
+                    model.chatClient(),
+                    model.chatOptions(),
+                    model.provider(),
+                    timeoutMillis,
+                    priority
+            );
+            AnalyzeDiffResponse mapped = diffResponseMapperService.mapToAnalyzeDiffResponse(
+                    repaired,
+                    responseTime + System.currentTimeMillis() - start,
+                    diff,
+                    requestId,
+                    model.provider().getValue()
+            );
+
+            Integer originalTokens = totalTokens(failed);
+            Integer repairTokens = totalTokens(repaired);
+            if (repairTokens != null) {
+                tokensUsed.record(repairTokens);
+                if (originalTokens != null) tokensSaved.record(Math.max(0, originalTokens - repairTokens));
+            }
+            recordAttempt("success");
+            log.info("Repaired unparseable model output for requestId '{}' with provider '{}' in {} ms",
+                     requestId,
+                     model.provider().getValue(),
+                     System.currentTimeMillis() - start
+            );
+
+            return mapped.toBuilder()
+                         .metadata(mapped.metadata().toBuilder()
+                                         .provider(provider)
+                                         .modelName(failed.getMetadata().getModel())
+                                         .tokensUsed(originalTokens != null && repairTokens != null
+                                                             ? originalTokens + repairTokens
+                                                             : originalTokens)
+                                         .retries(failed.getMetadata().getOrDefault(AiChatService.RETRIES_METADATA_KEY, 0))
+                                         .repaired(true)
+                                         .build())
+                         .build();
+        } catch (RuntimeException e) {
+            recordAttempt("failure");
+            log.warn("Could not repair model output for requestId '{}': {}", requestId, e.getMessage());
+            throw cause;
+        }
+    }
+
+    private static Integer totalTokens(ChatResponse response) {
+        Usage usage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        return usage != null ? usage.getTotalTokens() : null;
+    }
+
+    private void recordAttempt(String outcome) {
+        meterRegistry.counter("prcopilot.repair.attempts", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,208 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.ModelOutputSchema;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client of the OpenAI Batch API.
+ * <p>
+ * Items are written as a JSONL file of {@code /v1/chat/completions} requests, uploaded through the Files API and
+ * submitted as a batch with a 24 hour completion window. Once the batch has ended, its output and error files are
+ * downloaded and every line is turned into a {@code Result}. Batches that expired or were cancelled still return the
+ * items that finished in time.
+ */
+@Service
+@Slf4j
+class OpenAiBatchClient implements ProviderBatchClient {
+
+    private static final String ENDPOINT = "/v1/chat/completions";
+    private static final String COMPLETION_WINDOW = "24h";
+
+    private final MultiAiConfigurationProperties aiConfigurationProperties;
+    private final ObjectMapper objectMapper;
+    private final RestClient restClient;
+    private final String model;
+
+    /**
+     * Constructs an {@code OpenAiBatchClient} for the configured OpenAI base URL, API key and model.
+     *
+     * @param aiConfigurationProperties the AI configuration holding temperature and token limits, must not be {@code null}
+     * @param objectMapper              the mapper reading and writing batch files, must not be {@code null}
+     * @param restClientBuilder         the builder of the client calling OpenAI, must not be {@code null}
+     * @param environment               the environment holding the {@code spring.ai.openai} settings, must not be {@code null}
+     */
+    OpenAiBatchClient(
+            MultiAiConfigurationProperties aiConfigurationProperties,
+            ObjectMapper objectMapper,
+            RestClient.Builder restClientBuilder,
+            Environment environment
+    ) {
+        this.aiConfigurationProperties = aiConfigurationProperties;
+        this.objectMapper = objectMapper;
+        this.model = environment.getProperty("spring.ai.openai.chat.options.model", "gpt-4o");
+        this.restClient = restClientBuilder.clone()
+                                           .baseUrl(environment.getProperty("spring.ai.openai.base-url", "https://api.openai.com"))
+                                           .defaultHeader(HttpHeaders.AUTHORIZATION,
+                                                          "Bearer " + environment.getProperty("spring.ai.openai.api-key", ""))
+                                           .build();
+    }
+
+    @Override
+    public AiProvider provider() {
+        return AiProvider.OPENAI;
+    }
+
+    @Override
+    public String submit(List<Item> items) {
+        StringBuilder lines = new StringBuilder();
+        for (Item item : items) {
+            lines.append(json(Map.of(
+                    "custom_id", item.customId(),
+                    "method", "POST",
+                    "url", ENDPOINT,
+                    "body", requestBody(item)
+            ))).append('\n');
+        }
+
+        MultiValueMap<String, Object> upload = new LinkedMultiValueMap<>();
+        upload.add("purpose", "batch");
+        upload.add("file", new ByteArrayResource(lines.toString().getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public String getFilename() {
+                return "pr-copilot-batch.jsonl";
+            }
+        });
+        JsonNode file = restClient.post()
+                                  .uri("/v1/files")
+                                  .contentType(MediaType.MULTIPART_FORM_DATA)
+                                  .body(upload)
+                                  .retrieve()
+                                  .body(JsonNode.class);
+
+        JsonNode batch = restClient.post()
+                                   .uri("/v1/batches")
+                                   .contentType(MediaType.APPLICATION_JSON)
+                                   .body(Map.of(
+                                           "input_file_id", file.path("id").asText(),
+                                           "endpoint", ENDPOINT,
+                                           "completion_window", COMPLETION_WINDOW
+                                   ))
+                                   .retrieve()
+                                   .body(JsonNode.class);
+        return batch.path("id").asText();
+    }
+
+    @Override
+    public State poll(String batchId) {
+        JsonNode batch = batch(batchId);
+        return switch (batch.path("status").asText()) {
+            case "completed", "expired", "cancelled" -> new State(Status.ENDED, null);
+            case "failed" -> new State(Status.FAILED, batch.at("/errors/data/0/message").asText("Batch failed"));
+            default -> new State(Status.IN_PROGRESS, null);
+        };
+    }
+
+    @Override
+    public List<Result> results(String batchId) {
+        JsonNode batch = batch(batchId);
+        List<Result> results = new ArrayList<>();
+        for (String fileField : List.of("output_file_id", "error_file_id")) {
+            String fileId = batch.path(fileField).asText(null);
+            if (fileId == null || fileId.isBlank()) continue;
+
+            String content = restClient.get()
+                                       .uri("/v1/files/{fileId}/content", fileId)
+                                       .retrieve()
+                                       .body(String.class);
+            if (content == null) continue;
+            for (String line : content.split("\n")) {
+                if (!line.isBlank()) results.add(result(line));
+            }
+        }
+        return results;
+    }
+
+    private JsonNode batch(String batchId) {
+        return restClient.get()
+                         .uri("/v1/batches/{batchId}", batchId)
+                         .retrieve()
+                         .body(JsonNode.class);
+    }
+
+    private Map<String, Object> requestBody(Item item) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", model);
+        body.put("messages", List.of(
+                Map.of("role", "system", "content", ProviderBatchClient.text(item.prompt(), MessageType.SYSTEM)),
+                Map.of("role", "user", "content", ProviderBatchClient.text(item.prompt(), MessageType.USER))
+        ));
+        body.put("temperature", aiConfigurationProperties.getTemperature());
+        body.put("max_tokens", aiConfigurationProperties.getMaxTokens());
+        if (aiConfigurationProperties.isStructuredOutput()) {
+            body.put("response_format", Map.of(
+                    "type", "json_schema",
+                    "json_schema", Map.of("name", "analysis", "strict", true, "schema", ModelOutputSchema.asMap())
+            ));
+        }
+        return body;
+    }
+
+    private Result result(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping unreadable line of an OpenAI batch result file: {}", e.getOriginalMessage());
+            return new Result(null, null, "Unreadable result");
+        }
+
+        String customId = node.path("custom_id").asText();
+        JsonNode response = node.path("response");
+        if (!node.path("error").isMissingNode() && !node.path("error").isNull()) {
+            return new Result(customId, null, node.at("/error/message").asText("Request failed"));
+        }
+        if (response.path("status_code").asInt() != 200) {
+            return new Result(customId, null, response.at("/body/error/message").asText(
+                    "Request failed with status " + response.path("status_code").asInt()
+            ));
+        }
+
+        JsonNode body = response.path("body");
+        JsonNode choice = body.at("/choices/0");
+        return new Result(customId, ProviderBatchClient.chatResponse(
+                choice.at("/message/content").asText(null),
+                body.path("model").asText(null),
+                body.at("/usage/prompt_tokens").isNumber() ? body.at("/usage/prompt_tokens").asInt() : null,
+                body.at("/usage/completion_tokens").isNumber() ? body.at("/usage/completion_tokens").asInt() : null,
+                choice.path("finish_reason").asText(null)
+        ), null);
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not write OpenAI batch request", e);
+        }
+    }
+}
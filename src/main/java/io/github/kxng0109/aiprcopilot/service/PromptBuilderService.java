@@ -1,7 +1,9 @@
 package io.github.kxng0109.aiprcopilot.service;
 
 import lombok.extern.slf4j.Slf4j;
+import io.github.kxng0109.aiprcopilot.config.ModelOutputSchema;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.SystemPromptTemplate;
@@ -27,6 +29,12 @@ class PromptBuilderService {
     @Value("${prcopilot.prompts.system-prompt}")
     private Resource systemPromptResource;
 
+    @Value("${prcopilot.prompts.repair-prompt}")
+    private Resource repairPromptResource;
+
+    @Value("${prcopilot.prompts.micro-batch-prompt}")
+    private Resource microBatchPromptResource;
+
     /**
      * Builds a {@code Prompt} for analyzing a Git diff based on the provided parameters.
      * <p>
@@ -71,6 +79,58 @@ class PromptBuilderService {
         );
     }
 
+    /**
+     * Builds a {@code Prompt} for analyzing several small Git diffs in one call.
+     * <p>
+     * The system prompt is the one of a single analysis, followed by instructions to return one analysis per diff,
+     * each carrying the {@code requestId} its diff is introduced with, in a {@code results} array.
+     *
+     * @param language the programming language associated with the diffs, must not be {@code null} or empty
+     * @param style    the style or tone to use in the analyses, must not be {@code null} or empty
+     * @param diffs    the diffs, each with a {@code requestId} unique within the prompt, must not be {@code null} or empty
+     * @return a {@code Prompt} object containing structured messages ready for the batched analysis, never {@code null}
+     */
+    public Prompt buildMicroBatchPrompt(String language, String style, List<BatchedDiff> diffs) {
+        SystemPromptTemplate promptTemplate = new SystemPromptTemplate(loadSystemPrompt());
+        String systemContent = promptTemplate.createMessage(Map.of("language", language, "style", style)).getText()
+                + "\n\n" + loadPrompt(microBatchPromptResource);
+
+        StringBuilder userContent = new StringBuilder();
+        userContent.append("Please analyze each of these ").append(diffs.size())
+                   .append(" Git diffs separately with strict adherence to instructions.\n");
+        userContent.append("language: ").append(language).append("\n");
+        userContent.append("style: ").append(style).append("\n");
+        for (BatchedDiff diff : diffs) {
+            userContent.append("\nrequestId: ").append(diff.requestId()).append("\n");
+            if (diff.maxSummaryLength() != null) {
+                userContent.append("maxSummaryLength: ").append(diff.maxSummaryLength()).append("\n");
+            }
+            userContent.append("Diff: ```").append(diff.diff()).append("\n```\n");
+        }
+
+        return new Prompt(
+                List.of(new SystemMessage(systemContent), new UserMessage(userContent.toString()))
+        );
+    }
+
+
+    /**
+     * Builds a {@code Prompt} asking a model to turn output that could not be parsed into JSON matching the
+     * analysis schema.
+     * <p>
+     * Only the broken output and the schema are sent, not the diff, so the prompt stays small.
+     *
+     * @param brokenOutput the model output that could not be parsed, must not be {@code null}
+     * @return a {@code Prompt} object ready for the repair call, never {@code null}
+     */
+    public Prompt buildOutputRepairPrompt(String brokenOutput) {
+        String userContent = "Schema:\n" + ModelOutputSchema.JSON_SCHEMA
+                + "\nText to repair:\n" + brokenOutput;
+
+        return new Prompt(
+                List.of(new SystemMessage(loadPrompt(repairPromptResource)), new UserMessage(userContent))
+        );
+    }
 
     /**
      * Loads the system prompt content from a resource.
@@ -79,11 +139,25 @@ class PromptBuilderService {
      * @throws RuntimeException if an I/O error occurs while reading the resource
      */
     private String loadSystemPrompt() {
+        return loadPrompt(systemPromptResource);
+    }
+
+    private String loadPrompt(Resource resource) {
         try {
-            return new String(systemPromptResource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            return new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
         } catch (IOException e) {
-            log.error("Could not load system prompt: {}", e.getMessage(), e);
-            throw new RuntimeException("Could not load system prompt.", e);
+            log.error("Could not load prompt {}: {}", resource.getDescription(), e.getMessage(), e);
+            throw new RuntimeException("Could not load prompt " + resource.getDescription() + ".", e);
         }
     }
+
+    /**
+     * One diff of a micro-batch prompt.
+     *
+     * @param requestId        the identifier its analysis must be returned under, unique within the prompt
+     * @param diff             the Git diff content to be analyzed
+     * @param maxSummaryLength the optional maximum length for the summary of its analysis, may be {@code null}
+     */
+    record BatchedDiff(String requestId, String diff, Integer maxSummaryLength) {
+    }
 }
@@ -0,0 +1,141 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A provider's asynchronous batch API, which runs many prompts offline at a discount in exchange for results that
+ * may take hours.
+ * <p>
+ * Implementations translate prompts into the provider's batch request format and its results back into
+ * {@code ChatResponse}s, so {@code ProviderBatchService} can map them like any other model response.
+ */
+interface ProviderBatchClient {
+
+    /**
+     * Returns the provider whose batch API this client calls.
+     *
+     * @return the provider, never {@code null}
+     */
+    AiProvider provider();
+
+    /**
+     * Submits prompts as one batch.
+     *
+     * @param items the prompts, each with an ID unique within the batch, must not be {@code null} or empty
+     * @return the provider's ID of the batch, never {@code null}
+     * @throws org.springframework.web.client.RestClientException if the provider rejected the batch
+     */
+    String submit(List<Item> items);
+
+    /**
+     * Returns the processing state of a batch.
+     *
+     * @param batchId the provider's ID of the batch, must not be {@code null}
+     * @return the state, never {@code null}
+     * @throws org.springframework.web.client.RestClientException if the provider could not be reached
+     */
+    State poll(String batchId);
+
+    /**
+     * Returns the results of a batch that has ended. Items the provider did not finish have no result.
+     *
+     * @param batchId the provider's ID of the batch, must not be {@code null}
+     * @return the results, never {@code null}
+     * @throws org.springframework.web.client.RestClientException if the provider could not be reached
+     */
+    List<Result> results(String batchId);
+
+    /**
+     * Joins the text of every message of the given type in a prompt.
+     *
+     * @param prompt the prompt, must not be {@code null}
+     * @param type   the message type, must not be {@code null}
+     * @return the joined text, never {@code null}
+     */
+    static String text(Prompt prompt, MessageType type) {
+        return prompt.getInstructions()
+                     .stream()
+                     .filter(message -> message.getMessageType() == type)
+                     .map(Message::getText)
+                     .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Builds the {@code ChatResponse} of a single batch item.
+     *
+     * @param text             the model output, may be {@code null}
+     * @param model            the model that produced it, may be {@code null}
+     * @param promptTokens     the prompt tokens used, may be {@code null}
+     * @param completionTokens the completion tokens used, may be {@code null}
+     * @param finishReason     why the model stopped, may be {@code null}
+     * @return the response, never {@code null}
+     */
+    static ChatResponse chatResponse(
+            String text,
+            String model,
+            Integer promptTokens,
+            Integer completionTokens,
+            String finishReason
+    ) {
+        Generation generation = new Generation(
+                new AssistantMessage(text),
+                ChatGenerationMetadata.builder().finishReason(finishReason).build()
+        );
+        return ChatResponse.builder()
+                           .generations(List.of(generation))
+                           .metadata(ChatResponseMetadata.builder()
+                                                         .model(model)
+                                                         .usage(new DefaultUsage(promptTokens, completionTokens))
+                                                         .build())
+                           .build();
+    }
+
+    /**
+     * A prompt to run as part of a batch.
+     *
+     * @param customId the ID the item's result is returned under, unique within the batch
+     * @param prompt   the prompt
+     */
+    record Item(String customId, Prompt prompt) {
+    }
+
+    /**
+     * The processing state of a batch.
+     *
+     * @param status  whether the batch is still processing, has ended or has failed as a whole
+     * @param message the provider's reason for a failed batch, may be {@code null}
+     */
+    record State(Status status, String message) {
+    }
+
+    /**
+     * The result of one item: the model response, or the error the provider reported for it.
+     *
+     * @param customId the item's ID
+     * @param response the model response, {@code null} if the item failed
+     * @param error    the provider's error, {@code null} if the item succeeded
+     */
+    record Result(String customId, ChatResponse response, String error) {
+    }
+
+    /**
+     * Whether a batch is still processing, has ended with per-item results, or failed as a whole.
+     */
+    enum Status {
+        IN_PROGRESS,
+        ENDED,
+        FAILED
+    }
+}
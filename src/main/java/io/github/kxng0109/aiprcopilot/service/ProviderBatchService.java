@@ -0,0 +1,457 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisJobStatus;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.BatchAnalyzeDiffResult;
+import io.github.kxng0109.aiprcopilot.api.dto.ErrorResponse;
+import io.github.kxng0109.aiprcopilot.api.dto.ProviderBatchResponse;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotProviderBatchProperties;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.github.kxng0109.aiprcopilot.error.DiffTooLargeException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Service analyzing diffs offline through a provider's batch API, for backfills that can wait hours in exchange for
+ * a lower price.
+ * <p>
+ * A submitted set of requests is validated, turned into prompts by {@code PromptBuilderService} and sent as one batch
+ * through the {@code ProviderBatchClient} of {@code prcopilot.provider-batch.provider}. Diffs over the size limit are
+ * rejected rather than chunked. Running batches are polled every {@code poll-interval-millis}; once the provider has
+ * ended a batch, each item's output is mapped through {@code DiffResponseMapperService}, and items that failed or
+ * could not be parsed get an {@code ErrorResponse} instead. Batches are kept in memory and evicted
+ * {@code ttl-millis} after they finish, so a restart forgets them; a batch the provider still holds can be attached
+ * again by its provider ID, though without the original requests its results are only known by position.
+ * <p>
+ * Submitted requests are counted by {@code prcopilot.provider.batch.requests}, finished batches by
+ * {@code prcopilot.provider.batch.completed} and their items by {@code prcopilot.provider.batch.items}, tagged by
+ * outcome, and running batches are published as the {@code prcopilot.provider.batch.running} gauge.
+ */
+@Service
+@Slf4j
+public class ProviderBatchService {
+
+    private final PrCopilotProviderBatchProperties batchProperties;
+    private final PrCopilotAnalysisProperties analysisProperties;
+    private final PromptBuilderService promptBuilderService;
+    private final DiffResponseMapperService diffResponseMapperService;
+    private final Validator validator;
+    private final MeterRegistry meterRegistry;
+    private final ProviderBatchClient client;
+    private final ScheduledExecutorService poller;
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a {@code ProviderBatchService} and, if provider batches are enabled, starts polling.
+     *
+     * @param batchProperties           the provider batch configuration, must not be {@code null}
+     * @param analysisProperties        the analysis configuration holding the size limit and defaults, must not be {@code null}
+     * @param promptBuilderService      the service building each request's prompt, must not be {@code null}
+     * @param diffResponseMapperService the service mapping each item's output, must not be {@code null}
+     * @param clients                   the available provider batch clients, must not be {@code null}
+     * @param validator                 the validator requests are checked with, must not be {@code null}
+     * @param meterRegistry             the registry to publish metrics to, must not be {@code null}
+     * @throws IllegalStateException if provider batches are enabled for a provider without a batch client
+     */
+    ProviderBatchService(
+            PrCopilotProviderBatchProperties batchProperties,
+            PrCopilotAnalysisProperties analysisProperties,
+            PromptBuilderService promptBuilderService,
+            DiffResponseMapperService diffResponseMapperService,
+            List<ProviderBatchClient> clients,
+            Validator validator,
+            MeterRegistry meterRegistry
+    ) {
+        this.batchProperties = batchProperties;
+        this.analysisProperties = analysisProperties;
+        this.promptBuilderService = promptBuilderService;
+        this.diffResponseMapperService = diffResponseMapperService;
+        this.validator = validator;
+        this.meterRegistry = meterRegistry;
+        this.client = clients.stream()
+                             .filter(candidate -> candidate.provider() == batchProperties.getProvider())
+                             .findFirst()
+                             .orElse(null);
+
+        if (!batchProperties.isEnabled()) {
+            this.poller = null;
+            return;
+        }
+        if (client == null) {
+            throw new IllegalStateException(String.format(
+                    "Provider '%s' has no batch API; set prcopilot.provider-batch.provider to openai or anthropic",
+                    batchProperties.getProvider().getValue()
+            ));
+        }
+
+        this.poller = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("provider-batch-poller").daemon(true).factory()
+        );
+        poller.scheduleWithFixedDelay(
+                this::pollBatches,
+                batchProperties.getPollIntervalMillis(),
+                batchProperties.getPollIntervalMillis(),
+                TimeUnit.MILLISECONDS
+        );
+        meterRegistry.gauge("prcopilot.provider.batch.running", Tags.empty(), batches, stored -> stored.values()
+                                                                                                     .stream()
+                                                                                                     .filter(Batch::isRunning)
+                                                                                                     .count());
+    }
+
+    /**
+     * Submits requests to the provider's batch API as one batch.
+     *
+     * @param requests the requests to analyze, must not be {@code null}
+     * @return the state of the submitted batch, never {@code null}
+     * @throws CustomApiException    with status 404 if provider batches are disabled, 400 if there are no requests,
+     *                               too many, or an invalid one, and 502 if the provider rejected the batch
+     * @throws DiffTooLargeException if a diff exceeds the maximum allowed size
+     */
+    public ProviderBatchResponse submit(List<AnalyzeDiffRequest> requests) {
+        if (!batchProperties.isEnabled()) {
+            throw new CustomApiException("Provider batches are not enabled", HttpStatus.NOT_FOUND);
+        }
+        if (requests == null || requests.isEmpty()) {
+            throw new CustomApiException("A provider batch needs at least one request", HttpStatus.BAD_REQUEST);
+        }
+        if (requests.size() > batchProperties.getMaxRequests()) {
+            throw new CustomApiException(
+                    String.format("A provider batch can hold at most %d requests", batchProperties.getMaxRequests()),
+                    HttpStatus.BAD_REQUEST
+            );
+        }
+
+        List<ProviderBatchClient.Item> items = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            items.add(new ProviderBatchClient.Item(String.valueOf(i), prompt(i + 1, requests.get(i))));
+        }
+
+        String providerBatchId;
+        try {
+            providerBatchId = client.submit(items);
+        } catch (RestClientException e) {
+            log.warn("Provider '{}' rejected a batch of {} requests: {}",
+                     client.provider().getValue(), requests.size(), e.getMessage());
+            throw new CustomApiException(
+                    String.format("Provider '%s' rejected the batch: %s", client.provider().getValue(), e.getMessage()),
+                    HttpStatus.BAD_GATEWAY,
+                    e
+            );
+        }
+
+        Batch batch = new Batch(UUID.randomUUID().toString(), providerBatchId, List.copyOf(requests));
+        batches.put(batch.id, batch);
+        meterRegistry.counter("prcopilot.provider.batch.requests", "provider", client.provider().getValue())
+                     .increment(requests.size());
+        log.info("Submitted provider batch {} of {} requests to provider '{}' as '{}'",
+                 batch.id, requests.size(), client.provider().getValue(), providerBatchId);
+        return batch.snapshot();
+    }
+
+    /**
+     * Returns the current state of a batch.
+     *
+     * @param batchId the batch identifier, must not be {@code null}
+     * @return the state of the batch, never {@code null}
+     * @throws CustomApiException with status 404 if there is no such batch or it has expired
+     */
+    public ProviderBatchResponse get(String batchId) {
+        Batch batch = batches.get(batchId);
+        if (batch == null || batch.isExpired(System.currentTimeMillis())) {
+            throw new CustomApiException("Provider batch '" + batchId + "' not found or expired", HttpStatus.NOT_FOUND);
+        }
+        return batch.snapshot();
+    }
+
+    /**
+     * Returns the state of a batch by the provider's ID, attaching it again if this instance does not know it, for
+     * example after a restart.
+     * <p>
+     * An attached batch is polled once right away and then like any other. Its original requests are not known, so
+     * its results are ordered by item ID, carry no request ID, and take touched files only from the model output.
+     *
+     * @param providerBatchId the provider's ID of the batch, must not be {@code null}
+     * @return the state of the batch, never {@code null}
+     * @throws CustomApiException with status 404 if provider batches are disabled or the provider does not know the
+     *                            batch, and 502 if the provider could not be reached
+     */
+    public ProviderBatchResponse attach(String providerBatchId) {
+        if (!batchProperties.isEnabled()) {
+            throw new CustomApiException("Provider batches are not enabled", HttpStatus.NOT_FOUND);
+        }
+        long now = System.currentTimeMillis();
+        for (Batch batch : batches.values()) {
+            if (batch.providerBatchId.equals(providerBatchId) && !batch.isExpired(now)) return batch.snapshot();
+        }
+
+        Batch batch = new Batch(UUID.randomUUID().toString(), providerBatchId, null);
+        try {
+            poll(batch);
+        } catch (HttpClientErrorException.NotFound e) {
+            throw new CustomApiException(
+                    String.format("Provider '%s' has no batch '%s'", client.provider().getValue(), providerBatchId),
+                    HttpStatus.NOT_FOUND,
+                    e
+            );
+        } catch (RestClientException e) {
+            throw new CustomApiException(
+                    String.format("Could not reach provider '%s' for batch '%s': %s",
+                                  client.provider().getValue(), providerBatchId, e.getMessage()),
+                    HttpStatus.BAD_GATEWAY,
+                    e
+            );
+        }
+
+        Batch attached = batches.values()
+                                .stream()
+                                .filter(existing -> existing.providerBatchId.equals(providerBatchId))
+                                .findFirst()
+                                .orElseGet(() -> {
+                                    batches.put(batch.id, batch);
+                                    return batch;
+                                });
+        log.info("Attached provider batch '{}' of provider '{}' as {}",
+                 providerBatchId, client.provider().getValue(), attached.id);
+        return attached.snapshot();
+    }
+
+    /**
+     * Stops polling.
+     */
+    @PreDestroy
+    void shutdown() {
+        if (poller != null) poller.shutdownNow();
+    }
+
+    /**
+     * Polls every running batch once, collecting the results of those that have ended, and evicts expired batches.
+     */
+    void pollBatches() {
+        long now = System.currentTimeMillis();
+        batches.values().removeIf(batch -> batch.isExpired(now));
+
+        for (Batch batch : batches.values()) {
+            if (!batch.isRunning()) continue;
+            try {
+                poll(batch);
+            } catch (RuntimeException e) {
+                log.warn("Could not poll provider batch {} ('{}'), retrying on the next poll: {}",
+                         batch.id, batch.providerBatchId, e.getMessage());
+            }
+        }
+    }
+
+    private void poll(Batch batch) {
+        ProviderBatchClient.State state = client.poll(batch.providerBatchId);
+        switch (state.status()) {
+            case IN_PROGRESS -> {
+            }
+            case FAILED -> {
+                log.warn("Provider batch {} ('{}') failed: {}", batch.id, batch.providerBatchId, state.message());
+                batch.fail(AnalysisFailures.errorResponse(HttpStatus.BAD_GATEWAY, state.message(), null));
+                meterRegistry.counter("prcopilot.provider.batch.completed", "outcome", "failure").increment();
+            }
+            case ENDED -> {
+                batch.succeed(collect(batch, client.results(batch.providerBatchId)));
+                meterRegistry.counter("prcopilot.provider.batch.completed", "outcome", "success").increment();
+                log.info("Provider batch {} ('{}') finished", batch.id, batch.providerBatchId);
+            }
+        }
+    }
+
+    /**
+     * Maps each item's result back to its request, in submission order, or, for an attached batch whose requests are
+     * not known, in item ID order.
+     */
+    private List<BatchAnalyzeDiffResult> collect(Batch batch, List<ProviderBatchClient.Result> itemResults) {
+        long elapsedMillis = System.currentTimeMillis() - batch.submittedMillis;
+        if (batch.requests == null) {
+            return itemResults.stream()
+                              .filter(result -> position(result) >= 0)
+                              .sorted(Comparator.comparingInt(ProviderBatchService::position))
+                              .map(result -> item(position(result) + 1, null, null, result, elapsedMillis))
+                              .toList();
+        }
+
+        Map<String, ProviderBatchClient.Result> byId = new HashMap<>();
+        for (ProviderBatchClient.Result result : itemResults) {
+            if (result.customId() != null) byId.put(result.customId(), result);
+        }
+
+        List<BatchAnalyzeDiffResult> results = new ArrayList<>(batch.requests.size());
+        for (int i = 0; i < batch.requests.size(); i++) {
+            AnalyzeDiffRequest request = batch.requests.get(i);
+            results.add(item(i + 1, request.requestId(), request.diff(), byId.get(String.valueOf(i)), elapsedMillis));
+        }
+        return results;
+    }
+
+    private BatchAnalyzeDiffResult item(
+            int line,
+            String requestId,
+            String diff,
+            ProviderBatchClient.Result result,
+            long elapsedMillis
+    ) {
+        BatchAnalyzeDiffResult.BatchAnalyzeDiffResultBuilder builder = BatchAnalyzeDiffResult.builder()
+                                                                                             .line(line)
+                                                                                             .requestId(requestId);
+        if (result == null || result.response() == null) {
+            String message = result == null ? "The provider returned no result for this request" : result.error();
+            builder.error(AnalysisFailures.errorResponse(HttpStatus.BAD_GATEWAY, message, requestId));
+        } else {
+            try {
+                builder.response(diffResponseMapperService.mapToAnalyzeDiffResponse(
+                        result.response(),
+                        elapsedMillis,
+                        diff,
+                        requestId,
+                        client.provider().getValue()
+                ));
+            } catch (RuntimeException e) {
+                builder.error(AnalysisFailures.errorResponse(AnalysisFailures.statusOf(e), e.getMessage(), requestId));
+            }
+        }
+
+        BatchAnalyzeDiffResult mapped = builder.build();
+        meterRegistry.counter("prcopilot.provider.batch.items", "outcome", mapped.error() == null ? "success" : "failure")
+                     .increment();
+        return mapped;
+    }
+
+    /**
+     * Returns the submission position encoded in an item's ID, or {@code -1} for IDs this service did not assign.
+     */
+    private static int position(ProviderBatchClient.Result result) {
+        try {
+            return result.customId() == null ? -1 : Integer.parseInt(result.customId());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Prompt prompt(int position, AnalyzeDiffRequest request) {
+        Set<ConstraintViolation<AnalyzeDiffRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            throw new CustomApiException(
+                    "Request " + position + ": " + violations.stream()
+                                                             .map(ConstraintViolation::getMessage)
+                                                             .sorted()
+                                                             .collect(Collectors.joining(", ")),
+                    HttpStatus.BAD_REQUEST
+            );
+        }
+
+        int maxDiffChars = analysisProperties.getMaxDiffChars();
+        if (request.diff().length() > maxDiffChars) {
+            throw new DiffTooLargeException(String.format(
+                    "Request %d: diff exceeded maximum allowed size of %d characters", position, maxDiffChars
+            ));
+        }
+
+        return promptBuilderService.buildDiffAnalysisPrompt(
+                useDefaultIfBlank(request.language(), analysisProperties.getDefaultLanguage()),
+                useDefaultIfBlank(request.style(), analysisProperties.getDefaultStyle()),
+                request.diff(),
+                request.maxSummaryLength(),
+                request.requestId()
+        );
+    }
+
+    private static String useDefaultIfBlank(String givenValue, String defaultValue) {
+        return givenValue == null || givenValue.isBlank() ? defaultValue : givenValue;
+    }
+
+    /**
+     * The state of one batch, updated by the poller. The requests of a batch attached by its provider ID are
+     * {@code null}.
+     */
+    private final class Batch {
+
+        private final String id;
+        private final String providerBatchId;
+        private final List<AnalyzeDiffRequest> requests;
+        private final OffsetDateTime submittedAt = OffsetDateTime.now();
+        private final long submittedMillis = System.currentTimeMillis();
+
+        private AnalysisJobStatus status = AnalysisJobStatus.RUNNING;
+        private OffsetDateTime completedAt;
+        private List<BatchAnalyzeDiffResult> results;
+        private ErrorResponse error;
+        private long expiresAtMillis = Long.MAX_VALUE;
+
+        private Batch(String id, String providerBatchId, List<AnalyzeDiffRequest> requests) {
+            this.id = id;
+            this.providerBatchId = providerBatchId;
+            this.requests = requests;
+        }
+
+        private synchronized boolean isRunning() {
+            return status == AnalysisJobStatus.RUNNING;
+        }
+
+        private synchronized void succeed(List<BatchAnalyzeDiffResult> results) {
+            this.results = List.copyOf(results);
+            finish(AnalysisJobStatus.SUCCEEDED);
+        }
+
+        private synchronized void fail(ErrorResponse error) {
+            this.error = error;
+            finish(AnalysisJobStatus.FAILED);
+        }
+
+        private void finish(AnalysisJobStatus status) {
+            this.status = status;
+            completedAt = OffsetDateTime.now();
+            expiresAtMillis = System.currentTimeMillis() + batchProperties.getTtlMillis();
+        }
+
+        private synchronized boolean isExpired(long nowMillis) {
+            return expiresAtMillis <= nowMillis;
+        }
+
+        private int requestCount() {
+            if (requests != null) return requests.size();
+            return results != null ? results.size() : 0;
+        }
+
+        private synchronized ProviderBatchResponse snapshot() {
+            return ProviderBatchResponse.builder()
+                                        .batchId(id)
+                                        .provider(client.provider().getValue())
+                                        .providerBatchId(providerBatchId)
+                                        .status(status)
+                                        .submittedAt(submittedAt)
+                                        .completedAt(completedAt)
+                                        .requestCount(requestCount())
+                                        .results(results)
+                                        .error(error)
+                                        .build();
+        }
+    }
+}
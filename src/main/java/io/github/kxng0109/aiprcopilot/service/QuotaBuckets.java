@@ -0,0 +1,79 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A requests-per-minute and a tokens-per-minute bucket, refilling continuously over a minute. A capacity of
+ * {@code 0} leaves that dimension unlimited.
+ * <p>
+ * Balances may go negative; a negative balance is the debt the next caller has to wait out.
+ */
+final class QuotaBuckets {
+
+    private static final double NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final double requestCapacity;
+    private final double tokenCapacity;
+    private double requests;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    QuotaBuckets(int requestsPerMinute, long tokensPerMinute) {
+        this.requestCapacity = requestsPerMinute;
+        this.tokenCapacity = tokensPerMinute;
+        this.requests = requestCapacity;
+        this.tokens = tokenCapacity;
+    }
+
+    /**
+     * Caps a token estimate at the per-minute budget, since a single call larger than the whole
+     * budget can only ever wait for a full bucket.
+     */
+    long clampTokens(long estimatedTokens) {
+        return tokenCapacity > 0 ? Math.min(estimatedTokens, (long) tokenCapacity) : 0;
+    }
+
+    /**
+     * Debits one request and the given tokens.
+     *
+     * @return the nanoseconds to wait before calling, or the negated wait if it exceeds {@code maxWaitNanos},
+     * in which case nothing is debited
+     */
+    synchronized long reserve(long estimatedTokens, long maxWaitNanos) {
+        refill();
+
+        long waitNanos = Math.max(
+                deficitNanos(requestCapacity, requests - 1),
+                deficitNanos(tokenCapacity, tokens - estimatedTokens)
+        );
+        if (waitNanos > maxWaitNanos) return -Math.max(1, waitNanos);
+
+        if (requestCapacity > 0) requests -= 1;
+        if (tokenCapacity > 0) tokens -= estimatedTokens;
+        return waitNanos;
+    }
+
+    synchronized void refund(int refundedRequests, long refundedTokens) {
+        refill();
+        if (requestCapacity > 0) requests = Math.min(requestCapacity, requests + refundedRequests);
+        if (tokenCapacity > 0) tokens = Math.min(tokenCapacity, tokens + refundedTokens);
+    }
+
+    synchronized double availableTokens() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double elapsedMinutes = (now - lastRefillNanos) / NANOS_PER_MINUTE;
+        lastRefillNanos = now;
+        requests = Math.min(requestCapacity, requests + elapsedMinutes * requestCapacity);
+        tokens = Math.min(tokenCapacity, tokens + elapsedMinutes * tokenCapacity);
+    }
+
+    private static long deficitNanos(double capacity, double balanceAfterDebit) {
+        if (capacity <= 0 || balanceAfterDebit >= 0) return 0;
+        return (long) Math.ceil(-balanceAfterDebit / capacity * NANOS_PER_MINUTE);
+    }
+}
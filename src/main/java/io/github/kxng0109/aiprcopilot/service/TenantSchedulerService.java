@@ -0,0 +1,427 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotTenantProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Service scheduling analyses fairly across the tenants sharing a deployment.
+ * <p>
+ * Every analysis is charged to a tenant, taken from the request and defaulting to
+ * {@code prcopilot.tenants.default-tenant}. An analysis first debits its estimated tokens (the diff's estimated
+ * tokens plus {@code max-tokens}) from the tenant's tokens-per-minute bucket, waiting for it to recover if needed,
+ * and then waits for one of the {@code max-concurrent} analysis slots.
+ * <p>
+ * Waiting analyses are queued per tenant and slots are handed out by deficit round-robin: each tenant with queued
+ * analyses is visited in turn and credited {@code quantum-tokens} times its weight, and its queued analyses start
+ * while their estimated tokens fit in its credit. A tenant sending large diffs therefore gets fewer slots per round
+ * than one sending small ones, and a tenant at its own {@code max-concurrent} is skipped without being credited.
+ * Once the analysis finishes, the debit is settled against the tokens it actually used. Analyses that finish
+ * asynchronously, such as streams, hold a {@link Lease} from {@link #admit} instead and release it when done.
+ * <p>
+ * Analyses whose quota would not recover, or that get no slot, within {@code queue-timeout-millis} are rejected
+ * with a {@code CapacityExceededException}, reported as 429 and 503 respectively.
+ *
+ * <p>Per-tenant throughput, queueing and token consumption are published as {@code prcopilot.tenants.*},
+ * tagged by tenant.
+ */
+@Service
+@Slf4j
+class TenantSchedulerService {
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final Pattern TENANT = Pattern.compile(AnalyzeDiffRequest.TENANT_PATTERN);
+
+    private final PrCopilotTenantProperties tenantProperties;
+    private final MultiAiConfigurationProperties aiConfigurationProperties;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    private final Deque<Tenant> activeTenants = new ArrayDeque<>();
+    private int inFlight;
+
+    /**
+     * Constructs a {@code TenantSchedulerService}.
+     *
+     * @param tenantProperties          the tenant configuration, must not be {@code null}
+     * @param aiConfigurationProperties the AI configuration holding {@code max-tokens}, must not be {@code null}
+     * @param meterRegistry             the registry to publish metrics to, must not be {@code null}
+     */
+    TenantSchedulerService(
+            PrCopilotTenantProperties tenantProperties,
+            MultiAiConfigurationProperties aiConfigurationProperties,
+            MeterRegistry meterRegistry
+    ) {
+        this.tenantProperties = tenantProperties;
+        this.aiConfigurationProperties = aiConfigurationProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs an analysis once the request's tenant has quota and a slot for it.
+     *
+     * @param request  the request being analyzed, must not be {@code null}
+     * @param analysis the analysis to run, must not be {@code null}
+     * @return the analysis' response, never {@code null}
+     * @throws CapacityExceededException if the tenant's quota would not recover, or no slot became free, in time
+     * @throws CustomApiException        if the tenant is invalid or the thread is interrupted while waiting
+     */
+    public AnalyzeDiffResponse schedule(AnalyzeDiffRequest request, Supplier<AnalyzeDiffResponse> analysis) {
+        Lease lease = admit(request);
+        AnalyzeDiffResponse response;
+        try {
+            response = analysis.get();
+        } catch (RuntimeException e) {
+            lease.release(null, false);
+            throw e;
+        }
+        lease.release(response != null && response.metadata() != null ? response.metadata().tokensUsed() : null, true);
+        return response;
+    }
+
+    /**
+     * Waits until the request's tenant has quota and a slot for an analysis that finishes later, such as a stream.
+     * <p>
+     * The returned lease holds the slot and the token debit until it is released, which must happen once the
+     * analysis completes, fails or is cancelled.
+     *
+     * @param request the request being analyzed, must not be {@code null}
+     * @return the lease on the tenant's slot, which does nothing when tenant scheduling is disabled, never {@code null}
+     * @throws CapacityExceededException if the tenant's quota would not recover, or no slot became free, in time
+     * @throws CustomApiException        if the tenant is invalid or the thread is interrupted while waiting
+     */
+    public Lease admit(AnalyzeDiffRequest request) {
+        if (!tenantProperties.isEnabled()) return new Lease(null, 0);
+
+        Tenant tenant = tenant(request.tenant());
+        long estimatedTokens = estimateTokens(request.diff());
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(tenantProperties.getQueueTimeoutMillis());
+
+        long debitedTokens = reserveTokens(tenant, estimatedTokens, deadline);
+        try {
+            acquire(tenant, estimatedTokens, deadline);
+        } catch (RuntimeException e) {
+            tenant.buckets.refund(0, debitedTokens);
+            throw e;
+        }
+        tenant.queueWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        return new Lease(tenant, debitedTokens);
+    }
+
+    /**
+     * Estimates the tokens an analysis of the given diff costs: its estimated prompt tokens plus {@code max-tokens}.
+     *
+     * @param diff the diff, must not be {@code null}
+     * @return the estimated token count
+     */
+    long estimateTokens(String diff) {
+        return (diff.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + aiConfigurationProperties.getMaxTokens();
+    }
+
+    /**
+     * Returns the state of the given tenant, creating it on first use. Unknown tenants beyond {@code max-tenants}
+     * are folded into the default tenant to keep the number of tracked tenants, and metric tags, bounded.
+     */
+    private Tenant tenant(String requestedTenant) {
+        String name = StringUtils.hasText(requestedTenant) ? requestedTenant : tenantProperties.getDefaultTenant();
+        if (!TENANT.matcher(name).matches()) {
+            throw new CustomApiException(
+                    "Tenant must be 1 to 64 letters, digits, '.', '_' or '-'",
+                    HttpStatus.BAD_REQUEST
+            );
+        }
+
+        lock.lock();
+        try {
+            Tenant tenant = tenants.get(name);
+            if (tenant != null) return tenant;
+
+            if (tenants.size() >= tenantProperties.getMaxTenants() && !tenantProperties.getQuotas().containsKey(name)) {
+                log.warn("Tracking the maximum of {} tenants, scheduling tenant '{}' as '{}'",
+                         tenantProperties.getMaxTenants(),
+                         name,
+                         tenantProperties.getDefaultTenant()
+                );
+                name = tenantProperties.getDefaultTenant();
+                tenant = tenants.get(name);
+                if (tenant != null) return tenant;
+            }
+
+            tenant = new Tenant(name, tenantProperties.quota(name));
+            tenants.put(name, tenant);
+            return tenant;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Debits the estimated tokens from the tenant's bucket and waits until the bucket has recovered from any debt.
+     *
+     * @return the tokens debited
+     */
+    private long reserveTokens(Tenant tenant, long estimatedTokens, long deadline) {
+        long debitedTokens = tenant.buckets.clampTokens(estimatedTokens);
+        long waitNanos = tenant.buckets.reserve(debitedTokens, Math.max(0, deadline - System.nanoTime()));
+        if (waitNanos < 0) {
+            meterRegistry.counter("prcopilot.tenants.rejected", "tenant", tenant.name, "reason", "quota").increment();
+            log.warn("Tenant '{}' is over its tokens-per-minute quota, rejecting analysis", tenant.name);
+            throw new CapacityExceededException(
+                    String.format("Tenant '%s' is over its token quota, try again later", tenant.name),
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(-waitNanos) + 1),
+                    HttpStatus.TOO_MANY_REQUESTS
+            );
+        }
+
+        if (waitNanos > 0) {
+            log.debug("Waiting {} ms for the token quota of tenant '{}'", TimeUnit.NANOSECONDS.toMillis(waitNanos), tenant.name);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                tenant.buckets.refund(0, debitedTokens);
+                Thread.currentThread().interrupt();
+                throw new CustomApiException("Interrupted while waiting for tenant quota",
+                                             HttpStatus.SERVICE_UNAVAILABLE, e
+                );
+            }
+        }
+        return debitedTokens;
+    }
+
+    /**
+     * Queues the analysis behind the tenant's other waiting analyses and waits until it is handed a slot.
+     */
+    private void acquire(Tenant tenant, long cost, long deadline) {
+        lock.lock();
+        try {
+            Waiter waiter = new Waiter(cost, lock.newCondition());
+            tenant.waiters.addLast(waiter);
+            if (tenant.waiters.size() == 1) activeTenants.addLast(tenant);
+            dispatch();
+
+            try {
+                long remaining = deadline - System.nanoTime();
+                while (!waiter.acquired) {
+                    if (remaining <= 0) {
+                        remove(tenant, waiter);
+                        meterRegistry.counter("prcopilot.tenants.rejected", "tenant", tenant.name, "reason", "queue")
+                                     .increment();
+                        log.warn("Shedding analysis of tenant '{}': no slot became free within {} ms",
+                                 tenant.name,
+                                 tenantProperties.getQueueTimeoutMillis()
+                        );
+                        throw new CapacityExceededException(
+                                String.format("No capacity left for tenant '%s', try again later", tenant.name),
+                                Math.max(1, TimeUnit.MILLISECONDS.toSeconds(tenantProperties.getQueueTimeoutMillis()))
+                        );
+                    }
+                    remaining = waiter.granted.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.acquired) {
+                    release(tenant);
+                } else {
+                    remove(tenant, waiter);
+                }
+                Thread.currentThread().interrupt();
+                throw new CustomApiException("Interrupted while waiting for tenant capacity",
+                                             HttpStatus.SERVICE_UNAVAILABLE, e
+                );
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Tenant tenant) {
+        lock.lock();
+        try {
+            tenant.inFlight--;
+            inFlight--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(Tenant tenant, Waiter waiter) {
+        tenant.waiters.remove(waiter);
+        if (tenant.waiters.isEmpty()) deactivate(tenant);
+    }
+
+    /**
+     * Hands free slots to the waiting analyses by deficit round-robin over the tenants with queued analyses.
+     */
+    private void dispatch() {
+        while (inFlight < tenantProperties.getMaxConcurrent() && hasEligibleTenant()) {
+            Tenant tenant = activeTenants.peekFirst();
+            if (tenant.inFlight >= tenant.quota.getMaxConcurrent()) {
+                endTurn(tenant);
+                continue;
+            }
+
+            if (!tenant.inTurn) {
+                tenant.deficit += tenantProperties.getQuantumTokens() * tenant.quota.getWeight();
+                tenant.inTurn = true;
+            }
+
+            Waiter head = tenant.waiters.peekFirst();
+            if (head.cost > tenant.deficit) {
+                endTurn(tenant);
+                continue;
+            }
+
+            tenant.waiters.removeFirst();
+            tenant.deficit -= head.cost;
+            tenant.inFlight++;
+            inFlight++;
+            head.acquired = true;
+            head.granted.signal();
+            if (tenant.waiters.isEmpty()) deactivate(tenant);
+        }
+    }
+
+    private boolean hasEligibleTenant() {
+        for (Tenant tenant : activeTenants) {
+            if (tenant.inFlight < tenant.quota.getMaxConcurrent()) return true;
+        }
+        return false;
+    }
+
+    private void endTurn(Tenant tenant) {
+        tenant.inTurn = false;
+        activeTenants.addLast(activeTenants.removeFirst());
+    }
+
+    /**
+     * Drops a tenant without queued analyses from the round, forfeiting its unused credit.
+     */
+    private void deactivate(Tenant tenant) {
+        activeTenants.remove(tenant);
+        tenant.deficit = 0;
+        tenant.inTurn = false;
+    }
+
+    /**
+     * A tenant's slot and token debit, held by one analysis until it is released.
+     */
+    final class Lease {
+
+        private final Tenant tenant;
+        private final long debitedTokens;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Tenant tenant, long debitedTokens) {
+            this.tenant = tenant;
+            this.debitedTokens = debitedTokens;
+        }
+
+        /**
+         * Frees the slot and settles the debit against the tokens the analysis used. Only the first call has an effect.
+         * <p>
+         * If {@code tokensUsed} is {@code null}, the estimate is kept and, for successful analyses, counted as used.
+         *
+         * @param tokensUsed the tokens the analysis used, may be {@code null} if unknown
+         * @param succeeded  whether the analysis succeeded
+         */
+        void release(Integer tokensUsed, boolean succeeded) {
+            if (tenant == null || !released.compareAndSet(false, true)) return;
+
+            try {
+                if (tokensUsed != null || succeeded) {
+                    long usedTokens = tokensUsed != null ? tokensUsed : debitedTokens;
+                    tenant.buckets.refund(0, debitedTokens - usedTokens);
+                    meterRegistry.counter("prcopilot.tenants.tokens", "tenant", tenant.name).increment(usedTokens);
+                }
+                meterRegistry.counter(
+                        "prcopilot.tenants.requests",
+                        "tenant", tenant.name,
+                        "outcome", succeeded ? "success" : "failure"
+                ).increment();
+            } finally {
+                TenantSchedulerService.this.release(tenant);
+            }
+        }
+    }
+
+    /**
+     * An analysis waiting for a slot, with its estimated tokens as its cost.
+     */
+    private static final class Waiter {
+
+        private final long cost;
+        private final Condition granted;
+        private boolean acquired;
+
+        private Waiter(long cost, Condition granted) {
+            this.cost = cost;
+            this.granted = granted;
+        }
+    }
+
+    /**
+     * The queue, credit and quota of a single tenant. Everything but {@code buckets} is guarded by the
+     * scheduler's lock.
+     */
+    private final class Tenant {
+
+        private final String name;
+        private final PrCopilotTenantProperties.Quota quota;
+        private final QuotaBuckets buckets;
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+        private final Timer queueWait;
+        private int inFlight;
+        private long deficit;
+        private boolean inTurn;
+
+        private Tenant(String name, PrCopilotTenantProperties.Quota quota) {
+            this.name = name;
+            this.quota = quota;
+            this.buckets = new QuotaBuckets(0, quota.getTokensPerMinute());
+
+            Tags tags = Tags.of("tenant", name);
+            meterRegistry.gauge("prcopilot.tenants.in.flight", tags, this, tenant -> tenant.locked(() -> tenant.inFlight));
+            meterRegistry.gauge("prcopilot.tenants.queued", tags, this, tenant -> tenant.locked(tenant.waiters::size));
+            if (quota.getTokensPerMinute() > 0) {
+                meterRegistry.gauge("prcopilot.tenants.tokens.available", tags, buckets, QuotaBuckets::availableTokens);
+            }
+            this.queueWait = Timer.builder("prcopilot.tenants.queue.wait")
+                                  .tags(tags)
+                                  .publishPercentileHistogram()
+                                  .register(meterRegistry);
+        }
+
+        private double locked(Supplier<Integer> value) {
+            lock.lock();
+            try {
+                return value.get();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
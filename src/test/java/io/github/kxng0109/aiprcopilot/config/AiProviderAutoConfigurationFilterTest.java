@@ -0,0 +1,64 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class AiProviderAutoConfigurationFilterTest {
+
+    private static final String[] AUTO_CONFIGURATIONS = {
+            "org.springframework.ai.model.openai.autoconfigure.OpenAiChatAutoConfiguration",
+            "org.springframework.ai.model.anthropic.autoconfigure.AnthropicChatAutoConfiguration",
+            "org.springframework.ai.model.vertexai.autoconfigure.gemini.VertexAiGeminiChatAutoConfiguration",
+            "org.springframework.ai.model.ollama.autoconfigure.OllamaApiAutoConfiguration",
+            "org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration",
+            null
+    };
+
+    @Test
+    void match_shouldSkipProvidersThatAreNotConfigured() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("prcopilot.ai.provider", "openai")
+                .withProperty("prcopilot.ai.fallback-providers", "anthropic");
+
+        assertArrayEquals(
+                new boolean[]{true, false, false, false, true, true},
+                filter(environment).match(AUTO_CONFIGURATIONS, null)
+        );
+    }
+
+    @Test
+    void match_shouldKeepPoolTierAndFallbackProviders() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("prcopilot.ai.provider", "openai")
+                .withProperty("prcopilot.ai.pool[0].provider", "anthropic")
+                .withProperty("prcopilot.ai.tiers[0].name", "small")
+                .withProperty("prcopilot.ai.tiers[0].provider", "ollama")
+                .withProperty("prcopilot.ai.auto-fallback", "true")
+                .withProperty("prcopilot.ai.fallback-provider", "gemini");
+
+        assertArrayEquals(
+                new boolean[]{true, true, true, true, true, true},
+                filter(environment).match(AUTO_CONFIGURATIONS, null)
+        );
+    }
+
+    @Test
+    void match_shouldKeepEverything_whenDisabled() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("prcopilot.ai.provider", "ollama")
+                .withProperty("prcopilot.ai.skip-unused-providers", "false");
+
+        assertArrayEquals(
+                new boolean[]{true, true, true, true, true, true},
+                filter(environment).match(AUTO_CONFIGURATIONS, null)
+        );
+    }
+
+    private static AiProviderAutoConfigurationFilter filter(MockEnvironment environment) {
+        AiProviderAutoConfigurationFilter filter = new AiProviderAutoConfigurationFilter();
+        filter.setEnvironment(environment);
+        return filter;
+    }
+}
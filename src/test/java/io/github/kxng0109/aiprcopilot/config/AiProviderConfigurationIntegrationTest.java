@@ -1,8 +1,15 @@
 package io.github.kxng0109.aiprcopilot.config;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.ai.anthropic.AnthropicChatModel;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.ResponseFormat;
+import org.springframework.ai.vertexai.gemini.VertexAiGeminiChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
 import org.springframework.test.context.TestPropertySource;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,6 +30,12 @@ public class AiProviderConfigurationIntegrationTest {
     @Autowired
     private PrCopilotAnalysisProperties analysisProperties;
 
+    @Autowired
+    private ChatOptions primaryChatOptions;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
     @Test
     void contextLoads() {
         assertNotNull(multiAiConfig);
@@ -50,4 +63,19 @@ public class AiProviderConfigurationIntegrationTest {
         assertEquals(1024, multiAiConfig.getMaxTokens());
         assertEquals(30000L, multiAiConfig.getTimeoutMillis());
     }
+
+    @Test
+    void shouldOnlyCreateChatModelsOfConfiguredProviders() {
+        assertEquals(1, applicationContext.getBeanNamesForType(OpenAiChatModel.class).length);
+        assertEquals(0, applicationContext.getBeanNamesForType(AnthropicChatModel.class).length);
+        assertEquals(0, applicationContext.getBeanNamesForType(VertexAiGeminiChatModel.class).length);
+    }
+
+    @Test
+    void shouldRequestSchemaConstrainedOutput() {
+        OpenAiChatOptions options = assertInstanceOf(OpenAiChatOptions.class, primaryChatOptions);
+
+        assertEquals(ResponseFormat.Type.JSON_SCHEMA, options.getResponseFormat().getType());
+        assertTrue(options.getResponseFormat().getJsonSchema().getSchema().containsKey("properties"));
+    }
 }
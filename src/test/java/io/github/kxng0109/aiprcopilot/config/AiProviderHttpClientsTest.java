@@ -0,0 +1,130 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AiProviderHttpClientsTest {
+
+    private HttpServer server;
+    private URI baseUrl;
+    private SimpleMeterRegistry meterRegistry;
+    private AiProviderHttpClients httpClients;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = URI.create("http://localhost:" + server.getAddress().getPort());
+
+        PrCopilotHttpClientProperties.Client client = new PrCopilotHttpClientProperties.Client();
+        client.setMaxConcurrentRequests(1);
+        client.setConnectTimeoutMillis(200);
+        client.setHttp2(false);
+        PrCopilotHttpClientProperties properties = new PrCopilotHttpClientProperties();
+        properties.setProviders(Map.of(AiProvider.OLLAMA, client));
+
+        meterRegistry = new SimpleMeterRegistry();
+        httpClients = new AiProviderHttpClients(Map.of(AiProvider.OLLAMA, baseUrl), properties, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void createRequest_shouldHoldARequestSlotUntilResponseIsClosed() throws Exception {
+        ClientHttpResponse response = httpClients.createRequest(baseUrl.resolve("/api/chat"), HttpMethod.GET).execute();
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        assertThat(meterRegistry.get("prcopilot.http.requests.active").tag("provider", "ollama").gauge().value())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("prcopilot.http.requests.max").tag("provider", "ollama").gauge().value())
+                .isEqualTo(1.0);
+
+        response.close();
+
+        assertThat(meterRegistry.get("prcopilot.http.requests.active").tag("provider", "ollama").gauge().value())
+                .isEqualTo(0.0);
+        assertThat(meterRegistry.get("prcopilot.http.requests.acquire").tag("provider", "ollama").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void createRequest_shouldFailWithConnectException_whenNoRequestSlotFreesUpInTime() throws Exception {
+        try (ClientHttpResponse held = httpClients.createRequest(baseUrl, HttpMethod.GET).execute()) {
+            assertThat(held.getStatusCode().value()).isEqualTo(200);
+
+            assertThatThrownBy(() -> httpClients.createRequest(baseUrl, HttpMethod.GET).execute())
+                    .isInstanceOf(ConnectException.class)
+                    .hasMessageContaining("ollama");
+        }
+
+        assertThat(meterRegistry.get("prcopilot.http.requests.acquire.timeouts").tag("provider", "ollama").counter().count())
+                .isEqualTo(1.0);
+        try (ClientHttpResponse next = httpClients.createRequest(baseUrl, HttpMethod.GET).execute()) {
+            assertThat(next.getStatusCode().value()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    public void createRequest_shouldNotTakeASlot_whenHostBelongsToNoProvider() throws Exception {
+        try (ClientHttpResponse held = httpClients.createRequest(baseUrl, HttpMethod.GET).execute();
+             ClientHttpResponse other = httpClients.createRequest(
+                     URI.create("http://127.0.0.1:" + server.getAddress().getPort()), HttpMethod.GET).execute()) {
+            assertThat(held.getStatusCode().value()).isEqualTo(200);
+            assertThat(other.getStatusCode().value()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    public void connector_shouldHoldARequestSlot_untilTheStreamedBodyHasBeenRead() throws Exception {
+        org.springframework.http.client.reactive.ClientHttpResponse streamed = httpClients.connector()
+                .connect(HttpMethod.GET, baseUrl, ReactiveHttpOutputMessage::setComplete)
+                .block(Duration.ofSeconds(5));
+
+        assertThat(meterRegistry.get("prcopilot.http.requests.active").tag("provider", "ollama").gauge().value())
+                .isEqualTo(1.0);
+        assertThatThrownBy(() -> httpClients.createRequest(baseUrl, HttpMethod.GET).execute())
+                .isInstanceOf(ConnectException.class);
+
+        DataBufferUtils.join(streamed.getBody()).map(DataBufferUtils::release).block(Duration.ofSeconds(5));
+
+        assertThat(meterRegistry.get("prcopilot.http.requests.active").tag("provider", "ollama").gauge().value())
+                .isEqualTo(0.0);
+        try (ClientHttpResponse next = httpClients.createRequest(baseUrl, HttpMethod.GET).execute()) {
+            assertThat(next.getStatusCode().value()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    public void warmUp_shouldConnectOnlyToProvidersWithAnHttpClient() throws Exception {
+        assertThat(httpClients.warmUp(AiProvider.OLLAMA, Duration.ofSeconds(1))).isTrue();
+        assertThat(httpClients.warmUp(AiProvider.GEMINI, Duration.ofSeconds(1))).isFalse();
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.ai.retry.autoconfigure.SpringAiRetryProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AiProviderResponseErrorHandlerTest {
+
+    private final AiProviderResponseErrorHandler handler = new AiProviderResponseErrorHandler(new SpringAiRetryProperties());
+    private final URI url = URI.create("https://api.example.com/v1/chat");
+
+    @Test
+    public void handleError_shouldKeepStatusAndRetryAfter_forClientErrors() {
+        MockClientHttpResponse response = new MockClientHttpResponse(
+                "{\"error\":\"rate limited\"}".getBytes(StandardCharsets.UTF_8),
+                HttpStatus.TOO_MANY_REQUESTS
+        );
+        response.getHeaders().add(HttpHeaders.RETRY_AFTER, "2");
+
+        NonTransientAiException exception = assertThrows(
+                NonTransientAiException.class,
+                () -> handler.handleError(url, HttpMethod.POST, response)
+        );
+
+        assertThat(exception.getMessage()).isEqualTo("HTTP 429 - {\"error\":\"rate limited\"}");
+        assertThat(exception.getCause()).isInstanceOfSatisfying(RestClientResponseException.class, cause -> {
+            assertThat(cause.getStatusCode().value()).isEqualTo(429);
+            assertThat(cause.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        });
+    }
+
+    @Test
+    public void handleError_shouldThrowTransientException_forServerErrors() {
+        MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], HttpStatus.BAD_GATEWAY);
+
+        TransientAiException exception = assertThrows(
+                TransientAiException.class,
+                () -> handler.handleError(url, HttpMethod.POST, response)
+        );
+
+        assertThat(exception.getMessage()).isEqualTo("HTTP 502 - No response body available");
+    }
+}
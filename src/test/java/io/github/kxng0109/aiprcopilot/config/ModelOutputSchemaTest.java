@@ -0,0 +1,63 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.anthropic.AnthropicChatOptions;
+import org.springframework.ai.anthropic.api.AnthropicApi;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.ResponseFormat;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ModelOutputSchemaTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void jsonSchema_shouldRequireEveryFieldOfTheAnalysis() {
+        Map<String, Object> schema = ModelOutputSchema.asMap();
+
+        assertThat(schema).containsEntry("additionalProperties", false);
+        assertThat((List<Object>) schema.get("required")).containsExactlyInAnyOrder(
+                "title", "summary", "details", "risks", "suggestedTests", "touchedFiles", "analysisNotes"
+        );
+    }
+
+    @Test
+    public void asOpenApiSchema_shouldKeepTheProperties() {
+        assertThat(ModelOutputSchema.asOpenApiSchema()).contains("\"suggestedTests\"").doesNotContain("$schema");
+    }
+
+    @Test
+    public void asTool_shouldDeclareTheSchemaAsItsInput() {
+        ToolCallback tool = ModelOutputSchema.asTool();
+
+        assertThat(tool.getToolDefinition().name()).isEqualTo(ModelOutputSchema.TOOL_NAME);
+        assertThat(tool.getToolDefinition().inputSchema()).isEqualTo(ModelOutputSchema.JSON_SCHEMA);
+    }
+
+    @Test
+    public void withoutSchema_shouldKeepJsonMode_andLeaveTheOriginalOptionsUntouched() {
+        OpenAiChatOptions openAi = OpenAiChatOptions.builder()
+                                                    .model("gpt-4o")
+                                                    .responseFormat(new ResponseFormat(ResponseFormat.Type.JSON_SCHEMA, ModelOutputSchema.JSON_SCHEMA))
+                                                    .build();
+        AnthropicChatOptions anthropic = AnthropicChatOptions.builder()
+                                                             .toolCallbacks(ModelOutputSchema.asTool())
+                                                             .toolChoice(new AnthropicApi.ToolChoiceTool(ModelOutputSchema.TOOL_NAME))
+                                                             .build();
+
+        OpenAiChatOptions openAiWithoutSchema = (OpenAiChatOptions) ModelOutputSchema.withoutSchema(openAi);
+        AnthropicChatOptions anthropicWithoutSchema = (AnthropicChatOptions) ModelOutputSchema.withoutSchema(anthropic);
+
+        assertThat(openAiWithoutSchema.getModel()).isEqualTo("gpt-4o");
+        assertThat(openAiWithoutSchema.getResponseFormat().getType()).isEqualTo(ResponseFormat.Type.JSON_OBJECT);
+        assertThat(openAi.getResponseFormat().getType()).isEqualTo(ResponseFormat.Type.JSON_SCHEMA);
+        assertThat(anthropicWithoutSchema.getToolCallbacks()).isEmpty();
+        assertThat(anthropicWithoutSchema.getToolChoice()).isNull();
+        assertThat(anthropic.getToolCallbacks()).hasSize(1);
+        assertThat(ModelOutputSchema.withoutSchema(null)).isNull();
+    }
+}
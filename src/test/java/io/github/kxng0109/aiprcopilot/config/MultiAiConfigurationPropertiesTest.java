@@ -4,6 +4,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.List;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -17,8 +20,27 @@ public class MultiAiConfigurationPropertiesTest {
         assertEquals(AiProvider.OPENAI, multiAiConfigurationProperties.getProvider());
         assertNull(multiAiConfigurationProperties.getFallbackProvider());
         assertFalse(multiAiConfigurationProperties.isAutoFallback());
+        assertEquals(List.of(AiProvider.ANTHROPIC, AiProvider.OLLAMA), multiAiConfigurationProperties.getFallbackProviders());
+        assertEquals(5000L, multiAiConfigurationProperties.getFallbackMinAttemptMillis());
+        assertTrue(multiAiConfigurationProperties.getPool().isEmpty());
+        assertTrue(multiAiConfigurationProperties.getTiers().isEmpty());
+        assertEquals(LoadBalancingStrategy.WEIGHTED_ROUND_ROBIN, multiAiConfigurationProperties.getLoadBalancingStrategy());
         assertEquals(0.1, multiAiConfigurationProperties.getTemperature());
         assertEquals(1024, multiAiConfigurationProperties.getMaxTokens());
         assertEquals(30000L, multiAiConfigurationProperties.getTimeoutMillis());
+        assertFalse(multiAiConfigurationProperties.isHedgeEnabled());
+        assertEquals(2000L, multiAiConfigurationProperties.getHedgeDelayMillis());
+        assertFalse(multiAiConfigurationProperties.isHedgeAdaptiveDelay());
+        assertEquals(10000L, multiAiConfigurationProperties.getRateLimitMaxWaitMillis());
+        assertFalse(multiAiConfigurationProperties.getRateLimits().containsKey(AiProvider.OPENAI));
+        assertEquals(50, multiAiConfigurationProperties.getRateLimits().get(AiProvider.ANTHROPIC).getRequestsPerMinute());
+        assertEquals(40000L, multiAiConfigurationProperties.getRateLimits().get(AiProvider.ANTHROPIC).getTokensPerMinute());
+        assertTrue(multiAiConfigurationProperties.isSkipUnusedProviders());
+        assertTrue(multiAiConfigurationProperties.isStructuredOutput());
+        assertTrue(multiAiConfigurationProperties.getRepair().isEnabled());
+        assertNull(multiAiConfigurationProperties.getRepair().getProvider());
+        assertEquals(1024, multiAiConfigurationProperties.getRepair().getMaxTokens());
+        assertEquals(10000L, multiAiConfigurationProperties.getRepair().getTimeoutMillis());
+        assertEquals(Set.of(AiProvider.OPENAI), multiAiConfigurationProperties.configuredProviders());
     }
 }
@@ -0,0 +1,19 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+public class PrCopilotBatchPropertiesTest {
+    @Autowired
+    private PrCopilotBatchProperties batchProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertEquals(8, batchProperties.getConcurrency());
+        assertEquals(3600000L, batchProperties.getTimeoutMillis());
+    }
+}
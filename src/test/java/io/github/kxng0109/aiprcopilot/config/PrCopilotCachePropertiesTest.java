@@ -0,0 +1,21 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class PrCopilotCachePropertiesTest {
+    @Autowired
+    private PrCopilotCacheProperties prCopilotCacheProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertTrue(prCopilotCacheProperties.isEnabled());
+        assertEquals(1000, prCopilotCacheProperties.getMaxEntries());
+        assertEquals(600000L, prCopilotCacheProperties.getTtlMillis());
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class PrCopilotCircuitBreakerPropertiesTest {
+    @Autowired
+    private PrCopilotCircuitBreakerProperties circuitBreakerProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertTrue(circuitBreakerProperties.isEnabled());
+        assertEquals(20, circuitBreakerProperties.getWindowSize());
+        assertEquals(10, circuitBreakerProperties.getMinimumCalls());
+        assertEquals(50, circuitBreakerProperties.getFailureRateThreshold());
+        assertEquals(80, circuitBreakerProperties.getSlowCallRateThreshold());
+        assertEquals(10000L, circuitBreakerProperties.getSlowCallDurationMillis());
+        assertEquals(30000L, circuitBreakerProperties.getOpenStateMillis());
+        assertEquals(3, circuitBreakerProperties.getHalfOpenPermittedCalls());
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class PrCopilotConcurrencyPropertiesTest {
+    @Autowired
+    private PrCopilotConcurrencyProperties concurrencyProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertTrue(concurrencyProperties.isEnabled());
+        assertEquals(20, concurrencyProperties.getInitialLimit());
+        assertEquals(1, concurrencyProperties.getMinLimit());
+        assertEquals(200, concurrencyProperties.getMaxLimit());
+        assertEquals(1000L, concurrencyProperties.getQueueTimeoutMillis());
+        assertEquals(9, concurrencyProperties.getInteractive().getWeight());
+        assertEquals(100, concurrencyProperties.getInteractive().getMaxSharePercent());
+        assertNull(concurrencyProperties.getInteractive().getQueueTimeoutMillis());
+        assertEquals(1, concurrencyProperties.getBulk().getWeight());
+        assertEquals(80, concurrencyProperties.getBulk().getMaxSharePercent());
+        assertEquals(10000L, concurrencyProperties.getBulk().getQueueTimeoutMillis());
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class PrCopilotHttpClientPropertiesTest {
+    @Autowired
+    private PrCopilotHttpClientProperties httpClientProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertTrue(httpClientProperties.isEnabled());
+
+        PrCopilotHttpClientProperties.Client ollama = httpClientProperties.getProviders().get(AiProvider.OLLAMA);
+        assertEquals(8, ollama.getMaxConcurrentRequests());
+        assertEquals(2000L, ollama.getConnectTimeoutMillis());
+        assertEquals(120000L, ollama.getReadTimeoutMillis());
+        assertFalse(ollama.isHttp2());
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class PrCopilotJobPropertiesTest {
+    @Autowired
+    private PrCopilotJobProperties jobProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertEquals(8, jobProperties.getWorkers());
+        assertEquals(100, jobProperties.getQueueCapacity());
+        assertEquals(3600000L, jobProperties.getTtlMillis());
+        assertEquals(5000L, jobProperties.getCallbackTimeoutMillis());
+        assertTrue(jobProperties.getCallbackAllowedHosts().isEmpty());
+    }
+}
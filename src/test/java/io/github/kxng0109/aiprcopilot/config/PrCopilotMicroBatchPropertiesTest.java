@@ -0,0 +1,23 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest
+public class PrCopilotMicroBatchPropertiesTest {
+    @Autowired
+    private PrCopilotMicroBatchProperties microBatchProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertFalse(microBatchProperties.isEnabled());
+        assertEquals(2000, microBatchProperties.getMaxDiffChars());
+        assertEquals(8, microBatchProperties.getMaxBatchSize());
+        assertEquals(16000, microBatchProperties.getMaxBatchChars());
+        assertEquals(20L, microBatchProperties.getMaxWaitMillis());
+    }
+}
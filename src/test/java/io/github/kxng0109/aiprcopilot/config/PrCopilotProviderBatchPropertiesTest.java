@@ -0,0 +1,23 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest
+public class PrCopilotProviderBatchPropertiesTest {
+    @Autowired
+    private PrCopilotProviderBatchProperties providerBatchProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertFalse(providerBatchProperties.isEnabled());
+        assertEquals(AiProvider.OPENAI, providerBatchProperties.getProvider());
+        assertEquals(1000, providerBatchProperties.getMaxRequests());
+        assertEquals(60000L, providerBatchProperties.getPollIntervalMillis());
+        assertEquals(86400000L, providerBatchProperties.getTtlMillis());
+    }
+}
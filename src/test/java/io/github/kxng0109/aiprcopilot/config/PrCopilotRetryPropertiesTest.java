@@ -0,0 +1,24 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class PrCopilotRetryPropertiesTest {
+    @Autowired
+    private PrCopilotRetryProperties retryProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertTrue(retryProperties.isEnabled());
+        assertEquals(3, retryProperties.getMaxAttempts());
+        assertEquals(200L, retryProperties.getBaseDelayMillis());
+        assertEquals(5000L, retryProperties.getMaxDelayMillis());
+        assertEquals(20, retryProperties.getBudgetPercent());
+        assertEquals(10, retryProperties.getBudgetBurst());
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@SpringBootTest
+public class PrCopilotTenantPropertiesTest {
+    @Autowired
+    private PrCopilotTenantProperties tenantProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertFalse(tenantProperties.isEnabled());
+        assertEquals("X-Tenant-Id", tenantProperties.getHeader());
+        assertEquals("default", tenantProperties.getDefaultTenant());
+        assertEquals(32, tenantProperties.getMaxConcurrent());
+        assertEquals(30000L, tenantProperties.getQueueTimeoutMillis());
+        assertEquals(4000L, tenantProperties.getQuantumTokens());
+        assertEquals(100, tenantProperties.getMaxTenants());
+        assertEquals(8, tenantProperties.getDefaultQuota().getMaxConcurrent());
+        assertEquals(0L, tenantProperties.getDefaultQuota().getTokensPerMinute());
+        assertEquals(1, tenantProperties.getDefaultQuota().getWeight());
+        assertSame(tenantProperties.getDefaultQuota(), tenantProperties.quota("team-a"));
+    }
+}
@@ -0,0 +1,21 @@
+package io.github.kxng0109.aiprcopilot.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest
+public class PrCopilotWarmupPropertiesTest {
+    @Autowired
+    private PrCopilotWarmupProperties warmupProperties;
+
+    @Test
+    void shouldBindDefaultsFromApplicationYaml() {
+        assertFalse(warmupProperties.isEnabled());
+        assertEquals(5000L, warmupProperties.getTimeoutMillis());
+        assertEquals(20, warmupProperties.getMappingIterations());
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.kxng0109.aiprcopilot.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisJobResponse;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisJobStatus;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.github.kxng0109.aiprcopilot.service.AnalysisJobService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.OffsetDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AnalysisJobController.class)
+public class AnalysisJobControllerTest {
+    @MockitoBean
+    private AnalysisJobService analysisJobService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void submitJob_shouldReturn202Accepted_withJobLocation() throws Exception {
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder().diff("diff-1").requestId("req-1").build();
+        when(analysisJobService.submit(eq(request), eq("https://ci.example.com/hook")))
+                .thenReturn(AnalysisJobResponse.builder()
+                                               .jobId("job-1")
+                                               .status(AnalysisJobStatus.QUEUED)
+                                               .requestId("req-1")
+                                               .submittedAt(OffsetDateTime.now())
+                                               .build());
+
+        mockMvc.perform(post("/api/v1/jobs")
+                                .param("callbackUrl", "https://ci.example.com/hook")
+                                .content(objectMapper.writeValueAsString(request))
+                                .contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isAccepted())
+               .andExpect(header().string("Location", "/api/v1/jobs/job-1"))
+               .andExpect(jsonPath("$.jobId").value("job-1"))
+               .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
+    @Test
+    public void submitJob_shouldReturn400BadRequest_whenDiffIsBlank() throws Exception {
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder().diff(" ").build();
+
+        mockMvc.perform(post("/api/v1/jobs")
+                                .content(objectMapper.writeValueAsString(request))
+                                .contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isBadRequest());
+
+        verify(analysisJobService, never()).submit(any(), any());
+    }
+
+    @Test
+    public void submitJob_shouldReturn503WithRetryAfter_whenQueueIsFull() throws Exception {
+        when(analysisJobService.submit(any(), isNull()))
+                .thenThrow(new CapacityExceededException("Analysis job queue is full", 30));
+
+        mockMvc.perform(post("/api/v1/jobs")
+                                .content("{\"diff\":\"diff-1\"}")
+                                .contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isServiceUnavailable())
+               .andExpect(header().string("Retry-After", "30"))
+               .andExpect(jsonPath("$.path").value("/api/v1/jobs"));
+    }
+
+    @Test
+    public void getJob_shouldReturnJobWithResponse() throws Exception {
+        when(analysisJobService.get("job-1"))
+                .thenReturn(AnalysisJobResponse.builder()
+                                               .jobId("job-1")
+                                               .status(AnalysisJobStatus.SUCCEEDED)
+                                               .response(AnalyzeDiffResponse.builder().title("Some title").build())
+                                               .build());
+
+        mockMvc.perform(get("/api/v1/jobs/job-1"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.status").value("SUCCEEDED"))
+               .andExpect(jsonPath("$.response.title").value("Some title"));
+    }
+
+    @Test
+    public void getJob_shouldReturn404NotFound_whenJobIsUnknown() throws Exception {
+        when(analysisJobService.get("missing"))
+                .thenThrow(new CustomApiException("Analysis job 'missing' not found or expired", HttpStatus.NOT_FOUND));
+
+        mockMvc.perform(get("/api/v1/jobs/missing"))
+               .andExpect(status().isNotFound())
+               .andExpect(jsonPath("$.statusCode").value(404));
+    }
+}
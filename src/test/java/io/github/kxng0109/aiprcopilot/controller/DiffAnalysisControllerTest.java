@@ -4,20 +4,31 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.kxng0109.aiprcopilot.api.dto.AiCallMetadata;
 import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
 import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
 import io.github.kxng0109.aiprcopilot.error.DiffTooLargeException;
+import io.github.kxng0109.aiprcopilot.service.DiffAnalysisBatchService;
 import io.github.kxng0109.aiprcopilot.service.DiffAnalysisService;
+import io.github.kxng0109.aiprcopilot.service.DiffAnalysisStreamingService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
 
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -26,6 +37,12 @@ public class DiffAnalysisControllerTest {
     @MockitoBean
     private DiffAnalysisService diffAnalysisService;
 
+    @MockitoBean
+    private DiffAnalysisStreamingService diffAnalysisStreamingService;
+
+    @MockitoBean
+    private DiffAnalysisBatchService diffAnalysisBatchService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -190,4 +207,109 @@ public class DiffAnalysisControllerTest {
 
         verify(diffAnalysisService).analyzeDiff(any(AnalyzeDiffRequest.class));
     }
+
+    @Test
+    public void analyzeDiff_shouldReturn503WithRetryAfter_whenProviderIsAtCapacity() throws Exception {
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff("x")
+                                                       .requestId("req-1")
+                                                       .build();
+
+        when(diffAnalysisService.analyzeDiff(any(AnalyzeDiffRequest.class)))
+                .thenThrow(new CapacityExceededException("Provider 'openai' is at its concurrency limit", 2));
+
+        mockMvc.perform(post("/api/v1/analyze-diff")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isServiceUnavailable())
+               .andExpect(header().string("Retry-After", "2"))
+               .andExpect(jsonPath("$.statusCode").value(503))
+               .andExpect(jsonPath("$.path").value("/api/v1/analyze-diff"));
+    }
+
+    @Test
+    public void analyzeDiff_shouldChargeTheTenantFromTheHeader_andReturn429_whenItIsOverItsQuota() throws Exception {
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff("diff-1")
+                                                       .tenant("team-a")
+                                                       .build();
+
+        when(diffAnalysisService.analyzeDiff(any(AnalyzeDiffRequest.class)))
+                .thenThrow(new CapacityExceededException("Tenant 'team-b' is over its token quota", 7,
+                                                         HttpStatus.TOO_MANY_REQUESTS));
+
+        mockMvc.perform(post("/api/v1/analyze-diff")
+                                .header("X-Tenant-Id", "team-b")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isTooManyRequests())
+               .andExpect(header().string("Retry-After", "7"))
+               .andExpect(jsonPath("$.statusCode").value(429));
+
+        verify(diffAnalysisService).analyzeDiff(argThat(analyzed -> "team-b".equals(analyzed.tenant())));
+    }
+
+    @Test
+    public void analyzeDiffStream_shouldStreamEvents_whenRequestIsValid() throws Exception {
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .requestId("req-1")
+                                                       .diff("diff-1")
+                                                       .build();
+
+        SseEmitter emitter = new SseEmitter();
+        emitter.send(SseEmitter.event().name("title").data("Some title"));
+        emitter.complete();
+        when(diffAnalysisStreamingService.analyzeDiffStream(any(AnalyzeDiffRequest.class)))
+                .thenReturn(emitter);
+
+        MvcResult result = mockMvc.perform(post("/api/v1/analyze-diff/stream")
+                                                   .content(objectMapper.writeValueAsString(request))
+                                                   .contentType(MediaType.APPLICATION_JSON))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isOk())
+               .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+               .andExpect(content().string(org.hamcrest.Matchers.containsString("event:title\ndata:Some title")));
+
+        verify(diffAnalysisStreamingService).analyzeDiffStream(any(AnalyzeDiffRequest.class));
+    }
+
+    @Test
+    public void analyzeDiffStream_shouldReturn400BadRequest_whenDiffIsBlank() throws Exception {
+        AnalyzeDiffRequest invalidRequest = AnalyzeDiffRequest.builder()
+                                                              .diff("  ")
+                                                              .requestId("req-2")
+                                                              .build();
+
+        mockMvc.perform(post("/api/v1/analyze-diff/stream")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(invalidRequest)))
+               .andExpect(status().isBadRequest());
+
+        verify(diffAnalysisStreamingService, never()).analyzeDiffStream(any(AnalyzeDiffRequest.class));
+    }
+
+    @Test
+    public void analyzeDiffBatch_shouldStreamNdjsonResults() throws Exception {
+        when(diffAnalysisBatchService.analyzeBatch(any(), any())).thenAnswer(invocation -> {
+            ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+            emitter.send("{\"line\":1,\"requestId\":\"req-1\"}\n".getBytes(StandardCharsets.UTF_8),
+                         MediaType.APPLICATION_OCTET_STREAM);
+            emitter.complete();
+            return emitter;
+        });
+
+        MvcResult result = mockMvc.perform(post("/api/v1/analyze-diff/batch")
+                                                   .content("{\"diff\":\"diff-1\",\"requestId\":\"req-1\"}\n")
+                                                   .contentType(MediaType.APPLICATION_NDJSON))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isOk())
+               .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+               .andExpect(content().string("{\"line\":1,\"requestId\":\"req-1\"}\n"));
+    }
 }
@@ -0,0 +1,120 @@
+package io.github.kxng0109.aiprcopilot.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisJobStatus;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.api.dto.BatchAnalyzeDiffResult;
+import io.github.kxng0109.aiprcopilot.api.dto.ProviderBatchResponse;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.github.kxng0109.aiprcopilot.service.ProviderBatchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ProviderBatchController.class)
+public class ProviderBatchControllerTest {
+    @MockitoBean
+    private ProviderBatchService providerBatchService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void submitBatch_shouldReturn202Accepted_withBatchLocation() throws Exception {
+        List<AnalyzeDiffRequest> requests = List.of(
+                AnalyzeDiffRequest.builder().diff("diff-1").requestId("req-1").build(),
+                AnalyzeDiffRequest.builder().diff("diff-2").requestId("req-2").build()
+        );
+        when(providerBatchService.submit(requests))
+                .thenReturn(ProviderBatchResponse.builder()
+                                                 .batchId("batch-1")
+                                                 .provider("openai")
+                                                 .providerBatchId("batch_abc")
+                                                 .status(AnalysisJobStatus.RUNNING)
+                                                 .submittedAt(OffsetDateTime.now())
+                                                 .requestCount(2)
+                                                 .build());
+
+        mockMvc.perform(post("/api/v1/provider-batches")
+                                .content(objectMapper.writeValueAsString(requests))
+                                .contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isAccepted())
+               .andExpect(header().string("Location", "/api/v1/provider-batches/batch-1"))
+               .andExpect(jsonPath("$.providerBatchId").value("batch_abc"))
+               .andExpect(jsonPath("$.status").value("RUNNING"))
+               .andExpect(jsonPath("$.requestCount").value(2));
+    }
+
+    @Test
+    public void submitBatch_shouldReturn404NotFound_whenProviderBatchesAreDisabled() throws Exception {
+        when(providerBatchService.submit(any()))
+                .thenThrow(new CustomApiException("Provider batches are not enabled", HttpStatus.NOT_FOUND));
+
+        mockMvc.perform(post("/api/v1/provider-batches")
+                                .content("[{\"diff\": \"diff-1\"}]")
+                                .contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isNotFound())
+               .andExpect(jsonPath("$.message").value("Provider batches are not enabled"));
+    }
+
+    @Test
+    public void getBatch_shouldReturnTheResults_onceTheBatchHasFinished() throws Exception {
+        when(providerBatchService.get("batch-1"))
+                .thenReturn(ProviderBatchResponse.builder()
+                                                 .batchId("batch-1")
+                                                 .status(AnalysisJobStatus.SUCCEEDED)
+                                                 .requestCount(1)
+                                                 .results(List.of(BatchAnalyzeDiffResult.builder()
+                                                                                        .line(1)
+                                                                                        .requestId("req-1")
+                                                                                        .response(AnalyzeDiffResponse.builder()
+                                                                                                                     .title("Some title")
+                                                                                                                     .build())
+                                                                                        .build()))
+                                                 .build());
+
+        mockMvc.perform(get("/api/v1/provider-batches/batch-1"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.status").value("SUCCEEDED"))
+               .andExpect(jsonPath("$.results[0].requestId").value("req-1"))
+               .andExpect(jsonPath("$.results[0].response.title").value("Some title"));
+    }
+
+    @Test
+    public void attachBatch_shouldReturnTheBatch_byTheProvidersId() throws Exception {
+        when(providerBatchService.attach("batch_abc123"))
+                .thenReturn(ProviderBatchResponse.builder()
+                                                 .batchId("batch-1")
+                                                 .providerBatchId("batch_abc123")
+                                                 .status(AnalysisJobStatus.RUNNING)
+                                                 .build());
+        when(providerBatchService.attach("batch_unknown"))
+                .thenThrow(new CustomApiException("Provider 'openai' has no batch 'batch_unknown'", HttpStatus.NOT_FOUND));
+
+        mockMvc.perform(get("/api/v1/provider-batches/provider/batch_abc123"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.batchId").value("batch-1"))
+               .andExpect(jsonPath("$.status").value("RUNNING"));
+        mockMvc.perform(get("/api/v1/provider-batches/provider/batch_unknown"))
+               .andExpect(status().isNotFound());
+    }
+}
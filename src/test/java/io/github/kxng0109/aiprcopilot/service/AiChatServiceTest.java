@@ -0,0 +1,306 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotCircuitBreakerProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotConcurrencyProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotRetryProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AiChatServiceTest {
+
+    private MultiAiConfigurationProperties properties;
+    private ExecutorService executor;
+    private SimpleMeterRegistry meterRegistry;
+    private AiCircuitBreakerService circuitBreakerService;
+    private AiConcurrencyLimiterService concurrencyLimiterService;
+    private PrCopilotRetryProperties retryProperties;
+    private AiChatService aiChatService;
+
+    private final Prompt prompt = new Prompt("analyze");
+    private final ChatOptions chatOptions = ChatOptions.builder().build();
+
+    @BeforeEach
+    void setup() {
+        properties = new MultiAiConfigurationProperties();
+        properties.setTimeoutMillis(1000);
+
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        meterRegistry = new SimpleMeterRegistry();
+        PrCopilotCircuitBreakerProperties circuitBreakerProperties = new PrCopilotCircuitBreakerProperties();
+        circuitBreakerProperties.setEnabled(true);
+        circuitBreakerProperties.setMinimumCalls(2);
+        circuitBreakerService = new AiCircuitBreakerService(circuitBreakerProperties, meterRegistry);
+        PrCopilotConcurrencyProperties concurrencyProperties = new PrCopilotConcurrencyProperties();
+        concurrencyProperties.setEnabled(true);
+        concurrencyProperties.setInitialLimit(1);
+        concurrencyProperties.setQueueTimeoutMillis(50);
+        concurrencyLimiterService = new AiConcurrencyLimiterService(concurrencyProperties, meterRegistry);
+        retryProperties = new PrCopilotRetryProperties();
+        retryProperties.setBaseDelayMillis(1);
+        retryProperties.setMaxDelayMillis(5);
+        aiChatService = new AiChatService(
+                properties,
+                executor,
+                circuitBreakerService,
+                concurrencyLimiterService,
+                new AiRateLimiterService(properties, meterRegistry),
+                new AiRetryService(retryProperties, meterRegistry),
+                meterRegistry
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void callAiModel_shouldReturnResponse_whenModelAnswersInTime() {
+        ChatResponse expected = mock(ChatResponse.class);
+        ChatClient chatClient = chatClientAnswering(() -> expected);
+
+        assertSame(expected, aiChatService.callAiModel(prompt, chatClient, chatOptions, AiProvider.OPENAI));
+        assertEquals(0.0, meterRegistry.get("prcopilot.ai.calls.in.flight").gauge().value());
+    }
+
+    @Test
+    void callAiModel_shouldInterruptCall_whenTimeoutExceeded() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ChatClient chatClient = chatClientAnswering(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+
+        CustomApiException exception = assertThrows(
+                CustomApiException.class,
+                () -> aiChatService.callAiModel(prompt, chatClient, chatOptions, AiProvider.OPENAI)
+        );
+
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, exception.getHttpStatus());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1.0, meterRegistry.get("prcopilot.ai.calls.timeouts").counter().count());
+    }
+
+    @Test
+    void callAiModel_shouldTrackAbandonedCalls_untilTheyStop() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ChatClient chatClient = chatClientAnswering(() -> {
+            // Ignores interruption, like a call stuck in non-interruptible I/O.
+            while (true) {
+                try {
+                    if (release.await(10, TimeUnit.SECONDS)) return null;
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        assertThrows(CustomApiException.class, () -> aiChatService.callAiModel(prompt, chatClient, chatOptions, AiProvider.OPENAI));
+        assertEquals(1.0, meterRegistry.get("prcopilot.ai.calls.abandoned").gauge().value());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("prcopilot.ai.calls.abandoned").gauge().value() > 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(0.0, meterRegistry.get("prcopilot.ai.calls.abandoned").gauge().value());
+        assertEquals(0.0, meterRegistry.get("prcopilot.ai.calls.in.flight").gauge().value());
+    }
+
+    @Test
+    void callAiModel_shouldTranslateResourceAccessException_toBadGateway() {
+        ChatClient chatClient = chatClientAnswering(() -> {
+            throw new ResourceAccessException("connection refused");
+        });
+
+        CustomApiException exception = assertThrows(
+                CustomApiException.class,
+                () -> aiChatService.callAiModel(prompt, chatClient, chatOptions, AiProvider.OPENAI)
+        );
+
+        assertEquals(HttpStatus.BAD_GATEWAY, exception.getHttpStatus());
+    }
+
+    @Test
+    void callAiModel_shouldRejectWithoutCallingModel_whenCircuitIsOpen() {
+        ChatClient failing = chatClientAnswering(() -> {
+            throw new ResourceAccessException("connection refused");
+        });
+        assertThrows(CustomApiException.class, () -> aiChatService.callAiModel(prompt, failing, chatOptions, AiProvider.OPENAI));
+        assertThrows(CustomApiException.class, () -> aiChatService.callAiModel(prompt, failing, chatOptions, AiProvider.OPENAI));
+        assertEquals(AiCircuitBreakerService.State.OPEN, circuitBreakerService.getState(AiProvider.OPENAI));
+
+        ChatClient untouched = mock(ChatClient.class);
+        CustomApiException exception = assertThrows(
+                CustomApiException.class,
+                () -> aiChatService.callAiModel(prompt, untouched, chatOptions, AiProvider.OPENAI)
+        );
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getHttpStatus());
+        verifyNoInteractions(untouched);
+        assertEquals(AiCircuitBreakerService.State.CLOSED, circuitBreakerService.getState(AiProvider.ANTHROPIC));
+    }
+
+    @Test
+    void callAiModel_shouldNotOpenCircuit_whenProviderRejectsTheRequest() {
+        ChatClient rejecting = chatClientAnswering(() -> {
+            throw new NonTransientAiException("400 - {\"error\": \"invalid request\"}");
+        });
+
+        assertThrows(RuntimeException.class, () -> aiChatService.callAiModel(prompt, rejecting, chatOptions, AiProvider.OPENAI));
+        assertThrows(RuntimeException.class, () -> aiChatService.callAiModel(prompt, rejecting, chatOptions, AiProvider.OPENAI));
+
+        assertEquals(AiCircuitBreakerService.State.CLOSED, circuitBreakerService.getState(AiProvider.OPENAI));
+    }
+
+    @Test
+    void callAiModel_shouldShedCall_whenConcurrencyLimitIsReached() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ChatResponse expected = mock(ChatResponse.class);
+        ChatClient blocking = chatClientAnswering(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return expected;
+        });
+
+        Thread first = Thread.ofVirtual().start(
+                () -> aiChatService.callAiModel(prompt, blocking, chatOptions, AiProvider.OPENAI)
+        );
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        ChatClient untouched = mock(ChatClient.class);
+        CapacityExceededException exception = assertThrows(
+                CapacityExceededException.class,
+                () -> aiChatService.callAiModel(prompt, untouched, chatOptions, AiProvider.OPENAI)
+        );
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getHttpStatus());
+        assertTrue(exception.getRetryAfterSeconds() >= 1);
+        verifyNoInteractions(untouched);
+
+        release.countDown();
+        first.join(5000);
+        assertSame(expected, aiChatService.callAiModel(prompt, chatClientAnswering(() -> expected), chatOptions, AiProvider.OPENAI));
+    }
+
+    @Test
+    void callAiModel_shouldRetryTransientFailure_andReportRetriesInMetadata() {
+        retryProperties.setEnabled(true);
+        ChatResponse expected = new ChatResponse(List.of());
+        AtomicInteger attempts = new AtomicInteger();
+        ChatClient flaky = chatClientAnswering(() -> {
+            if (attempts.incrementAndGet() == 1) throw new TransientAiException("HTTP 502 - Bad Gateway");
+            return expected;
+        });
+
+        ChatResponse response = aiChatService.callAiModel(prompt, flaky, chatOptions, AiProvider.OPENAI);
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, (int) response.getMetadata().get(AiChatService.RETRIES_METADATA_KEY));
+    }
+
+    @Test
+    void callAiModel_shouldRejectInsteadOfWaitingForQuota_whenTheWaitWouldOutlastTheDeadline() {
+        MultiAiConfigurationProperties.ProviderRateLimit limit = new MultiAiConfigurationProperties.ProviderRateLimit();
+        limit.setRequestsPerMinute(1);
+        properties.getRateLimits().put(AiProvider.OPENAI, limit);
+        properties.setRateLimitMaxWaitMillis(120_000);
+        AiChatService limitedService = new AiChatService(
+                properties,
+                executor,
+                circuitBreakerService,
+                concurrencyLimiterService,
+                new AiRateLimiterService(properties, meterRegistry),
+                new AiRetryService(retryProperties, meterRegistry),
+                meterRegistry
+        );
+        ChatClient chatClient = chatClientAnswering(() -> mock(ChatResponse.class));
+        limitedService.callAiModel(prompt, chatClient, chatOptions, AiProvider.OPENAI);
+
+        long start = System.currentTimeMillis();
+        assertThrows(
+                CapacityExceededException.class,
+                () -> limitedService.callAiModel(prompt, chatClient, chatOptions, AiProvider.OPENAI)
+        );
+
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    void streamAiModel_shouldReleaseConcurrencySlot_whenStreamCompletes() {
+        ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        when(chatClient.prompt(prompt).options(chatOptions).stream().chatResponse())
+                .thenAnswer(invocation -> Flux.just(mock(ChatResponse.class), mock(ChatResponse.class)));
+
+        for (int i = 0; i < 2; i++) {
+            List<ChatResponse> chunks = aiChatService.streamAiModel(
+                    prompt, chatClient, chatOptions, AiProvider.OPENAI, 1000, AnalysisPriority.INTERACTIVE
+            ).collectList().block();
+            assertEquals(2, chunks.size());
+        }
+
+        assertEquals(0.0, meterRegistry.get("prcopilot.ai.calls.in.flight").gauge().value());
+        assertEquals(AiCircuitBreakerService.State.CLOSED, circuitBreakerService.getState(AiProvider.OPENAI));
+    }
+
+    @Test
+    void streamAiModel_shouldNotCallModel_whenCircuitIsOpen() {
+        circuitBreakerService.tryAcquirePermission(AiProvider.OPENAI);
+        circuitBreakerService.onFailure(AiProvider.OPENAI, 10);
+        circuitBreakerService.tryAcquirePermission(AiProvider.OPENAI);
+        circuitBreakerService.onFailure(AiProvider.OPENAI, 10);
+        ChatClient untouched = mock(ChatClient.class);
+
+        Flux<ChatResponse> stream = aiChatService.streamAiModel(
+                prompt, untouched, chatOptions, AiProvider.OPENAI, 1000, AnalysisPriority.INTERACTIVE
+        );
+
+        CustomApiException exception = assertThrows(CustomApiException.class, stream::blockLast);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getHttpStatus());
+        verifyNoInteractions(untouched);
+    }
+
+    private ChatClient chatClientAnswering(Supplier<ChatResponse> answer) {
+        ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        when(chatClient.prompt(prompt).options(chatOptions).call().chatResponse())
+                .thenAnswer(invocation -> answer.get());
+        return chatClient;
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AiCircuitBreakerHealthIndicatorTest {
+
+    private AiCircuitBreakerService circuitBreakerService;
+    private AiCircuitBreakerHealthIndicator healthIndicator;
+
+    @BeforeEach
+    public void setup() {
+        MultiAiConfigurationProperties properties = new MultiAiConfigurationProperties();
+        properties.setProvider(AiProvider.OPENAI);
+        properties.setFallbackProvider(AiProvider.ANTHROPIC);
+        properties.setAutoFallback(true);
+
+        circuitBreakerService = mock(AiCircuitBreakerService.class);
+        healthIndicator = new AiCircuitBreakerHealthIndicator(circuitBreakerService, properties);
+    }
+
+    @Test
+    public void health_shouldBeUpWithDetails_whenFallbackIsAvailable() {
+        when(circuitBreakerService.getState(AiProvider.OPENAI)).thenReturn(AiCircuitBreakerService.State.OPEN);
+        when(circuitBreakerService.getState(AiProvider.ANTHROPIC)).thenReturn(AiCircuitBreakerService.State.CLOSED);
+
+        Health health = healthIndicator.health();
+
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("openai", "OPEN").containsEntry("anthropic", "CLOSED");
+    }
+
+    @Test
+    public void health_shouldBeOutOfService_whenAllConfiguredProvidersAreOpen() {
+        when(circuitBreakerService.getState(AiProvider.OPENAI)).thenReturn(AiCircuitBreakerService.State.OPEN);
+        when(circuitBreakerService.getState(AiProvider.ANTHROPIC)).thenReturn(AiCircuitBreakerService.State.OPEN);
+
+        assertThat(healthIndicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotCircuitBreakerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static io.github.kxng0109.aiprcopilot.service.AiCircuitBreakerService.State.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AiCircuitBreakerServiceTest {
+
+    private PrCopilotCircuitBreakerProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private AiCircuitBreakerService circuitBreakerService;
+
+    @BeforeEach
+    public void setup() {
+        properties = new PrCopilotCircuitBreakerProperties();
+        properties.setEnabled(true);
+        properties.setWindowSize(4);
+        properties.setMinimumCalls(4);
+        properties.setFailureRateThreshold(50);
+        properties.setSlowCallRateThreshold(75);
+        properties.setSlowCallDurationMillis(1000);
+        properties.setOpenStateMillis(50);
+        properties.setHalfOpenPermittedCalls(2);
+
+        meterRegistry = new SimpleMeterRegistry();
+        circuitBreakerService = new AiCircuitBreakerService(properties, meterRegistry);
+    }
+
+    @Test
+    public void shouldOpen_whenFailureRateReachesThreshold() {
+        recordCalls(AiProvider.OPENAI, 2, false, 10);
+        recordCalls(AiProvider.OPENAI, 1, true, 10);
+        assertThat(circuitBreakerService.getState(AiProvider.OPENAI)).isEqualTo(CLOSED);
+
+        recordCalls(AiProvider.OPENAI, 1, true, 10);
+
+        assertThat(circuitBreakerService.getState(AiProvider.OPENAI)).isEqualTo(OPEN);
+        assertThat(circuitBreakerService.tryAcquirePermission(AiProvider.OPENAI)).isFalse();
+        assertThat(circuitBreakerService.getState(AiProvider.ANTHROPIC)).isEqualTo(CLOSED);
+        assertThat(meterRegistry.get("prcopilot.circuit.rejected").tag("provider", "openai").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("prcopilot.circuit.state").tag("provider", "openai").gauge().value())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    public void shouldOpen_whenSlowCallRateReachesThreshold() {
+        recordCalls(AiProvider.OPENAI, 3, false, 5000);
+        recordCalls(AiProvider.OPENAI, 1, false, 10);
+
+        assertThat(circuitBreakerService.getState(AiProvider.OPENAI)).isEqualTo(OPEN);
+    }
+
+    @Test
+    public void shouldCloseAgain_whenHalfOpenTrialCallsSucceed() throws InterruptedException {
+        recordCalls(AiProvider.OPENAI, 4, true, 10);
+        Thread.sleep(100);
+
+        assertThat(circuitBreakerService.getState(AiProvider.OPENAI)).isEqualTo(HALF_OPEN);
+        recordCalls(AiProvider.OPENAI, 2, false, 10);
+        assertThat(circuitBreakerService.tryAcquirePermission(AiProvider.OPENAI)).isTrue();
+
+        assertThat(circuitBreakerService.getState(AiProvider.OPENAI)).isEqualTo(CLOSED);
+    }
+
+    @Test
+    public void shouldReopen_whenHalfOpenTrialCallsFail_andLimitTrialCalls() throws InterruptedException {
+        recordCalls(AiProvider.OPENAI, 4, true, 10);
+        Thread.sleep(100);
+
+        assertThat(circuitBreakerService.tryAcquirePermission(AiProvider.OPENAI)).isTrue();
+        assertThat(circuitBreakerService.tryAcquirePermission(AiProvider.OPENAI)).isTrue();
+        assertThat(circuitBreakerService.tryAcquirePermission(AiProvider.OPENAI)).isFalse();
+
+        circuitBreakerService.onFailure(AiProvider.OPENAI, 10);
+        circuitBreakerService.onFailure(AiProvider.OPENAI, 10);
+
+        assertThat(circuitBreakerService.getState(AiProvider.OPENAI)).isEqualTo(OPEN);
+    }
+
+    @Test
+    public void shouldAlwaysPermit_whenDisabled() {
+        properties.setEnabled(false);
+        recordCalls(AiProvider.OPENAI, 10, true, 10);
+
+        assertThat(circuitBreakerService.tryAcquirePermission(AiProvider.OPENAI)).isTrue();
+        assertThat(circuitBreakerService.getState(AiProvider.OPENAI)).isEqualTo(CLOSED);
+    }
+
+    private void recordCalls(AiProvider provider, int count, boolean failed, long durationMillis) {
+        for (int i = 0; i < count; i++) {
+            if (!circuitBreakerService.tryAcquirePermission(provider)) continue;
+            if (failed) circuitBreakerService.onFailure(provider, durationMillis);
+            else circuitBreakerService.onSuccess(provider, durationMillis);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotConcurrencyProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AiConcurrencyLimiterServiceTest {
+
+    private PrCopilotConcurrencyProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private AiConcurrencyLimiterService limiterService;
+
+    @BeforeEach
+    public void setup() {
+        properties = new PrCopilotConcurrencyProperties();
+        properties.setEnabled(true);
+        properties.setInitialLimit(4);
+        properties.setMinLimit(1);
+        properties.setMaxLimit(50);
+        properties.setQueueTimeoutMillis(20);
+
+        meterRegistry = new SimpleMeterRegistry();
+        limiterService = new AiConcurrencyLimiterService(properties, meterRegistry);
+    }
+
+    @Test
+    public void acquire_shouldShedWithRetryAfter_whenLimitIsReached() {
+        List<AiConcurrencyLimiterService.Permit> permits = acquire(AiProvider.OPENAI, 4);
+
+        CapacityExceededException exception = assertThrows(
+                CapacityExceededException.class,
+                () -> limiterService.acquire(AiProvider.OPENAI)
+        );
+
+        assertThat(exception.getRetryAfterSeconds()).isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("prcopilot.concurrency.rejected").tag("provider", "openai").counter().count())
+                .isEqualTo(1.0);
+        assertThat(limiterService.acquire(AiProvider.ANTHROPIC)).isNotNull();
+
+        permits.getFirst().onIgnored();
+        assertThat(limiterService.acquire(AiProvider.OPENAI)).isNotNull();
+    }
+
+    @Test
+    public void onDropped_shouldShrinkLimit() {
+        acquire(AiProvider.OPENAI, 1).getFirst().onDropped();
+
+        assertThat(limiterService.getLimit(AiProvider.OPENAI)).isEqualTo(3);
+    }
+
+    @Test
+    public void onSuccess_shouldGrowLimit_whenLatencyIsStableAndLimitIsUsed() {
+        for (int round = 0; round < 20; round++) {
+            int limit = limiterService.getLimit(AiProvider.OPENAI);
+            acquire(AiProvider.OPENAI, limit).forEach(AiConcurrencyLimiterService.Permit::onSuccess);
+        }
+
+        assertThat(limiterService.getLimit(AiProvider.OPENAI)).isGreaterThan(4);
+    }
+
+    @Test
+    public void onSuccess_shouldNotGrowLimit_whenLimitIsUnused() {
+        for (int i = 0; i < 50; i++) {
+            limiterService.acquire(AiProvider.OPENAI).onSuccess();
+        }
+
+        assertThat(limiterService.getLimit(AiProvider.OPENAI)).isEqualTo(4);
+    }
+
+    @Test
+    public void acquire_shouldNeverShed_whenDisabled() {
+        properties.setEnabled(false);
+
+        assertThat(acquire(AiProvider.OPENAI, 100)).hasSize(100);
+    }
+
+    @Test
+    public void acquire_shouldServeInteractiveWaitersBeforeEarlierBulkWaiters() throws Exception {
+        properties.setInitialLimit(1);
+        properties.getInteractive().setQueueTimeoutMillis(5000L);
+        properties.getBulk().setQueueTimeoutMillis(5000L);
+        meterRegistry = new SimpleMeterRegistry();
+        limiterService = new AiConcurrencyLimiterService(properties, meterRegistry);
+        AiConcurrencyLimiterService.Permit held = limiterService.acquire(AiProvider.OPENAI);
+
+        List<AnalysisPriority> served = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> waiters = new ArrayList<>();
+        for (AnalysisPriority lane : List.of(AnalysisPriority.BULK, AnalysisPriority.INTERACTIVE)) {
+            for (int i = 0; i < 3; i++) {
+                waiters.add(Thread.ofVirtual().start(() -> {
+                    AiConcurrencyLimiterService.Permit permit = limiterService.acquire(AiProvider.OPENAI, lane);
+                    served.add(lane);
+                    permit.onIgnored();
+                }));
+            }
+            awaitQueued(lane, 3);
+        }
+
+        held.onIgnored();
+        for (Thread waiter : waiters) waiter.join(5000);
+
+        assertThat(served).containsExactly(
+                AnalysisPriority.INTERACTIVE, AnalysisPriority.INTERACTIVE, AnalysisPriority.INTERACTIVE,
+                AnalysisPriority.BULK, AnalysisPriority.BULK, AnalysisPriority.BULK
+        );
+        assertThat(meterRegistry.get("prcopilot.concurrency.queue.wait")
+                                .tag("provider", "openai")
+                                .tag("lane", "bulk")
+                                .timer()
+                                .count()).isEqualTo(3);
+    }
+
+    @Test
+    public void acquire_shouldNotPushALaneBack_forWaitersThatWereShed() throws Exception {
+        properties.setInitialLimit(1);
+        properties.getInteractive().setQueueTimeoutMillis(10L);
+        properties.getBulk().setQueueTimeoutMillis(5000L);
+        meterRegistry = new SimpleMeterRegistry();
+        limiterService = new AiConcurrencyLimiterService(properties, meterRegistry);
+        AiConcurrencyLimiterService.Permit held = limiterService.acquire(AiProvider.OPENAI);
+
+        for (int i = 0; i < 20; i++) {
+            assertThrows(CapacityExceededException.class, () -> limiterService.acquire(AiProvider.OPENAI));
+        }
+        properties.getInteractive().setQueueTimeoutMillis(5000L);
+
+        List<AnalysisPriority> served = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> waiters = new ArrayList<>();
+        for (AnalysisPriority lane : List.of(AnalysisPriority.BULK, AnalysisPriority.INTERACTIVE)) {
+            waiters.add(Thread.ofVirtual().start(() -> {
+                AiConcurrencyLimiterService.Permit permit = limiterService.acquire(AiProvider.OPENAI, lane);
+                served.add(lane);
+                permit.onIgnored();
+            }));
+            awaitQueued(lane, 1);
+        }
+
+        held.onIgnored();
+        for (Thread waiter : waiters) waiter.join(5000);
+
+        assertThat(served).containsExactly(AnalysisPriority.INTERACTIVE, AnalysisPriority.BULK);
+    }
+
+    @Test
+    public void acquire_shouldKeepBulkCallsToTheirShareOfTheLimit() {
+        properties.getBulk().setMaxSharePercent(50);
+        properties.getBulk().setQueueTimeoutMillis(20L);
+
+        acquire(AiProvider.OPENAI, AnalysisPriority.BULK, 2);
+        assertThrows(CapacityExceededException.class, () -> limiterService.acquire(AiProvider.OPENAI, AnalysisPriority.BULK));
+
+        assertThat(acquire(AiProvider.OPENAI, AnalysisPriority.INTERACTIVE, 2)).hasSize(2);
+        assertThat(meterRegistry.get("prcopilot.concurrency.rejected").tag("lane", "bulk").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    private void awaitQueued(AnalysisPriority lane, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("prcopilot.concurrency.queued")
+                            .tag("provider", "openai")
+                            .tag("lane", lane.getValue())
+                            .gauge()
+                            .value() < count) {
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("Waiters did not queue");
+            Thread.sleep(5);
+        }
+    }
+
+    private List<AiConcurrencyLimiterService.Permit> acquire(AiProvider provider, AnalysisPriority lane, int count) {
+        List<AiConcurrencyLimiterService.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(limiterService.acquire(provider, lane));
+        }
+        return permits;
+    }
+
+    private List<AiConcurrencyLimiterService.Permit> acquire(AiProvider provider, int count) {
+        List<AiConcurrencyLimiterService.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(limiterService.acquire(provider));
+        }
+        return permits;
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AiHedgingServiceTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private MultiAiConfigurationProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private AiHedgingService hedgingService;
+
+    @BeforeEach
+    public void setup() {
+        properties = new MultiAiConfigurationProperties();
+        properties.setHedgeDelayMillis(50);
+        meterRegistry = new SimpleMeterRegistry();
+        hedgingService = new AiHedgingService(properties, executor, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void execute_shouldNotHedge_whenPrimaryAnswersWithinDelay() {
+        String result = hedgingService.execute(() -> "primary", () -> {
+            throw new AssertionError("hedge must not be called");
+        });
+
+        assertThat(result).isEqualTo("primary");
+        assertThat(hedgeCalls("false")).isEqualTo(1.0);
+        assertThat(hedgeCalls("true")).isZero();
+    }
+
+    @Test
+    public void execute_shouldReturnHedgeAndCancelPrimary_whenPrimaryIsSlow() throws Exception {
+        CountDownLatch primaryInterrupted = new CountDownLatch(1);
+
+        String result = hedgingService.execute(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                primaryInterrupted.countDown();
+            }
+            return "primary";
+        }, () -> "hedge");
+
+        assertThat(result).isEqualTo("hedge");
+        assertTrue(primaryInterrupted.await(5, TimeUnit.SECONDS));
+        assertThat(hedgeCalls("true")).isEqualTo(1.0);
+        assertThat(meterRegistry.get("prcopilot.hedge.wins").tag("winner", "hedge").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void execute_shouldStartHedgeImmediately_whenPrimaryFailsBeforeDelay() {
+        properties.setHedgeDelayMillis(10_000);
+        long start = System.currentTimeMillis();
+
+        String result = hedgingService.execute(() -> {
+            throw new IllegalStateException("primary down");
+        }, () -> "hedge");
+
+        assertThat(result).isEqualTo("hedge");
+        assertThat(System.currentTimeMillis() - start).isLessThan(5_000);
+        assertThat(meterRegistry.get("prcopilot.hedge.calls").tag("reason", "failure").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void execute_shouldThrowHedgeFailedException_whenBothCallsFail() {
+        AiHedgingService.HedgeFailedException exception = assertThrows(
+                AiHedgingService.HedgeFailedException.class,
+                () -> hedgingService.execute(
+                        () -> {
+                            throw new IllegalStateException("primary down");
+                        },
+                        () -> {
+                            throw new IllegalStateException("hedge down");
+                        }
+                )
+        );
+
+        assertThat(exception.getPrimaryFailure()).hasMessage("primary down");
+        assertThat(exception.getHedgeFailure()).hasMessage("hedge down");
+    }
+
+    @Test
+    public void currentHedgeDelayMillis_shouldFollowObservedP95_whenAdaptive() {
+        properties.setHedgeDelayMillis(10_000);
+        properties.setHedgeAdaptiveDelay(true);
+
+        for (int i = 0; i < 19; i++) {
+            hedgingService.execute(() -> "primary", () -> "hedge");
+        }
+        assertThat(hedgingService.currentHedgeDelayMillis()).isEqualTo(10_000);
+
+        hedgingService.execute(() -> "primary", () -> "hedge");
+        assertThat(hedgingService.currentHedgeDelayMillis()).isLessThan(10_000);
+    }
+
+    private double hedgeCalls(String hedged) {
+        return meterRegistry.find("prcopilot.hedge.calls").tag("hedged", hedged).counters()
+                            .stream()
+                            .mapToDouble(counter -> counter.count())
+                            .sum();
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.AiProviderPool;
+import io.github.kxng0109.aiprcopilot.config.LoadBalancingStrategy;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotCircuitBreakerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.ChatOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class AiLoadBalancerServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PrCopilotCircuitBreakerProperties circuitBreakerProperties;
+    private AiCircuitBreakerService circuitBreakerService;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        circuitBreakerProperties = new PrCopilotCircuitBreakerProperties();
+        circuitBreakerService = new AiCircuitBreakerService(circuitBreakerProperties, meterRegistry);
+    }
+
+    @Test
+    public void acquire_shouldInterleaveProvidersByWeight_whenUsingWeightedRoundRobin() {
+        AiLoadBalancerService loadBalancer = loadBalancer(LoadBalancingStrategy.WEIGHTED_ROUND_ROBIN, 3, 1);
+
+        List<AiProvider> chosen = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            AiLoadBalancerService.Selection selection = loadBalancer.acquire();
+            chosen.add(selection.provider());
+            selection.onSuccess();
+        }
+
+        assertThat(chosen).filteredOn(p -> p == AiProvider.OPENAI).hasSize(6);
+        assertThat(chosen).filteredOn(p -> p == AiProvider.ANTHROPIC).hasSize(2);
+        assertThat(chosen.subList(0, 4)).contains(AiProvider.ANTHROPIC);
+        assertThat(meterRegistry.get("prcopilot.lb.selections").tag("provider", "openai").counter().count())
+                .isEqualTo(6.0);
+    }
+
+    @Test
+    public void acquire_shouldPreferIdleProvider_whenUsingLeastOutstanding() {
+        AiLoadBalancerService loadBalancer = loadBalancer(LoadBalancingStrategy.LEAST_OUTSTANDING, 1, 1);
+
+        AiLoadBalancerService.Selection first = loadBalancer.acquire();
+        AiLoadBalancerService.Selection second = loadBalancer.acquire();
+
+        assertThat(second.provider()).isNotEqualTo(first.provider());
+        assertThat(meterRegistry.get("prcopilot.lb.outstanding").tag("provider", "openai").gauge().value())
+                .isEqualTo(1.0);
+
+        first.onSuccess();
+        assertThat(loadBalancer.acquire().provider()).isEqualTo(first.provider());
+    }
+
+    @Test
+    public void acquire_shouldAvoidSlowProvider_whenUsingEwmaLatency() throws InterruptedException {
+        AiLoadBalancerService loadBalancer = loadBalancer(LoadBalancingStrategy.EWMA_LATENCY, 1, 1);
+
+        AiLoadBalancerService.Selection first = loadBalancer.acquire();
+        AiLoadBalancerService.Selection second = loadBalancer.acquire();
+        AiLoadBalancerService.Selection slow = first.provider() == AiProvider.OPENAI ? first : second;
+        AiLoadBalancerService.Selection fast = slow == first ? second : first;
+        fast.onSuccess();
+        Thread.sleep(50);
+        slow.onSuccess();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(loadBalancer.acquire().provider()).isEqualTo(AiProvider.ANTHROPIC);
+        }
+    }
+
+    @Test
+    public void acquire_shouldSkipProvider_whenItsCircuitIsOpen() {
+        circuitBreakerProperties.setEnabled(true);
+        circuitBreakerProperties.setMinimumCalls(1);
+        circuitBreakerService.tryAcquirePermission(AiProvider.OPENAI);
+        circuitBreakerService.onFailure(AiProvider.OPENAI, 10);
+        AiLoadBalancerService loadBalancer = loadBalancer(LoadBalancingStrategy.WEIGHTED_ROUND_ROBIN, 5, 1);
+
+        for (int i = 0; i < 4; i++) {
+            AiLoadBalancerService.Selection selection = loadBalancer.acquire();
+            assertThat(selection.provider()).isEqualTo(AiProvider.ANTHROPIC);
+            selection.onIgnored();
+        }
+    }
+
+    private AiLoadBalancerService loadBalancer(LoadBalancingStrategy strategy, int openAiWeight, int anthropicWeight) {
+        AiProviderPool pool = new AiProviderPool(strategy, List.of(
+                new AiProviderPool.Member(AiProvider.OPENAI, mock(ChatClient.class), mock(ChatOptions.class), openAiWeight),
+                new AiProviderPool.Member(AiProvider.ANTHROPIC, mock(ChatClient.class), mock(ChatOptions.class), anthropicWeight)
+        ));
+        return new AiLoadBalancerService(pool, circuitBreakerService, meterRegistry);
+    }
+}
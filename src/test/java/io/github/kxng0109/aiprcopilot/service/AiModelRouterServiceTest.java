@@ -0,0 +1,101 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiModelTiers;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.AiProviderPool;
+import io.github.kxng0109.aiprcopilot.config.LoadBalancingStrategy;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotCircuitBreakerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.ChatOptions;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class AiModelRouterServiceTest {
+
+    private static final String SMALL_DIFF = """
+            diff --git a/README.md b/README.md
+            --- a/README.md
+            +++ b/README.md
+            @@ -1 +1 @@
+            -teh
+            +the
+            """;
+
+    private static final String MULTI_FILE_DIFF = SMALL_DIFF + """
+            diff --git a/src/App.java b/src/App.java
+            --- a/src/App.java
+            +++ b/src/App.java
+            @@ -1 +1 @@
+            -a
+            +b
+            @@ -10 +10 @@
+            -c
+            +d
+            """;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PrCopilotCircuitBreakerProperties circuitBreakerProperties;
+    private AiCircuitBreakerService circuitBreakerService;
+    private AiModelRouterService router;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        circuitBreakerProperties = new PrCopilotCircuitBreakerProperties();
+        circuitBreakerService = new AiCircuitBreakerService(circuitBreakerProperties, meterRegistry);
+
+        AiProviderPool pool = new AiProviderPool(LoadBalancingStrategy.WEIGHTED_ROUND_ROBIN, List.of(
+                new AiProviderPool.Member(AiProvider.OPENAI, mock(ChatClient.class), mock(ChatOptions.class), 1)
+        ));
+        AiModelTiers tiers = new AiModelTiers(List.of(
+                new AiModelTiers.Tier("small", AiProvider.OLLAMA, mock(ChatClient.class), mock(ChatOptions.class), 2000, 1, 2)
+        ));
+        router = new AiModelRouterService(
+                tiers,
+                new AiLoadBalancerService(pool, circuitBreakerService, meterRegistry),
+                circuitBreakerService,
+                meterRegistry
+        );
+    }
+
+    @Test
+    public void route_shouldUseTier_whenDiffFitsItsLimits() {
+        AiLoadBalancerService.Selection selection = router.route(SMALL_DIFF);
+
+        assertThat(selection.provider()).isEqualTo(AiProvider.OLLAMA);
+        assertThat(meterRegistry.get("prcopilot.routing.tier").tag("tier", "small").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void route_shouldUseDefaultProvider_whenDiffExceedsAnyLimit() {
+        AiLoadBalancerService.Selection selection = router.route(MULTI_FILE_DIFF);
+
+        assertThat(selection.provider()).isEqualTo(AiProvider.OPENAI);
+        assertThat(meterRegistry.get("prcopilot.routing.tier").tag("tier", "default").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void route_shouldSkipTier_whenItsCircuitIsOpen() {
+        circuitBreakerProperties.setEnabled(true);
+        circuitBreakerProperties.setMinimumCalls(1);
+        circuitBreakerService.tryAcquirePermission(AiProvider.OLLAMA);
+        circuitBreakerService.onFailure(AiProvider.OLLAMA, 10);
+
+        assertThat(router.route(SMALL_DIFF).provider()).isEqualTo(AiProvider.OPENAI);
+    }
+
+    @Test
+    public void diffShape_shouldCountFilesAndHunks() {
+        AiModelRouterService.DiffShape shape = AiModelRouterService.DiffShape.of(MULTI_FILE_DIFF);
+
+        assertThat(shape.files()).isEqualTo(2);
+        assertThat(shape.hunks()).isEqualTo(3);
+        assertThat(shape.chars()).isEqualTo(MULTI_FILE_DIFF.length());
+    }
+}
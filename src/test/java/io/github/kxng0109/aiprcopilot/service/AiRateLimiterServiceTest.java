@@ -0,0 +1,111 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AiRateLimiterServiceTest {
+
+    private MultiAiConfigurationProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        properties = new MultiAiConfigurationProperties();
+        properties.setMaxTokens(0);
+        properties.setRateLimitMaxWaitMillis(1000);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void reserve_shouldNotDebitAnything_whenProviderHasNoQuota() {
+        AiRateLimiterService rateLimiterService = new AiRateLimiterService(properties, meterRegistry);
+
+        AiRateLimiterService.Reservation reservation = rateLimiterService.reserve(AiProvider.OPENAI, new Prompt("analyze"));
+
+        assertThat(reservation.debitedTokens()).isZero();
+        assertThat(meterRegistry.find("prcopilot.ratelimit.tokens.available").gauge()).isNull();
+    }
+
+    @Test
+    public void reserve_shouldRejectWithRetryAfter_whenQuotaWouldNotRecoverInTime() {
+        limit(AiProvider.OPENAI, 2, 0);
+        properties.setRateLimitMaxWaitMillis(100);
+        AiRateLimiterService rateLimiterService = new AiRateLimiterService(properties, meterRegistry);
+
+        rateLimiterService.reserve(AiProvider.OPENAI, new Prompt("analyze"));
+        rateLimiterService.reserve(AiProvider.OPENAI, new Prompt("analyze"));
+        CapacityExceededException exception = assertThrows(
+                CapacityExceededException.class,
+                () -> rateLimiterService.reserve(AiProvider.OPENAI, new Prompt("analyze"))
+        );
+
+        assertThat(exception.getRetryAfterSeconds()).isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("prcopilot.ratelimit.rejected").tag("provider", "openai").counter().count())
+                .isEqualTo(1.0);
+        assertThat(rateLimiterService.reserve(AiProvider.ANTHROPIC, new Prompt("analyze"))).isNotNull();
+    }
+
+    @Test
+    public void reserve_shouldWaitForTokens_whenQuotaRecoversWithinMaxWait() {
+        limit(AiProvider.OPENAI, 0, 60_000);
+        AiRateLimiterService rateLimiterService = new AiRateLimiterService(properties, meterRegistry);
+
+        rateLimiterService.reserve(AiProvider.OPENAI, new Prompt("x".repeat(240_000)));
+        long start = System.nanoTime();
+        rateLimiterService.reserve(AiProvider.OPENAI, new Prompt("x".repeat(400)));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(80);
+        assertThat(meterRegistry.get("prcopilot.ratelimit.wait").tag("provider", "openai").timer().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void settle_shouldRefundOverEstimate_whenResponseReportsUsage() {
+        limit(AiProvider.OPENAI, 0, 10_000);
+        properties.setMaxTokens(1000);
+        AiRateLimiterService rateLimiterService = new AiRateLimiterService(properties, meterRegistry);
+
+        AiRateLimiterService.Reservation reservation = rateLimiterService.reserve(AiProvider.OPENAI, new Prompt("analyze"));
+        assertThat(reservation.debitedTokens()).isEqualTo(1002);
+
+        ChatResponse response = ChatResponse.builder()
+                                            .generations(List.of())
+                                            .metadata(ChatResponseMetadata.builder()
+                                                                          .usage(new DefaultUsage(50, 50))
+                                                                          .build())
+                                            .build();
+        rateLimiterService.settle(reservation, response);
+
+        assertThat(meterRegistry.get("prcopilot.ratelimit.tokens.available").tag("provider", "openai").gauge().value())
+                .isCloseTo(9900.0, within(5.0));
+    }
+
+    @Test
+    public void estimateTokens_shouldRoundUpToOneTokenPerFourCharacters() {
+        AiRateLimiterService rateLimiterService = new AiRateLimiterService(properties, meterRegistry);
+
+        assertThat(rateLimiterService.estimateTokens(new Prompt("x".repeat(9)))).isEqualTo(3);
+    }
+
+    private void limit(AiProvider provider, int requestsPerMinute, long tokensPerMinute) {
+        MultiAiConfigurationProperties.ProviderRateLimit limit = new MultiAiConfigurationProperties.ProviderRateLimit();
+        limit.setRequestsPerMinute(requestsPerMinute);
+        limit.setTokensPerMinute(tokensPerMinute);
+        properties.getRateLimits().put(provider, limit);
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotRetryProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AiRetryServiceTest {
+
+    private PrCopilotRetryProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private AiRetryService retryService;
+
+    @BeforeEach
+    public void setup() {
+        properties = new PrCopilotRetryProperties();
+        properties.setEnabled(true);
+        properties.setMaxAttempts(3);
+        properties.setBaseDelayMillis(1);
+        properties.setMaxDelayMillis(500);
+        properties.setBudgetPercent(20);
+        properties.setBudgetBurst(10);
+
+        meterRegistry = new SimpleMeterRegistry();
+        retryService = new AiRetryService(properties, meterRegistry);
+    }
+
+    @Test
+    public void execute_shouldRetryRetryableFailures_andReportRetryCount() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        AiRetryService.Result<String> result = retryService.execute(AiProvider.OPENAI, failingTimes(
+                attempts, 2, () -> new ResourceAccessException("connection reset")
+        ));
+
+        assertThat(result.value()).isEqualTo("ok");
+        assertThat(result.retries()).isEqualTo(2);
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(meterRegistry.get("prcopilot.retry.attempts").tag("provider", "openai").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    public void execute_shouldNotRetry_whenFailureIsNotRetryable() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(NonTransientAiException.class, () -> retryService.execute(AiProvider.OPENAI, failingTimes(
+                attempts, 1, () -> new NonTransientAiException("HTTP 400 - bad request")
+        )));
+
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_shouldWaitForRetryAfter_whenProviderIsRateLimiting() {
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+
+        AiRetryService.Result<String> result = retryService.execute(AiProvider.OPENAI, failingTimes(
+                attempts, 1, () -> rateLimited("retry-after-ms", "100")
+        ));
+
+        assertThat(result.retries()).isEqualTo(1);
+        assertThat((System.nanoTime() - start) / 1_000_000).isGreaterThanOrEqualTo(100);
+    }
+
+    @Test
+    public void execute_shouldNotRetry_whenRetryAfterExceedsMaxDelay() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(NonTransientAiException.class, () -> retryService.execute(AiProvider.OPENAI, failingTimes(
+                attempts, 1, () -> rateLimited(HttpHeaders.RETRY_AFTER, "30")
+        )));
+
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_shouldStopRetrying_whenBudgetIsExhausted() {
+        properties.setBudgetBurst(1);
+        properties.setBudgetPercent(0);
+        retryService = new AiRetryService(properties, meterRegistry);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(TransientAiException.class, () -> retryService.execute(AiProvider.OPENAI, failingTimes(
+                attempts, 10, () -> new TransientAiException("HTTP 503 - unavailable")
+        )));
+
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(meterRegistry.get("prcopilot.retry.budget.exhausted").tag("provider", "openai").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    public void statusCode_shouldFallBackToMessage_whenNoResponseIsAttached() {
+        assertThat(AiRetryService.statusCode(new NonTransientAiException("HTTP 429 - slow down"))).isEqualTo(429);
+        assertThat(AiRetryService.statusCode(new RuntimeException("wrapped", new TransientAiException("503 - busy"))))
+                .isEqualTo(503);
+        assertThat(AiRetryService.statusCode(new RuntimeException("no status"))).isEqualTo(-1);
+    }
+
+    private Supplier<String> failingTimes(AtomicInteger attempts, int failures, Supplier<RuntimeException> failure) {
+        return () -> {
+            if (attempts.incrementAndGet() <= failures) throw failure.get();
+            return "ok";
+        };
+    }
+
+    private NonTransientAiException rateLimited(String header, String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(header, value);
+        RestClientResponseException response = new RestClientResponseException(
+                "HTTP 429 - slow down",
+                HttpStatus.TOO_MANY_REQUESTS,
+                "Too Many Requests",
+                headers,
+                new byte[0],
+                StandardCharsets.UTF_8
+        );
+        return new NonTransientAiException("HTTP 429 - slow down", response);
+    }
+}
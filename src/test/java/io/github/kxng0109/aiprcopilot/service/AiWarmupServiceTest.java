@@ -0,0 +1,126 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.config.AiFallbackChain;
+import io.github.kxng0109.aiprcopilot.config.AiModelTiers;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.AiProviderHttpClients;
+import io.github.kxng0109.aiprcopilot.config.AiProviderPool;
+import io.github.kxng0109.aiprcopilot.config.LoadBalancingStrategy;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotLoggingProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotWarmupProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AiWarmupServiceTest {
+
+    @Mock
+    private AiProviderHttpClients httpClients;
+
+    @Mock
+    private ObjectProvider<AiProviderHttpClients> httpClientsProvider;
+
+    private PrCopilotWarmupProperties warmupProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private AiWarmupService warmupService;
+
+    @BeforeEach
+    public void setup() {
+        warmupProperties = new PrCopilotWarmupProperties();
+        warmupProperties.setEnabled(true);
+        warmupProperties.setMappingIterations(3);
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(httpClientsProvider.getIfAvailable()).thenReturn(httpClients);
+
+        AiProviderPool pool = new AiProviderPool(LoadBalancingStrategy.WEIGHTED_ROUND_ROBIN, List.of(
+                new AiProviderPool.Member(AiProvider.OPENAI, mock(ChatClient.class), mock(ChatOptions.class), 1)
+        ));
+        AiFallbackChain fallbackChain = new AiFallbackChain(List.of(
+                new AiFallbackChain.Step(AiProvider.ANTHROPIC, mock(ChatClient.class), mock(ChatOptions.class)),
+                new AiFallbackChain.Step(AiProvider.OPENAI, mock(ChatClient.class), mock(ChatOptions.class))
+        ));
+        AiModelTiers tiers = new AiModelTiers(List.of(
+                new AiModelTiers.Tier("small", AiProvider.OLLAMA, mock(ChatClient.class), mock(ChatOptions.class), 2000, 0, 0)
+        ));
+        ObjectMapper objectMapper = new ObjectMapper();
+        DiffResponseMapperService mapperService = new DiffResponseMapperService(
+                objectMapper,
+                new PrCopilotLoggingProperties(),
+                new PrCopilotAnalysisProperties(),
+                new SimpleMeterRegistry()
+        );
+
+        warmupService = new AiWarmupService(
+                warmupProperties,
+                httpClientsProvider,
+                pool,
+                fallbackChain,
+                tiers,
+                mapperService,
+                objectMapper,
+                meterRegistry
+        );
+    }
+
+    @Test
+    public void warmUp_shouldConnectToEveryConfiguredProviderOnce_andWarmUpMapping() throws Exception {
+        when(httpClients.warmUp(any(AiProvider.class), any(Duration.class))).thenReturn(true);
+
+        warmupService.warmUp();
+
+        verify(httpClients, times(1)).warmUp(eq(AiProvider.OPENAI), any(Duration.class));
+        verify(httpClients, times(1)).warmUp(eq(AiProvider.ANTHROPIC), any(Duration.class));
+        verify(httpClients, times(1)).warmUp(eq(AiProvider.OLLAMA), any(Duration.class));
+        assertThat(meterRegistry.get("prcopilot.warmup.duration").tag("step", "connections").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("prcopilot.warmup.duration").tag("step", "mapping").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void warmUp_shouldCarryOn_whenProviderIsUnreachable() throws Exception {
+        when(httpClients.warmUp(any(AiProvider.class), any(Duration.class))).thenReturn(true);
+        when(httpClients.warmUp(eq(AiProvider.OPENAI), any(Duration.class)))
+                .thenThrow(new ConnectException("Connection refused"));
+
+        warmupService.warmUp();
+
+        verify(httpClients).warmUp(eq(AiProvider.OLLAMA), any(Duration.class));
+        assertThat(meterRegistry.get("prcopilot.warmup.duration").tag("step", "mapping").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void warmUp_shouldDoNothing_whenDisabled() throws IOException {
+        warmupProperties.setEnabled(false);
+
+        warmupService.warmUp();
+
+        verifyNoInteractions(httpClients);
+        assertThat(meterRegistry.find("prcopilot.warmup.duration").timers()).isEmpty();
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AiCallMetadata;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisCacheServiceTest {
+
+    private PrCopilotCacheProperties cacheProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private AnalysisCacheService cacheService;
+
+    @BeforeEach
+    void setup() {
+        cacheProperties = new PrCopilotCacheProperties();
+        cacheProperties.setEnabled(true);
+        cacheProperties.setMaxEntries(2);
+        cacheProperties.setTtlMillis(60000);
+
+        meterRegistry = new SimpleMeterRegistry();
+        cacheService = new AnalysisCacheService(cacheProperties, meterRegistry);
+    }
+
+    @Test
+    void fingerprint_shouldIgnoreIndexLinesAndTrailingWhitespace() {
+        String diff = "diff --git a/A.java b/A.java\nindex abc..def 100644\n+line\n";
+        String equivalentDiff = "diff --git a/A.java b/A.java  \r\nindex 123..456 100644\r\n+line\t\r\n";
+
+        assertEquals(
+                cacheService.fingerprint(diff, "en", "conventional-commits", null, "openai", "gpt-4o"),
+                cacheService.fingerprint(equivalentDiff, "en", "conventional-commits", null, "openai", "gpt-4o")
+        );
+    }
+
+    @Test
+    void fingerprint_shouldDifferByLanguageStyleSummaryLengthAndProvider() {
+        String key = cacheService.fingerprint("diff", "en", "conventional-commits", null, "openai", null);
+
+        assertNotEquals(key, cacheService.fingerprint("diff", "fr", "conventional-commits", null, "openai", null));
+        assertNotEquals(key, cacheService.fingerprint("diff", "en", "gitlab", null, "openai", null));
+        assertNotEquals(key, cacheService.fingerprint("diff", "en", "conventional-commits", 200, "openai", null));
+        assertNotEquals(key, cacheService.fingerprint("diff", "en", "conventional-commits", null, "anthropic", null));
+    }
+
+    @Test
+    void get_shouldReturnStoredResponseAndCountHitsAndMisses() {
+        AnalyzeDiffResponse response = AnalyzeDiffResponse.builder().title("title").build();
+
+        assertTrue(cacheService.get("key").isEmpty());
+        cacheService.put("key", response);
+
+        assertSame(response, cacheService.get("key").orElseThrow());
+        assertEquals(1.0, meterRegistry.get("prcopilot.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("prcopilot.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void put_shouldEvictLeastRecentlyUsedEntry_whenFull() {
+        cacheService.put("first", AnalyzeDiffResponse.builder().build());
+        cacheService.put("second", AnalyzeDiffResponse.builder().build());
+        cacheService.get("first");
+        cacheService.put("third", AnalyzeDiffResponse.builder().build());
+
+        assertTrue(cacheService.get("first").isPresent());
+        assertTrue(cacheService.get("second").isEmpty());
+        assertTrue(cacheService.get("third").isPresent());
+        assertEquals(1.0, meterRegistry.get("prcopilot.cache.evictions").tag("cause", "size").counter().count());
+    }
+
+    @Test
+    void get_shouldExpireEntries_afterTtl() throws InterruptedException {
+        cacheProperties.setTtlMillis(1);
+        cacheService.put("key", AnalyzeDiffResponse.builder().build());
+
+        Thread.sleep(20);
+
+        assertTrue(cacheService.get("key").isEmpty());
+        assertEquals(1.0, meterRegistry.get("prcopilot.cache.evictions").tag("cause", "expired").counter().count());
+    }
+
+    @Test
+    void get_shouldAlwaysMiss_whenDisabled() {
+        cacheProperties.setEnabled(false);
+        cacheService.put("key", AnalyzeDiffResponse.builder().build());
+
+        assertTrue(cacheService.get("key").isEmpty());
+    }
+
+    @Test
+    void put_shouldNotStorePartialResponses() {
+        cacheService.put("key", AnalyzeDiffResponse.builder()
+                                                   .metadata(AiCallMetadata.builder().partial(true).build())
+                                                   .build());
+
+        assertTrue(cacheService.get("key").isEmpty());
+    }
+}
@@ -0,0 +1,269 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisJobResponse;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisJobStatus;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotJobProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AnalysisJobServiceTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private PrCopilotJobProperties jobProperties;
+    private DiffAnalysisService diffAnalysisService;
+    private SimpleMeterRegistry meterRegistry;
+    private AnalysisJobService jobService;
+
+    @BeforeEach
+    public void setup() {
+        jobProperties = new PrCopilotJobProperties();
+        diffAnalysisService = mock(DiffAnalysisService.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (jobService != null) jobService.shutdown();
+    }
+
+    @Test
+    public void submit_shouldRunJobInTheBackground_andKeepItsResponse() throws Exception {
+        when(diffAnalysisService.analyzeDiff(any()))
+                .thenReturn(AnalyzeDiffResponse.builder().title("Some title").requestId("req-1").build());
+        jobService = newJobService();
+
+        AnalysisJobResponse submitted = jobService.submit(request("req-1"), null);
+        AnalysisJobResponse finished = awaitFinished(submitted.jobId());
+
+        assertEquals(AnalysisJobStatus.SUCCEEDED, finished.status());
+        assertEquals("req-1", finished.requestId());
+        assertEquals("Some title", finished.response().title());
+        assertThat(finished.startedAt()).isNotNull();
+        assertThat(finished.completedAt()).isNotNull();
+        assertThat(meterRegistry.get("prcopilot.jobs.queue.wait").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("prcopilot.jobs.completed").tag("outcome", "success").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    public void submit_shouldRecordTheFailure_whenAnalysisFails() throws Exception {
+        when(diffAnalysisService.analyzeDiff(any())).thenThrow(new ModelOutputParseException("Invalid JSON"));
+        jobService = newJobService();
+
+        AnalysisJobResponse finished = awaitFinished(jobService.submit(request("req-1"), null).jobId());
+
+        assertEquals(AnalysisJobStatus.FAILED, finished.status());
+        assertEquals(422, finished.error().statusCode());
+        assertEquals("Invalid JSON", finished.error().message());
+        assertThat(finished.response()).isNull();
+    }
+
+    @Test
+    public void submit_shouldRejectJobs_whenTheQueueIsFull() throws Exception {
+        jobProperties.setWorkers(1);
+        jobProperties.setQueueCapacity(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(diffAnalysisService.analyzeDiff(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return AnalyzeDiffResponse.builder().title("title").build();
+        });
+        jobService = newJobService();
+
+        jobService.submit(request("running"), null);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        AnalysisJobResponse queued = jobService.submit(request("queued"), null);
+
+        assertEquals(AnalysisJobStatus.QUEUED, jobService.get(queued.jobId()).status());
+        assertThat(meterRegistry.get("prcopilot.jobs.queue.depth").gauge().value()).isEqualTo(1.0);
+        CapacityExceededException thrown = assertThrows(
+                CapacityExceededException.class,
+                () -> jobService.submit(request("rejected"), null)
+        );
+        assertThat(thrown.getRetryAfterSeconds()).isPositive();
+        assertThat(meterRegistry.get("prcopilot.jobs.stored").gauge().value()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("prcopilot.jobs.rejected").counter().count()).isEqualTo(1.0);
+
+        release.countDown();
+    }
+
+    @Test
+    public void submit_shouldPostTheFinishedJob_toTheCallbackUrl() throws Exception {
+        when(diffAnalysisService.analyzeDiff(any()))
+                .thenReturn(AnalyzeDiffResponse.builder().title("Some title").build());
+        CompletableFuture<JsonNode> callback = new CompletableFuture<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/hook", exchange -> {
+            callback.complete(objectMapper.readTree(exchange.getRequestBody()));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            jobProperties.setCallbackAllowedHosts(List.of("localhost"));
+            jobService = newJobService();
+            String callbackUrl = "http://localhost:" + server.getAddress().getPort() + "/hook";
+
+            AnalysisJobResponse submitted = jobService.submit(request("req-1"), callbackUrl);
+            JsonNode body = callback.get(5, TimeUnit.SECONDS);
+
+            assertEquals(submitted.jobId(), body.get("jobId").asText());
+            assertEquals("SUCCEEDED", body.get("status").asText());
+            assertEquals("Some title", body.at("/response/title").asText());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void submit_shouldReject_callbackUrlsThatAreNotAllowed() {
+        jobProperties.setCallbackAllowedHosts(List.of("ci.example.com"));
+        jobService = newJobService();
+
+        CustomApiException otherHost = assertThrows(
+                CustomApiException.class,
+                () -> jobService.submit(request("req-1"), "https://169.254.169.254/latest")
+        );
+        CustomApiException otherScheme = assertThrows(
+                CustomApiException.class,
+                () -> jobService.submit(request("req-1"), "file:///etc/passwd")
+        );
+
+        assertEquals(HttpStatus.BAD_REQUEST, otherHost.getHttpStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, otherScheme.getHttpStatus());
+        assertThat(meterRegistry.get("prcopilot.jobs.stored").gauge().value()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void submit_shouldReject_loopbackCallbackHosts_whenNoHostsAreAllowed() {
+        jobService = newJobService();
+
+        assertRejectedCallback("http://localhost:8080/hook");
+        assertRejectedCallback("http://127.0.0.1/hook");
+        assertRejectedCallback("http://[::1]/hook");
+    }
+
+    @Test
+    public void submit_shouldReject_linkLocalCallbackHosts_whenNoHostsAreAllowed() {
+        jobService = newJobService();
+
+        assertRejectedCallback("http://169.254.169.254/latest/meta-data");
+        assertRejectedCallback("http://[fe80::1]/hook");
+    }
+
+    @Test
+    public void submit_shouldReject_privateCallbackHosts_whenNoHostsAreAllowed() {
+        jobService = newJobService();
+
+        assertRejectedCallback("http://10.0.0.1/hook");
+        assertRejectedCallback("http://172.16.0.1/hook");
+        assertRejectedCallback("http://192.168.1.1/hook");
+        assertRejectedCallback("http://[fd00::1]/hook");
+        assertRejectedCallback("http://0.0.0.0/hook");
+    }
+
+    @Test
+    public void submit_shouldReject_reservedCallbackHosts_whenNoHostsAreAllowed() {
+        jobService = newJobService();
+
+        assertRejectedCallback("http://0.1.2.3/hook");
+        assertRejectedCallback("http://100.64.0.1/hook");
+        assertRejectedCallback("http://192.0.0.8/hook");
+        assertRejectedCallback("http://198.18.0.1/hook");
+        assertRejectedCallback("http://198.19.255.1/hook");
+        assertRejectedCallback("http://240.0.0.1/hook");
+        assertRejectedCallback("http://255.255.255.255/hook");
+    }
+
+    @Test
+    public void publicAddressDnsResolver_shouldCheckTheAddressesItConnectsTo() throws Exception {
+        AnalysisJobService.PublicAddressDnsResolver resolver = new AnalysisJobService.PublicAddressDnsResolver();
+
+        assertThrows(AnalysisJobService.NonPublicAddressException.class, () -> resolver.resolve("127.0.0.1"));
+        assertThrows(AnalysisJobService.NonPublicAddressException.class, () -> resolver.resolve("169.254.169.254"));
+        assertThat(resolver.resolve("192.0.2.10")).extracting(InetAddress::getHostAddress).containsExactly("192.0.2.10");
+    }
+
+    @Test
+    public void submit_shouldAccept_publicCallbackHosts_whenNoHostsAreAllowed() {
+        when(diffAnalysisService.analyzeDiff(any())).thenReturn(AnalyzeDiffResponse.builder().title("title").build());
+        jobProperties.setCallbackTimeoutMillis(100);
+        jobService = newJobService();
+
+        // A documentation address (RFC 5737): public, but nothing answers there
+        AnalysisJobResponse submitted = jobService.submit(request("req-1"), "https://192.0.2.10/hook");
+
+        assertThat(submitted.jobId()).isNotNull();
+    }
+
+    @Test
+    public void get_shouldThrow404_forUnknownAndExpiredJobs() throws Exception {
+        jobProperties.setTtlMillis(50);
+        when(diffAnalysisService.analyzeDiff(any())).thenReturn(AnalyzeDiffResponse.builder().title("title").build());
+        jobService = newJobService();
+
+        String jobId = awaitFinished(jobService.submit(request("req-1"), null)).jobId();
+        Thread.sleep(100);
+
+        assertEquals(HttpStatus.NOT_FOUND, assertThrows(CustomApiException.class, () -> jobService.get(jobId)).getHttpStatus());
+        assertEquals(HttpStatus.NOT_FOUND, assertThrows(CustomApiException.class, () -> jobService.get("unknown")).getHttpStatus());
+    }
+
+    private void assertRejectedCallback(String callbackUrl) {
+        CustomApiException exception = assertThrows(
+                CustomApiException.class,
+                () -> jobService.submit(request("req-1"), callbackUrl)
+        );
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+    }
+
+    private AnalysisJobService newJobService() {
+        return new AnalysisJobService(jobProperties, diffAnalysisService, objectMapper, meterRegistry);
+    }
+
+    private static AnalyzeDiffRequest request(String requestId) {
+        return AnalyzeDiffRequest.builder().diff("diff --git a/App.java b/App.java").requestId(requestId).build();
+    }
+
+    private AnalysisJobResponse awaitFinished(AnalysisJobResponse submitted) throws InterruptedException {
+        return awaitFinished(submitted.jobId());
+    }
+
+    private AnalysisJobResponse awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            AnalysisJobResponse job = jobService.get(jobId);
+            if (job.status() == AnalysisJobStatus.SUCCEEDED || job.status() == AnalysisJobStatus.FAILED) return job;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Job " + jobId + " did not finish");
+    }
+}
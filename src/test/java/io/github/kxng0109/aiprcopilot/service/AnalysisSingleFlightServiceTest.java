@@ -0,0 +1,200 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisSingleFlightServiceTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private SimpleMeterRegistry meterRegistry;
+    private AnalysisSingleFlightService singleFlightService;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlightService = new AnalysisSingleFlightService(executor, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void execute_shouldShareOneCall_whenIdenticalCallsAreInFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger invocations = new AtomicInteger();
+
+        List<CompletableFuture<String>> callers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            callers.add(CompletableFuture.supplyAsync(() -> singleFlightService.execute("key", 5000, () -> {
+                invocations.incrementAndGet();
+                await(release);
+                return "result";
+            })));
+        }
+
+        waitForCoalescedCallers(4);
+        release.countDown();
+
+        for (CompletableFuture<String> caller : callers) {
+            assertEquals("result", caller.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    void execute_shouldDeliverFailureToAllWaiters() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlightService.execute("key", 5000, () -> {
+            await(release);
+            throw new IllegalStateException("provider down");
+        }));
+        waitForInFlightCalls(1);
+        CompletableFuture<String> waiter = CompletableFuture.supplyAsync(
+                () -> singleFlightService.execute("key", 5000, () -> "never called")
+        );
+
+        waitForCoalescedCallers(1);
+        release.countDown();
+
+        for (CompletableFuture<String> caller : List.of(leader, waiter)) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> caller.get(5, TimeUnit.SECONDS));
+            assertThat(exception.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("provider down");
+        }
+    }
+
+    @Test
+    void execute_shouldKeepSharedCallRunning_whenWaiterIsInterrupted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlightService.execute("key", 5000, () -> {
+            await(release);
+            return "result";
+        }));
+        waitForInFlightCalls(1);
+
+        Thread waiter = Thread.ofVirtual().start(() -> assertThrows(
+                IllegalStateException.class,
+                () -> singleFlightService.execute("key", 5000, () -> "never called")
+        ));
+        waitForCoalescedCallers(1);
+        waiter.interrupt();
+        waiter.join(5000);
+
+        release.countDown();
+
+        assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void execute_shouldInterruptSharedCall_whenItsOnlyWaiterIsInterrupted() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        Thread caller = Thread.ofVirtual().start(() -> assertThrows(
+                IllegalStateException.class,
+                () -> singleFlightService.execute("key", 5000, () -> {
+                    started.countDown();
+                    try {
+                        Thread.sleep(30000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return "result";
+                })
+        ));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        caller.interrupt();
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals("again", singleFlightService.execute("key", 5000, () -> "again"));
+    }
+
+    @Test
+    void execute_shouldStopWaiting_afterTheCallersOwnTimeout_whileTheSharedCallKeepsRunning() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlightService.execute("key", 5000, () -> {
+            await(release);
+            return "result";
+        }));
+        waitForInFlightCalls(1);
+
+        CustomApiException timedOut = assertThrows(
+                CustomApiException.class,
+                () -> singleFlightService.execute("key", 50, () -> "never called")
+        );
+        release.countDown();
+
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, timedOut.getHttpStatus());
+        assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void execute_shouldNotLeaveACallBehind_whenTheExecutorRejectsIt() {
+        ExecutorService stopped = Executors.newVirtualThreadPerTaskExecutor();
+        stopped.shutdown();
+        SimpleMeterRegistry rejectingRegistry = new SimpleMeterRegistry();
+        AnalysisSingleFlightService rejecting = new AnalysisSingleFlightService(stopped, rejectingRegistry);
+
+        assertThrows(RejectedExecutionException.class, () -> rejecting.execute("key", 5000, () -> "never called"));
+
+        assertEquals(0.0, rejectingRegistry.get("prcopilot.singleflight.in.flight").gauge().value());
+        assertThrows(RejectedExecutionException.class, () -> rejecting.execute("key", 5000, () -> "never called"));
+    }
+
+    @Test
+    void execute_shouldRunAgain_afterPreviousCallCompleted() {
+        AtomicInteger invocations = new AtomicInteger();
+
+        singleFlightService.execute("key", 5000, invocations::incrementAndGet);
+        singleFlightService.execute("key", 5000, invocations::incrementAndGet);
+
+        assertEquals(2, invocations.get());
+    }
+
+    private void waitForCoalescedCallers(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("prcopilot.singleflight.coalesced").counter().count() < expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private void waitForInFlightCalls(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("prcopilot.singleflight.in.flight").gauge().value() < expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
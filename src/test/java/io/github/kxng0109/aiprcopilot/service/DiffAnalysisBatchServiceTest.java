@@ -0,0 +1,169 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotBatchProperties;
+import io.github.kxng0109.aiprcopilot.controller.DiffAnalysisController;
+import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class DiffAnalysisBatchServiceTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private PrCopilotBatchProperties batchProperties;
+    private PrCopilotAnalysisProperties analysisProperties;
+    private DiffAnalysisService diffAnalysisService;
+    private SimpleMeterRegistry meterRegistry;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        batchProperties = new PrCopilotBatchProperties();
+        analysisProperties = new PrCopilotAnalysisProperties();
+        analysisProperties.setMaxDiffChars(1000);
+        diffAnalysisService = mock(DiffAnalysisService.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        DiffAnalysisBatchService batchService = new DiffAnalysisBatchService(
+                batchProperties,
+                analysisProperties,
+                diffAnalysisService,
+                executor,
+                objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                meterRegistry
+        );
+        mockMvc = MockMvcBuilders.standaloneSetup(new DiffAnalysisController(
+                diffAnalysisService,
+                mock(DiffAnalysisStreamingService.class),
+                batchService
+        )).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void analyzeBatch_shouldWriteOneResultPerLine_taggedWithLineAndRequestId() throws Exception {
+        when(diffAnalysisService.analyzeDiff(any())).thenAnswer(invocation -> {
+            AnalyzeDiffRequest request = invocation.getArgument(0);
+            if (request.diff().equals("broken")) throw new ModelOutputParseException("Invalid JSON");
+            return AnalyzeDiffResponse.builder().title("Title of " + request.diff()).requestId(request.requestId()).build();
+        });
+
+        List<JsonNode> results = runBatch("""
+                {"diff":"diff-1","requestId":"req-1"}
+
+                not json
+                {"diff":"","requestId":"req-4"}
+                {"diff":"broken","requestId":"req-5"}
+                """);
+
+        assertThat(results).hasSize(4);
+        assertThat(byLine(results, 1).at("/response/title").asText()).isEqualTo("Title of diff-1");
+        assertThat(byLine(results, 1).get("requestId").asText()).isEqualTo("req-1");
+        assertThat(byLine(results, 3).at("/error/statusCode").asInt()).isEqualTo(400);
+        assertThat(byLine(results, 4).at("/error/statusCode").asInt()).isEqualTo(400);
+        assertThat(byLine(results, 4).at("/error/message").asText()).isEqualTo("Diff must not be blank");
+        assertThat(byLine(results, 5).at("/error/statusCode").asInt()).isEqualTo(422);
+        assertThat(byLine(results, 5).get("requestId").asText()).isEqualTo("req-5");
+        verify(diffAnalysisService).analyzeDiff(argThat(request -> "req-1".equals(request.requestId())
+                && request.priority() == AnalysisPriority.BULK));
+
+        assertThat(meterRegistry.get("prcopilot.batch.items").tag("outcome", "success").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("prcopilot.batch.items").tag("outcome", "failure").counter().count())
+                .isEqualTo(3.0);
+    }
+
+    @Test
+    public void analyzeBatch_shouldNotRunMoreAnalysesAtOnceThanTheConcurrency() throws Exception {
+        batchProperties.setConcurrency(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(diffAnalysisService.analyzeDiff(any())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return AnalyzeDiffResponse.builder().title("title").build();
+        });
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10; i++) body.append("{\"diff\":\"diff-").append(i).append("\"}\n");
+
+        assertThat(runBatch(body.toString())).hasSize(10);
+        assertThat(maxRunning.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void analyzeBatch_shouldReportAnOverlongLineAs413_andGoOnWithTheNextLine() throws Exception {
+        when(diffAnalysisService.analyzeDiff(any())).thenReturn(AnalyzeDiffResponse.builder().title("title").build());
+
+        List<JsonNode> results = runBatch("{\"diff\":\"" + "x".repeat(20000) + "\",\"requestId\":\"req-1\"}\n"
+                                                  + "{\"diff\":\"diff-2\",\"requestId\":\"req-2\"}\r\n");
+
+        assertThat(results).hasSize(2);
+        assertThat(byLine(results, 1).at("/error/statusCode").asInt()).isEqualTo(413);
+        assertThat(byLine(results, 2).at("/response/title").asText()).isEqualTo("title");
+        verify(diffAnalysisService).analyzeDiff(argThat(request -> "req-2".equals(request.requestId())));
+    }
+
+    private List<JsonNode> runBatch(String body) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/v1/analyze-diff/batch")
+                                                   .content(body)
+                                                   .contentType(MediaType.APPLICATION_NDJSON))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        result.getAsyncResult(5000);
+
+        String content = mockMvc.perform(asyncDispatch(result))
+                                .andExpect(status().isOk())
+                                .andReturn()
+                                .getResponse()
+                                .getContentAsString();
+
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            if (!line.isBlank()) results.add(objectMapper.readTree(line));
+        }
+        return results;
+    }
+
+    private static JsonNode byLine(List<JsonNode> results, int line) {
+        return results.stream().filter(result -> result.get("line").asInt() == line).findFirst().orElseThrow();
+    }
+}
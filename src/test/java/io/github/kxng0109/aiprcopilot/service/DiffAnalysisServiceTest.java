@@ -1,16 +1,32 @@
 package io.github.kxng0109.aiprcopilot.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.api.dto.AiCallAttempt;
+import io.github.kxng0109.aiprcopilot.api.dto.AiCallMetadata;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
 import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
 import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.AiFallbackChain;
+import io.github.kxng0109.aiprcopilot.config.AiModelTiers;
 import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.AiProviderPool;
+import io.github.kxng0109.aiprcopilot.config.LoadBalancingStrategy;
 import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
 import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotCircuitBreakerProperties;
 import io.github.kxng0109.aiprcopilot.config.PrCopilotLoggingProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotMicroBatchProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotTenantProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
 import io.github.kxng0109.aiprcopilot.error.DiffTooLargeException;
 import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -22,10 +38,18 @@ import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.HttpStatus;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -56,9 +80,32 @@ public class DiffAnalysisServiceTest {
     @Mock
     private DiffResponseMapperService diffResponseMapperService;
 
+    @Mock
+    private ModelOutputRepairService modelOutputRepairService;
+
+    @Mock
+    private AnalysisCacheService analysisCacheService;
+
+    private DiffChunkingService diffChunkingService;
+
+    private AnalysisSingleFlightService analysisSingleFlightService;
+
+    private AiHedgingService aiHedgingService;
+
+    private TenantSchedulerService tenantSchedulerService;
+
+    private MicroBatchService microBatchService;
+
+    private final ExecutorService analysisTaskExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
     @InjectMocks
     private DiffAnalysisService diffAnalysisService;
 
+    @AfterEach
+    public void tearDown() {
+        analysisTaskExecutor.shutdownNow();
+    }
+
     @BeforeEach
     public void setup() {
         lenient().when(analysisProperties.getDefaultLanguage()).thenReturn("en");
@@ -68,18 +115,46 @@ public class DiffAnalysisServiceTest {
 
         lenient().when(multiAiConfigurationProperties.getProvider()).thenReturn(AiProvider.OPENAI);
         lenient().when(multiAiConfigurationProperties.isAutoFallback()).thenReturn(false);
+        lenient().when(multiAiConfigurationProperties.getTimeoutMillis()).thenReturn(30000L);
+
+        lenient().when(analysisCacheService.fingerprint(any(), any(), any(), any(), any(), any()))
+                 .thenAnswer(invocation -> Arrays.toString(invocation.getArguments()));
+
+        diffChunkingService = new DiffChunkingService();
+        analysisSingleFlightService = new AnalysisSingleFlightService(analysisTaskExecutor, new SimpleMeterRegistry());
+        aiHedgingService = new AiHedgingService(multiAiConfigurationProperties, analysisTaskExecutor, new SimpleMeterRegistry());
+        tenantSchedulerService = new TenantSchedulerService(
+                new PrCopilotTenantProperties(),
+                multiAiConfigurationProperties,
+                new SimpleMeterRegistry()
+        );
+        microBatchService = new MicroBatchService(
+                new PrCopilotMicroBatchProperties(),
+                promptBuilderService,
+                aiChatService,
+                diffResponseMapperService,
+                new ObjectMapper(),
+                new SimpleMeterRegistry(),
+                analysisTaskExecutor
+        );
 
         diffAnalysisService = new DiffAnalysisService(
                 analysisProperties,
-                primaryChatClient,
-                primaryChatOptions,
+                singleProviderRouter(),
                 loggingProperties,
                 multiAiConfigurationProperties,
                 promptBuilderService,
                 aiChatService,
                 diffResponseMapperService,
-                null,
-                null
+                modelOutputRepairService,
+                diffChunkingService,
+                analysisCacheService,
+                analysisSingleFlightService,
+                aiHedgingService,
+                tenantSchedulerService,
+                microBatchService,
+                new AiFallbackChain(List.of()),
+                analysisTaskExecutor
         );
     }
 
@@ -102,9 +177,12 @@ public class DiffAnalysisServiceTest {
 
         ChatResponse mockChatResponse = mockChatResponse();
         when(aiChatService.callAiModel(
-                mockPrompt,
-                primaryChatClient,
-                primaryChatOptions
+                eq(mockPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                anyLong(),
+                any()
         )).thenReturn(mockChatResponse);
 
         AnalyzeDiffResponse expectedResponse = AnalyzeDiffResponse.builder()
@@ -135,7 +213,14 @@ public class DiffAnalysisServiceTest {
                 null,
                 "req-1"
         );
-        verify(aiChatService).callAiModel(mockPrompt, primaryChatClient, primaryChatOptions);
+        verify(aiChatService).callAiModel(
+                eq(mockPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                anyLong(),
+                any()
+        );
         verify(diffResponseMapperService).mapToAnalyzeDiffResponse(
                 eq(mockChatResponse),
                 anyLong(),
@@ -166,8 +251,14 @@ public class DiffAnalysisServiceTest {
         )).thenReturn(mockPrompt);
 
         ChatResponse mockChatResponse = mockChatResponse();
-        when(aiChatService.callAiModel(mockPrompt, primaryChatClient, primaryChatOptions))
-                .thenReturn(mockChatResponse);
+        when(aiChatService.callAiModel(
+                eq(mockPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                anyLong(),
+                any()
+        )).thenReturn(mockChatResponse);
 
         AnalyzeDiffResponse expectedResponse = AnalyzeDiffResponse.builder()
                                                                   .title("titre de test")
@@ -195,7 +286,7 @@ public class DiffAnalysisServiceTest {
         assertThrows(DiffTooLargeException.class, () -> diffAnalysisService.analyzeDiff(request));
 
         verify(promptBuilderService, never()).buildDiffAnalysisPrompt(any(), any(), any(), any(), any());
-        verify(aiChatService, never()).callAiModel(any(), any(), any());
+        verify(aiChatService, never()).callAiModel(any(), any(), any(), any(), anyLong(), any());
         verify(diffResponseMapperService, never()).mapToAnalyzeDiffResponse(any(), anyLong(), any(), any(), any());
     }
 
@@ -210,11 +301,15 @@ public class DiffAnalysisServiceTest {
         when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
                 .thenReturn(mockPrompt);
 
-        when(aiChatService.callAiModel(any(), any(), any()))
+        when(aiChatService.callAiModel(any(), any(), any(), any(), anyLong(), any()))
                 .thenReturn(mockChatResponse());
 
         when(diffResponseMapperService.mapToAnalyzeDiffResponse(any(), anyLong(), any(), any(), any()))
                 .thenThrow(new ModelOutputParseException("Invalid JSON"));
+        when(modelOutputRepairService.repair(any(), any(), anyLong(), any(), any(), any(), any(), anyLong()))
+                .thenAnswer(invocation -> {
+                    throw invocation.getArgument(1, ModelOutputParseException.class);
+                });
 
         ModelOutputParseException exception = assertThrows(
                 ModelOutputParseException.class,
@@ -224,25 +319,60 @@ public class DiffAnalysisServiceTest {
         assertEquals("Invalid JSON", exception.getMessage());
     }
 
+    @Test
+    void analyzeDiff_shouldReturnRepairedResponse_whenParsingFailsAndRepairSucceeds() {
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff("diff")
+                                                       .requestId("req-1")
+                                                       .build();
+
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
+                .thenReturn(mock(Prompt.class));
+        ChatResponse chatResponse = mockChatResponse();
+        when(aiChatService.callAiModel(any(), any(), any(), any(), anyLong(), any()))
+                .thenReturn(chatResponse);
+        ModelOutputParseException parseException = new ModelOutputParseException("Invalid JSON");
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(any(), anyLong(), any(), any(), any()))
+                .thenThrow(parseException);
+        AnalyzeDiffResponse repaired = AnalyzeDiffResponse.builder()
+                                                          .title("Repaired")
+                                                          .requestId("req-1")
+                                                          .build();
+        when(modelOutputRepairService.repair(
+                eq(chatResponse), eq(parseException), anyLong(), eq("diff"), eq("req-1"), eq("openai"),
+                eq(AnalysisPriority.INTERACTIVE), anyLong()
+        )).thenReturn(repaired);
+
+        assertEquals(repaired, diffAnalysisService.analyzeDiff(request));
+        verify(analysisCacheService).put(any(), eq(repaired));
+    }
+
     @Test
     void analyzeDiff_shouldUseFallback_whenPrimaryFailsAndAutoFallbackEnabled() {
         when(multiAiConfigurationProperties.isAutoFallback()).thenReturn(true);
-        when(multiAiConfigurationProperties.getFallbackProvider()).thenReturn(AiProvider.ANTHROPIC);
 
         ChatClient fallbackChatClient = mock(ChatClient.class);
         ChatOptions fallbackChatOptions = mock(ChatOptions.class);
 
         diffAnalysisService = new DiffAnalysisService(
                 analysisProperties,
-                primaryChatClient,
-                primaryChatOptions,
+                singleProviderRouter(),
                 loggingProperties,
                 multiAiConfigurationProperties,
                 promptBuilderService,
                 aiChatService,
                 diffResponseMapperService,
-                fallbackChatClient,
-                fallbackChatOptions
+                modelOutputRepairService,
+                diffChunkingService,
+                analysisCacheService,
+                analysisSingleFlightService,
+                aiHedgingService,
+                tenantSchedulerService,
+                microBatchService,
+                new AiFallbackChain(List.of(
+                        new AiFallbackChain.Step(AiProvider.ANTHROPIC, fallbackChatClient, fallbackChatOptions)
+                )),
+                analysisTaskExecutor
         );
 
         AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
@@ -254,12 +384,24 @@ public class DiffAnalysisServiceTest {
         when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
                 .thenReturn(mockPrompt);
 
-        when(aiChatService.callAiModel(mockPrompt, primaryChatClient, primaryChatOptions))
-                .thenThrow(new RuntimeException("Primary failed"));
+        when(aiChatService.callAiModel(
+                eq(mockPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                anyLong(),
+                any()
+        )).thenThrow(new RuntimeException("Primary failed"));
 
         ChatResponse fallbackResponse = mockChatResponse();
-        when(aiChatService.callAiModel(mockPrompt, fallbackChatClient, fallbackChatOptions))
-                .thenReturn(fallbackResponse);
+        when(aiChatService.callAiModel(
+                eq(mockPrompt),
+                eq(fallbackChatClient),
+                eq(fallbackChatOptions),
+                eq(AiProvider.ANTHROPIC),
+                anyLong(),
+                any()
+        )).thenReturn(fallbackResponse);
 
         AnalyzeDiffResponse expectedResponse = AnalyzeDiffResponse.builder()
                                                                   .title("fallback response")
@@ -274,29 +416,205 @@ public class DiffAnalysisServiceTest {
         assertNotNull(response);
         assertEquals("fallback response", response.title());
 
-        verify(aiChatService).callAiModel(mockPrompt, primaryChatClient, primaryChatOptions);
-        verify(aiChatService).callAiModel(mockPrompt, fallbackChatClient, fallbackChatOptions);
+        verify(aiChatService).callAiModel(
+                eq(mockPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                anyLong(),
+                any()
+        );
+        verify(aiChatService).callAiModel(
+                eq(mockPrompt),
+                eq(fallbackChatClient),
+                eq(fallbackChatOptions),
+                eq(AiProvider.ANTHROPIC),
+                anyLong(),
+                any()
+        );
+    }
+
+    @Test
+    void analyzeDiff_shouldReturnFallbackResponseAndCancelPrimary_whenHedgingAndPrimaryIsSlow() throws Exception {
+        when(multiAiConfigurationProperties.isAutoFallback()).thenReturn(true);
+        when(multiAiConfigurationProperties.isHedgeEnabled()).thenReturn(true);
+        when(multiAiConfigurationProperties.getHedgeDelayMillis()).thenReturn(50L);
+
+        ChatClient fallbackChatClient = mock(ChatClient.class);
+        ChatOptions fallbackChatOptions = mock(ChatOptions.class);
+
+        diffAnalysisService = new DiffAnalysisService(
+                analysisProperties,
+                singleProviderRouter(),
+                loggingProperties,
+                multiAiConfigurationProperties,
+                promptBuilderService,
+                aiChatService,
+                diffResponseMapperService,
+                modelOutputRepairService,
+                diffChunkingService,
+                analysisCacheService,
+                analysisSingleFlightService,
+                aiHedgingService,
+                tenantSchedulerService,
+                microBatchService,
+                new AiFallbackChain(List.of(
+                        new AiFallbackChain.Step(AiProvider.ANTHROPIC, fallbackChatClient, fallbackChatOptions)
+                )),
+                analysisTaskExecutor
+        );
+
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff("diff")
+                                                       .requestId("req-1")
+                                                       .build();
+
+        Prompt mockPrompt = mock(Prompt.class);
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
+                .thenReturn(mockPrompt);
+
+        CountDownLatch primaryInterrupted = new CountDownLatch(1);
+        when(aiChatService.callAiModel(
+                eq(mockPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                anyLong(),
+                any()
+        )).thenAnswer(invocation -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        primaryInterrupted.countDown();
+                    }
+                    return mockChatResponse();
+                });
+
+        ChatResponse fallbackResponse = mockChatResponse();
+        when(aiChatService.callAiModel(
+                eq(mockPrompt),
+                eq(fallbackChatClient),
+                eq(fallbackChatOptions),
+                eq(AiProvider.ANTHROPIC),
+                anyLong(),
+                any()
+        )).thenReturn(fallbackResponse);
+
+        AnalyzeDiffResponse expectedResponse = AnalyzeDiffResponse.builder()
+                                                                  .title("fallback response")
+                                                                  .requestId("req-1")
+                                                                  .metadata(AiCallMetadata.builder()
+                                                                                          .provider("anthropic")
+                                                                                          .build())
+                                                                  .build();
+
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(
+                eq(fallbackResponse), anyLong(), any(), any(), eq("anthropic")
+        )).thenReturn(expectedResponse);
+
+        AnalyzeDiffResponse response = diffAnalysisService.analyzeDiff(request);
+
+        assertEquals("anthropic", response.metadata().provider());
+        assertThat(response.metadata().attempts())
+                .extracting(AiCallAttempt::provider, AiCallAttempt::outcome)
+                .containsExactly(tuple("openai", "cancelled"), tuple("anthropic", "success"));
+        assertTrue(primaryInterrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void analyzeDiff_shouldTryTheRemainingFallbacks_whenHedgingAndBothHedgedCallsFail() {
+        when(multiAiConfigurationProperties.isAutoFallback()).thenReturn(true);
+        when(multiAiConfigurationProperties.isHedgeEnabled()).thenReturn(true);
+        when(multiAiConfigurationProperties.getHedgeDelayMillis()).thenReturn(50L);
+
+        ChatClient anthropicChatClient = mock(ChatClient.class);
+        ChatOptions anthropicChatOptions = mock(ChatOptions.class);
+        ChatClient ollamaChatClient = mock(ChatClient.class);
+        ChatOptions ollamaChatOptions = mock(ChatOptions.class);
+
+        diffAnalysisService = new DiffAnalysisService(
+                analysisProperties,
+                singleProviderRouter(),
+                loggingProperties,
+                multiAiConfigurationProperties,
+                promptBuilderService,
+                aiChatService,
+                diffResponseMapperService,
+                modelOutputRepairService,
+                diffChunkingService,
+                analysisCacheService,
+                analysisSingleFlightService,
+                aiHedgingService,
+                tenantSchedulerService,
+                microBatchService,
+                new AiFallbackChain(List.of(
+                        new AiFallbackChain.Step(AiProvider.ANTHROPIC, anthropicChatClient, anthropicChatOptions),
+                        new AiFallbackChain.Step(AiProvider.OLLAMA, ollamaChatClient, ollamaChatOptions)
+                )),
+                analysisTaskExecutor
+        );
+
+        Prompt mockPrompt = mock(Prompt.class);
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
+                .thenReturn(mockPrompt);
+        when(aiChatService.callAiModel(
+                eq(mockPrompt), eq(primaryChatClient), eq(primaryChatOptions), eq(AiProvider.OPENAI), anyLong(), any()
+        )).thenThrow(new CustomApiException("Primary failed", HttpStatus.BAD_GATEWAY));
+        when(aiChatService.callAiModel(
+                eq(mockPrompt), eq(anthropicChatClient), eq(anthropicChatOptions), eq(AiProvider.ANTHROPIC), anyLong(), any()
+        )).thenThrow(new CapacityExceededException("Anthropic is at capacity", 1));
+
+        ChatResponse ollamaResponse = mockChatResponse();
+        when(aiChatService.callAiModel(
+                eq(mockPrompt), eq(ollamaChatClient), eq(ollamaChatOptions), eq(AiProvider.OLLAMA), anyLong(), any()
+        )).thenReturn(ollamaResponse);
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(
+                eq(ollamaResponse), anyLong(), any(), any(), eq("ollama")
+        )).thenReturn(AnalyzeDiffResponse.builder()
+                                         .title("ollama response")
+                                         .metadata(AiCallMetadata.builder().provider("ollama").build())
+                                         .build());
+
+        AnalyzeDiffResponse response = diffAnalysisService.analyzeDiff(
+                AnalyzeDiffRequest.builder().diff("diff").requestId("req-1").build()
+        );
+
+        assertThat(response.title()).isEqualTo("ollama response");
+        assertThat(response.metadata().attempts())
+                .extracting(AiCallAttempt::provider, AiCallAttempt::outcome)
+                .containsExactly(
+                        tuple("openai", "error"),
+                        tuple("anthropic", "rejected"),
+                        tuple("ollama", "success")
+                );
     }
 
     @Test
     void analyzeDiff_shouldThrowException_whenBothPrimaryAndFallbackFail() {
         when(multiAiConfigurationProperties.isAutoFallback()).thenReturn(true);
-        when(multiAiConfigurationProperties.getFallbackProvider()).thenReturn(AiProvider.ANTHROPIC);
 
         ChatClient fallbackChatClient = mock(ChatClient.class);
         ChatOptions fallbackChatOptions = mock(ChatOptions.class);
 
         diffAnalysisService = new DiffAnalysisService(
                 analysisProperties,
-                primaryChatClient,
-                primaryChatOptions,
+                singleProviderRouter(),
                 loggingProperties,
                 multiAiConfigurationProperties,
                 promptBuilderService,
                 aiChatService,
                 diffResponseMapperService,
-                fallbackChatClient,
-                fallbackChatOptions
+                modelOutputRepairService,
+                diffChunkingService,
+                analysisCacheService,
+                analysisSingleFlightService,
+                aiHedgingService,
+                tenantSchedulerService,
+                microBatchService,
+                new AiFallbackChain(List.of(
+                        new AiFallbackChain.Step(AiProvider.ANTHROPIC, fallbackChatClient, fallbackChatOptions)
+                )),
+                analysisTaskExecutor
         );
 
         AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
@@ -308,11 +626,23 @@ public class DiffAnalysisServiceTest {
         when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
                 .thenReturn(mockPrompt);
 
-        when(aiChatService.callAiModel(mockPrompt, primaryChatClient, primaryChatOptions))
-                .thenThrow(new RuntimeException("Primary failed"));
+        when(aiChatService.callAiModel(
+                eq(mockPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                anyLong(),
+                any()
+        )).thenThrow(new RuntimeException("Primary failed"));
 
-        when(aiChatService.callAiModel(mockPrompt, fallbackChatClient, fallbackChatOptions))
-                .thenThrow(new RuntimeException("Fallback also failed"));
+        when(aiChatService.callAiModel(
+                eq(mockPrompt),
+                eq(fallbackChatClient),
+                eq(fallbackChatOptions),
+                eq(AiProvider.ANTHROPIC),
+                anyLong(),
+                any()
+        )).thenThrow(new RuntimeException("Fallback also failed"));
 
         RuntimeException exception = assertThrows(
                 RuntimeException.class,
@@ -323,6 +653,326 @@ public class DiffAnalysisServiceTest {
         assertThat(exception.getMessage()).contains("Fallback also failed");
     }
 
+    @Test
+    void analyzeDiff_shouldTryFallbacksInOrderWithinOneDeadline_andRecordEachAttempt() {
+        when(multiAiConfigurationProperties.isAutoFallback()).thenReturn(true);
+        when(multiAiConfigurationProperties.getTimeoutMillis()).thenReturn(20000L);
+        when(multiAiConfigurationProperties.getFallbackMinAttemptMillis()).thenReturn(5000L);
+
+        ChatClient anthropicChatClient = mock(ChatClient.class);
+        ChatOptions anthropicChatOptions = mock(ChatOptions.class);
+        ChatClient ollamaChatClient = mock(ChatClient.class);
+        ChatOptions ollamaChatOptions = mock(ChatOptions.class);
+
+        diffAnalysisService = new DiffAnalysisService(
+                analysisProperties,
+                singleProviderRouter(),
+                loggingProperties,
+                multiAiConfigurationProperties,
+                promptBuilderService,
+                aiChatService,
+                diffResponseMapperService,
+                modelOutputRepairService,
+                diffChunkingService,
+                analysisCacheService,
+                analysisSingleFlightService,
+                aiHedgingService,
+                tenantSchedulerService,
+                microBatchService,
+                new AiFallbackChain(List.of(
+                        // Skipped, since it is the primary
+                        new AiFallbackChain.Step(AiProvider.OPENAI, primaryChatClient, primaryChatOptions),
+                        new AiFallbackChain.Step(AiProvider.ANTHROPIC, anthropicChatClient, anthropicChatOptions),
+                        new AiFallbackChain.Step(AiProvider.OLLAMA, ollamaChatClient, ollamaChatOptions)
+                )),
+                analysisTaskExecutor
+        );
+
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff("diff")
+                                                       .requestId("req-1")
+                                                       .build();
+
+        Prompt mockPrompt = mock(Prompt.class);
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
+                .thenReturn(mockPrompt);
+
+        when(aiChatService.callAiModel(
+                eq(mockPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                anyLong(),
+                any()
+        )).thenThrow(new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT));
+        when(aiChatService.callAiModel(
+                eq(mockPrompt),
+                eq(anthropicChatClient),
+                eq(anthropicChatOptions),
+                eq(AiProvider.ANTHROPIC),
+                anyLong(),
+                any()
+        )).thenThrow(new CapacityExceededException("Anthropic is at capacity", 1));
+
+        ChatResponse ollamaResponse = mockChatResponse();
+        when(aiChatService.callAiModel(
+                eq(mockPrompt),
+                eq(ollamaChatClient),
+                eq(ollamaChatOptions),
+                eq(AiProvider.OLLAMA),
+                anyLong(),
+                any()
+        )).thenReturn(ollamaResponse);
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(
+                eq(ollamaResponse), anyLong(), any(), any(), eq("ollama")
+        )).thenReturn(AnalyzeDiffResponse.builder()
+                                         .title("ollama response")
+                                         .metadata(AiCallMetadata.builder().provider("ollama").build())
+                                         .build());
+
+        AnalyzeDiffResponse response = diffAnalysisService.analyzeDiff(request);
+
+        assertThat(response.title()).isEqualTo("ollama response");
+        assertThat(response.metadata().attempts())
+                .extracting(AiCallAttempt::provider, AiCallAttempt::outcome)
+                .containsExactly(
+                        tuple("openai", "timeout"),
+                        tuple("anthropic", "rejected"),
+                        tuple("ollama", "success")
+                );
+
+        ArgumentCaptor<Long> primaryTimeout = ArgumentCaptor.forClass(Long.class);
+        verify(aiChatService).callAiModel(
+                eq(mockPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                primaryTimeout.capture(),
+                any()
+        );
+        assertThat(primaryTimeout.getValue()).isBetween(9000L, 10000L);
+
+        ArgumentCaptor<Long> lastTimeout = ArgumentCaptor.forClass(Long.class);
+        verify(aiChatService).callAiModel(
+                eq(mockPrompt),
+                eq(ollamaChatClient),
+                eq(ollamaChatOptions),
+                eq(AiProvider.OLLAMA),
+                lastTimeout.capture(),
+                any()
+        );
+        assertThat(lastTimeout.getValue()).isBetween(19000L, 20000L);
+    }
+
+    @Test
+    void analyzeDiff_shouldAnalyzeChunksAndMergeResults_whenDiffExceedsMaxCharsAndChunkingEnabled() {
+        when(analysisProperties.getMaxDiffChars()).thenReturn(60);
+        when(analysisProperties.isChunkingEnabled()).thenReturn(true);
+        when(analysisProperties.getMaxChunks()).thenReturn(10);
+        when(analysisProperties.getMaxParallelChunks()).thenReturn(2);
+
+        String firstFile = "diff --git a/A.java b/A.java\n@@ -1 +1 @@\n-old a\n+new a\n";
+        String secondFile = "diff --git a/B.java b/B.java\n@@ -1 +1 @@\n-old b\n+new b\n";
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff(firstFile + secondFile)
+                                                       .requestId("req-chunks")
+                                                       .build();
+
+        Prompt firstPrompt = mock(Prompt.class);
+        Prompt secondPrompt = mock(Prompt.class);
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), eq(firstFile), any(), any()))
+                .thenReturn(firstPrompt);
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), eq(secondFile), any(), any()))
+                .thenReturn(secondPrompt);
+
+        ChatResponse chatResponse = mockChatResponse();
+        when(aiChatService.callAiModel(any(), any(), any(), any(), anyLong(), any())).thenReturn(chatResponse);
+
+        AiCallMetadata metadata = AiCallMetadata.builder().modelName("gpt-4o").provider("openai").tokensUsed(100).build();
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(any(), anyLong(), eq(firstFile), any(), any()))
+                .thenReturn(AnalyzeDiffResponse.builder()
+                                               .title("first title")
+                                               .summary("first summary")
+                                               .risks(List.of("Null pointer risk", "Shared risk"))
+                                               .suggestedTests(List.of("Test A"))
+                                               .touchedFiles(List.of("A.java"))
+                                               .metadata(metadata)
+                                               .build());
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(any(), anyLong(), eq(secondFile), any(), any()))
+                .thenReturn(AnalyzeDiffResponse.builder()
+                                               .title("second title")
+                                               .summary("second summary")
+                                               .risks(List.of("shared  risk"))
+                                               .suggestedTests(List.of("Test B", "Test A"))
+                                               .touchedFiles(List.of("B.java"))
+                                               .metadata(metadata)
+                                               .build());
+
+        AnalyzeDiffResponse response = diffAnalysisService.analyzeDiff(request);
+
+        assertEquals("first title", response.title());
+        assertEquals("first summary second summary", response.summary());
+        assertThat(response.risks()).containsExactly("Null pointer risk", "Shared risk");
+        assertThat(response.suggestedTests()).containsExactly("Test A", "Test B");
+        assertThat(response.touchedFiles()).containsExactly("A.java", "B.java");
+        assertEquals(200, response.metadata().tokensUsed());
+        assertEquals("req-chunks", response.requestId());
+
+        verify(aiChatService).callAiModel(
+                eq(firstPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                anyLong(),
+                any()
+        );
+        verify(aiChatService).callAiModel(
+                eq(secondPrompt),
+                eq(primaryChatClient),
+                eq(primaryChatOptions),
+                eq(AiProvider.OPENAI),
+                anyLong(),
+                any()
+        );
+    }
+
+    @Test
+    void analyzeDiff_shouldInterruptTheRemainingChunks_whenOneChunkFails() throws Exception {
+        when(analysisProperties.getMaxDiffChars()).thenReturn(60);
+        when(analysisProperties.isChunkingEnabled()).thenReturn(true);
+        when(analysisProperties.getMaxChunks()).thenReturn(10);
+        when(analysisProperties.getMaxParallelChunks()).thenReturn(2);
+
+        String firstFile = "diff --git a/A.java b/A.java\n@@ -1 +1 @@\n-old a\n+new a\n";
+        String secondFile = "diff --git a/B.java b/B.java\n@@ -1 +1 @@\n-old b\n+new b\n";
+        Prompt firstPrompt = mock(Prompt.class);
+        Prompt secondPrompt = mock(Prompt.class);
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), eq(firstFile), any(), any()))
+                .thenReturn(firstPrompt);
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), eq(secondFile), any(), any()))
+                .thenReturn(secondPrompt);
+
+        CountDownLatch slowChunkStarted = new CountDownLatch(1);
+        CountDownLatch slowChunkInterrupted = new CountDownLatch(1);
+        when(aiChatService.callAiModel(eq(secondPrompt), any(), any(), any(), anyLong(), any())).thenAnswer(invocation -> {
+            slowChunkStarted.countDown();
+            try {
+                Thread.sleep(30000);
+            } catch (InterruptedException e) {
+                slowChunkInterrupted.countDown();
+            }
+            return mockChatResponse();
+        });
+        when(aiChatService.callAiModel(eq(firstPrompt), any(), any(), any(), anyLong(), any())).thenAnswer(invocation -> {
+            slowChunkStarted.await(5, TimeUnit.SECONDS);
+            throw new CustomApiException("Bad request", HttpStatus.BAD_REQUEST);
+        });
+
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder().diff(firstFile + secondFile).requestId("req-1").build();
+
+        assertThrows(CustomApiException.class, () -> diffAnalysisService.analyzeDiff(request));
+        assertThat(slowChunkInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void analyzeDiff_shouldThrowDiffTooLargeException_whenChunkCountExceedsMaxChunks() {
+        when(analysisProperties.getMaxDiffChars()).thenReturn(40);
+        when(analysisProperties.isChunkingEnabled()).thenReturn(true);
+        when(analysisProperties.getMaxChunks()).thenReturn(1);
+
+        String diff = "diff --git a/A.java b/A.java\n+a\ndiff --git a/B.java b/B.java\n+b\n";
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff(diff)
+                                                       .requestId("req-1")
+                                                       .build();
+
+        assertThrows(DiffTooLargeException.class, () -> diffAnalysisService.analyzeDiff(request));
+
+        verify(aiChatService, never()).callAiModel(any(), any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void analyzeDiff_shouldReturnCachedResponseWithoutCallingModel_whenCacheHit() {
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff("diff")
+                                                       .requestId("req-new")
+                                                       .build();
+
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
+                .thenReturn(mock(Prompt.class));
+        when(analysisCacheService.fingerprint("diff", "en", "conventional-commits", null, "openai", null))
+                .thenReturn("cache-key");
+
+        AnalyzeDiffResponse cachedResponse = AnalyzeDiffResponse.builder()
+                                                                .title("cached title")
+                                                                .requestId("req-old")
+                                                                .metadata(AiCallMetadata.builder()
+                                                                                        .modelName("gpt-4o")
+                                                                                        .provider("openai")
+                                                                                        .modelLatencyMs(1200)
+                                                                                        .tokensUsed(300)
+                                                                                        .build())
+                                                                .build();
+        when(analysisCacheService.get("cache-key")).thenReturn(Optional.of(cachedResponse));
+
+        AnalyzeDiffResponse response = diffAnalysisService.analyzeDiff(request);
+
+        assertEquals("cached title", response.title());
+        assertEquals("req-new", response.requestId());
+        assertTrue(response.metadata().cacheHit());
+        assertEquals(0L, response.metadata().modelLatencyMs());
+        verify(aiChatService, never()).callAiModel(any(), any(), any(), any(), anyLong(), any());
+        verify(analysisCacheService, never()).put(any(), any());
+    }
+
+    @Test
+    void analyzeDiff_shouldCacheResponse_whenCacheMiss() {
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff("diff")
+                                                       .requestId("req-1")
+                                                       .build();
+
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
+                .thenReturn(mock(Prompt.class));
+        when(analysisCacheService.fingerprint(any(), any(), any(), any(), any(), any())).thenReturn("cache-key");
+        when(analysisCacheService.get("cache-key")).thenReturn(Optional.empty());
+        when(aiChatService.callAiModel(any(), any(), any(), any(), anyLong(), any())).thenReturn(mockChatResponse());
+
+        AnalyzeDiffResponse expectedResponse = AnalyzeDiffResponse.builder().title("fresh").build();
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(any(), anyLong(), any(), any(), any()))
+                .thenReturn(expectedResponse);
+
+        diffAnalysisService.analyzeDiff(request);
+
+        verify(analysisCacheService).put("cache-key", expectedResponse);
+    }
+
+    @Test
+    void analyzeDiff_shouldNotCacheResponse_whenAnalysisIsPartial() {
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff("diff")
+                                                       .requestId("req-1")
+                                                       .build();
+
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
+                .thenReturn(mock(Prompt.class));
+        when(analysisCacheService.fingerprint(any(), any(), any(), any(), any(), any())).thenReturn("cache-key");
+        when(analysisCacheService.get("cache-key")).thenReturn(Optional.empty());
+        when(aiChatService.callAiModel(any(), any(), any(), any(), anyLong(), any())).thenReturn(mockChatResponse());
+
+        AnalyzeDiffResponse partialResponse = AnalyzeDiffResponse.builder()
+                                                                 .title("cut off")
+                                                                 .metadata(AiCallMetadata.builder().partial(true).build())
+                                                                 .build();
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(any(), anyLong(), any(), any(), any()))
+                .thenReturn(partialResponse);
+
+        AnalyzeDiffResponse response = diffAnalysisService.analyzeDiff(request);
+
+        assertThat(response.metadata().partial()).isTrue();
+        verify(analysisCacheService, never()).put(any(), any());
+    }
+
     @Test
     void analyzeDiff_shouldLogPrompt_whenLoggingEnabled() {
         when(loggingProperties.isLogPrompts()).thenReturn(true);
@@ -337,7 +987,7 @@ public class DiffAnalysisServiceTest {
         when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
                 .thenReturn(mockPrompt);
 
-        when(aiChatService.callAiModel(any(), any(), any()))
+        when(aiChatService.callAiModel(any(), any(), any(), any(), anyLong(), any()))
                 .thenReturn(mockChatResponse());
 
         when(diffResponseMapperService.mapToAnalyzeDiffResponse(any(), anyLong(), any(), any(), any()))
@@ -385,4 +1035,22 @@ public class DiffAnalysisServiceTest {
                            .metadata(chatResponseMetadata)
                            .build();
     }
+
+    private AiModelRouterService singleProviderRouter() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AiProviderPool pool = new AiProviderPool(
+                LoadBalancingStrategy.WEIGHTED_ROUND_ROBIN,
+                List.of(new AiProviderPool.Member(AiProvider.OPENAI, primaryChatClient, primaryChatOptions, 1))
+        );
+        AiCircuitBreakerService circuitBreakerService = new AiCircuitBreakerService(
+                new PrCopilotCircuitBreakerProperties(),
+                meterRegistry
+        );
+        return new AiModelRouterService(
+                new AiModelTiers(List.of()),
+                new AiLoadBalancerService(pool, circuitBreakerService, meterRegistry),
+                circuitBreakerService,
+                meterRegistry
+        );
+    }
 }
@@ -0,0 +1,357 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.api.dto.AiCallMetadata;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.AiModelTiers;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.AiProviderPool;
+import io.github.kxng0109.aiprcopilot.config.LoadBalancingStrategy;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotCircuitBreakerProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotConcurrencyProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotLoggingProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotRetryProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotTenantProperties;
+import io.github.kxng0109.aiprcopilot.controller.DiffAnalysisController;
+import io.github.kxng0109.aiprcopilot.error.DiffTooLargeException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@ExtendWith(MockitoExtension.class)
+public class DiffAnalysisStreamingServiceTest {
+
+    private static final String DIFF = "diff --git a/src/App.java b/src/App.java\n+code";
+
+    @Mock
+    private PrCopilotAnalysisProperties analysisProperties;
+
+    @Mock
+    private MultiAiConfigurationProperties multiAiConfigurationProperties;
+
+    @Mock
+    private PrCopilotLoggingProperties loggingProperties;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ChatClient primaryChatClient;
+
+    @Mock
+    private ChatOptions primaryChatOptions;
+
+    @Mock
+    private PromptBuilderService promptBuilderService;
+
+    @Mock
+    private AnalysisCacheService analysisCacheService;
+
+    @Mock
+    private DiffAnalysisService diffAnalysisService;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AiCircuitBreakerService circuitBreakerService;
+    private PrCopilotTenantProperties tenantProperties;
+    private TenantSchedulerService tenantSchedulerService;
+    private DiffAnalysisStreamingService streamingService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        lenient().when(analysisProperties.getDefaultLanguage()).thenReturn("en");
+        lenient().when(analysisProperties.getDefaultStyle()).thenReturn("conventional-commits");
+        lenient().when(analysisProperties.getMaxDiffChars()).thenReturn(1000);
+        lenient().when(multiAiConfigurationProperties.getProvider()).thenReturn(AiProvider.OPENAI);
+        lenient().when(multiAiConfigurationProperties.getTimeoutMillis()).thenReturn(5000L);
+        lenient().when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
+                 .thenReturn(new Prompt("prompt"));
+        lenient().when(analysisCacheService.fingerprint(any(), any(), any(), any(), any(), any()))
+                 .thenAnswer(invocation -> Arrays.toString(invocation.getArguments()));
+
+        PrCopilotCircuitBreakerProperties circuitBreakerProperties = new PrCopilotCircuitBreakerProperties();
+        circuitBreakerProperties.setEnabled(true);
+        circuitBreakerProperties.setMinimumCalls(1);
+        circuitBreakerService = new AiCircuitBreakerService(circuitBreakerProperties, meterRegistry);
+        MultiAiConfigurationProperties aiProperties = new MultiAiConfigurationProperties();
+        tenantProperties = new PrCopilotTenantProperties();
+        tenantProperties.setEnabled(true);
+        tenantSchedulerService = new TenantSchedulerService(tenantProperties, aiProperties, meterRegistry);
+        AiChatService aiChatService = new AiChatService(
+                aiProperties,
+                executor,
+                circuitBreakerService,
+                new AiConcurrencyLimiterService(new PrCopilotConcurrencyProperties(), meterRegistry),
+                new AiRateLimiterService(aiProperties, meterRegistry),
+                new AiRetryService(new PrCopilotRetryProperties(), meterRegistry),
+                meterRegistry
+        );
+
+        DiffResponseMapperService mapperService = new DiffResponseMapperService(
+                new ObjectMapper(),
+                loggingProperties,
+                analysisProperties,
+                new SimpleMeterRegistry()
+        );
+
+        streamingService = new DiffAnalysisStreamingService(
+                analysisProperties,
+                loggingProperties,
+                multiAiConfigurationProperties,
+                singleProviderRouter(),
+                promptBuilderService,
+                mapperService,
+                analysisCacheService,
+                diffAnalysisService,
+                aiChatService,
+                tenantSchedulerService,
+                executor
+        );
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new DiffAnalysisController(
+                                         diffAnalysisService,
+                                         streamingService,
+                                         mock(DiffAnalysisBatchService.class)
+                                 ))
+                                 .build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void analyzeDiffStream_shouldSendFieldsAsTheyArriveAndCompleteResponse() throws Exception {
+        when(analysisCacheService.get(any())).thenReturn(Optional.empty());
+        when(primaryChatClient.prompt(any(Prompt.class)).options(any()).stream().chatResponse())
+                .thenReturn(Flux.just(
+                        chunk("{\"title\": \"Add app\", \"summary\": \"Adds "),
+                        chunk("the app\", \"details\": \"d\", \"risks\": [\"r1\", "),
+                        chunk("\"r2\"], \"suggestedTests\": [\"t1\"], \"touchedFiles\": [], \"analysisNotes\": null}")
+                ));
+
+        List<String> events = streamEvents();
+
+        assertThat(events).containsExactly(
+                "touchedFiles", "title", "summary", "details", "risks", "risks", "suggestedTests", "complete"
+        );
+        verify(analysisCacheService).put(any(), argThat(response ->
+                response.title().equals("Add app")
+                        && response.touchedFiles().equals(List.of("src/App.java"))
+        ));
+    }
+
+    @Test
+    public void analyzeDiffStream_shouldHoldATenantSlot_untilTheStreamEnds_andSettleItsUsage() throws Exception {
+        when(analysisCacheService.get(any())).thenReturn(Optional.empty());
+        when(primaryChatClient.prompt(any(Prompt.class)).options(any()).stream().chatResponse())
+                .thenReturn(Flux.just(
+                        chunk("{\"title\": \"t\", \"summary\": \"s\", \"details\": \"d\", "),
+                        chunkWithUsage("\"risks\": [], \"suggestedTests\": [], \"touchedFiles\": [], \"analysisNotes\": null}", 42)
+                ));
+
+        assertThat(streamEvents()).endsWith("complete");
+
+        assertThat(meterRegistry.get("prcopilot.tenants.in.flight").tag("tenant", "default").gauge().value()).isZero();
+        assertThat(meterRegistry.get("prcopilot.tenants.tokens").tag("tenant", "default").counter().count())
+                .isEqualTo(42.0);
+        assertThat(meterRegistry.get("prcopilot.tenants.requests").tags("tenant", "default", "outcome", "success")
+                                .counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void analyzeDiffStream_shouldSendErrorEventWithoutCallingModel_whenTheTenantHasNoCapacity() throws Exception {
+        when(analysisCacheService.get(any())).thenReturn(Optional.empty());
+        tenantProperties.setMaxConcurrent(1);
+        tenantProperties.setQueueTimeoutMillis(50);
+        TenantSchedulerService.Lease held = tenantSchedulerService.admit(
+                AnalyzeDiffRequest.builder().diff(DIFF).build()
+        );
+
+        try {
+            String body = streamBody();
+
+            assertThat(body).contains("event:error");
+            assertThat(body).contains("\"statusCode\":503");
+            verify(primaryChatClient, never()).prompt(any(Prompt.class));
+        } finally {
+            held.release(null, true);
+        }
+    }
+
+    @Test
+    public void analyzeDiffStream_shouldReplayCachedResponse_whenCacheHit() throws Exception {
+        AnalyzeDiffResponse cached = AnalyzeDiffResponse.builder()
+                                                        .title("Cached")
+                                                        .summary("From cache")
+                                                        .risks(List.of("r1"))
+                                                        .requestId("old")
+                                                        .metadata(AiCallMetadata.builder().tokensUsed(42).build())
+                                                        .build();
+        when(analysisCacheService.get(any())).thenReturn(Optional.of(cached));
+
+        List<String> events = streamEvents();
+
+        assertThat(events).containsExactly("touchedFiles", "title", "summary", "risks", "complete");
+        verify(primaryChatClient, never()).prompt(any(Prompt.class));
+    }
+
+    @Test
+    public void analyzeDiffStream_shouldSendErrorEvent_whenModelOutputIsInvalid() throws Exception {
+        when(analysisCacheService.get(any())).thenReturn(Optional.empty());
+        when(primaryChatClient.prompt(any(Prompt.class)).options(any()).stream().chatResponse())
+                .thenReturn(Flux.just(chunk("not json at all")));
+
+        String body = streamBody();
+
+        assertThat(body).contains("event:error");
+        assertThat(body).contains("\"statusCode\":422");
+        verify(analysisCacheService, never()).put(any(), any());
+    }
+
+    @Test
+    public void analyzeDiffStream_shouldSendErrorEventWithoutCallingModel_whenCircuitIsOpen() throws Exception {
+        when(analysisCacheService.get(any())).thenReturn(Optional.empty());
+        circuitBreakerService.tryAcquirePermission(AiProvider.OPENAI);
+        circuitBreakerService.onFailure(AiProvider.OPENAI, 10);
+
+        String body = streamBody();
+
+        assertThat(body).contains("event:error");
+        assertThat(body).contains("\"statusCode\":503");
+        verify(primaryChatClient, never()).prompt(any(Prompt.class));
+    }
+
+    @Test
+    public void analyzeDiffStream_shouldInterruptTheChunkedAnalysis_whenTheStreamTimesOut() throws Exception {
+        when(analysisProperties.isChunkingEnabled()).thenReturn(true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(diffAnalysisService.analyzeDiff(any())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(30000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff(DIFF + "x".repeat(1000))
+                                                       .requestId("req-1")
+                                                       .build();
+
+        MvcResult result = mockMvc.perform(post("/api/v1/analyze-diff/stream")
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .content(new ObjectMapper().writeValueAsString(request)))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void analyzeDiffStream_shouldThrowDiffTooLargeException_whenChunkingIsDisabled() {
+        when(analysisProperties.isChunkingEnabled()).thenReturn(false);
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff("x".repeat(1001))
+                                                       .build();
+
+        assertThrows(DiffTooLargeException.class, () -> streamingService.analyzeDiffStream(request));
+    }
+
+    private List<String> streamEvents() throws Exception {
+        List<String> events = new ArrayList<>();
+        for (String line : streamBody().split("\n")) {
+            if (line.startsWith("event:")) events.add(line.substring("event:".length()));
+        }
+        return events;
+    }
+
+    private String streamBody() throws Exception {
+        AnalyzeDiffRequest request = AnalyzeDiffRequest.builder()
+                                                       .diff(DIFF)
+                                                       .requestId("req-1")
+                                                       .build();
+
+        MvcResult result = mockMvc.perform(post("/api/v1/analyze-diff/stream")
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .content(new ObjectMapper().writeValueAsString(request)))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        return mockMvc.perform(asyncDispatch(result)).andReturn().getResponse().getContentAsString();
+    }
+
+    private static ChatResponse chunk(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static ChatResponse chunkWithUsage(String text, int totalTokens) {
+        return ChatResponse.builder()
+                           .generations(List.of(new Generation(new AssistantMessage(text))))
+                           .metadata(ChatResponseMetadata.builder().usage(new DefaultUsage(totalTokens, 0, totalTokens)).build())
+                           .build();
+    }
+
+    private AiModelRouterService singleProviderRouter() {
+        AiProviderPool pool = new AiProviderPool(
+                LoadBalancingStrategy.WEIGHTED_ROUND_ROBIN,
+                List.of(new AiProviderPool.Member(AiProvider.OPENAI, primaryChatClient, primaryChatOptions, 1))
+        );
+        return new AiModelRouterService(
+                new AiModelTiers(List.of()),
+                new AiLoadBalancerService(pool, circuitBreakerService, meterRegistry),
+                circuitBreakerService,
+                meterRegistry
+        );
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AiCallMetadata;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiffChunkingServiceTest {
+
+    private DiffChunkingService chunkingService;
+
+    @BeforeEach
+    void setup() {
+        chunkingService = new DiffChunkingService();
+    }
+
+    @Test
+    void splitDiff_shouldReturnSingleChunk_whenDiffFits() {
+        String diff = "diff --git a/A.java b/A.java\n+a\n";
+
+        assertThat(chunkingService.splitDiff(diff, 1000)).containsExactly(diff);
+    }
+
+    @Test
+    void splitDiff_shouldSplitOnFileBoundaries() {
+        String first = "diff --git a/A.java b/A.java\n@@ -1 +1 @@\n+a\n";
+        String second = "diff --git a/B.java b/B.java\n@@ -1 +1 @@\n+b\n";
+
+        List<String> chunks = chunkingService.splitDiff(first + second, first.length() + 5);
+
+        assertThat(chunks).containsExactly(first, second);
+    }
+
+    @Test
+    void splitDiff_shouldSplitLargeFileOnHunkBoundariesAndRepeatHeader() {
+        String header = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n";
+        String firstHunk = "@@ -1,2 +1,2 @@\n-old line one\n+new line one\n";
+        String secondHunk = "@@ -10,2 +10,2 @@\n-old line ten\n+new line ten\n";
+
+        List<String> chunks = chunkingService.splitDiff(
+                header + firstHunk + secondHunk,
+                header.length() + secondHunk.length()
+        );
+
+        assertThat(chunks).containsExactly(header + firstHunk, header + secondHunk);
+    }
+
+    @Test
+    void splitDiff_shouldRepeatFileAndHunkHeaders_whenAHunkIsSplit() {
+        String header = "diff --git a/A.java b/A.java\n--- a/A.java\n+++ b/A.java\n";
+        String hunkHeader = "@@ -1,6 +1,6 @@\n";
+        String lines = "+line one\n+line two\n+line three\n+line four\n";
+        int maxChunkChars = header.length() + hunkHeader.length() + "+line one\n+line two\n".length();
+
+        List<String> chunks = chunkingService.splitDiff(header + hunkHeader + lines, maxChunkChars);
+
+        assertThat(chunks).containsExactly(
+                header + hunkHeader + "+line one\n+line two\n",
+                header + hunkHeader + "+line three\n",
+                header + hunkHeader + "+line four\n"
+        );
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(maxChunkChars));
+    }
+
+    @Test
+    void splitDiff_shouldNeverExceedMaxChunkChars() {
+        StringBuilder diff = new StringBuilder("diff --git a/A.java b/A.java\n@@ -1,200 +1,200 @@\n");
+        for (int i = 0; i < 200; i++) {
+            diff.append("+line number ").append(i).append('\n');
+        }
+        diff.append("x".repeat(300));
+
+        List<String> chunks = chunkingService.splitDiff(diff.toString(), 120);
+
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(120));
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk).startsWith("diff --git a/A.java b/A.java\n"));
+    }
+
+    @Test
+    void mergeResponses_shouldDeduplicateAndSumTokens() {
+        AnalyzeDiffResponse first = AnalyzeDiffResponse.builder()
+                                                        .title("title")
+                                                        .summary("first")
+                                                        .risks(List.of("Risk A"))
+                                                        .suggestedTests(List.of("Test A"))
+                                                        .touchedFiles(List.of("A.java"))
+                                                        .metadata(AiCallMetadata.builder().provider("openai").tokensUsed(10).build())
+                                                        .build();
+        AnalyzeDiffResponse second = AnalyzeDiffResponse.builder()
+                                                         .title("other")
+                                                         .summary("second")
+                                                         .risks(List.of("risk a", "Risk B"))
+                                                         .suggestedTests(List.of("Test A"))
+                                                         .touchedFiles(List.of("A.java", "B.java"))
+                                                         .metadata(AiCallMetadata.builder().provider("openai").tokensUsed(15).build())
+                                                         .build();
+
+        AnalyzeDiffResponse merged = chunkingService.mergeResponses(List.of(first, second), "req-1", 10, 42L);
+
+        assertEquals("title", merged.title());
+        assertEquals("first seco", merged.summary());
+        assertThat(merged.risks()).containsExactly("Risk A", "Risk B");
+        assertThat(merged.suggestedTests()).containsExactly("Test A");
+        assertThat(merged.touchedFiles()).containsExactly("A.java", "B.java");
+        assertThat(merged.analysisNotes()).contains("2 chunks");
+        assertEquals("openai", merged.metadata().provider());
+        assertEquals(25, merged.metadata().tokensUsed());
+        assertEquals(42L, merged.metadata().modelLatencyMs());
+        assertEquals("req-1", merged.requestId());
+    }
+}
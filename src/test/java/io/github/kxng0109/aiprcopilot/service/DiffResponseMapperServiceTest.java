@@ -5,6 +5,7 @@ import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
 import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
 import io.github.kxng0109.aiprcopilot.config.PrCopilotLoggingProperties;
 import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -33,11 +34,13 @@ class DiffResponseMapperServiceTest {
     private PrCopilotAnalysisProperties analysisProperties;
 
     private ObjectMapper objectMapper;
+    private SimpleMeterRegistry meterRegistry;
     private DiffResponseMapperService mapperService;
 
     @BeforeEach
     void setup() {
         objectMapper = new ObjectMapper();
+        meterRegistry = new SimpleMeterRegistry();
 
         lenient().when(analysisProperties.isIncludeRawModelOutput()).thenReturn(false);
         lenient().when(loggingProperties.isLogResponses()).thenReturn(false);
@@ -45,7 +48,8 @@ class DiffResponseMapperServiceTest {
         mapperService = new DiffResponseMapperService(
                 objectMapper,
                 loggingProperties,
-                analysisProperties
+                analysisProperties,
+                meterRegistry
         );
     }
 
@@ -221,6 +225,94 @@ class DiffResponseMapperServiceTest {
         assertThat(exception.getMessage()).contains("missing required fields");
     }
 
+    @Test
+    void mapToAnalyzeDiffResponse_shouldThrowException_whenRequiredTextFieldsAreBlank() {
+        String blankJson = """
+                {"title":"test","summary":"  ","details":"","risks":[],"suggestedTests":[],"touchedFiles":[],"analysisNotes":null}
+                """;
+
+        ChatResponse response = createChatResponse(blankJson);
+
+        ModelOutputParseException exception = assertThrows(
+                ModelOutputParseException.class,
+                () -> mapperService.mapToAnalyzeDiffResponse(
+                        response, 100L, "diff", "req-8", "openai"
+                )
+        );
+
+        assertThat(exception.getMessage()).contains("missing required fields");
+    }
+
+    @Test
+    void mapToAnalyzeDiffResponse_shouldReadToolCallArguments_whenOutputHasNoText() {
+        String json = """
+                {"title":"test","summary":"s","details":"d","risks":[],"suggestedTests":[],"touchedFiles":[],"analysisNotes":null}
+                """;
+        AssistantMessage output = AssistantMessage.builder()
+                                                  .content("")
+                                                  .toolCalls(List.of(new AssistantMessage.ToolCall(
+                                                          "call-1", "function", "submit_analysis", json
+                                                  )))
+                                                  .build();
+        ChatResponse response = ChatResponse.builder()
+                                            .generations(List.of(new Generation(output)))
+                                            .metadata(ChatResponseMetadata.builder().model("claude").build())
+                                            .build();
+
+        AnalyzeDiffResponse result = mapperService.mapToAnalyzeDiffResponse(
+                response, 100L, "diff", "req-9", "anthropic"
+        );
+
+        assertEquals("test", result.title());
+    }
+
+    @Test
+    void mapToAnalyzeDiffResponse_shouldCountParseOutcomes() {
+        String json = """
+                {"title":"test","summary":"s","details":"d","risks":[],"suggestedTests":[],"touchedFiles":[],"analysisNotes":null}
+                """;
+        mapperService.mapToAnalyzeDiffResponse(createChatResponse(json), 100L, "diff", "req-10", "openai");
+        assertThrows(ModelOutputParseException.class, () -> mapperService.mapToAnalyzeDiffResponse(
+                createChatResponse("not json"), 100L, "diff", "req-11", "openai"
+        ));
+
+        assertThat(meterRegistry.get("prcopilot.output.parse").tag("outcome", "success").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("prcopilot.output.parse").tag("outcome", "failure").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void mapToAnalyzeDiffResponse_shouldSalvageCompleteFields_whenOutputIsTruncated() {
+        String truncatedJson = """
+                {"title":"test","summary":"s","details":"d","risks":["Risk 1","Risk 2"],"suggestedTests":["Test 1","Te""";
+        ChatResponse response = createChatResponse(truncatedJson);
+
+        AnalyzeDiffResponse result = mapperService.mapToAnalyzeDiffResponse(
+                response, 100L, "diff --git a/App.java b/App.java", "req-12", "openai"
+        );
+
+        assertTrue(result.metadata().partial());
+        assertEquals(List.of("Risk 1", "Risk 2"), result.risks());
+        assertEquals(List.of("Test 1"), result.suggestedTests());
+        assertEquals(List.of("App.java"), result.touchedFiles());
+        assertEquals(DiffResponseMapperService.PARTIAL_NOTE, result.analysisNotes());
+        assertThat(meterRegistry.get("prcopilot.output.parse").tag("outcome", "partial").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void mapToAnalyzeDiffResponse_shouldThrowException_whenOutputIsTruncatedBeforeRequiredFields() {
+        ChatResponse response = createChatResponse("{\"title\":\"test\",\"summary\":\"s\",\"details\":\"cut o");
+
+        ModelOutputParseException exception = assertThrows(
+                ModelOutputParseException.class,
+                () -> mapperService.mapToAnalyzeDiffResponse(response, 100L, "diff", "req-13", "openai")
+        );
+
+        assertThat(exception.getMessage()).contains("truncated").contains("details");
+    }
+
     @Test
     void mapToAnalyzeDiffResponse_shouldHandleNullTokenUsage() {
         String json = """
@@ -0,0 +1,74 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IncrementalAnalysisJsonParserTest {
+
+    private final List<String> events = new ArrayList<>();
+
+    private final IncrementalAnalysisJsonParser parser = new IncrementalAnalysisJsonParser(
+            new IncrementalAnalysisJsonParser.Listener() {
+                @Override
+                public void onValue(String field, String value) {
+                    events.add(field + "=" + value);
+                }
+
+                @Override
+                public void onArrayStart(String field) {
+                    events.add(field + "[");
+                }
+
+                @Override
+                public void onArrayItem(String field, String value) {
+                    events.add(field + "[]=" + value);
+                }
+            }
+    );
+
+    @Test
+    public void feed_shouldReportFieldsAsTheyComplete_whenFedOneCharacterAtATime() {
+        String json = """
+                {"title": "Add login", "risks": ["Breaks \\"SSO\\"", "None"], "nested": {"title": "ignored"}, "summary": "Done"}""";
+
+        for (int i = 0; i < json.length(); i++) {
+            parser.feed(String.valueOf(json.charAt(i)));
+            if (json.charAt(i) == ',' && events.size() == 1) {
+                assertThat(events).containsExactly("title=Add login");
+            }
+        }
+
+        assertThat(events).containsExactly(
+                "title=Add login",
+                "risks[",
+                "risks[]=Breaks \"SSO\"",
+                "risks[]=None",
+                "summary=Done"
+        );
+        assertThat(parser.isComplete()).isTrue();
+        assertThat(parser.isFailed()).isFalse();
+    }
+
+    @Test
+    public void feed_shouldIgnoreMarkdownFenceAroundObject() {
+        parser.feed("```json\n{\"title\": ");
+        parser.feed("\"T\", \"details\": null}\n```");
+
+        assertThat(events).containsExactly("title=T", "details=null");
+        assertThat(parser.isComplete()).isTrue();
+    }
+
+    @Test
+    public void feed_shouldStopAndMarkFailed_whenInputIsMalformed() {
+        parser.feed("{\"title\": \"T\", oops");
+        parser.feed(", \"summary\": \"S\"}");
+
+        assertThat(events).containsExactly("title=T");
+        assertThat(parser.isFailed()).isTrue();
+        assertThat(parser.isComplete()).isFalse();
+    }
+}
@@ -0,0 +1,284 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotLoggingProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotMicroBatchProperties;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MicroBatchServiceTest {
+
+    private static final String ANALYSIS_FIELDS = "\"summary\": \"summary\", \"details\": \"details\", "
+            + "\"risks\": [], \"suggestedTests\": [], \"touchedFiles\": [], \"analysisNotes\": null";
+
+    private final ChatClient chatClient = mock(ChatClient.class);
+    private final ExecutorService batchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private PrCopilotMicroBatchProperties microBatchProperties;
+    private PromptBuilderService promptBuilderService;
+    private AiChatService aiChatService;
+    private SimpleMeterRegistry meterRegistry;
+    private MicroBatchService microBatchService;
+    private final List<Long> singleCallTimeouts = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        microBatchProperties = new PrCopilotMicroBatchProperties();
+        microBatchProperties.setEnabled(true);
+        microBatchProperties.setMaxBatchSize(2);
+        microBatchProperties.setMaxWaitMillis(5000);
+        promptBuilderService = mock(PromptBuilderService.class);
+        when(promptBuilderService.buildMicroBatchPrompt(anyString(), anyString(), anyList()))
+                .thenReturn(new Prompt("batched prompt"));
+        aiChatService = mock(AiChatService.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        DiffResponseMapperService diffResponseMapperService = new DiffResponseMapperService(
+                new ObjectMapper(),
+                new PrCopilotLoggingProperties(),
+                new PrCopilotAnalysisProperties(),
+                meterRegistry
+        );
+        microBatchService = new MicroBatchService(
+                microBatchProperties,
+                promptBuilderService,
+                aiChatService,
+                diffResponseMapperService,
+                new ObjectMapper(),
+                meterRegistry,
+                batchExecutor
+        );
+    }
+
+    @AfterEach
+    public void tearDown() {
+        microBatchService.shutdown();
+        batchExecutor.shutdownNow();
+    }
+
+    @Test
+    public void analyze_shouldSendSmallDiffsInOneCall_andSplitTheOutputByRequestId() {
+        whenBatchedCallReturns("""
+                ```json
+                {"results": [
+                  {"requestId": "req-2", "title": "second", %s},
+                  {"requestId": "req-1", "title": "first", %s}
+                ]}
+                ```""".formatted(ANALYSIS_FIELDS, ANALYSIS_FIELDS));
+
+        CompletableFuture<AnalyzeDiffResponse> first = analyzeAsync("diff-1", "req-1");
+        CompletableFuture<AnalyzeDiffResponse> second = analyzeAsync("diff-2", "req-2");
+
+        assertEquals("first", first.join().title());
+        assertEquals("req-1", first.join().requestId());
+        assertEquals("second", second.join().title());
+        assertEquals(15, first.join().metadata().tokensUsed());
+        verify(aiChatService, times(1)).callAiModel(any(), eq(chatClient), any(), eq(AiProvider.OPENAI), anyLong(), any());
+        verify(promptBuilderService).buildMicroBatchPrompt(eq("en"), eq("concise"), anyList());
+        assertThat(meterRegistry.get("prcopilot.microbatch.items").tag("outcome", "batched").counter().count())
+                .isEqualTo(2.0);
+        assertThat(meterRegistry.get("prcopilot.microbatch.size").summary().max()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void analyze_shouldFallBackToSingleCalls_forDiffsMissingFromTheOutput() {
+        whenBatchedCallReturns("{\"results\": [{\"requestId\": \"req-1\", \"title\": \"first\", %s}]}"
+                                       .formatted(ANALYSIS_FIELDS));
+
+        CompletableFuture<AnalyzeDiffResponse> first = analyzeAsync("diff-1", "req-1");
+        CompletableFuture<AnalyzeDiffResponse> second = analyzeAsync("diff-2", "req-2");
+
+        assertEquals("first", first.join().title());
+        assertEquals("single req-2", second.join().title());
+        assertThat(meterRegistry.get("prcopilot.microbatch.items").tag("outcome", "fallback").counter().count())
+                .isEqualTo(1.0);
+        assertThat(singleCallTimeouts).singleElement().satisfies(timeout -> assertThat(timeout).isBetween(1L, 30000L));
+    }
+
+    @Test
+    public void analyze_shouldFallBackToSingleCalls_whenTheOutputCanNotBeSplit() {
+        whenBatchedCallReturns("Sorry, here are the analyses: first one looks fine");
+
+        CompletableFuture<AnalyzeDiffResponse> first = analyzeAsync("diff-1", "req-1");
+        CompletableFuture<AnalyzeDiffResponse> second = analyzeAsync("diff-2", "req-2");
+
+        assertEquals("single req-1", first.join().title());
+        assertEquals("single req-2", second.join().title());
+        assertThat(meterRegistry.get("prcopilot.microbatch.items").tag("outcome", "fallback").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    public void analyze_shouldFailTheFallback_whenTheBatchedCallUsedUpTheDeadline() {
+        when(aiChatService.callAiModel(any(), any(), any(), any(), anyLong(), any())).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            return ChatResponse.builder()
+                               .generations(List.of(new Generation(new AssistantMessage("not json"))))
+                               .metadata(ChatResponseMetadata.builder().model("gpt-4o").build())
+                               .build();
+        });
+
+        CompletableFuture<AnalyzeDiffResponse> first = analyzeAsync("diff-1", "req-1", null, 50);
+        CompletableFuture<AnalyzeDiffResponse> second = analyzeAsync("diff-2", "req-2", null, 50);
+
+        assertThatThrownBy(first::join).hasCauseInstanceOf(CustomApiException.class);
+        assertThatThrownBy(second::join).hasCauseInstanceOf(CustomApiException.class);
+        assertThat(singleCallTimeouts).isEmpty();
+    }
+
+    @Test
+    public void analyze_shouldTimeOut_whileWaitingForItsBatch() {
+        microBatchProperties.setMaxWaitMillis(200);
+
+        CompletableFuture<AnalyzeDiffResponse> first = analyzeAsync("diff-1", "req-1", null, 50);
+
+        assertThatThrownBy(first::join).cause()
+                                       .isInstanceOf(CustomApiException.class)
+                                       .extracting(e -> ((CustomApiException) e).getHttpStatus())
+                                       .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        assertThat(singleCallTimeouts).isEmpty();
+    }
+
+    @Test
+    public void analyze_shouldLeaveDiffsPastTheirDeadline_outOfTheBatchedCall() throws Exception {
+        microBatchProperties.setMaxBatchSize(3);
+        whenBatchedCallReturns("""
+                {"results": [
+                  {"requestId": "req-2", "title": "second", %s},
+                  {"requestId": "req-3", "title": "third", %s}
+                ]}""".formatted(ANALYSIS_FIELDS, ANALYSIS_FIELDS));
+
+        CompletableFuture<AnalyzeDiffResponse> expired = analyzeAsync("diff-1", "req-1", null, 50);
+        CompletableFuture<AnalyzeDiffResponse> second = analyzeAsync("diff-2", "req-2", null, 30000);
+        assertThatThrownBy(expired::join).hasCauseInstanceOf(CustomApiException.class);
+        // Fills the batch, which is sent with the two diffs still waiting
+        CompletableFuture<AnalyzeDiffResponse> third = analyzeAsync("diff-3", "req-3", null, 30000);
+
+        assertEquals("second", second.get(5, TimeUnit.SECONDS).title());
+        assertEquals("third", third.get(5, TimeUnit.SECONDS).title());
+        verify(promptBuilderService).buildMicroBatchPrompt(
+                anyString(),
+                anyString(),
+                argThat(diffs -> diffs.size() == 2)
+        );
+    }
+
+    @Test
+    public void analyze_shouldNotBatchDiffsOfDifferentTenants() throws Exception {
+        microBatchProperties.setMaxWaitMillis(50);
+
+        CompletableFuture<AnalyzeDiffResponse> first = analyzeAsync("diff-1", "req-1", "team-a", 30000);
+        CompletableFuture<AnalyzeDiffResponse> second = analyzeAsync("diff-2", "req-2", "team-b", 30000);
+
+        assertEquals("single req-1", first.get(5, TimeUnit.SECONDS).title());
+        assertEquals("single req-2", second.get(5, TimeUnit.SECONDS).title());
+        verify(aiChatService, never()).callAiModel(any(), any(), any(), any(), anyLong(), any());
+        assertThat(meterRegistry.get("prcopilot.microbatch.items").tag("outcome", "single").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    public void analyze_shouldFailEveryDiffOfTheBatch_whenTheBatchedCallFails() {
+        when(aiChatService.callAiModel(any(), any(), any(), any(), anyLong(), any()))
+                .thenThrow(new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT));
+
+        CompletableFuture<AnalyzeDiffResponse> first = analyzeAsync("diff-1", "req-1");
+        CompletableFuture<AnalyzeDiffResponse> second = analyzeAsync("diff-2", "req-2");
+
+        assertThatThrownBy(first::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(CustomApiException.class);
+        assertThatThrownBy(second::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(CustomApiException.class);
+    }
+
+    @Test
+    public void analyze_shouldUseASingleCall_whenNoOtherDiffArrivesOrTheDiffIsTooLarge() throws Exception {
+        microBatchProperties.setMaxWaitMillis(10);
+        microBatchProperties.setMaxDiffChars(10);
+
+        AnalyzeDiffResponse alone = analyzeAsync("diff-1", "req-1").get(5, TimeUnit.SECONDS);
+        AnalyzeDiffResponse tooLarge = analyze("a much larger diff", "req-2");
+
+        assertEquals("single req-1", alone.title());
+        assertEquals("single req-2", tooLarge.title());
+        verify(aiChatService, never()).callAiModel(any(), any(), any(), any(), anyLong(), any());
+        assertThat(meterRegistry.get("prcopilot.microbatch.items").tag("outcome", "single").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    private void whenBatchedCallReturns(String output) {
+        ChatResponse response = ChatResponse.builder()
+                                            .generations(List.of(new Generation(new AssistantMessage(output))))
+                                            .metadata(ChatResponseMetadata.builder()
+                                                                          .model("gpt-4o")
+                                                                          .usage(new DefaultUsage(20, 10))
+                                                                          .build())
+                                            .build();
+        when(aiChatService.callAiModel(any(), any(), any(), any(), anyLong(), any())).thenReturn(response);
+    }
+
+    private CompletableFuture<AnalyzeDiffResponse> analyzeAsync(String diff, String requestId) {
+        return analyzeAsync(diff, requestId, null, 30000);
+    }
+
+    private CompletableFuture<AnalyzeDiffResponse> analyzeAsync(String diff, String requestId, String tenant, long timeoutMillis) {
+        return CompletableFuture.supplyAsync(() -> analyze(diff, requestId, tenant, timeoutMillis));
+    }
+
+    private AnalyzeDiffResponse analyze(String diff, String requestId) {
+        return analyze(diff, requestId, null, 30000);
+    }
+
+    private AnalyzeDiffResponse analyze(String diff, String requestId, String tenant, long timeoutMillis) {
+        return microBatchService.analyze(
+                new MicroBatchService.Request(diff, requestId, null, tenant),
+                "en",
+                "concise",
+                AiProvider.OPENAI,
+                chatClient,
+                null,
+                timeoutMillis,
+                AnalysisPriority.INTERACTIVE,
+                singleCallTimeoutMillis -> {
+                    singleCallTimeouts.add(singleCallTimeoutMillis);
+                    return AnalyzeDiffResponse.builder().title("single " + requestId).requestId(requestId).build();
+                }
+        );
+    }
+}
@@ -0,0 +1,191 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisPriority;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.AiRepairModel;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotLoggingProperties;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ModelOutputRepairServiceTest {
+
+    private static final String BROKEN_OUTPUT = "{title: 'test', summary: 's', details: 'd', risks: [], suggestedTests: []";
+
+    private static final String REPAIRED_OUTPUT = """
+            {"title":"test","summary":"s","details":"d","risks":[],"suggestedTests":[],"touchedFiles":[],"analysisNotes":null}
+            """;
+
+    @Mock
+    private ObjectProvider<AiRepairModel> repairModelProvider;
+
+    @Mock
+    private PromptBuilderService promptBuilderService;
+
+    @Mock
+    private AiChatService aiChatService;
+
+    private AiRepairModel repairModel;
+    private SimpleMeterRegistry meterRegistry;
+    private ModelOutputRepairService repairService;
+
+    @BeforeEach
+    public void setup() {
+        repairModel = new AiRepairModel(AiProvider.OLLAMA, mock(ChatClient.class), mock(ChatOptions.class), 5000);
+        lenient().when(repairModelProvider.getIfAvailable()).thenReturn(repairModel);
+        lenient().when(promptBuilderService.buildOutputRepairPrompt(any())).thenReturn(new Prompt("repair"));
+
+        meterRegistry = new SimpleMeterRegistry();
+        DiffResponseMapperService mapperService = new DiffResponseMapperService(
+                new ObjectMapper(),
+                new PrCopilotLoggingProperties(),
+                new PrCopilotAnalysisProperties(),
+                meterRegistry
+        );
+        repairService = new ModelOutputRepairService(
+                repairModelProvider,
+                promptBuilderService,
+                aiChatService,
+                mapperService,
+                meterRegistry
+        );
+    }
+
+    @Test
+    public void repair_shouldReturnRepairedResponse_withOriginalMetadataAndCombinedTokens() {
+        when(aiChatService.callAiModelOnce(any(), eq(repairModel.chatClient()), any(), eq(AiProvider.OLLAMA), eq(5000L), eq(AnalysisPriority.BULK)))
+                .thenReturn(chatResponse(REPAIRED_OUTPUT, "small-model", 150));
+
+        AnalyzeDiffResponse response = repairService.repair(
+                chatResponse(BROKEN_OUTPUT, "big-model", 1000),
+                new ModelOutputParseException("Invalid JSON"),
+                100,
+                "diff --git a/App.java b/App.java",
+                "req-1",
+                "openai",
+                AnalysisPriority.BULK,
+                deadline()
+        );
+
+        assertThat(response.title()).isEqualTo("test");
+        assertThat(response.touchedFiles()).containsExactly("App.java");
+        assertThat(response.metadata().repaired()).isTrue();
+        assertThat(response.metadata().provider()).isEqualTo("openai");
+        assertThat(response.metadata().modelName()).isEqualTo("big-model");
+        assertThat(response.metadata().tokensUsed()).isEqualTo(1150);
+        verify(promptBuilderService).buildOutputRepairPrompt(BROKEN_OUTPUT);
+
+        assertThat(meterRegistry.get("prcopilot.repair.attempts").tag("outcome", "success").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("prcopilot.repair.tokens.used").summary().totalAmount()).isEqualTo(150);
+        assertThat(meterRegistry.get("prcopilot.repair.tokens.saved").summary().totalAmount()).isEqualTo(850);
+    }
+
+    @Test
+    public void repair_shouldThrowOriginalException_whenRepairFails() {
+        when(aiChatService.callAiModelOnce(any(), any(), any(), any(), anyLong(), any()))
+                .thenThrow(new CustomApiException("AI Model request timed out", HttpStatus.GATEWAY_TIMEOUT));
+        ModelOutputParseException cause = new ModelOutputParseException("Invalid JSON");
+
+        ModelOutputParseException thrown = assertThrows(
+                ModelOutputParseException.class,
+                () -> repairService.repair(chatResponse(BROKEN_OUTPUT, "big-model", 1000), cause, 100, "diff", "req-1", "openai", AnalysisPriority.BULK, deadline())
+        );
+
+        assertSame(cause, thrown);
+        assertThat(meterRegistry.get("prcopilot.repair.attempts").tag("outcome", "failure").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    public void repair_shouldNotCallAModel_whenRepairIsDisabled() {
+        when(repairModelProvider.getIfAvailable()).thenReturn(null);
+        ModelOutputParseException cause = new ModelOutputParseException("Invalid JSON");
+
+        assertSame(cause, assertThrows(
+                ModelOutputParseException.class,
+                () -> repairService.repair(chatResponse(BROKEN_OUTPUT, "big-model", 1000), cause, 100, "diff", "req-1", "openai", AnalysisPriority.BULK, deadline())
+        ));
+        verifyNoInteractions(aiChatService);
+    }
+
+    @Test
+    public void repair_shouldCapTheRepairTimeoutAtTheRemainingDeadline() {
+        when(aiChatService.callAiModelOnce(any(), any(), any(), any(), anyLong(), any()))
+                .thenReturn(chatResponse(REPAIRED_OUTPUT, "small-model", 150));
+
+        repairService.repair(
+                chatResponse(BROKEN_OUTPUT, "big-model", 1000),
+                new ModelOutputParseException("Invalid JSON"),
+                100,
+                "diff",
+                "req-1",
+                "openai",
+                AnalysisPriority.BULK,
+                System.currentTimeMillis() + 1000
+        );
+
+        verify(aiChatService).callAiModelOnce(any(), any(), any(), any(), longThat(timeout -> timeout <= 1000), any());
+        verify(aiChatService, never()).callAiModel(any(), any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    public void repair_shouldNotCallAModel_whenTheDeadlineHasPassed() {
+        ModelOutputParseException cause = new ModelOutputParseException("Invalid JSON");
+
+        assertSame(cause, assertThrows(
+                ModelOutputParseException.class,
+                () -> repairService.repair(chatResponse(BROKEN_OUTPUT, "big-model", 1000), cause, 100, "diff", "req-1", "openai", AnalysisPriority.BULK, System.currentTimeMillis() - 1)
+        ));
+        verifyNoInteractions(aiChatService);
+    }
+
+    private static long deadline() {
+        return System.currentTimeMillis() + 60_000;
+    }
+
+    private ChatResponse chatResponse(String content, String model, int totalTokens) {
+        return ChatResponse.builder()
+                           .generations(List.of(new Generation(new AssistantMessage(content))))
+                           .metadata(ChatResponseMetadata.builder()
+                                                         .model(model)
+                                                         .usage(new DefaultUsage(totalTokens, 0, totalTokens))
+                                                         .build())
+                           .build();
+    }
+}
@@ -0,0 +1,277 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AnalysisJobStatus;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.api.dto.ProviderBatchResponse;
+import io.github.kxng0109.aiprcopilot.config.AiProvider;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotAnalysisProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotProviderBatchProperties;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.github.kxng0109.aiprcopilot.error.DiffTooLargeException;
+import io.github.kxng0109.aiprcopilot.error.ModelOutputParseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProviderBatchServiceTest {
+
+    private PrCopilotProviderBatchProperties batchProperties;
+    private PrCopilotAnalysisProperties analysisProperties;
+    private PromptBuilderService promptBuilderService;
+    private DiffResponseMapperService diffResponseMapperService;
+    private StubBatchClient client;
+    private SimpleMeterRegistry meterRegistry;
+    private ProviderBatchService batchService;
+
+    @BeforeEach
+    public void setup() {
+        batchProperties = new PrCopilotProviderBatchProperties();
+        batchProperties.setEnabled(true);
+        analysisProperties = new PrCopilotAnalysisProperties();
+        analysisProperties.setMaxDiffChars(1000);
+        analysisProperties.setDefaultLanguage("en");
+        analysisProperties.setDefaultStyle("concise");
+        promptBuilderService = mock(PromptBuilderService.class);
+        when(promptBuilderService.buildDiffAnalysisPrompt(any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> new Prompt(invocation.getArgument(2, String.class)));
+        diffResponseMapperService = mock(DiffResponseMapperService.class);
+        client = new StubBatchClient();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (batchService != null) batchService.shutdown();
+    }
+
+    @Test
+    public void submit_shouldSendOnePromptPerRequest_andReturnTheRunningBatch() {
+        batchService = newBatchService();
+
+        ProviderBatchResponse batch = batchService.submit(List.of(request("diff-1", "req-1"), request("diff-2", "req-2")));
+
+        assertEquals(AnalysisJobStatus.RUNNING, batch.status());
+        assertEquals("openai", batch.provider());
+        assertEquals("provider-batch-1", batch.providerBatchId());
+        assertEquals(2, batch.requestCount());
+        assertThat(batch.results()).isNull();
+        assertThat(client.submitted).extracting(ProviderBatchClient.Item::customId).containsExactly("0", "1");
+        assertThat(client.submitted).extracting(item -> item.prompt().getContents()).containsExactly("diff-1", "diff-2");
+        assertThat(meterRegistry.get("prcopilot.provider.batch.requests").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("prcopilot.provider.batch.running").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void pollBatches_shouldMapEachResult_inSubmissionOrder_onceTheBatchHasEnded() {
+        ChatResponse first = ProviderBatchClient.chatResponse("{\"title\":\"one\"}", "gpt-4o", 10, 5, "stop");
+        ChatResponse second = ProviderBatchClient.chatResponse("not json", "gpt-4o", 10, 5, "stop");
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(eq(first), anyLong(), eq("diff-1"), eq("req-1"), eq("openai")))
+                .thenReturn(AnalyzeDiffResponse.builder().title("one").requestId("req-1").build());
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(eq(second), anyLong(), eq("diff-2"), eq("req-2"), eq("openai")))
+                .thenThrow(new ModelOutputParseException("Invalid JSON"));
+        batchService = newBatchService();
+        String batchId = batchService.submit(List.of(
+                request("diff-1", "req-1"), request("diff-2", "req-2"), request("diff-3", "req-3"), request("diff-4", "req-4")
+        )).batchId();
+
+        batchService.pollBatches();
+        assertEquals(AnalysisJobStatus.RUNNING, batchService.get(batchId).status());
+
+        client.status = ProviderBatchClient.Status.ENDED;
+        client.results.add(new ProviderBatchClient.Result("2", null, "Request expired"));
+        client.results.add(new ProviderBatchClient.Result("1", second, null));
+        client.results.add(new ProviderBatchClient.Result("0", first, null));
+        batchService.pollBatches();
+        ProviderBatchResponse batch = batchService.get(batchId);
+
+        assertEquals(AnalysisJobStatus.SUCCEEDED, batch.status());
+        assertThat(batch.completedAt()).isNotNull();
+        assertThat(batch.results()).hasSize(4);
+        assertEquals("one", batch.results().get(0).response().title());
+        assertEquals(1, batch.results().get(0).line());
+        assertEquals(422, batch.results().get(1).error().statusCode());
+        assertEquals("req-2", batch.results().get(1).error().requestId());
+        assertEquals(502, batch.results().get(2).error().statusCode());
+        assertEquals("Request expired", batch.results().get(2).error().message());
+        assertEquals(502, batch.results().get(3).error().statusCode());
+        assertEquals(4, batch.results().get(3).line());
+        assertThat(meterRegistry.get("prcopilot.provider.batch.items").tag("outcome", "success").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("prcopilot.provider.batch.items").tag("outcome", "failure").counter().count())
+                .isEqualTo(3.0);
+        assertThat(meterRegistry.get("prcopilot.provider.batch.running").gauge().value()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void pollBatches_shouldFailTheBatch_whenTheProviderFailsIt_andRetryWhenPollingFails() {
+        batchService = newBatchService();
+        String batchId = batchService.submit(List.of(request("diff-1", "req-1"))).batchId();
+
+        client.pollFailure = new ResourceAccessException("Connection reset");
+        batchService.pollBatches();
+        assertEquals(AnalysisJobStatus.RUNNING, batchService.get(batchId).status());
+
+        client.pollFailure = null;
+        client.status = ProviderBatchClient.Status.FAILED;
+        batchService.pollBatches();
+        ProviderBatchResponse batch = batchService.get(batchId);
+
+        assertEquals(AnalysisJobStatus.FAILED, batch.status());
+        assertEquals(502, batch.error().statusCode());
+        assertEquals("Input file is invalid", batch.error().message());
+        assertThat(meterRegistry.get("prcopilot.provider.batch.completed").tag("outcome", "failure").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    public void attach_shouldCollectAnUnknownBatchByProviderId_andReturnTheTrackedOneOnceAttached() {
+        ChatResponse first = ProviderBatchClient.chatResponse("{\"title\":\"one\"}", "gpt-4o", 10, 5, "stop");
+        when(diffResponseMapperService.mapToAnalyzeDiffResponse(eq(first), anyLong(), isNull(), isNull(), eq("openai")))
+                .thenReturn(AnalyzeDiffResponse.builder().title("one").build());
+        batchService = newBatchService();
+
+        ProviderBatchResponse running = batchService.attach("provider-batch-1");
+        assertEquals(AnalysisJobStatus.RUNNING, running.status());
+        assertEquals(0, running.requestCount());
+
+        client.status = ProviderBatchClient.Status.ENDED;
+        client.results.add(new ProviderBatchClient.Result("1", null, "Request expired"));
+        client.results.add(new ProviderBatchClient.Result("0", first, null));
+        batchService.pollBatches();
+        ProviderBatchResponse attached = batchService.attach("provider-batch-1");
+
+        assertEquals(running.batchId(), attached.batchId());
+        assertEquals(AnalysisJobStatus.SUCCEEDED, attached.status());
+        assertEquals(2, attached.requestCount());
+        assertEquals("one", attached.results().get(0).response().title());
+        assertEquals(1, attached.results().get(0).line());
+        assertEquals(2, attached.results().get(1).line());
+        assertEquals("Request expired", attached.results().get(1).error().message());
+
+        client.pollFailure = new ResourceAccessException("Connection reset");
+        CustomApiException unreachable = assertThrows(CustomApiException.class, () -> batchService.attach("provider-batch-2"));
+        assertEquals(HttpStatus.BAD_GATEWAY, unreachable.getHttpStatus());
+    }
+
+    @Test
+    public void submit_shouldRejectTheWholeBatch_whenItIsEmptyTooLargeOrHoldsAnInvalidRequest() {
+        batchProperties.setMaxRequests(2);
+        batchService = newBatchService();
+
+        CustomApiException empty = assertThrows(CustomApiException.class, () -> batchService.submit(List.of()));
+        CustomApiException tooMany = assertThrows(CustomApiException.class, () -> batchService.submit(List.of(
+                request("diff-1", "req-1"), request("diff-2", "req-2"), request("diff-3", "req-3")
+        )));
+        CustomApiException invalid = assertThrows(
+                CustomApiException.class,
+                () -> batchService.submit(List.of(request("diff-1", "req-1"), request(" ", "req-2")))
+        );
+        assertThrows(DiffTooLargeException.class, () -> batchService.submit(List.of(request("x".repeat(1001), "req-1"))));
+
+        assertEquals(HttpStatus.BAD_REQUEST, empty.getHttpStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, tooMany.getHttpStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getHttpStatus());
+        assertThat(invalid.getMessage()).startsWith("Request 2: ");
+        assertThat(client.submitted).isEmpty();
+    }
+
+    @Test
+    public void submit_shouldThrow502_whenTheProviderRejectsTheBatch_and404_whenDisabled() {
+        client.submitFailure = new ResourceAccessException("Connection refused");
+        batchService = newBatchService();
+
+        CustomApiException rejected = assertThrows(
+                CustomApiException.class,
+                () -> batchService.submit(List.of(request("diff-1", "req-1")))
+        );
+        assertEquals(HttpStatus.BAD_GATEWAY, rejected.getHttpStatus());
+
+        batchService.shutdown();
+        batchProperties.setEnabled(false);
+        batchService = newBatchService();
+        CustomApiException disabled = assertThrows(
+                CustomApiException.class,
+                () -> batchService.submit(List.of(request("diff-1", "req-1")))
+        );
+        assertEquals(HttpStatus.NOT_FOUND, disabled.getHttpStatus());
+        assertEquals(HttpStatus.NOT_FOUND, assertThrows(CustomApiException.class, () -> batchService.get("unknown")).getHttpStatus());
+    }
+
+    @Test
+    public void constructor_shouldFail_whenTheProviderHasNoBatchClient() {
+        batchProperties.setProvider(AiProvider.OLLAMA);
+
+        assertThrows(IllegalStateException.class, this::newBatchService);
+    }
+
+    private ProviderBatchService newBatchService() {
+        return new ProviderBatchService(
+                batchProperties,
+                analysisProperties,
+                promptBuilderService,
+                diffResponseMapperService,
+                List.of(client),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                meterRegistry
+        );
+    }
+
+    private static AnalyzeDiffRequest request(String diff, String requestId) {
+        return AnalyzeDiffRequest.builder().diff(diff).requestId(requestId).build();
+    }
+
+    /**
+     * A local batch API whose state is set by the test.
+     */
+    private static class StubBatchClient implements ProviderBatchClient {
+
+        private final List<Item> submitted = new ArrayList<>();
+        private final List<Result> results = new ArrayList<>();
+        private Status status = Status.IN_PROGRESS;
+        private RuntimeException submitFailure;
+        private RuntimeException pollFailure;
+
+        @Override
+        public AiProvider provider() {
+            return AiProvider.OPENAI;
+        }
+
+        @Override
+        public String submit(List<Item> items) {
+            if (submitFailure != null) throw submitFailure;
+            submitted.addAll(items);
+            return "provider-batch-1";
+        }
+
+        @Override
+        public State poll(String batchId) {
+            if (pollFailure != null) throw pollFailure;
+            return new State(status, status == Status.FAILED ? "Input file is invalid" : null);
+        }
+
+        @Override
+        public List<Result> results(String batchId) {
+            return results;
+        }
+    }
+}
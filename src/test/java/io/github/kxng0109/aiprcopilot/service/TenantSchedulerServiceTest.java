@@ -0,0 +1,177 @@
+package io.github.kxng0109.aiprcopilot.service;
+
+import io.github.kxng0109.aiprcopilot.api.dto.AiCallMetadata;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffRequest;
+import io.github.kxng0109.aiprcopilot.api.dto.AnalyzeDiffResponse;
+import io.github.kxng0109.aiprcopilot.config.MultiAiConfigurationProperties;
+import io.github.kxng0109.aiprcopilot.config.PrCopilotTenantProperties;
+import io.github.kxng0109.aiprcopilot.error.CapacityExceededException;
+import io.github.kxng0109.aiprcopilot.error.CustomApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TenantSchedulerServiceTest {
+
+    private static final String DIFF = "x".repeat(40);
+
+    private PrCopilotTenantProperties tenantProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private TenantSchedulerService schedulerService;
+
+    @BeforeEach
+    public void setup() {
+        tenantProperties = new PrCopilotTenantProperties();
+        tenantProperties.setEnabled(true);
+        tenantProperties.setQueueTimeoutMillis(100);
+
+        MultiAiConfigurationProperties aiConfigurationProperties = new MultiAiConfigurationProperties();
+        aiConfigurationProperties.setMaxTokens(40);
+
+        meterRegistry = new SimpleMeterRegistry();
+        schedulerService = new TenantSchedulerService(tenantProperties, aiConfigurationProperties, meterRegistry);
+    }
+
+    @Test
+    public void schedule_shouldHandOutSlotsByDeficitRoundRobin_acrossTenants() throws Exception {
+        tenantProperties.setMaxConcurrent(1);
+        tenantProperties.setQuantumTokens(schedulerService.estimateTokens(DIFF));
+        tenantProperties.setQueueTimeoutMillis(5000);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread blocker = Thread.ofVirtual().start(() -> schedulerService.schedule(request("blocker"), () -> {
+            running.countDown();
+            await(release);
+            return response(null);
+        }));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Thread> waiting = new ArrayList<>();
+        int queuedForTeamA = 0;
+        for (String tenant : List.of("team-a", "team-a", "team-a", "team-b")) {
+            waiting.add(Thread.ofVirtual().start(() -> schedulerService.schedule(request(tenant), () -> {
+                started.add(tenant);
+                return response(null);
+            })));
+            awaitQueued(tenant, tenant.equals("team-a") ? ++queuedForTeamA : 1);
+        }
+
+        release.countDown();
+        blocker.join(5000);
+        for (Thread thread : waiting) thread.join(5000);
+
+        assertThat(started).containsExactly("team-a", "team-b", "team-a", "team-a");
+        assertThat(meterRegistry.get("prcopilot.tenants.requests").tags("tenant", "team-a", "outcome", "success")
+                                .counter().count()).isEqualTo(3.0);
+        assertThat(meterRegistry.get("prcopilot.tenants.queue.wait").tag("tenant", "team-b").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void schedule_shouldShedAnalyses_overTheTenantsConcurrencyCap() throws Exception {
+        tenantProperties.getDefaultQuota().setMaxConcurrent(1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread first = Thread.ofVirtual().start(() -> schedulerService.schedule(request("team-a"), () -> {
+            running.countDown();
+            await(release);
+            return response(null);
+        }));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CapacityExceededException thrown = assertThrows(
+                CapacityExceededException.class,
+                () -> schedulerService.schedule(request("team-a"), () -> response(null))
+        );
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, thrown.getHttpStatus());
+        assertThat(schedulerService.schedule(request("team-b"), () -> response(null))).isNotNull();
+        assertThat(meterRegistry.get("prcopilot.tenants.rejected").tags("tenant", "team-a", "reason", "queue")
+                                .counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("prcopilot.tenants.in.flight").tag("tenant", "team-a").gauge().value())
+                .isEqualTo(1.0);
+
+        release.countDown();
+        first.join(5000);
+        assertThat(meterRegistry.get("prcopilot.tenants.in.flight").tag("tenant", "team-a").gauge().value())
+                .isEqualTo(0.0);
+    }
+
+    @Test
+    public void schedule_shouldRejectWith429_whenTheTenantIsOverItsTokenQuota() {
+        PrCopilotTenantProperties.Quota quota = new PrCopilotTenantProperties.Quota();
+        quota.setTokensPerMinute(100);
+        tenantProperties.getQuotas().put("team-a", quota);
+
+        schedulerService.schedule(request("team-a"), () -> response(10));
+        schedulerService.schedule(request("team-a"), () -> response(null));
+
+        CapacityExceededException thrown = assertThrows(
+                CapacityExceededException.class,
+                () -> schedulerService.schedule(request("team-a"), () -> response(null))
+        );
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, thrown.getHttpStatus());
+        assertThat(thrown.getRetryAfterSeconds()).isPositive();
+        assertThat(schedulerService.schedule(request("team-b"), () -> response(null))).isNotNull();
+        assertThat(meterRegistry.get("prcopilot.tenants.tokens").tag("tenant", "team-a").counter().count())
+                .isEqualTo(60.0);
+        assertThat(meterRegistry.get("prcopilot.tenants.rejected").tags("tenant", "team-a", "reason", "quota")
+                                .counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void schedule_shouldUseTheDefaultTenant_andRejectInvalidTenants() {
+        schedulerService.schedule(request(null), () -> response(null));
+
+        CustomApiException thrown = assertThrows(
+                CustomApiException.class,
+                () -> schedulerService.schedule(request("team a/../b"), () -> response(null))
+        );
+        assertEquals(HttpStatus.BAD_REQUEST, thrown.getHttpStatus());
+        assertThat(meterRegistry.get("prcopilot.tenants.requests").tags("tenant", "default", "outcome", "success")
+                                .counter().count()).isEqualTo(1.0);
+    }
+
+    private void awaitQueued(String tenant, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (meterRegistry.find("prcopilot.tenants.queued").tag("tenant", tenant).gauge() != null
+                    && meterRegistry.get("prcopilot.tenants.queued").tag("tenant", tenant).gauge().value() == expected) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("Analyses of tenant " + tenant + " did not queue");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static AnalyzeDiffRequest request(String tenant) {
+        return AnalyzeDiffRequest.builder().diff(DIFF).tenant(tenant).build();
+    }
+
+    private static AnalyzeDiffResponse response(Integer tokensUsed) {
+        return AnalyzeDiffResponse.builder()
+                                  .title("title")
+                                  .metadata(AiCallMetadata.builder().tokensUsed(tokensUsed).build())
+                                  .build();
+    }
+}